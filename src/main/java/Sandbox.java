@@ -23,10 +23,10 @@ import mcs.midi.Drum;
 import mcs.midi.Message;
 import mcs.midi.MidiInterface;
 import mcs.midi.SequenceUtils;
+import mcs.midi.TimingWheel;
 import mcs.midi.Tone;
-import mcs.pattern.DrumPattern;
-import mcs.pattern.MelodicPattern;
 import mcs.pattern.Pattern;
+import mcs.pattern.PatternCache;
 
 import javax.sound.midi.Instrument;
 import javax.sound.midi.InvalidMidiDataException;
@@ -104,6 +104,7 @@ public class Sandbox {
 		} catch(InvalidMidiDataException e) {
 			e.printStackTrace();
 		} finally {
+			TimingWheel.getDefault().flush();
 			device.close();
 		}
 	}
@@ -148,15 +149,16 @@ public class Sandbox {
 
 		// Adding drums
 		String drumPattern = "rock_1";
-		long nextTick = DrumPattern.importPattern(new File(String.format("pattern/drum/%s.dpt", drumPattern)), track, 0);
-		DrumPattern.importPattern(new File(String.format("pattern/drum/%s.dpt", drumPattern)), track, nextTick);
+		PatternCache cache = PatternCache.getInstance();
+		long nextTick = cache.importDrumPattern(new File(String.format("pattern/drum/%s.dpt", drumPattern)), track, 0);
+		cache.importDrumPattern(new File(String.format("pattern/drum/%s.dpt", drumPattern)), track, nextTick);
 
 		// Adding piano
 		//		Tone.selectInstrument(track, 0, Roland_FP30.VIBRAPHONE);
 		String pianoPattern = "arpeggio_1";
-		nextTick = MelodicPattern.importPattern(new File(String.format("pattern/melodic/%s.mpt", pianoPattern)), track, 0, Chord.K(Note.E3),
+		nextTick = cache.importMelodicPattern(new File(String.format("pattern/melodic/%s.mpt", pianoPattern)), track, 0, Chord.K(Note.E3),
 				0);
-		nextTick = MelodicPattern.importPattern(new File(String.format("pattern/melodic/%s.mpt", pianoPattern)), track, 0, Chord.K(Note.E3),
+		nextTick = cache.importMelodicPattern(new File(String.format("pattern/melodic/%s.mpt", pianoPattern)), track, 0, Chord.K(Note.E3),
 				nextTick);
 
 		play(sequence);
@@ -168,7 +170,7 @@ public class Sandbox {
 		Sequence sequence = new Sequence(Sequence.PPQ, ticksPerBeat);
 		Track track = sequence.createTrack();
 		File patternFile = new File(String.format("pattern/drum/%s.dpt", patternName));
-		long tickOffset = DrumPattern.importPattern(patternFile, track, 0);
+		long tickOffset = PatternCache.getInstance().importDrumPattern(patternFile, track, 0);
 
 		track.add(new MidiEvent(Time.createTempoMessage(bpm), 0));
 
@@ -184,10 +186,11 @@ public class Sandbox {
 		Track track = sequence.createTrack();
 		int channel = 0;
 		File patternFile = new File(String.format("pattern/melodic/%s.mpt", patternName));
-		long tickOffset = MelodicPattern.importPattern(patternFile, track, channel, Chord.K(Note.E3), 0);
-		tickOffset = MelodicPattern.importPattern(patternFile, track, channel, Chord.Km(Note.G3), tickOffset);
-		tickOffset = MelodicPattern.importPattern(patternFile, track, channel, Chord.K(Note.E3), tickOffset);
-		tickOffset = MelodicPattern.importPattern(patternFile, track, channel, Chord.K7(Note.E3), tickOffset);
+		PatternCache cache = PatternCache.getInstance();
+		long tickOffset = cache.importMelodicPattern(patternFile, track, channel, Chord.K(Note.E3), 0);
+		tickOffset = cache.importMelodicPattern(patternFile, track, channel, Chord.Km(Note.G3), tickOffset);
+		tickOffset = cache.importMelodicPattern(patternFile, track, channel, Chord.K(Note.E3), tickOffset);
+		tickOffset = cache.importMelodicPattern(patternFile, track, channel, Chord.K7(Note.E3), tickOffset);
 
 		track.add(new MidiEvent(Time.createTempoMessage(bpm), 0));
 
@@ -270,20 +273,28 @@ public class Sandbox {
 
 			int duration_ms = 300;
 
+			// Notes are sent without waiting for their end, so the rhythm is given by sleeping
 			for(int f = 10; f < 100; f += 5) {
 				MSequencer.sendNote(receiver, Drum.CHANNEL, Drum.ACOUSTIC_SNARE, f, 70);
+				Thread.sleep(70);
 			}
 
 			for(int i = 0; i < 7; i++) {
 				MSequencer.sendNotes(receiver, Drum.CHANNEL, new int[] { Drum.BASS_DRUM_1, Drum.OPEN_HIT_HAT }, 100, duration_ms);
+				Thread.sleep(duration_ms);
 				MSequencer.sendNote(receiver, Drum.CHANNEL, Drum.PEDAL_HIT_HAT, 100, duration_ms);
+				Thread.sleep(duration_ms);
 				MSequencer.sendNote(receiver, Drum.CHANNEL, Drum.ACOUSTIC_SNARE, 100, duration_ms);
+				Thread.sleep(duration_ms);
 				MSequencer.sendNote(receiver, Drum.CHANNEL, Drum.PEDAL_HIT_HAT, 100, duration_ms);
+				Thread.sleep(duration_ms);
 			}
 
 			MSequencer.sendNotes(receiver, Drum.CHANNEL, new int[] { Drum.BASS_DRUM_1, Drum.OPEN_HIT_HAT }, 100, duration_ms);
+			Thread.sleep(duration_ms);
 
 		} finally {
+			TimingWheel.getDefault().flush();
 			device.close();
 		}
 	}
@@ -16,36 +16,76 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package mcs;
 
 import mcs.melody.Block;
-import mcs.melody.Time;
-import mcs.midi.Message;
-import mcs.midi.ReceiverHelper;
+import mcs.melody.Timeline;
+import mcs.midi.MessageCache;
+import mcs.midi.MessageList;
+import mcs.midi.MessageRing;
+import mcs.midi.TimingWheel;
+import mcs.midi.TraceLog;
+import mcs.midi.TrackingReceiver;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
 import javax.sound.midi.ShortMessage;
-import java.util.List;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@link MSequencer} plays {@link Block}s on a {@link Receiver}. Each {@link Block} is played by a {@link MTrack}, with
+ * its own channel, loop length, mute/solo state and time signature. The sequencer has a default track, used by {@link
+ * #set(Block)}, and others can be added with {@link #addTrack()}.
+ * <p>
+ * A {@link Block} can be replaced while playing: the new one is kept in a 'next block' slot of its track, and the scheduling
+ * thread takes it at the next loop boundary (or at the end of the current block when not looping) without being restarted.
+ * <p>
+ * All tracks are played by the same scheduling thread, which merges them by deadline: at each step it plays the track which
+ * next message is the earliest. Adding a track does not add a thread.
+ * <p>
+ * Playback uses two threads. The scheduling thread renders the messages of each tick into a {@link MessageRing}, {@link
+ * #LOOKAHEAD_ns} before their deadline. The output thread waits for the deadline of each message in the ring, with the
+ * {@link WaitStrategy} set by {@link #setWaitStrategy(WaitStrategy)}, and sends it to the {@link Receiver}. A slow receiver
+ * therefore never delays the scheduling of the next ticks. Both threads record what they do in the default {@link TraceLog}
+ * instead of printing it.
+ */
 public class MSequencer {
 
-	private final Receiver m_receiver;
+	public static final long LOOKAHEAD_ns = 20_000_000L; // How long before their deadline the messages are rendered
+	public static final long IDLE_PARK_ns = 200_000L; // How long the output thread waits when the ring is empty
+	public static final long IDLE_WAIT_ns = 100_000_000L; // How long the scheduling thread waits when no track is playing
+
+	private final TrackingReceiver m_receiver; // Used by the output thread alone while running, knows the notes to release
+	private final TrackingReceiver m_directReceiver; // Notes played by pressNote(), guarded by itself
 	private final int m_tempo_bpm;
-	private Block m_block;
+	private volatile MTrack[] m_tracks; // Copied on write, so that the scheduling thread reads it without locking
+	private volatile boolean m_looping = false;
+	private volatile WaitStrategy m_waitStrategy = WaitStrategy.PARK;
 
 	private final AtomicBoolean m_running = new AtomicBoolean(false);
 	private final Runnable m_loop;
-	private Long m_restartAtTick;
-	private Thread m_thread;
+	private final Runnable m_output;
+	private final Output m_ringOutput;
+	private volatile Thread m_thread;
+	private Thread m_outputThread;
+
+	private final MessageRing m_ring = new MessageRing();
+	private final TraceLog m_trace = TraceLog.getDefault();
+	private volatile long m_pendingDeadline_ns = Long.MAX_VALUE; // Deadline of the tick being waited for by the scheduling thread
 
 	private final Semaphore m_stopped = new Semaphore(0);
 	private final Semaphore m_started = new Semaphore(0);
 
 	public MSequencer(Receiver receiver, int tempo_bpm) {
-		m_receiver = receiver;
+		m_receiver = receiver instanceof TrackingReceiver ? (TrackingReceiver) receiver : new TrackingReceiver(receiver);
+		m_directReceiver = new TrackingReceiver(m_receiver.getReceiver());
 		m_tempo_bpm = tempo_bpm;
-		m_restartAtTick = 0L;
+		m_tracks = new MTrack[] { new MTrack(this) };
 		m_loop = buildLoop();
+		m_output = buildOutput();
+		m_ringOutput = buildRingOutput();
 	}
 
 	public int getTempo_bpm() {
@@ -56,51 +96,208 @@ public class MSequencer {
 	// Playback management
 	//
 
+	/**
+	 * When looping is enabled, each {@link Block} restarts from its first tick once played. Otherwise each track becomes silent
+	 * at the end of its block, until a new one is set. The sequencer keeps running.
+	 *
+	 * @param enable
+	 */
 	public void enableLooping(boolean enable) {
-		if(enable) {
-			m_restartAtTick = m_block.size();
-		} else {
-			m_restartAtTick = null;
-		}
+		m_looping = enable;
+	}
+
+	/**
+	 * Sets how the output thread waits for the deadline of each message. It can be changed while playing.
+	 *
+	 * @param waitStrategy
+	 */
+	public void setWaitStrategy(WaitStrategy waitStrategy) {
+		m_waitStrategy = waitStrategy;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return m_waitStrategy;
+	}
+
+	public boolean isRunning() {
+		return m_running.get();
 	}
 
-	public void start() throws InterruptedException {
+	public synchronized void start() throws InterruptedException {
 		if(!m_running.get()) {
 			m_running.set(true);
+			m_ring.clear();
 
-			m_thread = new Thread(m_loop);
+			m_outputThread = new Thread(m_output, "MSequencer output");
+			m_outputThread.start();
+			m_thread = new Thread(m_loop, "MSequencer scheduling");
 			m_thread.start();
 
 			m_started.acquire(1);
 		}
 	}
 
+	/**
+	 * Stops playback, then sends a NOTE_OFF for each note left sounding on the receiver, played by the tracks or by
+	 * {@link #pressNote(int, int, int)}.
+	 *
+	 * @throws InterruptedException
+	 */
 	public void stop() throws InterruptedException {
 		if(m_running.get()) {
 			m_running.set(false);
-			m_stopped.acquire(1);
+			wakeUp();
+			m_stopped.acquire(2); // Scheduling and output threads, the notes they played are then visible to this thread
 		}
 		try {
-			ReceiverHelper.stopAllNotes(m_receiver);
+			m_receiver.releaseAll();
+			synchronized(m_directReceiver) {
+				m_directReceiver.releaseAll();
+			}
 		} catch(InvalidMidiDataException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Plays a note immediately, from any thread. Only these direct notes take a lock, not the messages of the tracks.
+	 *
+	 * @param channel
+	 * @param key
+	 * @param velocity
+	 * @throws InvalidMidiDataException
+	 */
 	public void pressNote(int channel, int key, int velocity) throws InvalidMidiDataException {
-		sendNoteON(m_receiver, channel, key, velocity);
+		synchronized(m_directReceiver) {
+			sendNoteON(m_directReceiver, channel, key, velocity);
+		}
 	}
 
 	public void releaseNote(int channel, int key) throws InvalidMidiDataException {
-		sendNoteOFF(m_receiver, channel, key);
+		synchronized(m_directReceiver) {
+			sendNoteOFF(m_directReceiver, channel, key);
+		}
+	}
+
+	/**
+	 * Returns the number of times the scheduling thread found the {@link MessageRing} full, waiting for room counting once.
+	 *
+	 * @return
+	 */
+	public long getOverflows() {
+		return m_ring.getOverflows();
+	}
+
+	/**
+	 * Returns the number of times the output thread found the {@link MessageRing} empty while the scheduling thread was late.
+	 *
+	 * @return
+	 */
+	public long getUnderruns() {
+		return m_ring.getUnderruns();
 	}
 
 	//
-	// Block management
+	// Track management
 	//
 
+	/**
+	 * Sets the {@link Block} played by the default track. See {@link MTrack#set(Block)}.
+	 *
+	 * @param block
+	 */
 	public void set(Block block) {
-		m_block = block;
+		getTrack(0).set(block);
+	}
+
+	/**
+	 * Adds a track. If the sequencer is running, then the track starts playing as soon as it has a block.
+	 *
+	 * @return
+	 */
+	public synchronized MTrack addTrack() {
+		MTrack result = new MTrack(this);
+		MTrack[] tracks = Arrays.copyOf(m_tracks, m_tracks.length + 1);
+		tracks[tracks.length - 1] = result;
+		m_tracks = tracks;
+		return result;
+	}
+
+	/**
+	 * Returns the track at 'index'. Track #0 is the default track.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public MTrack getTrack(int index) {
+		return m_tracks[index];
+	}
+
+	public int getTrackCount() {
+		return m_tracks.length;
+	}
+
+	//
+	// Offline rendering
+	//
+
+	/**
+	 * Renders the first 'duration_ns' of playback without waiting, with the same scheduling as when playing: the result
+	 * contains the messages that {@link #start()} would send, in the same order, each one with its instant relative to the
+	 * first tick. The notes still sounding at the end are released at 'duration_ns'. Nothing is sent to the receiver.
+	 *
+	 * @param duration_ns
+	 * @return
+	 * @throws IllegalStateException if the sequencer is running.
+	 */
+	public synchronized MessageList render(long duration_ns) {
+		if(m_running.get()) {
+			throw new IllegalStateException("Cannot render while playing");
+		}
+
+		final MessageList result = new MessageList();
+		Output output = new Output() {
+			@Override
+			public void render(long deadline_ns, int message) {
+				result.add(deadline_ns, message);
+			}
+		};
+
+		// The clock is virtual: the first tick is at 0, and each step is played as soon as the previous one is rendered
+		MTrack[] tracks = m_tracks;
+		for(MTrack track : tracks) {
+			track.begin(0);
+		}
+
+		MTrack next;
+		while((next = selectNext(tracks, 0)) != null && next.getDeadline_ns() < duration_ns) {
+			next.step(m_looping, isAnySolo(tracks), output);
+		}
+
+		for(MTrack track : tracks) {
+			track.renderNoteOffs(duration_ns, output);
+			track.end();
+		}
+		return result;
+	}
+
+	/**
+	 * Renders the first 'duration_ns' of playback into a {@link Sequence}, which resolution is the smallest one able to place
+	 * each message on its exact tick. See {@link #render(long)}.
+	 *
+	 * @param duration_ns
+	 * @return
+	 * @throws InvalidMidiDataException
+	 */
+	public Sequence renderSequence(long duration_ns) throws InvalidMidiDataException {
+		int resolution = 1;
+		for(MTrack track : m_tracks) {
+			Block block = track.getBlock();
+			if(block != null) {
+				resolution = lcm(resolution, block.getTicksPerBeat());
+			}
+		}
+		return render(duration_ns).toSequence(m_tempo_bpm, resolution);
 	}
 
 	//
@@ -108,7 +305,11 @@ public class MSequencer {
 	//
 
 	/**
-	 * Creates the main loop of the Sequencer.
+	 * Creates the main loop of the Sequencer, run by the scheduling thread. It merges the tracks by deadline and renders the
+	 * messages of each step into the {@link MessageRing}.
+	 * <p>
+	 * The deadline of each tick is computed from the instant its track started, so that the time spent rendering messages, or
+	 * a late wake-up, never shifts the following ticks.
 	 *
 	 * @return
 	 */
@@ -116,60 +317,157 @@ public class MSequencer {
 		return new Runnable() {
 			@Override
 			public void run() {
-				long tick = 0;
-				long tickDuration_ms = Time.computeTickDuration_ms(m_tempo_bpm, m_block.getTicksPerBeat());
-
-				System.out.println("Tick duration: " + tickDuration_ms + " ms");
+				long start_ns = System.nanoTime() + LOOKAHEAD_ns; // So that the first messages are rendered on time
+				for(MTrack track : m_tracks) {
+					track.begin(start_ns);
+				}
 
-				long lastTick_ms = System.currentTimeMillis();
+				m_started.release(1); // Semaphore is used to manage asynchronous start/stop of loop
 
 				while(m_running.get()) {
+					// Tracks that were waiting for a block start after the lookahead, so that their first messages are not
+					// rendered behind later ones
+					MTrack[] tracks = m_tracks;
+					MTrack next = selectNext(tracks, System.nanoTime() + LOOKAHEAD_ns);
+
+					if(next == null) {
+						// No block is playing, waiting for one to be set
+						LockSupport.parkNanos(IDLE_WAIT_ns);
+						continue;
+					}
 
-					m_started.release(1); // Semaphore is used to manage asynchronous start/stop of loop
-
-					// If pattern not set or played to the end, escaping the loop
-					System.out.print("t" + tick);
-					if(m_block == null) {
-						break;
-					} else if(tick > m_block.size()) {
-						break;
+					// Waiting for the absolute deadline of this step minus the lookahead, whatever the time spent to render the
+					// previous messages. A new block or track wakes the thread up, then the deadlines are merged again.
+					long deadline_ns = next.getDeadline_ns();
+					m_pendingDeadline_ns = deadline_ns;
+					long wait_ns = deadline_ns - LOOKAHEAD_ns - System.nanoTime();
+					if(wait_ns > 0) {
+						LockSupport.parkNanos(wait_ns);
+						continue;
 					}
 
-					// Computing MIDI messages to be played simultaneously
-					List<ShortMessage> events = null;
+					next.step(m_looping, isAnySolo(tracks), m_ringOutput);
+					m_pendingDeadline_ns = Long.MAX_VALUE;
+				}
 
-					System.out.println();
-					try {
-						events = m_block.toMessages(tick);
-					} catch(InvalidMidiDataException e) {
-						e.printStackTrace();
-					}
-					for(ShortMessage event : events) { // Just for logging
-						System.out.println(" " + Message.toString(event));
-					}
+				for(MTrack track : m_tracks) {
+					track.end();
+				}
+				m_pendingDeadline_ns = Long.MAX_VALUE;
+				m_stopped.release(1);
+			}
+		};
+	}
 
-					// Before playing the notes, we computes how long it took to build the MIDI messages
-					// And this elapsed time will shorten the duration of sleep
-					try {
-						long elapsedTime_ms = System.currentTimeMillis() - lastTick_ms;
-						Thread.sleep(tickDuration_ms - elapsedTime_ms);
+	/**
+	 * Wakes the scheduling thread up, so that it takes into account a new block or a new track.
+	 */
+	void wakeUp() {
+		Thread thread = m_thread;
+		if(thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	private static int lcm(int a, int b) {
+		int gcd = a;
+		for(int r = b; r != 0; ) {
+			int t = gcd % r;
+			gcd = r;
+			r = t;
+		}
+		return a / gcd * b;
+	}
+
+	/**
+	 * Returns the track which next step is the earliest, or null if all tracks are idle. Idle tracks first take the block set in
+	 * the meantime, if any, starting at 'origin_ns'.
+	 *
+	 * @param tracks
+	 * @param origin_ns
+	 * @return
+	 */
+	private static MTrack selectNext(MTrack[] tracks, long origin_ns) {
+		MTrack result = null;
+		for(MTrack track : tracks) {
+			if(track.isIdle()) {
+				track.poll(origin_ns);
+			}
+			if(!track.isIdle() && (result == null || track.getDeadline_ns() < result.getDeadline_ns())) {
+				result = track;
+			}
+		}
+		return result;
+	}
 
-						if(m_running.get() && events != null) {
-							for(ShortMessage event : events) {
-								m_receiver.send(event, -1);
-							}
+	private static boolean isAnySolo(MTrack[] tracks) {
+		for(MTrack track : tracks) {
+			if(track.isSolo()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Receives the messages rendered by the tracks, with their deadline.
+	 */
+	interface Output {
+
+		void render(long deadline_ns, int message);
+	}
+
+	/**
+	 * Adds the messages in the {@link MessageRing}. If the ring is full, then waits for the output thread to send messages.
+	 *
+	 * @return
+	 */
+	private Output buildRingOutput() {
+		return new Output() {
+			@Override
+			public void render(long deadline_ns, int message) {
+				m_trace.record(TraceLog.RENDER, message);
+				while(!m_ring.offer(deadline_ns, message) && m_running.get()) {
+					LockSupport.parkNanos(IDLE_PARK_ns);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Creates the loop of the output thread. It sends each message of the {@link MessageRing} at its deadline.
+	 *
+	 * @return
+	 */
+	private Runnable buildOutput() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				boolean underrun = false;
+
+				while(m_running.get()) {
+					if(m_ring.isEmpty()) {
+						// The scheduling thread is late if the tick it is waiting for should already be played
+						boolean late = System.nanoTime() > m_pendingDeadline_ns;
+						if(late && !underrun) {
+							m_ring.countUnderrun();
+							m_trace.record(TraceLog.UNDERRUN, 0);
 						}
-						lastTick_ms = System.currentTimeMillis();
+						underrun = late;
+						LockSupport.parkNanos(IDLE_PARK_ns);
+						continue;
+					}
+					underrun = false;
+
+					try {
+						m_waitStrategy.waitUntil(m_ring.peekDeadline());
 					} catch(InterruptedException e) {
 						e.printStackTrace();
 						break;
 					}
 
-					tick++;
-
-					// If looping is enabled, then the 'tick' counter is reset
-					if(m_restartAtTick != null && tick >= m_restartAtTick) {
-						tick = 0;
+					if(m_running.get()) {
+						send(m_ring.poll());
 					}
 				}
 
@@ -178,53 +476,63 @@ public class MSequencer {
 		};
 	}
 
+	private void send(int message) {
+		try {
+			m_receiver.send(Timeline.toShortMessage(message), -1);
+			m_trace.record(TraceLog.SEND, message);
+		} catch(InvalidMidiDataException e) {
+			e.printStackTrace();
+		}
+	}
+
 	public static void sendNoteON(Receiver receiver, int channel, int key, int velocity) throws InvalidMidiDataException {
-		System.out.println("ON chan=" + channel + ",note=" + key + ",vel=" + velocity);
-		ShortMessage on = new ShortMessage();
-		on.setMessage(ShortMessage.NOTE_ON, channel, key, velocity);
-		receiver.send(on, -1);
+		receiver.send(MessageCache.get(ShortMessage.NOTE_ON, channel, key, velocity), -1);
+		TraceLog.getDefault().record(TraceLog.DIRECT, Timeline.pack(ShortMessage.NOTE_ON, channel, key, velocity));
 	}
 
 	public static void sendNoteOFF(Receiver receiver, int channel, int key) throws InvalidMidiDataException {
-		System.out.println("OFF chan=" + channel + ",note=" + key);
-		ShortMessage off = new ShortMessage();
-		off.setMessage(ShortMessage.NOTE_OFF, channel, key, 0);
-		receiver.send(off, -1);
+		receiver.send(MessageCache.get(ShortMessage.NOTE_OFF, channel, key, 0), -1);
+		TraceLog.getDefault().record(TraceLog.DIRECT, Timeline.pack(ShortMessage.NOTE_OFF, channel, key, 0));
 	}
 
 	/**
-	 * Sends MIDI message to the receiver. In other words it really plays the note.
+	 * Sends MIDI message to the receiver. In other words it really plays the note. The NOTE_OFF is sent after 'duration_ms' by
+	 * the default {@link TimingWheel}: this method returns immediately.
 	 *
 	 * @param receiver
 	 * @param channel
 	 * @param key
 	 * @param velocity
 	 * @param duration_ms
+	 * @return a handle to cancel the NOTE_OFF with {@link TimingWheel#cancel(long)}.
 	 * @throws InvalidMidiDataException
-	 * @throws InterruptedException
 	 */
-	public static void sendNote(Receiver receiver, int channel, int key, int velocity, long duration_ms)
-			throws InvalidMidiDataException, InterruptedException {
-		ShortMessage on = new ShortMessage();
-		on.setMessage(ShortMessage.NOTE_ON, channel, key, velocity);
-		ShortMessage off = new ShortMessage();
-		off.setMessage(ShortMessage.NOTE_OFF, channel, key, velocity);
+	public static long sendNote(Receiver receiver, int channel, int key, int velocity, long duration_ms)
+			throws InvalidMidiDataException {
+		ShortMessage on = MessageCache.get(ShortMessage.NOTE_ON, channel, key, velocity);
+		long deadline_ns = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration_ms);
 		receiver.send(on, -1);
-		Thread.sleep(duration_ms);
-		receiver.send(off, -1);
+		return TimingWheel.getDefault().schedule(receiver, Timeline.pack(ShortMessage.NOTE_OFF, channel, key, velocity), deadline_ns);
 	}
 
-	public static void sendNotes(Receiver receiver, int channel, int[] keys, int velocity, long duration_ms)
-			throws InterruptedException, InvalidMidiDataException {
-		for(int key : keys) {
-			receiver.send(new ShortMessage(ShortMessage.NOTE_ON, channel, key, velocity), -1);
-		}
-
-		Thread.sleep(duration_ms);
-
-		for(int key : keys) {
-			receiver.send(new ShortMessage(ShortMessage.NOTE_OFF, channel, key, velocity), -1);
+	/**
+	 * Plays several notes together, see {@link #sendNote(Receiver, int, int, int, long)}.
+	 *
+	 * @param receiver
+	 * @param channel
+	 * @param keys
+	 * @param velocity
+	 * @param duration_ms
+	 * @return the handles of the NOTE_OFFs.
+	 * @throws InvalidMidiDataException
+	 */
+	public static long[] sendNotes(Receiver receiver, int channel, int[] keys, int velocity, long duration_ms)
+			throws InvalidMidiDataException {
+		long[] result = new long[keys.length];
+		for(int k = 0; k < keys.length; k++) {
+			result[k] = sendNote(receiver, channel, keys[k], velocity, duration_ms);
 		}
+		return result;
 	}
 
 }
\ No newline at end of file
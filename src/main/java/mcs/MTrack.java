@@ -0,0 +1,302 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs;
+
+import mcs.melody.Block;
+import mcs.melody.Time;
+import mcs.melody.Timeline;
+import mcs.midi.ActiveNotes;
+
+import javax.sound.midi.ShortMessage;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link MTrack} is one of the parts played together by a {@link MSequencer}: it plays its own {@link Block}, with its own
+ * time signature and ticks per beat, loop length, channel and mute/solo state. Tracks are created with {@link
+ * MSequencer#addTrack()} and are all played by the scheduling thread of their sequencer.
+ * <p>
+ * Settings can be changed while playing. The block, the channel and the loop length are applied at the next loop boundary,
+ * mute and solo apply to the next NOTE_ONs.
+ */
+public class MTrack {
+
+	public static final int BLOCK_CHANNEL = -1; // Channel value meaning that messages keep the channel of their block
+
+	private final MSequencer m_sequencer;
+
+	private volatile Block m_block; // Block being played, only written by the scheduling thread while running
+	private final AtomicReference<Block> m_nextBlock = new AtomicReference<>(); // Block waiting to replace 'm_block'
+	private volatile int m_channel = BLOCK_CHANNEL;
+	private volatile long m_loopLength_ticks = 0; // 0 means the size of the block
+	private volatile boolean m_mute = false;
+	private volatile boolean m_solo = false;
+
+	//
+	// Scheduling state, only used by the scheduling thread
+	//
+
+	private Timeline m_timeline; // null when the track is idle
+	private int m_cursor; // Index of the next message to play in 'm_timeline'
+	private long m_tick; // Tick of the next step, in the current pass of the block
+	private long m_passTicks; // Number of ticks played since 'm_origin_ns' when the current pass started
+	private long m_origin_ns; // Instant of the tick #0 of the first pass
+	private long m_deadline_ns; // Deadline of the next step
+	private int m_passChannel; // Channel used for the current pass, BLOCK_CHANNEL to keep the one of the block
+	private final ActiveNotes m_notes = new ActiveNotes(); // Notes rendered ON by this track and not yet OFF
+
+	MTrack(MSequencer sequencer) {
+		m_sequencer = sequencer;
+	}
+
+	//
+	// Settings
+	//
+
+	/**
+	 * Sets the {@link Block} to play. If the sequencer is running, then the current block keeps playing until its end (or the
+	 * end of the loop), then the track releases the notes it still holds and continues with the new block. If several blocks
+	 * are set in between, only the last one is played.
+	 *
+	 * @param block
+	 */
+	public void set(Block block) {
+		if(m_sequencer.isRunning()) {
+			setNext(block);
+		} else {
+			m_nextBlock.set(null);
+			m_block = block;
+		}
+	}
+
+	public Block getBlock() {
+		return m_block;
+	}
+
+	/**
+	 * Keeps 'block' to be played at the end of the current pass. Used by {@link #set(Block)} while the sequencer is running.
+	 *
+	 * @param block
+	 */
+	void setNext(Block block) {
+		m_nextBlock.set(block);
+		m_sequencer.wakeUp(); // In case it waits for a block to play
+	}
+
+	/**
+	 * Forces the MIDI channel of the messages of this track. Use {@link #BLOCK_CHANNEL} to keep the channel of each block.
+	 *
+	 * @param channel
+	 */
+	public void setChannel(int channel) {
+		if(channel != BLOCK_CHANNEL && (channel < 0 || channel >= ActiveNotes.CHANNELS)) {
+			throw new IllegalArgumentException("Invalid MIDI channel: " + channel);
+		}
+		m_channel = channel;
+	}
+
+	public int getChannel() {
+		return m_channel;
+	}
+
+	/**
+	 * Sets the number of ticks after which the block restarts. With 0, the size of the block is used. A shorter loop cuts the
+	 * end of the block, a longer one adds silence after it.
+	 *
+	 * @param loopLength_ticks
+	 */
+	public void setLoopLength_ticks(long loopLength_ticks) {
+		if(loopLength_ticks < 0) {
+			throw new IllegalArgumentException("Invalid loop length: " + loopLength_ticks);
+		}
+		m_loopLength_ticks = loopLength_ticks;
+	}
+
+	public long getLoopLength_ticks() {
+		return m_loopLength_ticks;
+	}
+
+	/**
+	 * A muted track does not play its NOTE_ONs anymore. The notes already sounding are released normally.
+	 *
+	 * @param mute
+	 */
+	public void setMute(boolean mute) {
+		m_mute = mute;
+	}
+
+	public boolean isMute() {
+		return m_mute;
+	}
+
+	/**
+	 * When at least one track is solo, only the solo tracks play their NOTE_ONs.
+	 *
+	 * @param solo
+	 */
+	public void setSolo(boolean solo) {
+		m_solo = solo;
+	}
+
+	public boolean isSolo() {
+		return m_solo;
+	}
+
+	//
+	// Scheduling, called by the scheduling thread of the sequencer
+	//
+
+	boolean isIdle() {
+		return m_timeline == null;
+	}
+
+	long getDeadline_ns() {
+		return m_deadline_ns;
+	}
+
+	/**
+	 * Prepares the track to play its block from 'origin_ns'. Stays idle if there is no block to play.
+	 *
+	 * @param origin_ns
+	 */
+	void begin(long origin_ns) {
+		Block next = m_nextBlock.getAndSet(null);
+		if(next != null) {
+			m_block = next;
+		}
+
+		Block block = m_block;
+		if(block != null) {
+			startPass(block.compile(), origin_ns);
+		}
+	}
+
+	/**
+	 * Makes an idle track play the block set in the meantime, if any, from 'origin_ns'.
+	 *
+	 * @param origin_ns
+	 */
+	void poll(long origin_ns) {
+		if(m_nextBlock.get() != null) {
+			begin(origin_ns);
+		}
+	}
+
+	/**
+	 * Renders the messages of the next step, which deadline is {@link #getDeadline_ns()}, then computes the next deadline.
+	 *
+	 * @param looping
+	 * @param anySolo true if at least one track of the sequencer is solo
+	 * @param output
+	 */
+	void step(boolean looping, boolean anySolo, MSequencer.Output output) {
+		long deadline_ns = m_deadline_ns;
+
+		if(m_tick >= getPassEnd(looping)) {
+			// The notes still sounding are released first, then the next block, if any, replaces the current one
+			renderNoteOffs(deadline_ns, output);
+
+			Block next = m_nextBlock.getAndSet(null);
+			if(next != null) {
+				m_block = next;
+				startPass(next.compile(), deadline_ns);
+			} else if(looping) {
+				m_passTicks += m_tick;
+				m_tick = 0;
+				m_cursor = 0;
+				m_passChannel = m_channel;
+			} else {
+				m_timeline = null;
+				return;
+			}
+		}
+
+		boolean audible = !m_mute && (!anySolo || m_solo);
+		for(; m_cursor < m_timeline.getMessageCount() && m_timeline.getTick(m_cursor) <= m_tick; m_cursor++) {
+			int message = m_timeline.getMessage(m_cursor);
+			if(m_passChannel != BLOCK_CHANNEL) {
+				message = (message & ~0x0F) | m_passChannel;
+			}
+
+			boolean on = Timeline.getCommand(message) == ShortMessage.NOTE_ON && Timeline.getData2(message) > 0;
+			if(on ? audible : m_notes.isOn(Timeline.getChannel(message), Timeline.getData1(message))) {
+				render(deadline_ns, message, output);
+			}
+		}
+
+		// Empty ticks are skipped: the next step is the tick of the next message, or the end of the pass
+		long passEnd = getPassEnd(looping);
+		m_tick = m_cursor < m_timeline.getMessageCount() ? Math.min(m_timeline.getTick(m_cursor), passEnd) : passEnd;
+		m_deadline_ns = computeDeadline_ns();
+	}
+
+	/**
+	 * Renders a NOTE_OFF for each note rendered ON by this track and not yet released.
+	 *
+	 * @param deadline_ns
+	 * @param output
+	 */
+	void renderNoteOffs(long deadline_ns, MSequencer.Output output) {
+		for(int channel = 0; channel < ActiveNotes.CHANNELS; channel++) {
+			for(int key = m_notes.nextKey(channel, 0); key >= 0; key = m_notes.nextKey(channel, key + 1)) {
+				render(deadline_ns, Timeline.pack(ShortMessage.NOTE_OFF, channel, key, Block.DEFAULT_NOTE_OFF_VELOCITY), output);
+			}
+		}
+	}
+
+	/**
+	 * Stops the track: it becomes idle and forgets the notes rendered so far.
+	 */
+	void end() {
+		m_timeline = null;
+		m_notes.clear();
+	}
+
+	//
+	// Internal
+	//
+
+	private void startPass(Timeline timeline, long origin_ns) {
+		m_timeline = timeline;
+		m_origin_ns = origin_ns;
+		m_passTicks = 0;
+		m_tick = 0;
+		m_cursor = 0;
+		m_passChannel = m_channel;
+		m_deadline_ns = origin_ns;
+	}
+
+	/**
+	 * Returns the tick at which the current pass ends. When not looping, the pass ends one tick after the block, so that the
+	 * NOTE_OFFs placed at its end are played before the track becomes idle or takes the next block.
+	 *
+	 * @param looping
+	 * @return
+	 */
+	private long getPassEnd(boolean looping) {
+		long loopLength_ticks = m_loopLength_ticks > 0 ? m_loopLength_ticks : Math.max(1, m_timeline.size());
+		return looping ? loopLength_ticks : loopLength_ticks + 1;
+	}
+
+	private long computeDeadline_ns() {
+		return m_origin_ns + Time.computeTickTime_ns(m_passTicks + m_tick, m_sequencer.getTempo_bpm(),
+				m_timeline.getTicksPerBeat());
+	}
+
+	private void render(long deadline_ns, int message, MSequencer.Output output) {
+		m_notes.update(message);
+		output.render(deadline_ns, message);
+	}
+}
@@ -0,0 +1,135 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link WaitStrategy} tells how a timing thread waits for a deadline (from {@link System#nanoTime()}). Strategies trade CPU
+ * for precision:
+ * <ul>
+ * <li>{@link #SLEEP} and {@link #PARK} leave the CPU to other threads, but wake up late by the timer slack of the OS (often 1
+ * ms or more on a loaded system).</li>
+ * <li>{@link #YIELD} keeps the thread runnable, so it wakes up on time unless other threads need the CPU.</li>
+ * <li>{@link #HYBRID} parks until shortly before the deadline, then spins: it is as precise as spinning for the cost of a
+ * fraction of a CPU.</li>
+ * </ul>
+ */
+public abstract class WaitStrategy {
+
+	public static final long DEFAULT_SPIN_ns = 500_000L; // How long before the deadline the HYBRID strategy starts spinning
+
+	public static final WaitStrategy SLEEP = new WaitStrategy("sleep") {
+		@Override
+		public void waitUntil(long deadline_ns) throws InterruptedException {
+			long remaining_ns = deadline_ns - System.nanoTime();
+			if(remaining_ns > 0) {
+				TimeUnit.NANOSECONDS.sleep(remaining_ns);
+			}
+		}
+	};
+
+	public static final WaitStrategy PARK = new WaitStrategy("park") {
+		@Override
+		public void waitUntil(long deadline_ns) throws InterruptedException {
+			park(deadline_ns);
+		}
+	};
+
+	public static final WaitStrategy YIELD = new WaitStrategy("yield") {
+		@Override
+		public void waitUntil(long deadline_ns) throws InterruptedException {
+			while(deadline_ns - System.nanoTime() > 0) {
+				checkInterrupted();
+				Thread.yield();
+			}
+		}
+	};
+
+	public static final WaitStrategy HYBRID = hybrid(DEFAULT_SPIN_ns);
+
+	private final String m_name;
+
+	protected WaitStrategy(String name) {
+		m_name = name;
+	}
+
+	/**
+	 * Returns once {@link System#nanoTime()} has reached 'deadline_ns'. Returns immediately if the deadline is already passed.
+	 *
+	 * @param deadline_ns
+	 * @throws InterruptedException
+	 */
+	public abstract void waitUntil(long deadline_ns) throws InterruptedException;
+
+	/**
+	 * Returns a strategy that parks until 'spin_ns' before the deadline, then spins until the deadline.
+	 *
+	 * @param spin_ns
+	 * @return
+	 */
+	public static WaitStrategy hybrid(final long spin_ns) {
+		return new WaitStrategy(spin_ns == DEFAULT_SPIN_ns ? "hybrid" : "hybrid(" + spin_ns / 1000 + "us)") {
+			@Override
+			public void waitUntil(long deadline_ns) throws InterruptedException {
+				park(deadline_ns - spin_ns);
+				checkInterrupted();
+				while(deadline_ns - System.nanoTime() > 0) {
+					// Spinning
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns the bundled strategies.
+	 *
+	 * @return
+	 */
+	public static WaitStrategy[] values() {
+		return new WaitStrategy[] { SLEEP, PARK, YIELD, HYBRID };
+	}
+
+	@Override
+	public String toString() {
+		return m_name;
+	}
+
+	//
+	// Internal
+	//
+
+	/**
+	 * Parks until 'deadline_ns', whatever the spurious wake-ups.
+	 *
+	 * @param deadline_ns
+	 * @throws InterruptedException
+	 */
+	private static void park(long deadline_ns) throws InterruptedException {
+		long remaining_ns;
+		while((remaining_ns = deadline_ns - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining_ns);
+			checkInterrupted();
+		}
+	}
+
+	private static void checkInterrupted() throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+}
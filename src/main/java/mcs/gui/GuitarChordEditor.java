@@ -108,13 +108,11 @@ public class GuitarChordEditor {
 		diagram.exportJPG(new File(name.replaceAll(" ", "") + ".jpg"));
 	}
 
+	/**
+	 * Plays the chord drawn on the neck. If the sequencer is already playing, then the chord is played as soon as the previous
+	 * one ends.
+	 */
 	private void play() {
-		try {
-			m_sequencer.stop();
-		} catch(InterruptedException e) {
-			e.printStackTrace();
-		}
-
 		Block block = buildChordBlock();
 		System.out.println("Block size: " + block.size());
 		m_sequencer.set(block);
@@ -128,7 +126,7 @@ public class GuitarChordEditor {
 
 	private Block buildChordBlock() {
 		Block result = new Block(new Time.TimeSignature(2, 1), 1, 1);
-		for(int string = 1; string <= 6; string++) {
+		for(int string = 1; string <= m_neck.getStrings(); string++) {
 			Integer note = m_neck.getLowestNoteOfString(string);
 			if(note != null) {
 				result.add(note, Note.Dynamic.MEZZO_FORTE.velocity, 0, 1);
@@ -207,7 +205,7 @@ public class GuitarChordEditor {
 		m_patternSelectEnabled.set(false);
 
 		m_patternSelect.removeAllItems();
-		for(String patternName : m_patternStore.getAll().keySet()) {
+		for(String patternName : m_patternStore.getNames()) {
 			m_patternSelect.addItem(patternName);
 		}
 		if(patternToSelect != null) {
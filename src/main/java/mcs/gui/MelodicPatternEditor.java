@@ -138,7 +138,8 @@ public class MelodicPatternEditor implements WindowListener {
 	}
 
 	/**
-	 * Uses its {@link MSequencer} and m'chord' to play the current written pattern.
+	 * Uses its {@link MSequencer} and m'chord' to play the current written pattern. If the sequencer is already playing, then
+	 * the pattern replaces the previous one at the end of the current loop.
 	 */
 	void play() {
 		try {
@@ -49,7 +49,7 @@ public class ChordDiagram extends MComponent {
 		// Computing the number of frets to draw
 		m_frets = Math.max(4, m_pattern.getWidth());
 
-		m_fretboardWidth_px = 5 * CELL_WIDTH_px;
+		m_fretboardWidth_px = (m_pattern.getStrings() - 1) * CELL_WIDTH_px;
 		m_fretboardHeight_px = HEADER_CELL_HEIGHT_px + m_frets * CELL_HEIGHT_px;
 
 		setSize(2 * PADDING_px + FRET_NUMBER_WIDTH_px + m_fretboardWidth_px,
@@ -74,7 +74,7 @@ public class ChordDiagram extends MComponent {
 		int leftFret = Integer.MAX_VALUE;
 
 		// Strings
-		for(int string = 1; string <= 6; string++) {
+		for(int string = 1; string <= m_pattern.getStrings(); string++) {
 			int x_px = getStringX_px(string);
 			graphics.fillRect(x_px - FRET_THICKNESS_px / 2, PADDING_px + LABEL_HEIGHT_px + HEADER_CELL_HEIGHT_px,
 					FRET_THICKNESS_px, m_fretboardHeight_px - HEADER_CELL_HEIGHT_px);
@@ -82,7 +82,7 @@ public class ChordDiagram extends MComponent {
 			GuitarPattern.StringFingering fingering = m_pattern.getFingering(string);
 			if(fingering.isPlayed()) {
 				int key = m_rootNote + fingering.getInterval();
-				int fret = key - m_pattern.getTunning()[string - 1];
+				int fret = m_pattern.getTuning().computeFret(string, key);
 				while(fret < 0) {
 					fret += 12;
 				}
@@ -110,7 +110,7 @@ public class ChordDiagram extends MComponent {
 		}
 
 		// Dots
-		for(int string = 1; string <= 6; string++) {
+		for(int string = 1; string <= m_pattern.getStrings(); string++) {
 			GuitarPattern.StringFingering fingering = m_pattern.getFingering(string);
 			int x_px = getStringX_px(string);
 			if(!fingering.isPlayed()) {
@@ -9,8 +9,11 @@ package mcs.gui.components;
 import mcs.graphics.DPI;
 import mcs.graphics.MGraphics;
 import mcs.melody.Chord;
+import mcs.melody.ChordIndex;
 import mcs.melody.Note;
+import mcs.melody.PitchClassSet;
 import mcs.pattern.GuitarPattern;
+import mcs.pattern.Tuning;
 import mcs.utils.FileUtils;
 
 import javax.swing.*;
@@ -46,10 +49,10 @@ public class GuitarNeck extends MComponent {
 	public static final int MARKER_RADIUS_px = 14;
 	public static final int DEFAULT_FRETS_NUMBER = 21;
 
-	public static final int[] TUNING_STANDARD = new int[] { Note.E2, Note.A2, Note.D3, Note.G3, Note.B3, Note.E4 };
+	public static final int[] TUNING_STANDARD = Tuning.STANDARD.getNotes();
 
 	final int m_frets; // Number of frets available on the neck
-	final int[] m_tuning; // Base note of each string
+	final Tuning m_tuning; // Base note of each string
 	DotType[][] m_dots;
 	int m_rootNote = Note.NULL;
 
@@ -68,13 +71,17 @@ public class GuitarNeck extends MComponent {
 	}
 
 	public GuitarNeck(int frets) {
+		this(Tuning.STANDARD, frets);
+	}
+
+	public GuitarNeck(Tuning tuning, int frets) {
 		m_frets = frets;
-		m_tuning = TUNING_STANDARD;
+		m_tuning = tuning;
 
 		eraseAll();
 
 		int width_px = HEAD_CELL_WIDTH_px + m_frets * CELL_WIDTH_px + 2 * GRID_PADDING_px;
-		int height_px = 6 * CELL_HEIGHT_px + 2 * GRID_PADDING_px;
+		int height_px = m_tuning.size() * CELL_HEIGHT_px + 2 * GRID_PADDING_px;
 
 		setSize(width_px, height_px);
 		setPreferredSize(new Dimension(width_px, height_px));
@@ -86,6 +93,19 @@ public class GuitarNeck extends MComponent {
 		return m_frets;
 	}
 
+	public Tuning getTuning() {
+		return m_tuning;
+	}
+
+	/**
+	 * Returns the number of strings, given by the tuning.
+	 *
+	 * @return
+	 */
+	public int getStrings() {
+		return m_tuning.size();
+	}
+
 	//
 	// Management
 	//
@@ -134,11 +154,11 @@ public class GuitarNeck extends MComponent {
 	//
 
 	public void eraseString(int string) {
-		m_dots[string - 1] = new DotType[m_frets];
+		m_dots[string - 1] = new DotType[m_frets + 1];
 	}
 
 	public void eraseAll() {
-		m_dots = new DotType[6][m_frets + 1];
+		m_dots = new DotType[m_tuning.size()][m_frets + 1];
 		updateDisplay();
 	}
 
@@ -149,7 +169,7 @@ public class GuitarNeck extends MComponent {
 	public void set(GuitarPattern pattern, int fret) {
 		eraseAll();
 
-		for(int string = 1; string <= 6; string++) {
+		for(int string = 1; string <= Math.min(getStrings(), pattern.getStrings()); string++) {
 			GuitarPattern.StringFingering fingering = pattern.getFingering(string);
 			if(!fingering.isPlayed()) {
 				continue;
@@ -239,7 +259,8 @@ public class GuitarNeck extends MComponent {
 		graphics.fillRect(0, 0, getSize().width, getSize().height);
 
 		int fretboardWidth_px = HEAD_CELL_WIDTH_px + m_frets * CELL_WIDTH_px;
-		int fretboardHeight_px = 6 * CELL_HEIGHT_px;
+		int strings = m_tuning.size();
+		int fretboardHeight_px = strings * CELL_HEIGHT_px;
 
 		graphics.setPaint(FRETBOARD_COLOR);
 		graphics.fillRect(GRID_PADDING_px, GRID_PADDING_px, fretboardWidth_px, fretboardHeight_px);
@@ -254,9 +275,9 @@ public class GuitarNeck extends MComponent {
 
 		// Strings
 		graphics.setPaint(STRINGS_COLOR);
-		for(int s = 0; s < 6; s++) {
+		for(int s = 0; s < strings; s++) {
 			int x_px = GRID_PADDING_px;
-			int y_px = GRID_PADDING_px + (6 - s) * CELL_HEIGHT_px - (CELL_HEIGHT_px + STRING_THICKNESS_px) / 2;
+			int y_px = GRID_PADDING_px + (strings - s) * CELL_HEIGHT_px - (CELL_HEIGHT_px + STRING_THICKNESS_px) / 2;
 			graphics.fillRect(x_px, y_px, HEAD_CELL_WIDTH_px + m_frets * CELL_WIDTH_px, STRING_THICKNESS_px);
 		}
 
@@ -270,12 +291,12 @@ public class GuitarNeck extends MComponent {
 			int x_px = GRID_PADDING_px + HEAD_CELL_WIDTH_px + m * CELL_WIDTH_px - CELL_WIDTH_px / 2 - MARKER_RADIUS_px / 2;
 
 			if(m % 12 == 0) {
-				for(int i : new int[] { 2, 4 }) {
+				for(int i : new int[] { strings / 2 - 1, strings / 2 + 1 }) {
 					int y_px = GRID_PADDING_px + i * CELL_HEIGHT_px - MARKER_RADIUS_px / 2;
 					graphics.fillOval(x_px, y_px, MARKER_RADIUS_px, MARKER_RADIUS_px);
 				}
 			} else {
-				int y_px = GRID_PADDING_px + 3 * CELL_HEIGHT_px - MARKER_RADIUS_px / 2;
+				int y_px = GRID_PADDING_px + strings / 2 * CELL_HEIGHT_px - MARKER_RADIUS_px / 2;
 				graphics.fillOval(x_px, y_px, MARKER_RADIUS_px, MARKER_RADIUS_px);
 			}
 		}
@@ -284,8 +305,8 @@ public class GuitarNeck extends MComponent {
 		Stroke stroke = graphics.getStroke();
 		graphics.setStroke(new BasicStroke(FINGER_STROKE_px));
 
-		// Looping over the strings. Low E=1, A=2... high E=6
-		for(int string = 1; string <= 6; string++) {
+		// Looping over the strings, from the lowest=1
+		for(int string = 1; string <= strings; string++) {
 			for(int fret = 0; fret < m_frets; fret++) {
 				DotType dot = m_dots[string - 1][fret];
 				if(dot == null) {
@@ -304,25 +325,26 @@ public class GuitarNeck extends MComponent {
 
 		if(m_showAsScale) { // Drawing secondary dots
 
-			// Getting all notes
-			ArrayList<Integer> notes = new ArrayList<>();
-			for(int string = 1; string <= 6; string++) {
-				java.util.List<Integer> pickedFrets = new ArrayList<>();
-				if(m_editionMode == EditionMode.CHORD) {
-					pickedFrets.add(getPickedFretsOfString(string).get(0));
-				} else {
-					pickedFrets.addAll(getPickedFretsOfString(string));
-				}
-
-				for(int fret : pickedFrets) {
-					notes.add(computeNote(string, fret));
+			// Getting all notes, only the lowest one of each string for a chord
+			PitchClassSet notes = PitchClassSet.EMPTY;
+			for(int string = 1; string <= strings; string++) {
+				for(int fret = 0; fret < m_frets; fret++) {
+					if(m_dots[string - 1][fret] != null) {
+						notes = notes.union(PitchClassSet.ofNotes(computeNote(string, fret)));
+						if(m_editionMode == EditionMode.CHORD) {
+							break;
+						}
+					}
 				}
 			}
 
 			// Drawing all occurrences on every strings
-			for(int string = 1; string <= 6; string++) {
-				for(int note : notes) {
-					for(int fret : getFrets(string, note)) {
+			for(int string = 1; string <= strings; string++) {
+				for(int index = 0; index < notes.size(); index++) {
+					for(int fret : m_tuning.getFrets(string, notes.get(index))) {
+						if(fret >= m_frets) {
+							break;
+						}
 						if(m_dots[string - 1][fret] == null) {
 							drawSecondaryNote(graphics, string, fret, null);
 						}
@@ -341,15 +363,11 @@ public class GuitarNeck extends MComponent {
 	 */
 	Collection<Integer> getFrets(int string, int note) {
 		Collection<Integer> result = new ArrayList<>();
-		int fretOffset = 0;
-		while(fretOffset < m_frets) {
-			int stringTune = m_tuning[string - 1];
-			int _note = Note.getNoteInRange(note, stringTune + fretOffset, stringTune + fretOffset + 12);
-			int fret = _note - stringTune;
-			if(fret < m_frets) {
-				result.add(fret);
+		for(int fret : m_tuning.getFrets(string, note)) {
+			if(fret >= m_frets) {
+				break;
 			}
-			fretOffset += 12;
+			result.add(fret);
 		}
 		return result;
 	}
@@ -360,7 +378,7 @@ public class GuitarNeck extends MComponent {
 
 		int cellWidth_x = cell == 0 ? HEAD_CELL_WIDTH_px : CELL_WIDTH_px;
 		int x_px = GRID_PADDING_px + HEAD_CELL_WIDTH_px + cell * CELL_WIDTH_px - cellWidth_x / 2;
-		int y_px = GRID_PADDING_px + (7 - string) * CELL_HEIGHT_px - CELL_HEIGHT_px / 2;
+		int y_px = GRID_PADDING_px + (m_tuning.size() + 1 - string) * CELL_HEIGHT_px - CELL_HEIGHT_px / 2;
 
 		if(interval == null || Chord.ROOT != interval) {
 			graphics.drawOval(x_px - nonRootRadius_px / 2, y_px - nonRootRadius_px / 2, nonRootRadius_px, nonRootRadius_px);
@@ -374,13 +392,13 @@ public class GuitarNeck extends MComponent {
 
 		int cellWidth_x = cell == 0 ? HEAD_CELL_WIDTH_px : CELL_WIDTH_px;
 		int x_px = GRID_PADDING_px + HEAD_CELL_WIDTH_px + cell * CELL_WIDTH_px - cellWidth_x / 2;
-		int y_px = GRID_PADDING_px + (7 - string) * CELL_HEIGHT_px - CELL_HEIGHT_px / 2;
+		int y_px = GRID_PADDING_px + (m_tuning.size() + 1 - string) * CELL_HEIGHT_px - CELL_HEIGHT_px / 2;
 
 		graphics.drawOval(x_px - radius_px / 2, y_px - radius_px / 2, radius_px, radius_px);
 	}
 
 	int pixel2string(int y_px) {
-		return 6 - (y_px - GRID_PADDING_px) / CELL_HEIGHT_px;
+		return m_tuning.size() - (y_px - GRID_PADDING_px) / CELL_HEIGHT_px;
 	}
 
 	int pixel2fret(int x_px) {
@@ -399,11 +417,11 @@ public class GuitarNeck extends MComponent {
 	//
 
 	public int computeNote(int string, int fret) {
-		return m_tuning[string - 1] + fret;
+		return m_tuning.computeNote(string, fret);
 	}
 
 	public int computeFret(int string, int key) {
-		return key - m_tuning[string - 1];
+		return m_tuning.computeFret(string, key);
 	}
 
 	public static int computeFret0_12(int stringTuning, int key) {
@@ -425,7 +443,7 @@ public class GuitarNeck extends MComponent {
 			return null;
 		}
 
-		for(int string = 1; string <= 6; string++) {
+		for(int string = 1; string <= Math.min(getStrings(), pattern.getStrings()); string++) {
 			GuitarPattern.StringFingering fingering = pattern.getFingering(string);
 			if(!fingering.isPlayed()) {
 				continue;
@@ -457,15 +475,19 @@ public class GuitarNeck extends MComponent {
 		Integer rootNote = getRootNote();
 
 		if(rootNote == null || rootNote == Note.NULL) {
-			throw new NullPointerException("Chord pattern could not be saved, you must first define the root note.");
+			rootNote = identifyRootNote();
+			if(rootNote == Note.NULL) {
+				throw new NullPointerException("Chord pattern could not be saved, you must first define the root note.");
+			}
+			m_rootNote = rootNote;
 		}
 
 		// Building the pattern from neck
-		GuitarPattern pattern = new GuitarPattern();
+		GuitarPattern pattern = new GuitarPattern(m_tuning);
 
 		// First we computes the fret numbers and intervals of each note
 		int minFret = getFrets();
-		for(int string = 1; string <= 6; string++) {
+		for(int string = 1; string <= getStrings(); string++) {
 			Integer note = getLowestNoteOfString(string);
 			if(note == Note.NULL) {
 				pattern.clear(string);
@@ -483,6 +505,38 @@ public class GuitarNeck extends MComponent {
 		return pattern;
 	}
 
+	/**
+	 * Names the chord played on the neck with the {@link ChordIndex}, the lowest note being the bass.
+	 *
+	 * @return null if the notes do not make a known chord.
+	 */
+	public ChordIndex.Match identifyChord() {
+		int[] notes = new int[getStrings()];
+		for(int string = 1; string <= notes.length; string++) {
+			notes[string - 1] = getLowestNoteOfString(string);
+		}
+		return ChordIndex.identify(notes);
+	}
+
+	/**
+	 * Returns the lowest note played on the neck that is the root of the chord found by {@link #identifyChord()}.
+	 *
+	 * @return {@link Note#NULL} if no chord is found.
+	 */
+	int identifyRootNote() {
+		ChordIndex.Match chord = identifyChord();
+		if(chord == null) {
+			return Note.NULL;
+		}
+		for(int string = 1; string <= getStrings(); string++) {
+			int note = getLowestNoteOfString(string);
+			if(note != Note.NULL && note % 12 == chord.getRoot()) {
+				return note;
+			}
+		}
+		return Note.NULL;
+	}
+
 	public static void main(String[] args) throws IOException {
 		DPI.loadCommandLine(args);
 
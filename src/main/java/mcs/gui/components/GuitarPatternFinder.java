@@ -6,19 +6,84 @@
 
 package mcs.gui.components;
 
+import mcs.graphics.DPI;
+import mcs.melody.ChordSymbol;
+import mcs.pattern.GuitarVoicingSearch;
+
 import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 
+/**
+ * Finds the voicings of the chord symbol typed in the text field (see {@link GuitarVoicingSearch}). The selected voicing is
+ * shown on the {@link GuitarNeck}.
+ */
 public class GuitarPatternFinder extends JComponent {
 
 	JTextField m_inputText;
+	JList<GuitarVoicingSearch.Voicing> m_voicingList;
+	GuitarNeck m_neck;
+
+	final GuitarVoicingSearch m_search = new GuitarVoicingSearch(GuitarNeck.TUNING_STANDARD, GuitarNeck.DEFAULT_FRETS_NUMBER);
+	ChordSymbol m_chord;
 
 	public GuitarPatternFinder() {
 		setLayout(new BorderLayout());
 
 		m_inputText = new JTextField("");
 		m_inputText.setMinimumSize(new Dimension(500, 50));
+		m_inputText.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				search(m_inputText.getText().trim());
+			}
+		});
 		add(m_inputText, BorderLayout.NORTH);
+
+		m_voicingList = new JList<>(new DefaultListModel<GuitarVoicingSearch.Voicing>());
+		m_voicingList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		m_voicingList.addListSelectionListener(new ListSelectionListener() {
+			@Override
+			public void valueChanged(ListSelectionEvent e) {
+				GuitarVoicingSearch.Voicing voicing = m_voicingList.getSelectedValue();
+				if(voicing != null && !e.getValueIsAdjusting()) {
+					m_neck.set(voicing.toGuitarPattern(m_search.getTuning(), m_chord.getRoot()), 0);
+				}
+			}
+		});
+		add(new JScrollPane(m_voicingList), BorderLayout.WEST);
+
+		m_neck = new GuitarNeck();
+		add(m_neck, BorderLayout.CENTER);
 	}
 
-}
\ No newline at end of file
+	void search(String symbol) {
+		DefaultListModel<GuitarVoicingSearch.Voicing> model = (DefaultListModel<GuitarVoicingSearch.Voicing>) m_voicingList.getModel();
+		model.clear();
+		m_neck.eraseAll();
+
+		m_chord = ChordSymbol.parse(symbol);
+		if(m_chord == null) {
+			return;
+		}
+		for(GuitarVoicingSearch.Voicing voicing : m_search.find(m_chord)) {
+			model.addElement(voicing);
+		}
+		if(!model.isEmpty()) {
+			m_voicingList.setSelectedIndex(0);
+		}
+	}
+
+	public static void main(String[] args) {
+		DPI.loadCommandLine(args);
+
+		JFrame frame = new JFrame("Guitar Pattern Finder");
+		frame.getContentPane().add(new GuitarPatternFinder());
+		frame.pack();
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setVisible(true);
+	}
+}
@@ -8,6 +8,7 @@ package mcs.gui.components;
 
 import mcs.melody.Note;
 import mcs.melody.Time;
+import mcs.pattern.EventStore;
 import mcs.pattern.Pattern;
 
 import javax.swing.*;
@@ -113,11 +114,11 @@ public class MGrid extends JComponent {
 		return m_velocityMatrix[0].length;
 	}
 
-	void write(long tick, mcs.pattern.Event event) {
-		int column = tickToColumn(tick);
-		for(int level : event.getLevels()) {
-			int row = levelToRow(level);
-			for(int c = 0; c < event.getDuration_ticks(); c++) { // Last tick of event is the one before tickStop
+	void write(EventStore events, int index) {
+		int column = tickToColumn(events.getStart(index));
+		for(int rank = 0; rank < events.getLevelCount(index); rank++) {
+			int row = levelToRow(events.getLevel(index, rank));
+			for(int c = 0; c < events.getDuration_ticks(index); c++) { // Last tick of event is the one before tickStop
 				write(column + c, row);
 			}
 		}
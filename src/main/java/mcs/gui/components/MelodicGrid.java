@@ -7,8 +7,9 @@
 package mcs.gui.components;
 
 import mcs.melody.Time;
-import mcs.pattern.Event;
+import mcs.pattern.EventStore;
 import mcs.pattern.MelodicPattern;
+import mcs.pattern.Pattern;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -27,11 +28,12 @@ public class MelodicGrid extends MGrid {
 	 */
 	public void write(MelodicPattern pattern) {
 		// Writing events
-		for(long tick = 0; tick < pattern.size(); tick++) {
-			for(Event event : pattern.getEvents(tick)) {
-				write(tick, event);
+		pattern.visitEvents(0, pattern.size(), new Pattern.EventVisitor() {
+			@Override
+			public void visit(EventStore events, int index) {
+				write(events, index);
 			}
-		}
+		});
 
 		// Updating display
 		updateDisplay();
@@ -21,6 +21,7 @@ import mcs.graphics.MGraphics;
 import mcs.gui.Theme;
 import mcs.melody.Chord;
 import mcs.melody.Note;
+import mcs.melody.Scale;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
@@ -86,13 +87,7 @@ public class PianoKeyboard extends MComponent implements MouseListener {
 	}
 
 	static boolean isWhite(int note) {
-		int interval = Note.getInterval(Note.C0, note);
-		for(int _interval : Chord.majorScale()) {
-			if(interval == _interval) {
-				return true;
-			}
-		}
-		return false;
+		return Scale.MAJOR.getPitchClasses().contains(note);
 	}
 
 	static int noteToX_px(int note, int lowerC, int whiteKeyWidth_px) {
@@ -147,7 +142,7 @@ public class PianoKeyboard extends MComponent implements MouseListener {
 		int whiteZoneIndex = (x % (7 * whiteKeyWidth_px)) / whiteKeyWidth_px;
 		int xInWhiteZone_px = x % whiteKeyWidth_px;
 
-		int whiteNote = lowerC + 12 * octaveIndex + Chord.majorScale()[whiteZoneIndex]; // Interval of the white note with same x
+		int whiteNote = lowerC + 12 * octaveIndex + Scale.MAJOR.getInterval(whiteZoneIndex); // Interval of the white note with same x
 
 		if(y > blackKeyHeight_px) {
 			// The note is white for sure
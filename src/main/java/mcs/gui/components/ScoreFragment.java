@@ -20,6 +20,7 @@ import mcs.graphics.MGraphics;
 import mcs.gui.Theme;
 import mcs.melody.Chord;
 import mcs.melody.Note;
+import mcs.melody.Scale;
 
 import java.awt.*;
 import java.awt.event.MouseEvent;
@@ -215,17 +216,8 @@ public class ScoreFragment extends MComponent implements MouseMotionListener {
 		int normStartKey = Note.getNoteInRange(startKey, Note.C0, Note.B0);
 		int normEndKey = Note.getNoteInRange(endKey, Note.C0, Note.B0);
 
-		int normDistA = 0;
-		int normDistB = 0;
-		int[] majorScale = Chord.majorScale();
-		for(int i = 0; i < majorScale.length; i++) {
-			if(normStartKey == Note.C0 + majorScale[i]) {
-				normDistA = i;
-			}
-			if(normEndKey == Note.C0 + majorScale[i]) {
-				normDistB = i;
-			}
-		}
+		int normDistA = Scale.MAJOR.getPitchClasses().indexOf(normStartKey);
+		int normDistB = Scale.MAJOR.getPitchClasses().indexOf(normEndKey);
 
 		// Computing absolute distances from C0
 		int distA = normDistA + 7 * ((startKey - normStartKey) / 12);
@@ -20,6 +20,7 @@ import mcs.gui.components.PianoKeyboard;
 import mcs.gui.components.ScoreFragment;
 import mcs.melody.Chord;
 import mcs.melody.Note;
+import mcs.melody.Scale;
 
 import javax.swing.*;
 import java.awt.*;
@@ -82,7 +83,7 @@ public class PianoTrainer implements KeyListener {
 		while(isNOk) {
 			int interval = (int) (7 * Math.random());
 			int octave = (int) (octaves * Math.random());
-			note = NOTE_MIN + Chord.majorScale()[interval] + 12 * octave;
+			note = NOTE_MIN + Scale.MAJOR.getInterval(interval) + 12 * octave;
 			isNOk = note == m_note || note < NOTE_MIN || note > NOTE_MAX;
 		}
 		return note;
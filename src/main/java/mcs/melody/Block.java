@@ -16,6 +16,7 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package mcs.melody;
 
 import mcs.pattern.Event;
+import mcs.pattern.EventStore;
 import mcs.pattern.Pattern;
 import mcs.utils.StringUtils;
 
@@ -23,8 +24,6 @@ import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.ShortMessage;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * A {@link Block} is a piece of partition. It contains {@link ShortMessage}s. It can be constructed from {@link Pattern}.
@@ -36,7 +35,8 @@ public class Block {
 	private final Time.TimeSignature m_timeSignature;
 	private final int m_ticksPerBeat;
 	private int m_channel;
-	protected final Map<Long, List<Event>> m_tickEvents = new TreeMap<>(); // Here events are stored with levels=keys
+	protected final EventStore m_events = new EventStore(); // Here events are stored with levels=keys
+	private volatile Timeline m_timeline; // Compiled on demand, cleared when events are added
 
 	public Block(Time.TimeSignature timeSignature, int ticksPerBeat, int channel) {
 		m_timeSignature = timeSignature;
@@ -49,7 +49,7 @@ public class Block {
 	}
 
 	public long getDuration_ms(int tempo_bpm) {
-		return (size() + 1) * Time.computeTickDuration_ms(tempo_bpm, m_ticksPerBeat);
+		return Time.computeTickTime_ns(size() + 1, tempo_bpm, m_ticksPerBeat) / 1_000_000;
 	}
 
 	public int getTicksPerBeat() {
@@ -57,22 +57,19 @@ public class Block {
 	}
 
 	public void add(int note, int velocity, long tickStart, long tickStop) {
-		List<Event> tickEvents = getOrCreateEventList(tickStart);
-		tickEvents.add(new Event(new int[] { note }, velocity, tickStop - tickStart));
+		m_events.add(new int[] { note }, velocity, tickStart, tickStop);
+		m_timeline = null;
 	}
 
 	public String getContent() {
 		StringBuilder result = new StringBuilder();
 		result.append(Pattern.OPTION_TICKS_PER_BEAT + "=" + m_ticksPerBeat + "\n");
 
-		for(Map.Entry<Long, List<Event>> entry : m_tickEvents.entrySet()) {
-			long tick = entry.getKey();
-			for(Event event : entry.getValue()) {
-				result.append("" + event.getOctavePitch() + ";");
-				result.append(StringUtils.toString(event.getLevels(), ",") + ";");
-				result.append("" + tick + ";" + event.getDuration_ticks() + ";");
-				result.append("" + event.getVelocity() + "\n");
-			}
+		for(int i = 0; i < m_events.size(); i++) {
+			result.append("" + Event.DEFAULT_OCTAVE_PITCH + ";");
+			result.append(StringUtils.toString(m_events.getLevels(i), ",") + ";");
+			result.append("" + m_events.getStart(i) + ";" + m_events.getDuration_ticks(i) + ";");
+			result.append("" + m_events.getVelocity(i) + "\n");
 		}
 
 		return result.toString();
@@ -88,42 +85,42 @@ public class Block {
 	public List<ShortMessage> toMessages(long tick) throws InvalidMidiDataException {
 		List<ShortMessage> result = new ArrayList<>();
 
-		// Reading any event that starts before or at 'tick'
-		for(Map.Entry<Long, List<Event>> entry : m_tickEvents.entrySet()) {
-			long _tick = entry.getKey();
-			if(_tick > tick) {
-				break;
-			}
-
-			if(_tick < tick) { // Looking in past events if some ends now at 'tick'
-				long distance = tick - _tick;
-				for(Event event : entry.getValue()) {
-					if(event.getDuration_ticks() == distance) {
-						for(int note : event.getLevels()) {
-							if(note != Note.NULL) {
-								result.add(new ShortMessage(ShortMessage.NOTE_OFF, m_channel, note, DEFAULT_NOTE_OFF_VELOCITY));
-							}
-						}
-					}
-				}
-			} else {
-				for(Event event : entry.getValue()) {
-					for(int note : event.getLevels()) {
-						if(note != Note.NULL) {
-							result.add(new ShortMessage(ShortMessage.NOTE_ON, m_channel, note, event.getVelocity()));
-						}
-					}
-				}
-			}
+		Timeline timeline = compile();
+		for(int i = timeline.indexOf(tick); i < timeline.getMessageCount() && timeline.getTick(i) == tick; i++) {
+			result.add(Timeline.toShortMessage(timeline.getMessage(i)));
 		}
 		return result;
 	}
 
-	private List<Event> getOrCreateEventList(long tick) {
-		List<Event> result = m_tickEvents.get(tick);
+	/**
+	 * Compiles this {@link Block} into a {@link Timeline}. The result is kept until a new event is added.
+	 *
+	 * @return
+	 */
+	public Timeline compile() {
+		Timeline result = m_timeline;
 		if(result == null) {
-			result = new ArrayList<>();
-			m_tickEvents.put(tick, result);
+			int notes = m_events.getTotalLevelCount();
+			long[] starts = new long[notes];
+			long[] durations = new long[notes];
+			int[] keys = new int[notes];
+			int[] velocities = new int[notes];
+			int n = 0;
+			for(int i = 0; i < m_events.size(); i++) {
+				for(int rank = 0; rank < m_events.getLevelCount(i); rank++) {
+					int note = m_events.getLevel(i, rank);
+					if(note != Note.NULL) {
+						starts[n] = m_events.getStart(i);
+						durations[n] = m_events.getDuration_ticks(i);
+						keys[n] = note;
+						velocities[n] = m_events.getVelocity(i);
+						n++;
+					}
+				}
+			}
+
+			result = Timeline.compile(starts, durations, keys, velocities, n, m_channel, size(), m_ticksPerBeat);
+			m_timeline = result;
 		}
 		return result;
 	}
@@ -15,15 +15,8 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package mcs.melody;
 
-import mcs.utils.StringUtils;
-
-import java.util.HashMap;
-import java.util.Map;
-
 public class Chord {
 
-	public static final String NAME_REGEX = "([ABCDEFG][b#]?)(.*)";
-
 	// Intervals 'size' in semi-tones
 
 	public static final int NULL_INTERVAL = Integer.MIN_VALUE;
@@ -135,69 +128,17 @@ public class Chord {
 		return withIntervals(key, MAJOR_SECOND + 1, MAJOR_THIRD, NULL_INTERVAL, PERFECT_FIFTH, NULL_INTERVAL, MINOR_SEVENTH);
 	}
 
+	/**
+	 * Returns the notes of the chord named 'name' (see {@link ChordSymbol}), its root being in 'octave'. A slash chord has its
+	 * bass note at {@link ChordSymbol#BASS_LEVEL}.
+	 *
+	 * @param name
+	 * @param octave
+	 * @return A new array, or null if 'name' is not a chord symbol.
+	 */
 	public static int[] byName(String name, int octave) {
-		String keyName = StringUtils.getGroup(name, NAME_REGEX, 1);
-		String flavorName = StringUtils.getGroup(name, NAME_REGEX, 2);
-
-		Map<String, Integer> noteOffsets = new HashMap<>();
-		noteOffsets.put("C", 0);
-		noteOffsets.put("C#", 1);
-		noteOffsets.put("Db", 1);
-		noteOffsets.put("D", 2);
-		noteOffsets.put("D#", 3);
-		noteOffsets.put("Eb", 3);
-		noteOffsets.put("E", 4);
-		noteOffsets.put("F", 5);
-		noteOffsets.put("F#", 6);
-		noteOffsets.put("Gb", 6);
-		noteOffsets.put("G", 7);
-		noteOffsets.put("G#", 8);
-		noteOffsets.put("Ab", 8);
-		noteOffsets.put("A", 9);
-		noteOffsets.put("A#", 10);
-		noteOffsets.put("Bb", 10);
-		noteOffsets.put("B", 11);
-
-		int key = Note.C0 + noteOffsets.get(keyName) + octave * 12;
-		if(StringUtils.equalsOne(flavorName, "")) {
-			return K(key);
-		} else if(StringUtils.equalsOne(flavorName, "m")) {
-			return Km(key);
-		} else if(StringUtils.equalsOne(flavorName, "M7", "Maj7")) {
-			return KM7(key);
-		} else if(StringUtils.equalsOne(flavorName, "7")) {
-			return K7(key);
-		} else if(StringUtils.equalsOne(flavorName, "m7")) {
-			return Km7(key);
-		} else if(StringUtils.equalsOne(flavorName, "m7b5")) {
-			return Km7b5(key);
-		} else if(StringUtils.equalsOne(flavorName, "°7", "dim7")) {
-			return Kdim7(key);
-		} else if(StringUtils.equalsOne(flavorName, "6")) {
-			return K6(key);
-		} else if(StringUtils.equalsOne(flavorName, "m6")) {
-			return Km6(key);
-		} else if(StringUtils.equalsOne(flavorName, "7sus4")) {
-			return K7sus4(key);
-		} else if(StringUtils.equalsOne(flavorName, "9")) {
-			return K9(key);
-		} else if(StringUtils.equalsOne(flavorName, "m9")) {
-			return Km9(key);
-		} else if(StringUtils.equalsOne(flavorName, "7#11")) {
-			return K7s11(key);
-		} else if(StringUtils.equalsOne(flavorName, "7#5")) {
-			return K7s5(key);
-		} else if(StringUtils.equalsOne(flavorName, "6 9", "69")) {
-			return K69(key);
-		} else if(StringUtils.equalsOne(flavorName, "13")) {
-			return K13(key);
-		} else if(StringUtils.equalsOne(flavorName, "7b9")) {
-			return K7b9(key);
-		} else if(StringUtils.equalsOne(flavorName, "7#9")) {
-			return K7s9(key);
-		} else {
-			return null;
-		}
+		ChordSymbol symbol = ChordSymbol.parse(name);
+		return symbol == null ? null : symbol.getNotes(octave);
 	}
 
 	//
@@ -259,13 +200,15 @@ public class Chord {
 		return withIntervals(ROOT, MAJOR_SECOND, MAJOR_THIRD, PERFECT_FOURTH, PERFECT_FIFTH, MAJOR_SIXTH, MAJOR_SEVENTH);
 	}
 
-	public static boolean containsInterval(int[] scale, int interval) {
-		for(int _interval : scale) {
-			if(_interval == interval) {
-				return true;
-			}
-		}
-		return false;
+	/**
+	 * Tells if 'interval' is in 'scale', the set of intervals from the root of a scale or chord.
+	 *
+	 * @param scale
+	 * @param interval An interval within the octave, or {@link #NULL_INTERVAL}.
+	 * @return
+	 */
+	public static boolean containsInterval(PitchClassSet scale, int interval) {
+		return interval != NULL_INTERVAL && scale.contains(interval);
 	}
 
 }
\ No newline at end of file
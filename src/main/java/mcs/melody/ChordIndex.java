@@ -0,0 +1,255 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.melody;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Names chords from their notes. Every chord quality known by {@link ChordSymbol}'s table of flavors is indexed for the 12
+ * roots by its pitch-class set: a 12 bits mask where bit #n is set when pitch class n (0 = C) is played. The same chord
+ * without its perfect fifth, as often played on a guitar, is indexed too with a lower rank.
+ * <p>
+ * The index is an array of 4096 lists of {@link Match}es built once, so looking up a set of notes is a single array read
+ * and does not allocate: it can be done each time a key goes down.
+ */
+public class ChordIndex {
+
+	public static final String[] ROOT_NAMES = { "C", "Db", "D", "Eb", "E", "F", "F#", "G", "Ab", "A", "Bb", "B" };
+
+	// Flavors by rank, the most common first
+	static final String[] FLAVORS = { "", "m", "7", "m7", "M7", "6", "m6", "m7b5", "dim7", "7sus4", "9", "m9", "69", "13", "7b9",
+			"7#9", "7#5", "7#11" };
+
+	// Levels from the most to the less significant: root, third, fifth, seventh, ninth, eleventh, thirteenth
+	private static final int[] TERTIAN_LEVELS = { 1, 3, 5, 7, 2, 4, 6 };
+
+	private static final List<Match> NO_MATCH = Collections.emptyList();
+	private static final List<Match>[] INDEX = buildIndex();
+
+	/**
+	 * A chord matching a pitch-class set.
+	 */
+	public static final class Match {
+
+		private final int m_root; // Pitch class
+		private final String m_flavor;
+		private final int m_rank; // Rank of the flavor
+		private final boolean m_withoutFifth;
+		private final int[] m_inversions = new int[12]; // By pitch class of the bass, -1 if not in chord
+		private final String[] m_names = new String[12]; // By pitch class of the bass
+
+		Match(int root, String flavor, int rank, ChordSymbol symbol, boolean withoutFifth) {
+			m_root = root;
+			m_flavor = flavor;
+			m_rank = rank;
+			m_withoutFifth = withoutFifth;
+
+			Arrays.fill(m_inversions, -1);
+			int inversion = 0;
+			for(int level : TERTIAN_LEVELS) {
+				int interval = symbol.getInterval(level);
+				if(interval != Chord.NULL_INTERVAL && !(withoutFifth && level == 5)) {
+					int bass = PitchClassSet.pitchClass(root + interval);
+					if(m_inversions[bass] < 0) {
+						m_inversions[bass] = inversion++;
+					}
+				}
+			}
+
+			String name = ROOT_NAMES[root] + flavor;
+			for(int bass = 0; bass < 12; bass++) {
+				m_names[bass] = bass == root ? name : name + "/" + ROOT_NAMES[bass];
+			}
+		}
+
+		/**
+		 * Returns the pitch class of the root, 0 being C.
+		 *
+		 * @return
+		 */
+		public int getRoot() {
+			return m_root;
+		}
+
+		/**
+		 * Returns the flavor, as written after the root in a {@link ChordSymbol}.
+		 *
+		 * @return
+		 */
+		public String getFlavor() {
+			return m_flavor;
+		}
+
+		public boolean isWithoutFifth() {
+			return m_withoutFifth;
+		}
+
+		/**
+		 * Returns the name of the chord, like "Am7".
+		 *
+		 * @return
+		 */
+		public String getName() {
+			return m_names[m_root];
+		}
+
+		/**
+		 * Returns the name of the chord played over 'bass', like "Am7/G".
+		 *
+		 * @param bass Pitch class of the lowest note.
+		 * @return
+		 */
+		public String getName(int bass) {
+			return m_names[bass];
+		}
+
+		/**
+		 * Returns the inversion of the chord when 'bass' is the lowest note: 0 for the root position, 1 when the third is in
+		 * the bass, 2 for the fifth, 3 for the seventh...
+		 *
+		 * @param bass Pitch class of the lowest note.
+		 * @return -1 if 'bass' is not in the chord.
+		 */
+		public int getInversion(int bass) {
+			return m_inversions[bass];
+		}
+
+		@Override
+		public String toString() {
+			return getName();
+		}
+	}
+
+	/**
+	 * Returns the chords made of the pitch classes of 'mask', the best ranked first.
+	 *
+	 * @param mask See {@link #toMask(int...)}.
+	 * @return An unmodifiable list, empty if no chord is made of these pitch classes.
+	 */
+	public static List<Match> lookup(int mask) {
+		return INDEX[mask & 0xFFF];
+	}
+
+	/**
+	 * Returns the best chord made of the pitch classes of 'mask' when 'bass' is the lowest note: the best ranked chord in
+	 * root position if any, else the best ranked chord.
+	 *
+	 * @param mask
+	 * @param bass Pitch class of the lowest note.
+	 * @return null if no chord is made of these pitch classes.
+	 */
+	public static Match identify(int mask, int bass) {
+		List<Match> matches = lookup(mask);
+		for(int i = 0; i < matches.size(); i++) {
+			Match match = matches.get(i);
+			if(match.m_root == bass) {
+				return match;
+			}
+		}
+		return matches.isEmpty() ? null : matches.get(0);
+	}
+
+	/**
+	 * Returns the best chord made of 'notes', the lowest one being the bass.
+	 *
+	 * @param notes {@link Note#NULL} values are ignored.
+	 * @return null if no chord is made of these notes.
+	 */
+	public static Match identify(int... notes) {
+		int lowest = Integer.MAX_VALUE;
+		for(int note : notes) {
+			if(note != Note.NULL) {
+				lowest = Math.min(lowest, note);
+			}
+		}
+		return lowest == Integer.MAX_VALUE ? null : identify(toMask(notes), PitchClassSet.pitchClass(lowest));
+	}
+
+	/**
+	 * Returns the pitch-class set of 'notes': bit #n is set when a note of pitch class n (0 = C) is played.
+	 *
+	 * @param notes {@link Note#NULL} values are ignored.
+	 * @return
+	 */
+	public static int toMask(int... notes) {
+		int played = 0;
+		for(int note : notes) {
+			if(note != Note.NULL) {
+				played++;
+			}
+		}
+		if(played < notes.length) {
+			int[] playedNotes = new int[played];
+			played = 0;
+			for(int note : notes) {
+				if(note != Note.NULL) {
+					playedNotes[played++] = note;
+				}
+			}
+			notes = playedNotes;
+		}
+		return PitchClassSet.ofNotes(notes).getMask();
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static List<Match>[] buildIndex() {
+		List<Match>[] lists = new List[4096];
+		for(int rank = 0; rank < FLAVORS.length; rank++) {
+			for(int root = 0; root < 12; root++) {
+				ChordSymbol symbol = ChordSymbol.parse(ROOT_NAMES[root] + FLAVORS[rank]);
+				int mask = symbol.getPitchClasses().getMask();
+				add(lists, mask, new Match(root, FLAVORS[rank], rank, symbol, false));
+
+				// Without its fifth, if the chord keeps at least 3 notes
+				int fifth = PitchClassSet.ofNotes(root + Chord.PERFECT_FIFTH).getMask();
+				if(symbol.getInterval(5) == Chord.PERFECT_FIFTH && Integer.bitCount(mask & ~fifth) >= 3) {
+					add(lists, mask & ~fifth, new Match(root, FLAVORS[rank], rank, symbol, true));
+				}
+			}
+		}
+
+		// Ranking: complete chords first, then by flavor
+		List<Match>[] result = new List[4096];
+		for(int mask = 0; mask < 4096; mask++) {
+			if(lists[mask] == null) {
+				result[mask] = NO_MATCH;
+			} else {
+				Collections.sort(lists[mask], new Comparator<Match>() {
+					@Override
+					public int compare(Match m1, Match m2) {
+						if(m1.m_withoutFifth != m2.m_withoutFifth) {
+							return m1.m_withoutFifth ? 1 : -1;
+						}
+						return Integer.compare(m1.m_rank, m2.m_rank);
+					}
+				});
+				result[mask] = Collections.unmodifiableList(lists[mask]);
+			}
+		}
+		return result;
+	}
+
+	private static void add(List<Match>[] lists, int mask, Match match) {
+		if(lists[mask] == null) {
+			lists[mask] = new ArrayList<>();
+		}
+		lists[mask].add(match);
+	}
+}
@@ -0,0 +1,379 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.melody;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable chord symbol like "A7", "Ebm9", "F#m7b5", "Cmaj9(#11)" or "G7/B", compiled into the intervals of its seven
+ * levels (root, second, third, fourth, fifth, sixth and seventh, see {@link Chord#withIntervals(int, int, int, int, int, int, int)}).
+ * <p>
+ * Symbols are read in a single pass, without regular expressions: the root, then the flavor and then an optional bass note
+ * after '/'. The flavors of the historical chord methods ({@link Chord#K(int)}, {@link Chord#Km(int)}...) are looked up in a
+ * table so that their voicings stay the same. Other flavors are read as a quality (m, min, -, maj, M, &#916;, dim, &#176;,
+ * &#248;, aug, +), an extension (6, 69, 7, 9, 11, 13) and any number of modifiers (sus2, sus4, add9, add11, add13, b5, #5, b9,
+ * #9, #11, b13), possibly in parenthesis.
+ * <p>
+ * Compiled symbols are cached: {@link #parse(String)} does not allocate once a symbol has been seen.
+ */
+public final class ChordSymbol {
+
+	public static final int NO_BASS = -1;
+
+	public static final int LEVELS = 7;
+	public static final int BASS_LEVEL = LEVELS + 1; // Bass note of a slash chord, after the levels of the chord
+
+	private static final int MAX_CACHED = 1024; // Symbols
+	private static final int[] LETTER_OFFSETS = { 9, 11, 0, 2, 4, 5, 7 }; // Semi-tones from C of A, B, C, D, E, F and G
+
+	private static final Map<String, int[]> FLAVORS = new HashMap<>();
+	private static final ConcurrentMap<String, ChordSymbol> CACHE = new ConcurrentHashMap<>();
+	private static final ChordSymbol INVALID = new ChordSymbol("", 0, new int[LEVELS], NO_BASS);
+
+	static {
+		flavor(Chord.K(Note.C0), "");
+		flavor(Chord.Km(Note.C0), "m");
+		flavor(Chord.KM7(Note.C0), "M7", "Maj7");
+		flavor(Chord.K7(Note.C0), "7");
+		flavor(Chord.Km7(Note.C0), "m7");
+		flavor(Chord.Km7b5(Note.C0), "m7b5");
+		flavor(Chord.Kdim7(Note.C0), "\u00B07", "dim7");
+		flavor(Chord.K6(Note.C0), "6");
+		flavor(Chord.Km6(Note.C0), "m6");
+		flavor(Chord.K7sus4(Note.C0), "7sus4");
+		flavor(Chord.K9(Note.C0), "9");
+		flavor(Chord.Km9(Note.C0), "m9");
+		flavor(Chord.K7s11(Note.C0), "7#11");
+		flavor(Chord.K7s5(Note.C0), "7#5");
+		flavor(Chord.K69(Note.C0), "6 9", "69");
+		flavor(Chord.K13(Note.C0), "13");
+		flavor(Chord.K7b9(Note.C0), "7b9");
+		flavor(Chord.K7s9(Note.C0), "7#9");
+	}
+
+	private final String m_symbol;
+	private final int m_rootOffset; // Semi-tones from C, -1 ('Cb') to 12 ('B#')
+	private final int[] m_intervals; // By level, Chord.NULL_INTERVAL when not played
+	private final int m_bass; // Pitch class or NO_BASS
+
+	private ChordSymbol(String symbol, int rootOffset, int[] intervals, int bass) {
+		m_symbol = symbol;
+		m_rootOffset = rootOffset;
+		m_intervals = intervals;
+		m_bass = bass;
+	}
+
+	/**
+	 * Returns the compiled symbol, or null if 'symbol' is not a chord symbol.
+	 *
+	 * @param symbol
+	 * @return
+	 */
+	public static ChordSymbol parse(String symbol) {
+		ChordSymbol result = CACHE.get(symbol);
+		if(result == null) {
+			result = compile(symbol);
+			if(result == null) {
+				result = INVALID;
+			}
+			if(CACHE.size() < MAX_CACHED) {
+				CACHE.putIfAbsent(symbol, result);
+			}
+		}
+		return result == INVALID ? null : result;
+	}
+
+	public String getSymbol() {
+		return m_symbol;
+	}
+
+	/**
+	 * Returns the pitch class of the root, 0 being C.
+	 *
+	 * @return
+	 */
+	public int getRoot() {
+		return PitchClassSet.pitchClass(m_rootOffset);
+	}
+
+	/**
+	 * Returns the pitch classes of the chord, bass included.
+	 *
+	 * @return
+	 */
+	public PitchClassSet getPitchClasses() {
+		int mask = m_bass == NO_BASS ? 0 : 1 << m_bass;
+		for(int interval : m_intervals) {
+			if(interval != Chord.NULL_INTERVAL) {
+				mask |= 1 << PitchClassSet.pitchClass(m_rootOffset + interval);
+			}
+		}
+		return PitchClassSet.of(mask);
+	}
+
+	/**
+	 * Returns the pitch class of the bass note, or {@link #NO_BASS} if the symbol has no '/'.
+	 *
+	 * @return
+	 */
+	public int getBass() {
+		return m_bass;
+	}
+
+	/**
+	 * Returns the interval of the level from the root, in semi-tones.
+	 *
+	 * @param level 1 (root) to {@link #LEVELS}.
+	 * @return {@link Chord#NULL_INTERVAL} if the level is not played.
+	 */
+	public int getInterval(int level) {
+		return m_intervals[level - 1];
+	}
+
+	/**
+	 * Returns the note played at the level, the root being in 'octave'. When the symbol has a bass, it is played at
+	 * {@link #BASS_LEVEL}, below the root.
+	 *
+	 * @param level  1 (root) to {@link #LEVELS}, or {@link #BASS_LEVEL}.
+	 * @param octave
+	 * @return {@link Note#NULL} if the level is not played.
+	 */
+	public int getNote(int level, int octave) {
+		int key = Note.C0 + m_rootOffset + octave * 12;
+		if(level == BASS_LEVEL) {
+			if(m_bass == NO_BASS) {
+				return Note.NULL;
+			}
+			int interval = floorMod(m_rootOffset - m_bass, 12);
+			return key - (interval == 0 ? 12 : interval);
+		}
+		return Chord.toNote(key, m_intervals[level - 1]);
+	}
+
+	/**
+	 * Returns a new array with the notes of all levels, as {@link Chord#byName(String, int)}. The array of a slash chord has
+	 * one more note: its bass, at {@link #BASS_LEVEL}.
+	 *
+	 * @param octave
+	 * @return
+	 */
+	public int[] getNotes(int octave) {
+		int[] result = new int[m_bass == NO_BASS ? LEVELS : BASS_LEVEL];
+		for(int level = 1; level <= result.length; level++) {
+			result[level - 1] = getNote(level, octave);
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return m_symbol;
+	}
+
+	//
+	// Parsing
+	//
+
+	static ChordSymbol compile(String symbol) {
+		int length = symbol.length();
+		int rootOffset = parseNote(symbol, 0);
+		if(rootOffset == Integer.MIN_VALUE) {
+			return null;
+		}
+		int position = symbol.length() > 1 && isAccidental(symbol.charAt(1)) ? 2 : 1;
+
+		// Bass
+		int end = symbol.indexOf('/', position);
+		int bass = NO_BASS;
+		if(end < 0) {
+			end = length;
+		} else {
+			int bassOffset = parseNote(symbol, end + 1);
+			int bassLength = end + 2 < length && isAccidental(symbol.charAt(end + 2)) ? 2 : 1;
+			if(bassOffset == Integer.MIN_VALUE || end + 1 + bassLength != length) {
+				return null;
+			}
+			bass = floorMod(bassOffset, 12);
+		}
+
+		int[] intervals = FLAVORS.get(symbol.substring(position, end));
+		if(intervals == null) {
+			intervals = parseFlavor(symbol, position, end);
+		}
+		return intervals == null ? null : new ChordSymbol(symbol, rootOffset, intervals, bass);
+	}
+
+	/**
+	 * Reads the flavor of 'symbol' from 'position' to 'end'.
+	 *
+	 * @return The intervals of the levels, or null if the flavor is not supported.
+	 */
+	static int[] parseFlavor(String symbol, int position, int end) {
+		int second = Chord.NULL_INTERVAL;
+		int third = Chord.MAJOR_THIRD;
+		int fourth = Chord.NULL_INTERVAL;
+		int fifth = Chord.PERFECT_FIFTH;
+		int sixth = Chord.NULL_INTERVAL;
+		int seventh = Chord.MINOR_SEVENTH;
+		boolean hasSeventh = false;
+
+		// Quality
+		int p = position;
+		int token;
+		if((token = match(symbol, p, end, "dim", "\u00B0")) > 0) {
+			third = Chord.MINOR_THIRD;
+			fifth = Chord.DIMINISHED_FIFTH;
+			seventh = Chord.MAJOR_SIXTH;
+			p += token;
+		} else if((token = match(symbol, p, end, "\u00F8")) > 0) {
+			third = Chord.MINOR_THIRD;
+			fifth = Chord.DIMINISHED_FIFTH;
+			hasSeventh = true;
+			p += token;
+		} else if((token = match(symbol, p, end, "aug", "+")) > 0) {
+			fifth = Chord.PERFECT_FIFTH + 1;
+			p += token;
+		} else {
+			if((token = match(symbol, p, end, "min", "m", "-")) > 0 && match(symbol, p, end, "maj") == 0) {
+				third = Chord.MINOR_THIRD;
+				p += token;
+			}
+			if((token = match(symbol, p, end, "\u0394")) > 0) {
+				seventh = Chord.MAJOR_SEVENTH;
+				hasSeventh = true;
+				p += token;
+			} else if((token = match(symbol, p, end, "maj", "Maj", "M")) > 0) {
+				seventh = Chord.MAJOR_SEVENTH;
+				p += token;
+			}
+		}
+
+		// Extension
+		if((token = match(symbol, p, end, "13")) > 0) {
+			hasSeventh = true;
+			second = Chord.MAJOR_SECOND;
+			sixth = Chord.MAJOR_SIXTH;
+		} else if((token = match(symbol, p, end, "11")) > 0) {
+			hasSeventh = true;
+			second = Chord.MAJOR_SECOND;
+			fourth = Chord.PERFECT_FOURTH;
+		} else if((token = match(symbol, p, end, "9")) > 0) {
+			hasSeventh = true;
+			second = Chord.MAJOR_SECOND;
+		} else if((token = match(symbol, p, end, "7")) > 0) {
+			hasSeventh = true;
+		} else if((token = match(symbol, p, end, "69")) > 0) {
+			second = Chord.MAJOR_SECOND;
+			sixth = Chord.MAJOR_SIXTH;
+		} else if((token = match(symbol, p, end, "6")) > 0) {
+			sixth = Chord.MAJOR_SIXTH;
+		}
+		p += token;
+
+		// Modifiers
+		while(p < end) {
+			char c = symbol.charAt(p);
+			if(c == '(' || c == ')' || c == ',' || c == ' ') {
+				token = 1;
+			} else if((token = match(symbol, p, end, "sus2")) > 0) {
+				third = Chord.MAJOR_SECOND;
+			} else if((token = match(symbol, p, end, "sus4", "sus")) > 0) {
+				third = Chord.PERFECT_FOURTH;
+			} else if((token = match(symbol, p, end, "add9", "add2")) > 0) {
+				second = Chord.MAJOR_SECOND;
+			} else if((token = match(symbol, p, end, "add11", "add4")) > 0) {
+				fourth = Chord.PERFECT_FOURTH;
+			} else if((token = match(symbol, p, end, "add13", "add6")) > 0) {
+				sixth = Chord.MAJOR_SIXTH;
+			} else if((token = match(symbol, p, end, "b5")) > 0) {
+				fifth = Chord.DIMINISHED_FIFTH;
+			} else if((token = match(symbol, p, end, "#5")) > 0) {
+				fifth = Chord.PERFECT_FIFTH + 1;
+			} else if((token = match(symbol, p, end, "b9")) > 0) {
+				second = Chord.MINOR_SECOND;
+			} else if((token = match(symbol, p, end, "#9")) > 0) {
+				second = Chord.MINOR_THIRD;
+			} else if((token = match(symbol, p, end, "#11")) > 0) {
+				fourth = Chord.DIMINISHED_FIFTH;
+			} else if((token = match(symbol, p, end, "b13")) > 0) {
+				sixth = Chord.MINOR_SIXTH;
+			} else {
+				return null;
+			}
+			p += token;
+		}
+
+		return new int[] { Chord.ROOT, second, third, fourth, fifth, sixth, hasSeventh ? seventh : Chord.NULL_INTERVAL };
+	}
+
+	/**
+	 * Returns the length of the first token found at 'position' in 'symbol', or 0 if none is found.
+	 */
+	static int match(String symbol, int position, int end, String... tokens) {
+		for(String token : tokens) {
+			if(position + token.length() <= end && symbol.startsWith(token, position)) {
+				return token.length();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Reads a note name (letter and optional accidental) at 'position'.
+	 *
+	 * @return The semi-tones from C, -1 ('Cb') to 12 ('B#'), or {@link Integer#MIN_VALUE} if there is no note.
+	 */
+	static int parseNote(String symbol, int position) {
+		if(position >= symbol.length()) {
+			return Integer.MIN_VALUE;
+		}
+		char letter = symbol.charAt(position);
+		if(letter < 'A' || letter > 'G') {
+			return Integer.MIN_VALUE;
+		}
+		int result = LETTER_OFFSETS[letter - 'A'];
+		if(position + 1 < symbol.length()) {
+			char accidental = symbol.charAt(position + 1);
+			if(accidental == '#') {
+				result++;
+			} else if(accidental == 'b') {
+				result--;
+			}
+		}
+		return result;
+	}
+
+	static boolean isAccidental(char c) {
+		return c == '#' || c == 'b';
+	}
+
+	static int floorMod(int value, int modulus) {
+		return ((value % modulus) + modulus) % modulus;
+	}
+
+	private static void flavor(int[] notes, String... names) {
+		int[] intervals = new int[LEVELS];
+		for(int level = 0; level < LEVELS; level++) {
+			intervals[level] = notes[level] == Note.NULL ? Chord.NULL_INTERVAL : notes[level] - Note.C0;
+		}
+		for(String name : names) {
+			FLAVORS.put(name, intervals);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.melody;
+
+/**
+ * An immutable set of pitch classes, stored as a 12 bits mask: bit #n is set when pitch class n (0 = C, 1 = C#...) is in the
+ * set. Notes are reduced to their pitch class (modulo 12), so membership tests, transpositions and set operations are
+ * single bit operations.
+ * <p>
+ * The 4096 possible sets are created once, {@link #of(int)} and the operations never allocate.
+ */
+public final class PitchClassSet {
+
+	private static final int FULL = 0xFFF;
+
+	private static final PitchClassSet[] SETS = new PitchClassSet[FULL + 1];
+
+	static {
+		for(int mask = 0; mask <= FULL; mask++) {
+			SETS[mask] = new PitchClassSet(mask);
+		}
+	}
+
+	public static final PitchClassSet EMPTY = SETS[0];
+	public static final PitchClassSet CHROMATIC = SETS[FULL];
+
+	private final int m_mask;
+
+	private PitchClassSet(int mask) {
+		m_mask = mask;
+	}
+
+	/**
+	 * Returns the set of 'mask'.
+	 *
+	 * @param mask 12 bits, higher bits are ignored.
+	 * @return
+	 */
+	public static PitchClassSet of(int mask) {
+		return SETS[mask & FULL];
+	}
+
+	/**
+	 * Returns the set of the pitch classes of 'notes'. Works as well with intervals: 0 is the root.
+	 *
+	 * @param notes
+	 * @return
+	 */
+	public static PitchClassSet ofNotes(int... notes) {
+		int mask = 0;
+		for(int note : notes) {
+			mask |= 1 << pitchClass(note);
+		}
+		return SETS[mask];
+	}
+
+	/**
+	 * Returns the pitch class of 'note': 0 (C) to 11 (B).
+	 *
+	 * @param note
+	 * @return
+	 */
+	public static int pitchClass(int note) {
+		int result = note % 12;
+		return result < 0 ? result + 12 : result;
+	}
+
+	public int getMask() {
+		return m_mask;
+	}
+
+	public boolean contains(int note) {
+		return (m_mask & (1 << pitchClass(note))) != 0;
+	}
+
+	public boolean containsAll(PitchClassSet set) {
+		return (set.m_mask & ~m_mask) == 0;
+	}
+
+	public boolean isEmpty() {
+		return m_mask == 0;
+	}
+
+	/**
+	 * Returns the number of pitch classes.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return Integer.bitCount(m_mask);
+	}
+
+	/**
+	 * Returns the pitch class at 'index', pitch classes being in ascending order from C.
+	 *
+	 * @param index 0 to {@link #size()} excluded.
+	 * @return
+	 */
+	public int get(int index) {
+		if(index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+		}
+		int mask = m_mask;
+		for(int i = 0; i < index; i++) {
+			mask &= mask - 1; // Clears lowest bit
+		}
+		return Integer.numberOfTrailingZeros(mask);
+	}
+
+	/**
+	 * Returns the index of the pitch class of 'note', pitch classes being in ascending order from C.
+	 *
+	 * @param note
+	 * @return -1 if 'note' is not in the set.
+	 */
+	public int indexOf(int note) {
+		int pitchClass = pitchClass(note);
+		return contains(pitchClass) ? Integer.bitCount(m_mask & ((1 << pitchClass) - 1)) : -1;
+	}
+
+	/**
+	 * Returns this set moved up by 'semiTones'.
+	 *
+	 * @param semiTones Can be negative.
+	 * @return
+	 */
+	public PitchClassSet transpose(int semiTones) {
+		int shift = pitchClass(semiTones);
+		return SETS[((m_mask << shift) | (m_mask >>> (12 - shift))) & FULL];
+	}
+
+	public PitchClassSet union(PitchClassSet set) {
+		return SETS[m_mask | set.m_mask];
+	}
+
+	public PitchClassSet intersect(PitchClassSet set) {
+		return SETS[m_mask & set.m_mask];
+	}
+
+	public PitchClassSet minus(PitchClassSet set) {
+		return SETS[m_mask & ~set.m_mask];
+	}
+
+	public PitchClassSet complement() {
+		return SETS[~m_mask & FULL];
+	}
+
+	/**
+	 * Returns the interval vector: the number of pairs of pitch classes at a distance of 1 (minor second or major seventh), 2, 3,
+	 * 4, 5 and 6 semi-tones.
+	 *
+	 * @return A new array of 6 values.
+	 */
+	public int[] getIntervalVector() {
+		int[] result = new int[6];
+		for(int distance = 1; distance <= 6; distance++) {
+			// Pairs at 'distance' are the pitch classes also present 'distance' semi-tones above
+			int pairs = Integer.bitCount(m_mask & transpose(-distance).m_mask);
+			result[distance - 1] = distance == 6 ? pairs / 2 : pairs; // Tritones are counted in both directions
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the pitch classes in ascending order.
+	 *
+	 * @return A new array.
+	 */
+	public int[] toArray() {
+		int[] result = new int[size()];
+		int mask = m_mask;
+		for(int i = 0; i < result.length; i++) {
+			result[i] = Integer.numberOfTrailingZeros(mask);
+			mask &= mask - 1;
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof PitchClassSet && ((PitchClassSet) o).m_mask == m_mask;
+	}
+
+	@Override
+	public int hashCode() {
+		return m_mask;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("{");
+		int mask = m_mask;
+		while(mask != 0) {
+			result.append(Integer.numberOfTrailingZeros(mask));
+			mask &= mask - 1;
+			if(mask != 0) {
+				result.append(",");
+			}
+		}
+		return result.append("}").toString();
+	}
+}
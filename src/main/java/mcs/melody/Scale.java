@@ -0,0 +1,87 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.melody;
+
+/**
+ * Catalogue of scales and modes. The {@link PitchClassSet} of each scale is computed once for the 12 roots.
+ */
+public enum Scale {
+
+	MAJOR("major", 0, 2, 4, 5, 7, 9, 11),
+	DORIAN("dorian", 0, 2, 3, 5, 7, 9, 10),
+	PHRYGIAN("phrygian", 0, 1, 3, 5, 7, 8, 10),
+	LYDIAN("lydian", 0, 2, 4, 6, 7, 9, 11),
+	MIXOLYDIAN("mixolydian", 0, 2, 4, 5, 7, 9, 10),
+	NATURAL_MINOR("minor", 0, 2, 3, 5, 7, 8, 10),
+	LOCRIAN("locrian", 0, 1, 3, 5, 6, 8, 10),
+	HARMONIC_MINOR("harmonic minor", 0, 2, 3, 5, 7, 8, 11),
+	MELODIC_MINOR("melodic minor", 0, 2, 3, 5, 7, 9, 11),
+	MAJOR_PENTATONIC("major pentatonic", 0, 2, 4, 7, 9),
+	MINOR_PENTATONIC("minor pentatonic", 0, 3, 5, 7, 10),
+	BLUES("blues", 0, 3, 5, 6, 7, 10),
+	WHOLE_TONE("whole tone", 0, 2, 4, 6, 8, 10),
+	DIMINISHED("diminished", 0, 2, 3, 5, 6, 8, 9, 11),
+	CHROMATIC("chromatic", 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+
+	public final String label;
+	private final PitchClassSet[] m_sets = new PitchClassSet[12]; // By root
+
+	Scale(String label, int... intervals) {
+		this.label = label;
+		PitchClassSet set = PitchClassSet.ofNotes(intervals);
+		for(int root = 0; root < 12; root++) {
+			m_sets[root] = set.transpose(root);
+		}
+	}
+
+	/**
+	 * Returns the pitch classes of the scale starting on C.
+	 *
+	 * @return
+	 */
+	public PitchClassSet getPitchClasses() {
+		return m_sets[0];
+	}
+
+	/**
+	 * Returns the pitch classes of the scale starting on 'root'.
+	 *
+	 * @param root A note or a pitch class.
+	 * @return
+	 */
+	public PitchClassSet on(int root) {
+		return m_sets[PitchClassSet.pitchClass(root)];
+	}
+
+	/**
+	 * Returns the number of notes in one octave.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return m_sets[0].size();
+	}
+
+	/**
+	 * Returns the interval from the root of the degree #'index'.
+	 *
+	 * @param index 0 (root) to {@link #size()} excluded.
+	 * @return
+	 */
+	public int getInterval(int index) {
+		return m_sets[0].get(index);
+	}
+}
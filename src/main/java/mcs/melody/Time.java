@@ -35,6 +35,8 @@ public class Time {
 	// numerator indicates the number of beats in a bar. Example: 4/4 means 4 beats of quarter note, 2/4 indicates 2 beats of quarter
 	// note.
 
+	public static final long NANOSECONDS_PER_MINUTE = 60_000_000_000L;
+
 	public enum Duration {WHOLE, HALF, QUARTER, EIGHTH, SIXTEENTH, THIRTY_SECOND, TRIPLET, TRIPLET_6}
 
 	public static class TimeSignature {
@@ -87,6 +89,40 @@ public class Time {
 		return (tick * 60_000 / tempo_bmp) / ticksPerBeat;
 	}
 
+	/**
+	 * Computes the delay in ns before this tick should occur, relative to tick #0. The result is the exact value of
+	 * tick * 60s / (tempo * ticksPerBeat) rounded down, so that computing each tick from the same start instant never
+	 * accumulates any rounding error, whatever the number of ticks already played.
+	 *
+	 * @param tick
+	 * @param tempo_bpm
+	 * @param ticksPerBeat
+	 * @return
+	 */
+	public static long computeTickTime_ns(long tick, int tempo_bpm, int ticksPerBeat) {
+		long ticksPerMinute = (long) tempo_bpm * ticksPerBeat;
+		// Splitting 'tick' in whole minutes and remaining ticks keeps the products below Long.MAX_VALUE
+		long minutes = tick / ticksPerMinute;
+		long remainingTicks = tick % ticksPerMinute;
+		return minutes * NANOSECONDS_PER_MINUTE + remainingTicks * NANOSECONDS_PER_MINUTE / ticksPerMinute;
+	}
+
+	/**
+	 * Computes the tick played at 'time_ns' relative to tick #0, rounded to the nearest tick. It is the inverse of {@link
+	 * #computeTickTime_ns(long, int, int)}.
+	 *
+	 * @param time_ns
+	 * @param tempo_bpm
+	 * @param ticksPerBeat
+	 * @return
+	 */
+	public static long computeTick(long time_ns, int tempo_bpm, int ticksPerBeat) {
+		long ticksPerMinute = (long) tempo_bpm * ticksPerBeat;
+		long minutes = time_ns / NANOSECONDS_PER_MINUTE;
+		long remaining_ns = time_ns % NANOSECONDS_PER_MINUTE;
+		return minutes * ticksPerMinute + (remaining_ns * ticksPerMinute + NANOSECONDS_PER_MINUTE / 2) / NANOSECONDS_PER_MINUTE;
+	}
+
 	//
 	// MIDI messages
 	//
@@ -0,0 +1,177 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.melody;
+
+import mcs.midi.MessageCache;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+import java.util.Arrays;
+
+/**
+ * A {@link Timeline} is the compiled form of a {@link Block}. It is an immutable list of MIDI channel messages sorted by
+ * tick, each message being packed in an int (see {@link #pack(int, int, int, int)}). NOTE_OFFs are already placed at the
+ * tick where their event ends, before the NOTE_ONs of the same tick. Playing a tick only needs to read the messages of that
+ * tick, whatever the size of the {@link Block}.
+ */
+public class Timeline {
+
+	private final long[] m_ticks;
+	private final int[] m_messages;
+	private final long m_size;
+	private final int m_ticksPerBeat;
+
+	Timeline(long[] ticks, int[] messages, long size, int ticksPerBeat) {
+		m_ticks = ticks;
+		m_messages = messages;
+		m_size = size;
+		m_ticksPerBeat = ticksPerBeat;
+	}
+
+	/**
+	 * Returns the size in ticks of the compiled {@link Block}.
+	 *
+	 * @return
+	 */
+	public long size() {
+		return m_size;
+	}
+
+	public int getTicksPerBeat() {
+		return m_ticksPerBeat;
+	}
+
+	public int getMessageCount() {
+		return m_messages.length;
+	}
+
+	public long getTick(int index) {
+		return m_ticks[index];
+	}
+
+	public int getMessage(int index) {
+		return m_messages[index];
+	}
+
+	/**
+	 * Returns the index of the first message played at or after 'tick'. Returns {@link #getMessageCount()} if there is no such
+	 * message.
+	 *
+	 * @param tick
+	 * @return
+	 */
+	public int indexOf(long tick) {
+		int low = 0;
+		int high = m_ticks.length;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(m_ticks[middle] < tick) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	//
+	// Compilation
+	//
+
+	/**
+	 * Builds the {@link Timeline} of messages. 'starts', 'durations', 'keys' and 'velocities' describe each note of the block.
+	 *
+	 * @return
+	 */
+	static Timeline compile(long[] starts, long[] durations, int[] keys, int[] velocities, int notes, int channel, long size,
+			int ticksPerBeat) {
+		// Each message is sorted with a key made of: its tick, then NOTE_OFF before NOTE_ON, then the order of creation
+		long[] sortKeys = new long[2 * notes];
+		int[] unsortedMessages = new int[2 * notes];
+		for(int n = 0; n < notes; n++) {
+			long end = starts[n] + durations[n];
+			if(starts[n] < 0 || end > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Tick out of range: " + end);
+			}
+
+			int on = 2 * n;
+			int off = 2 * n + 1;
+			unsortedMessages[on] = pack(ShortMessage.NOTE_ON, channel, keys[n], velocities[n]);
+			unsortedMessages[off] = pack(ShortMessage.NOTE_OFF, channel, keys[n], Block.DEFAULT_NOTE_OFF_VELOCITY);
+			sortKeys[on] = (starts[n] << 32) | (1L << 31) | on;
+			sortKeys[off] = (end << 32) | off;
+		}
+
+		Arrays.sort(sortKeys);
+
+		long[] ticks = new long[sortKeys.length];
+		int[] messages = new int[sortKeys.length];
+		for(int i = 0; i < sortKeys.length; i++) {
+			ticks[i] = sortKeys[i] >>> 32;
+			messages[i] = unsortedMessages[(int) (sortKeys[i] & Integer.MAX_VALUE)];
+		}
+
+		return new Timeline(ticks, messages, size, ticksPerBeat);
+	}
+
+	//
+	// Packed messages
+	//
+
+	/**
+	 * Packs a MIDI channel message in an int, status byte first: status | data1 << 8 | data2 << 16.
+	 *
+	 * @param command  {@link ShortMessage#NOTE_ON}, {@link ShortMessage#NOTE_OFF}...
+	 * @param channel  0 to 15.
+	 * @param data1
+	 * @param data2
+	 * @return
+	 */
+	public static int pack(int command, int channel, int data1, int data2) {
+		return (command & 0xF0) | (channel & 0x0F) | (data1 & 0x7F) << 8 | (data2 & 0x7F) << 16;
+	}
+
+	public static int getStatus(int message) {
+		return message & 0xFF;
+	}
+
+	public static int getCommand(int message) {
+		return message & 0xF0;
+	}
+
+	public static int getChannel(int message) {
+		return message & 0x0F;
+	}
+
+	public static int getData1(int message) {
+		return (message >> 8) & 0x7F;
+	}
+
+	public static int getData2(int message) {
+		return (message >> 16) & 0x7F;
+	}
+
+	/**
+	 * Returns the shared {@link ShortMessage} of a packed message. See {@link MessageCache}.
+	 *
+	 * @param message
+	 * @return
+	 * @throws InvalidMidiDataException
+	 */
+	public static ShortMessage toShortMessage(int message) throws InvalidMidiDataException {
+		return MessageCache.get(message);
+	}
+}
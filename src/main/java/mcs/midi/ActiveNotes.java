@@ -0,0 +1,121 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import mcs.melody.Timeline;
+
+import javax.sound.midi.ShortMessage;
+
+/**
+ * Keeps track of the keys currently sounding on each MIDI channel, as a 128-bit set per channel updated with the messages
+ * that pass through. It does not allocate, and it is not thread-safe: it must be updated by one thread only.
+ */
+public class ActiveNotes {
+
+	public static final int CHANNELS = 16;
+	public static final int KEYS = 128;
+
+	private final long[] m_keys = new long[CHANNELS * 2]; // Two 64-bit words per channel
+
+	/**
+	 * Updates the sounding keys with a message packed by {@link Timeline#pack(int, int, int, int)}. An 'All Notes Off' control
+	 * change releases every key of its channel. Other messages than NOTE_ON and NOTE_OFF are ignored.
+	 *
+	 * @param message
+	 */
+	public void update(int message) {
+		int command = Timeline.getCommand(message);
+		if(command == ShortMessage.NOTE_ON && Timeline.getData2(message) > 0) {
+			set(Timeline.getChannel(message), Timeline.getData1(message));
+		} else if(command == ShortMessage.NOTE_ON || command == ShortMessage.NOTE_OFF) {
+			clear(Timeline.getChannel(message), Timeline.getData1(message));
+		} else if(command == ShortMessage.CONTROL_CHANGE && Timeline.getData1(message) == ReceiverHelper.CONTROL_ALL_NOTES_OFF) {
+			clearChannel(Timeline.getChannel(message));
+		}
+	}
+
+	public void set(int channel, int key) {
+		m_keys[2 * channel + (key >> 6)] |= 1L << (key & 63);
+	}
+
+	public void clear(int channel, int key) {
+		m_keys[2 * channel + (key >> 6)] &= ~(1L << (key & 63));
+	}
+
+	/**
+	 * Forgets the sounding keys of 'channel'.
+	 *
+	 * @param channel
+	 */
+	public void clearChannel(int channel) {
+		m_keys[2 * channel] = 0L;
+		m_keys[2 * channel + 1] = 0L;
+	}
+
+	/**
+	 * Forgets all sounding keys.
+	 */
+	public void clear() {
+		for(int i = 0; i < m_keys.length; i++) {
+			m_keys[i] = 0L;
+		}
+	}
+
+	public boolean isOn(int channel, int key) {
+		return (m_keys[2 * channel + (key >> 6)] & (1L << (key & 63))) != 0;
+	}
+
+	public boolean isEmpty(int channel) {
+		return (m_keys[2 * channel] | m_keys[2 * channel + 1]) == 0;
+	}
+
+	public boolean isEmpty() {
+		for(long word : m_keys) {
+			if(word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int count(int channel) {
+		return Long.bitCount(m_keys[2 * channel]) + Long.bitCount(m_keys[2 * channel + 1]);
+	}
+
+	/**
+	 * Returns the first sounding key of 'channel' greater than or equal to 'fromKey', or -1 if there is none. It is used to
+	 * iterate over sounding keys without allocation:
+	 * <pre>
+	 * for(int key = notes.nextKey(channel, 0); key &gt;= 0; key = notes.nextKey(channel, key + 1))
+	 * </pre>
+	 *
+	 * @param channel
+	 * @param fromKey
+	 * @return
+	 */
+	public int nextKey(int channel, int fromKey) {
+		for(int word = fromKey >> 6; word < 2; word++) {
+			long bits = m_keys[2 * channel + word];
+			if(word == fromKey >> 6) {
+				bits &= -1L << (fromKey & 63);
+			}
+			if(bits != 0) {
+				return 64 * word + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,139 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import mcs.melody.Timeline;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The {@link MessageCache} shares immutable {@link ShortMessage}s for channel messages (NOTE_ON, NOTE_OFF, CONTROL_CHANGE,
+ * PROGRAM_CHANGE...). Each message is created the first time it is requested, then the same instance is returned: playing
+ * does not allocate once all the messages of a block have been played once.
+ * <p>
+ * Messages are stored by rows of 128 (one per data2 value) for each status and data1, rows being created on demand. The
+ * returned messages throw {@link UnsupportedOperationException} if modified.
+ */
+public class MessageCache {
+
+	private static final int FIRST_STATUS = 0x80; // NOTE_OFF on channel 0
+	private static final int LAST_STATUS = 0xEF; // PITCH_BEND on channel 15
+
+	private static final AtomicReferenceArray<AtomicReferenceArray<ShortMessage>> ROWS = new AtomicReferenceArray<>(
+			(LAST_STATUS - FIRST_STATUS + 1) * 128);
+
+	/**
+	 * Returns the message with these values.
+	 *
+	 * @param command {@link ShortMessage#NOTE_ON}, {@link ShortMessage#NOTE_OFF}...
+	 * @param channel 0 to 15.
+	 * @param data1
+	 * @param data2
+	 * @return
+	 * @throws InvalidMidiDataException if a value is out of range, like {@link ShortMessage#setMessage(int, int, int, int)}.
+	 */
+	public static ShortMessage get(int command, int channel, int data1, int data2) throws InvalidMidiDataException {
+		if(command < FIRST_STATUS || command > LAST_STATUS || (command & 0x0F) != 0) {
+			throw new InvalidMidiDataException("command out of range: 0x" + Integer.toHexString(command));
+		}
+		if(channel < 0 || channel > 15) {
+			throw new InvalidMidiDataException("channel out of range: " + channel);
+		}
+		if(data1 < 0 || data1 > 127) {
+			throw new InvalidMidiDataException("data1 out of range: " + data1);
+		}
+		if(data2 < 0 || data2 > 127) {
+			throw new InvalidMidiDataException("data2 out of range: " + data2);
+		}
+		return get(command | channel, data1, data2);
+	}
+
+	/**
+	 * Returns the message packed by {@link Timeline#pack(int, int, int, int)}.
+	 *
+	 * @param message
+	 * @return
+	 * @throws InvalidMidiDataException if it is not a channel message.
+	 */
+	public static ShortMessage get(int message) throws InvalidMidiDataException {
+		int status = Timeline.getStatus(message);
+		if(status < FIRST_STATUS || status > LAST_STATUS) {
+			throw new InvalidMidiDataException("status out of range: 0x" + Integer.toHexString(status));
+		}
+		return get(status, Timeline.getData1(message), Timeline.getData2(message));
+	}
+
+	//
+	// Internal
+	//
+
+	private static ShortMessage get(int status, int data1, int data2) {
+		int rowIndex = (status - FIRST_STATUS) * 128 + data1;
+		AtomicReferenceArray<ShortMessage> row = ROWS.get(rowIndex);
+		if(row == null) {
+			ROWS.compareAndSet(rowIndex, null, new AtomicReferenceArray<ShortMessage>(128));
+			row = ROWS.get(rowIndex);
+		}
+
+		ShortMessage result = row.get(data2);
+		if(result == null) {
+			// Two threads may build the same message, only the first one is kept
+			row.compareAndSet(data2, null, new ImmutableShortMessage(status, data1, data2));
+			result = row.get(data2);
+		}
+		return result;
+	}
+
+	/**
+	 * A {@link ShortMessage} that cannot be modified, so that it can be shared.
+	 */
+	private static class ImmutableShortMessage extends ShortMessage {
+
+		ImmutableShortMessage(int status, int data1, int data2) {
+			super(toBytes(status, data1, data2));
+		}
+
+		private static byte[] toBytes(int status, int data1, int data2) {
+			int command = status & 0xF0;
+			if(command == PROGRAM_CHANGE || command == CHANNEL_PRESSURE) {
+				return new byte[] { (byte) status, (byte) data1 };
+			}
+			return new byte[] { (byte) status, (byte) data1, (byte) data2 };
+		}
+
+		@Override
+		public void setMessage(int status) {
+			throw new UnsupportedOperationException("Shared message cannot be modified");
+		}
+
+		@Override
+		public void setMessage(int status, int data1, int data2) {
+			throw new UnsupportedOperationException("Shared message cannot be modified");
+		}
+
+		@Override
+		public void setMessage(int command, int channel, int data1, int data2) {
+			throw new UnsupportedOperationException("Shared message cannot be modified");
+		}
+
+		@Override
+		protected void setMessage(byte[] data, int length) {
+			throw new UnsupportedOperationException("Shared message cannot be modified");
+		}
+	}
+}
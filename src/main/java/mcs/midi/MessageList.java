@@ -0,0 +1,130 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import mcs.melody.Time;
+import mcs.melody.Timeline;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+import java.util.Arrays;
+
+/**
+ * A {@link MessageList} is a list of MIDI messages packed by {@link Timeline#pack(int, int, int, int)}, each one with its
+ * instant in ns, in the order they are played. It is the result of an offline rendering, and can be compared with another
+ * one or converted into a {@link Sequence}.
+ */
+public class MessageList {
+
+	private long[] m_times_ns = new long[64];
+	private int[] m_messages = new int[64];
+	private int m_size = 0;
+
+	public void add(long time_ns, int message) {
+		if(m_size == m_messages.length) {
+			m_times_ns = Arrays.copyOf(m_times_ns, 2 * m_size);
+			m_messages = Arrays.copyOf(m_messages, 2 * m_size);
+		}
+		m_times_ns[m_size] = time_ns;
+		m_messages[m_size] = message;
+		m_size++;
+	}
+
+	public int size() {
+		return m_size;
+	}
+
+	public long getTime_ns(int index) {
+		checkIndex(index);
+		return m_times_ns[index];
+	}
+
+	public int getMessage(int index) {
+		checkIndex(index);
+		return m_messages[index];
+	}
+
+	/**
+	 * Builds a {@link Sequence} with one track containing the tempo, then the messages. Each instant is converted into the
+	 * nearest tick: the conversion is exact when 'resolution' is a multiple of the ticks per beat of the rendered blocks.
+	 *
+	 * @param tempo_bpm
+	 * @param resolution Ticks per quarter note of the sequence.
+	 * @return
+	 * @throws InvalidMidiDataException
+	 */
+	public Sequence toSequence(int tempo_bpm, int resolution) throws InvalidMidiDataException {
+		Sequence result = new Sequence(Sequence.PPQ, resolution);
+		Track track = result.createTrack();
+		track.add(new MidiEvent(Time.createTempoMessage(tempo_bpm), 0));
+		for(int i = 0; i < m_size; i++) {
+			long tick = Time.computeTick(m_times_ns[i], tempo_bpm, resolution);
+			track.add(new MidiEvent(MessageCache.get(m_messages[i]), tick));
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(!(other instanceof MessageList)) {
+			return false;
+		}
+		MessageList list = (MessageList) other;
+		if(list.m_size != m_size) {
+			return false;
+		}
+		for(int i = 0; i < m_size; i++) {
+			if(list.m_times_ns[i] != m_times_ns[i] || list.m_messages[i] != m_messages[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = m_size;
+		for(int i = 0; i < m_size; i++) {
+			result = 31 * result + (int) (m_times_ns[i] ^ (m_times_ns[i] >>> 32));
+			result = 31 * result + m_messages[i];
+		}
+		return result;
+	}
+
+	/**
+	 * One line per message, so that renderings can be compared with a text diff.
+	 *
+	 * @return
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for(int i = 0; i < m_size; i++) {
+			int message = m_messages[i];
+			result.append(String.format("%d;%d;%d;%d;%d\n", m_times_ns[i], Timeline.getCommand(message), Timeline.getChannel(message),
+					Timeline.getData1(message), Timeline.getData2(message)));
+		}
+		return result.toString();
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= m_size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + m_size);
+		}
+	}
+}
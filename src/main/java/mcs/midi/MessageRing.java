@@ -0,0 +1,158 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MessageRing} is a bounded queue of MIDI messages packed in ints (see {@link mcs.melody.Timeline#pack(int, int, int,
+ * int)}), each one with the deadline (from {@link System#nanoTime()}) at which it must be sent.
+ * <p>
+ * It is meant to be used by exactly one producer thread and one consumer thread: it neither allocates nor locks once
+ * created. Deadlines and messages are stored in preallocated arrays, and each thread only writes its own index.
+ */
+public class MessageRing {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final long[] m_deadlines;
+	private final int[] m_messages;
+	private final int m_mask;
+
+	private final AtomicLong m_head = new AtomicLong(0); // Index of the next message to read, written by the consumer
+	private final AtomicLong m_tail = new AtomicLong(0); // Index of the next message to write, written by the producer
+
+	private final AtomicLong m_overflows = new AtomicLong(0); // Written by the producer
+	private boolean m_full = false; // Producer only, true since the last failed offer
+	private final AtomicLong m_underruns = new AtomicLong(0); // Written by the consumer
+
+	public MessageRing() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity Rounded up to the next power of 2.
+	 */
+	public MessageRing(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		m_deadlines = new long[size];
+		m_messages = new int[size];
+		m_mask = size - 1;
+	}
+
+	public int capacity() {
+		return m_messages.length;
+	}
+
+	public int size() {
+		return (int) (m_tail.get() - m_head.get());
+	}
+
+	public boolean isEmpty() {
+		return m_tail.get() == m_head.get();
+	}
+
+	//
+	// Producer side
+	//
+
+	/**
+	 * Adds a message at the end of the ring. If the ring is full, then the message is not added and, unless the previous offer
+	 * failed too, the overflow counter is incremented: a producer retrying until the consumer makes room counts one overflow.
+	 *
+	 * @param deadline_ns
+	 * @param message
+	 * @return 'false' if the ring is full.
+	 */
+	public boolean offer(long deadline_ns, int message) {
+		long tail = m_tail.get();
+		if(tail - m_head.get() >= m_messages.length) {
+			if(!m_full) {
+				m_full = true;
+				m_overflows.lazySet(m_overflows.get() + 1);
+			}
+			return false;
+		}
+		m_full = false;
+
+		int index = (int) (tail & m_mask);
+		m_deadlines[index] = deadline_ns;
+		m_messages[index] = message;
+		m_tail.lazySet(tail + 1); // Publishes the message to the consumer
+		return true;
+	}
+
+	//
+	// Consumer side
+	//
+
+	/**
+	 * Returns the deadline of the first message. Must not be called on an empty ring.
+	 *
+	 * @return
+	 */
+	public long peekDeadline() {
+		return m_deadlines[(int) (m_head.get() & m_mask)];
+	}
+
+	/**
+	 * Removes and returns the first message. Must not be called on an empty ring.
+	 *
+	 * @return
+	 */
+	public int poll() {
+		long head = m_head.get();
+		int result = m_messages[(int) (head & m_mask)];
+		m_head.lazySet(head + 1); // Releases the slot to the producer
+		return result;
+	}
+
+	/**
+	 * Called by the consumer when it finds the ring empty while a message should already have been produced.
+	 */
+	public void countUnderrun() {
+		m_underruns.lazySet(m_underruns.get() + 1);
+	}
+
+	/**
+	 * Removes all messages. Must only be called when neither the producer nor the consumer is running.
+	 */
+	public void clear() {
+		m_head.set(m_tail.get());
+	}
+
+	//
+	// Statistics
+	//
+
+	/**
+	 * Returns the number of times the ring was found full, consecutive failed offers counting once.
+	 *
+	 * @return
+	 */
+	public long getOverflows() {
+		return m_overflows.get();
+	}
+
+	/**
+	 * Returns the number of times the consumer found the ring empty while the producer was late.
+	 *
+	 * @return
+	 */
+	public long getUnderruns() {
+		return m_underruns.get();
+	}
+}
@@ -6,60 +6,33 @@
 
 package mcs.midi;
 
+import mcs.WaitStrategy;
 import mcs.melody.Time;
 import mcs.utils.FileUtils;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiDevice;
-import javax.sound.midi.MidiEvent;
-import javax.sound.midi.MidiMessage;
 import javax.sound.midi.MidiSystem;
 import javax.sound.midi.MidiUnavailableException;
 import javax.sound.midi.Receiver;
-import javax.sound.midi.Sequence;
-import javax.sound.midi.Track;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
+/**
+ * Plays a MIDI file at a given tempo. The file is read in place by {@link SmfReader}, and the shared messages of
+ * {@link MessageCache} are sent: memory does not grow with the size of the file beyond its packed events.
+ */
 public class MidiFilePlayer {
 
-	static Map<Long, List<MidiMessage>> toSynchronizedMessagesMap(Track track) {
-		Map<Long, List<MidiMessage>> result = new TreeMap<>();
-
-		for(int i = 0; i < track.size(); i++) {
-			MidiEvent event = track.get(i);
-			MidiMessage message = event.getMessage();
-			long tick = event.getTick();
-
-			List<MidiMessage> synchronizedMessages = result.get(tick);
-			if(synchronizedMessages == null) {
-				synchronizedMessages = new ArrayList<>();
-				result.put(tick, synchronizedMessages);
-			}
-			synchronizedMessages.add(message);
-		}
-
-		return result;
-	}
-
 	public static void main(String[] args) throws InvalidMidiDataException, IOException, MidiUnavailableException, InterruptedException {
 		File midiFile = new File(args[0]);
 		int tempo_bpm = Integer.valueOf(args[1]);
 
-		// Reading MIDI sequence
-		Sequence sequence = MidiSystem.getSequence(midiFile);
-		sequence.getResolution();
-		int ticksPerBeat = sequence.getResolution();
-		long beats = sequence.getTickLength() / ticksPerBeat;
-
-		// Merging tracks together
-		Sequence newSequence = new Sequence(Sequence.PPQ, ticksPerBeat);
-		Track[] tracks = sequence.getTracks();
-		Track track = SequenceUtils.mergeTracks(tracks, newSequence);
+		// Reading MIDI events, all tracks merged
+		SmfReader reader = SmfReader.open(midiFile);
+		int ticksPerBeat = reader.getDivision();
+		SmfReader.Events events = reader.readEvents();
+		long beats = events.getTickLength() / ticksPerBeat;
 
 		long tickDuration_ms = Time.computeTickDuration_ms(tempo_bpm, ticksPerBeat);
 
@@ -75,37 +48,32 @@ public class MidiFilePlayer {
 		}
 		device.open();
 
-		Receiver receiver = device.getReceiver();
-
-		for(int channel = 0; channel < 10; channel++) {
-			if(channel != Drum.CHANNEL) {
-				ReceiverHelper.stopAllNotes(receiver, channel);
-			}
-		}
+		// Notes left sounding by a previous program are unknown, they are stopped with 'All Notes Off'
+		Receiver deviceReceiver = device.getReceiver();
+		ReceiverHelper.stopAllNotes(deviceReceiver);
+		TrackingReceiver receiver = new TrackingReceiver(deviceReceiver);
 
 		try {
-			long start_ms = System.currentTimeMillis();
-
-			for(Map.Entry<Long, List<MidiMessage>> entry : toSynchronizedMessagesMap(track).entrySet()) {
-				long tick = entry.getKey();
-				long timeToPlay_ms = start_ms + Time.computeTickTime_ms(tick, tempo_bpm, ticksPerBeat);
-
-				Thread.sleep(Math.max(0, timeToPlay_ms - System.currentTimeMillis()));
+			long start_ns = System.nanoTime();
+			long previousTick = -1;
 
-				List<MidiMessage> messages = entry.getValue();
-				for(MidiMessage message : messages) {
-					receiver.send(message, -1L);
+			for(int index = 0; index < events.size(); index++) {
+				int message = events.getMessage(index);
+				if(SmfReader.Events.isTempo(message)) { // The tempo is given as argument
+					continue;
 				}
-			}
-		} finally {
 
-			for(int channel = 0; channel < 10; channel++) {
-				if(channel != Drum.CHANNEL) {
-					ReceiverHelper.stopAllNotes(receiver, channel);
+				// Messages of the same tick are sent together
+				long tick = events.getTick(index);
+				if(tick != previousTick) {
+					WaitStrategy.HYBRID.waitUntil(start_ns + Time.computeTickTime_ns(tick, tempo_bpm, ticksPerBeat));
+					previousTick = tick;
 				}
+				receiver.send(MessageCache.get(message), -1L);
 			}
-
+		} finally {
+			receiver.releaseAll();
 			device.close();
 		}
 	}
-}
\ No newline at end of file
+}
@@ -21,6 +21,8 @@ import javax.sound.midi.ShortMessage;
 
 public class ReceiverHelper {
 
+	public static final int CONTROL_ALL_NOTES_OFF = 123;
+
 	/**
 	 * @param receiver
 	 * @param channel  0 to 15.
@@ -30,9 +32,9 @@ public class ReceiverHelper {
 	 * @throws InvalidMidiDataException
 	 */
 	public static void selectInstrument(Receiver receiver, int channel, int msb, int lsb, int pc) throws InvalidMidiDataException {
-		receiver.send(new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, 0, msb), -1);
-		receiver.send(new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, 32, lsb), -1);
-		receiver.send(new ShortMessage(ShortMessage.PROGRAM_CHANGE, channel, pc, 0), -1);
+		receiver.send(MessageCache.get(ShortMessage.CONTROL_CHANGE, channel, 0, msb), -1);
+		receiver.send(MessageCache.get(ShortMessage.CONTROL_CHANGE, channel, 32, lsb), -1);
+		receiver.send(MessageCache.get(ShortMessage.PROGRAM_CHANGE, channel, pc, 0), -1);
 	}
 
 	public static void selectInstrument(Receiver receiver, int channel, int bank, int instrument) throws InvalidMidiDataException {
@@ -43,19 +45,31 @@ public class ReceiverHelper {
 		selectInstrument(receiver, channel, tone.m_msb, tone.m_lsb, tone.m_pc);
 	}
 
+	/**
+	 * Stops the notes sounding on all channels. A {@link TrackingReceiver} only sends the NOTE_OFFs needed; other receivers
+	 * receive an 'All Notes Off' control change on each channel.
+	 *
+	 * @param receiver
+	 * @throws InvalidMidiDataException
+	 */
 	public static void stopAllNotes(Receiver receiver) throws InvalidMidiDataException {
-		for(int channel = 0; channel < 10; channel++) {
-			if(channel != Drum.CHANNEL) {
-				stopAllNotes(receiver, channel);
+		if(receiver instanceof TrackingReceiver) {
+			((TrackingReceiver) receiver).releaseAll();
+		} else {
+			for(int channel = 0; channel < ActiveNotes.CHANNELS; channel++) {
+				allNotesOff(receiver, channel);
 			}
 		}
 	}
 
-	public static void stopAllNotes(Receiver receiver, int channel) throws InvalidMidiDataException {
-		for(int key = 0; key < 127; key++) {
-			ShortMessage off = new ShortMessage();
-			off.setMessage(ShortMessage.NOTE_OFF, channel, key, 127);
-			receiver.send(off, -1L);
-		}
+	/**
+	 * Sends the 'All Notes Off' control change (CC 123) on the channel.
+	 *
+	 * @param receiver
+	 * @param channel
+	 * @throws InvalidMidiDataException
+	 */
+	public static void allNotesOff(Receiver receiver, int channel) throws InvalidMidiDataException {
+		receiver.send(MessageCache.get(ShortMessage.CONTROL_CHANGE, channel, CONTROL_ALL_NOTES_OFF, 0), -1L);
 	}
 }
\ No newline at end of file
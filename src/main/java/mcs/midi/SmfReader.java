@@ -0,0 +1,371 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import mcs.melody.Timeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads a Standard MIDI File (.mid) in place, without creating an object by event.
+ * <p>
+ * The file is memory-mapped and walked chunk by chunk. Events are either visited track by track (see {@link Visitor}), or
+ * decoded into {@link Events}: primitive arrays of ticks and channel messages packed like {@link Timeline#pack(int, int, int,
+ * int)}, all the tracks merged.
+ * <p>
+ * The running status is kept over meta events and system exclusive messages. The specification cancels it there, but many
+ * old sequencers rely on it, and {@link javax.sound.midi.MidiSystem} rejects their files.
+ */
+public class SmfReader {
+
+	public static final int HEADER_CHUNK = 0x4D546864; // "MThd"
+	public static final int TRACK_CHUNK = 0x4D54726B; // "MTrk"
+
+	public static final int META = 0xFF;
+	public static final int META_TEMPO = 0x51;
+	public static final int META_TIME_SIGNATURE = 0x58;
+	public static final int META_END_OF_TRACK = 0x2F;
+	public static final int SYSEX = 0xF0;
+	public static final int SYSEX_ESCAPE = 0xF7;
+
+	private final ByteBuffer m_buffer; // Whole file, absolute reads only
+	private final int m_format;
+	private final int m_division;
+	private final int[] m_trackStarts; // Offset of the events of each track
+	private final int[] m_trackEnds;
+
+	/**
+	 * Receives the events of a track. Methods do nothing by default.
+	 */
+	public static abstract class Visitor {
+
+		/**
+		 * @param track
+		 * @param tick
+		 * @param message Channel message, packed like {@link Timeline#pack(int, int, int, int)}.
+		 */
+		public void visitMessage(int track, long tick, int message) {
+		}
+
+		/**
+		 * @param track
+		 * @param tick
+		 * @param type
+		 * @param data  From its position to its limit. Shared with the next calls: it must not be kept.
+		 */
+		public void visitMetaEvent(int track, long tick, int type, ByteBuffer data) {
+		}
+
+		/**
+		 * @param track
+		 * @param tick
+		 * @param status {@link #SYSEX} or {@link #SYSEX_ESCAPE}.
+		 * @param data   From its position to its limit. Shared with the next calls: it must not be kept.
+		 */
+		public void visitSysex(int track, long tick, int status, ByteBuffer data) {
+		}
+	}
+
+	/**
+	 * Channel messages and tempo changes of all the tracks, sorted by tick. A tempo change is packed as {@link #META} followed
+	 * by its microseconds per beat on 24 bits, see {@link #isTempo(int)}.
+	 */
+	public static class Events {
+
+		private final long[] m_ticks;
+		private final int[] m_messages;
+		private final int m_size;
+
+		Events(long[] ticks, int[] messages, int size) {
+			m_ticks = ticks;
+			m_messages = messages;
+			m_size = size;
+		}
+
+		public int size() {
+			return m_size;
+		}
+
+		public long getTick(int index) {
+			return m_ticks[index];
+		}
+
+		public int getMessage(int index) {
+			return m_messages[index];
+		}
+
+		/**
+		 * Returns the tick of the last event, 0 if there is none.
+		 *
+		 * @return
+		 */
+		public long getTickLength() {
+			return m_size == 0 ? 0 : m_ticks[m_size - 1];
+		}
+
+		public static boolean isTempo(int message) {
+			return Timeline.getStatus(message) == META;
+		}
+
+		public static int getTempo_us(int message) {
+			return message >>> 8;
+		}
+	}
+
+	/**
+	 * @param buffer The whole file, from position 0. Not copied.
+	 * @throws IOException If it is not a MIDI file.
+	 */
+	public SmfReader(ByteBuffer buffer) throws IOException {
+		m_buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+		try {
+			if(m_buffer.getInt(0) != HEADER_CHUNK) {
+				throw new IOException("Not a MIDI file");
+			}
+			int headerLength = m_buffer.getInt(4);
+			m_format = m_buffer.getShort(8) & 0xFFFF;
+			int tracks = m_buffer.getShort(10) & 0xFFFF;
+			m_division = m_buffer.getShort(12) & 0xFFFF;
+			if(m_division == 0 || (m_division & 0x8000) != 0) {
+				throw new IOException("SMPTE time division not supported");
+			}
+
+			// Locating the tracks, other chunks are skipped
+			m_trackStarts = new int[tracks];
+			m_trackEnds = new int[tracks];
+			int count = 0;
+			long position = 8L + headerLength;
+			while(count < tracks && position + 8 <= m_buffer.limit()) {
+				int type = m_buffer.getInt((int) position);
+				long length = m_buffer.getInt((int) position + 4) & 0xFFFFFFFFL;
+				if(type == TRACK_CHUNK) {
+					m_trackStarts[count] = (int) position + 8;
+					m_trackEnds[count] = (int) Math.min(m_buffer.limit(), position + 8 + length);
+					count++;
+				}
+				position += 8 + length;
+			}
+			if(count < tracks) {
+				throw new IOException(String.format("%d tracks expected, found %d", tracks, count));
+			}
+		} catch(IndexOutOfBoundsException e) {
+			throw new IOException("Truncated MIDI header");
+		}
+	}
+
+	/**
+	 * Maps 'file' in memory. The mapping is released when the reader is garbage collected.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static SmfReader open(File file) throws IOException {
+		try(RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+			return new SmfReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Returns 0, 1 or 2.
+	 *
+	 * @return
+	 */
+	public int getFormat() {
+		return m_format;
+	}
+
+	public int getTrackCount() {
+		return m_trackStarts.length;
+	}
+
+	/**
+	 * Returns the number of ticks per beat.
+	 *
+	 * @return
+	 */
+	public int getDivision() {
+		return m_division;
+	}
+
+	/**
+	 * Visits the events of all the tracks, track after track.
+	 *
+	 * @param visitor
+	 * @throws IOException If an event is malformed.
+	 */
+	public void accept(Visitor visitor) throws IOException {
+		ByteBuffer data = m_buffer.duplicate();
+		for(int track = 0; track < m_trackStarts.length; track++) {
+			readTrack(track, data, visitor);
+		}
+	}
+
+	public void accept(int track, Visitor visitor) throws IOException {
+		readTrack(track, m_buffer.duplicate(), visitor);
+	}
+
+	/**
+	 * Decodes the channel messages and tempo changes of all the tracks, merged by tick. Events of the same tick keep the order
+	 * of their tracks.
+	 *
+	 * @return
+	 * @throws IOException If an event is malformed.
+	 */
+	public Events readEvents() throws IOException {
+		final EventList[] tracks = new EventList[m_trackStarts.length];
+		ByteBuffer data = m_buffer.duplicate();
+		int total = 0;
+		for(int track = 0; track < tracks.length; track++) {
+			final EventList events = new EventList();
+			readTrack(track, data, new Visitor() {
+				@Override
+				public void visitMessage(int track, long tick, int message) {
+					events.add(tick, message);
+				}
+
+				@Override
+				public void visitMetaEvent(int track, long tick, int type, ByteBuffer data) {
+					if(type == META_TEMPO && data.remaining() == 3) {
+						int position = data.position();
+						int tempo_us = (data.get(position) & 0xFF) << 16 | (data.get(position + 1) & 0xFF) << 8
+								| (data.get(position + 2) & 0xFF);
+						events.add(tick, META | tempo_us << 8);
+					}
+				}
+			});
+			tracks[track] = events;
+			total += events.size;
+		}
+
+		if(tracks.length == 1) {
+			return new Events(tracks[0].ticks, tracks[0].messages, tracks[0].size);
+		}
+
+		// Merging the tracks, each one being sorted
+		long[] ticks = new long[total];
+		int[] messages = new int[total];
+		int[] cursors = new int[tracks.length];
+		for(int index = 0; index < total; index++) {
+			int next = -1;
+			for(int track = 0; track < tracks.length; track++) {
+				if(cursors[track] < tracks[track].size
+						&& (next < 0 || tracks[track].ticks[cursors[track]] < tracks[next].ticks[cursors[next]])) {
+					next = track;
+				}
+			}
+			ticks[index] = tracks[next].ticks[cursors[next]];
+			messages[index] = tracks[next].messages[cursors[next]];
+			cursors[next]++;
+		}
+		return new Events(ticks, messages, total);
+	}
+
+	//
+	// Decoding
+	//
+
+	private static class EventList {
+		long[] ticks = new long[256];
+		int[] messages = new int[256];
+		int size = 0;
+
+		void add(long tick, int message) {
+			if(size == ticks.length) {
+				ticks = Arrays.copyOf(ticks, size * 2);
+				messages = Arrays.copyOf(messages, size * 2);
+			}
+			ticks[size] = tick;
+			messages[size] = message;
+			size++;
+		}
+	}
+
+	private void readTrack(int track, ByteBuffer data, Visitor visitor) throws IOException {
+		ByteBuffer buffer = m_buffer;
+		int position = m_trackStarts[track];
+		int end = m_trackEnds[track];
+
+		long tick = 0;
+		int status = 0;
+		try {
+			while(position < end) {
+				// Delta time
+				int b;
+				int delta = 0;
+				do {
+					b = buffer.get(position++) & 0xFF;
+					delta = (delta << 7) | (b & 0x7F);
+				} while((b & 0x80) != 0);
+				tick += delta;
+
+				b = buffer.get(position) & 0xFF;
+				if(b == META || b == SYSEX || b == SYSEX_ESCAPE) {
+					int type = b == META ? buffer.get(position + 1) & 0xFF : -1;
+					position += b == META ? 2 : 1;
+					int length = 0;
+					int lengthByte;
+					do {
+						lengthByte = buffer.get(position++) & 0xFF;
+						length = (length << 7) | (lengthByte & 0x7F);
+					} while((lengthByte & 0x80) != 0);
+					if(position + length > end) {
+						throw error(track, position, "event longer than its track");
+					}
+
+					data.limit(position + length).position(position);
+					if(b == META) {
+						visitor.visitMetaEvent(track, tick, type, data);
+						if(type == META_END_OF_TRACK) {
+							return;
+						}
+					} else {
+						visitor.visitSysex(track, tick, b, data);
+					}
+					data.limit(buffer.limit());
+					position += length;
+					continue;
+				}
+
+				if(b >= 0x80) {
+					if(b > 0xEF) {
+						throw error(track, position, String.format("unexpected status 0x%X", b));
+					}
+					status = b;
+					position++;
+				} else if(status == 0) {
+					throw error(track, position, "missing status byte");
+				}
+				int command = status & 0xF0;
+				int data1 = buffer.get(position++) & 0x7F;
+				int data2 = command == 0xC0 || command == 0xD0 ? 0 : buffer.get(position++) & 0x7F;
+				visitor.visitMessage(track, tick, status | data1 << 8 | data2 << 16);
+			}
+		} catch(IndexOutOfBoundsException e) {
+			throw error(track, position, "truncated track");
+		}
+	}
+
+	private static IOException error(int track, int position, String message) {
+		return new IOException(String.format("track %d at offset %d: %s", track, position, message));
+	}
+}
@@ -0,0 +1,255 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import mcs.melody.Timeline;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes a Standard MIDI File (.mid) event by event, through a fixed-size buffer.
+ * <p>
+ * Tracks are written one after the other: {@link #startTrack()}, events in tick order, then {@link #endTrack()}. The length
+ * of each track and the number of tracks are written in place once known. Consecutive channel messages of the same status
+ * use the running status.
+ */
+public class SmfWriter implements Closeable {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+	static final int HEADER_LENGTH = 6;
+
+	private final RandomAccessFile m_output;
+	private final FileChannel m_channel;
+	private final ByteBuffer m_buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final byte[] m_metaData = new byte[4];
+
+	private int m_tracks = 0;
+	private long m_trackStart = -1; // Offset of the current track chunk, -1 out of a track
+	private long m_tick;
+	private int m_status;
+	private boolean m_ended; // End of track written
+
+	/**
+	 * @param file
+	 * @param format   0 for a single track, 1 for tracks played together.
+	 * @param division Ticks per beat.
+	 * @throws IOException
+	 */
+	public SmfWriter(File file, int format, int division) throws IOException {
+		if(division <= 0 || division > 0x7FFF) {
+			throw new IllegalArgumentException("Invalid division: " + division);
+		}
+		m_output = new RandomAccessFile(file, "rw");
+		m_output.setLength(0);
+		m_channel = m_output.getChannel();
+		m_buffer.putInt(SmfReader.HEADER_CHUNK).putInt(HEADER_LENGTH);
+		m_buffer.putShort((short) format).putShort((short) 0).putShort((short) division);
+	}
+
+	public void startTrack() throws IOException {
+		if(m_trackStart >= 0) {
+			endTrack();
+		}
+		if(m_tracks == 0xFFFF) {
+			throw new IOException("Too many tracks");
+		}
+		m_trackStart = m_channel.position() + m_buffer.position();
+		m_buffer.putInt(SmfReader.TRACK_CHUNK).putInt(0);
+		m_tick = 0;
+		m_status = 0;
+		m_ended = false;
+		m_tracks++;
+	}
+
+	/**
+	 * @param tick
+	 * @param message Channel message, packed like {@link Timeline#pack(int, int, int, int)}.
+	 * @throws IOException
+	 */
+	public void writeMessage(long tick, int message) throws IOException {
+		int status = Timeline.getStatus(message);
+		if(status < 0x80 || status > 0xEF) {
+			throw new IllegalArgumentException(String.format("Not a channel message: 0x%X", status));
+		}
+		writeDelta(tick, 3);
+		if(status != m_status) {
+			m_buffer.put((byte) status);
+			m_status = status;
+		}
+		m_buffer.put((byte) Timeline.getData1(message));
+		int command = status & 0xF0;
+		if(command != 0xC0 && command != 0xD0) {
+			m_buffer.put((byte) Timeline.getData2(message));
+		}
+	}
+
+	/**
+	 * Writes a tempo change.
+	 *
+	 * @param tick
+	 * @param tempo_us Microseconds per beat.
+	 * @throws IOException
+	 */
+	public void writeTempo(long tick, int tempo_us) throws IOException {
+		m_metaData[0] = (byte) (tempo_us >> 16);
+		m_metaData[1] = (byte) (tempo_us >> 8);
+		m_metaData[2] = (byte) tempo_us;
+		writeMetaEvent(tick, SmfReader.META_TEMPO, ByteBuffer.wrap(m_metaData, 0, 3));
+	}
+
+	/**
+	 * @param tick
+	 * @param type
+	 * @param data From its position to its limit, not modified.
+	 * @throws IOException
+	 */
+	public void writeMetaEvent(long tick, int type, ByteBuffer data) throws IOException {
+		writeData(tick, SmfReader.META, type, data);
+		if(type == SmfReader.META_END_OF_TRACK) {
+			m_ended = true;
+		}
+	}
+
+	/**
+	 * @param tick
+	 * @param status {@link SmfReader#SYSEX} or {@link SmfReader#SYSEX_ESCAPE}.
+	 * @param data   From its position to its limit, not modified.
+	 * @throws IOException
+	 */
+	public void writeSysex(long tick, int status, ByteBuffer data) throws IOException {
+		writeData(tick, status, -1, data);
+	}
+
+	/**
+	 * Ends the current track, adding its 'end of track' event if needed.
+	 *
+	 * @throws IOException
+	 */
+	public void endTrack() throws IOException {
+		if(m_trackStart < 0) {
+			throw new IllegalStateException("No track started");
+		}
+		if(!m_ended) {
+			writeMetaEvent(m_tick, SmfReader.META_END_OF_TRACK, ByteBuffer.allocate(0));
+		}
+		flush();
+		long length = m_channel.position() - m_trackStart - 8;
+		if(length > 0xFFFFFFFFL) {
+			throw new IOException("Track too long");
+		}
+		writeInt(m_trackStart + 4, (int) length);
+		m_trackStart = -1;
+	}
+
+	/**
+	 * Ends the current track, if any, and writes the number of tracks.
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if(m_trackStart >= 0) {
+				endTrack();
+			}
+			flush();
+			ByteBuffer tracks = ByteBuffer.allocate(2).putShort(0, (short) m_tracks);
+			while(tracks.hasRemaining()) {
+				m_channel.write(tracks, 10 + tracks.position());
+			}
+		} finally {
+			m_output.close();
+		}
+	}
+
+	//
+	// Encoding
+	//
+
+	private void writeData(long tick, int status, int type, ByteBuffer data) throws IOException {
+		int length = data.remaining();
+		writeDelta(tick, 2 + 5);
+		m_buffer.put((byte) status);
+		if(type >= 0) {
+			m_buffer.put((byte) type);
+		}
+		writeVarInt(length);
+		m_status = 0; // No running status after a meta event or a system exclusive message
+
+		ByteBuffer input = data.duplicate();
+		while(input.hasRemaining()) {
+			if(!m_buffer.hasRemaining()) {
+				flush();
+			}
+			int chunk = Math.min(input.remaining(), m_buffer.remaining());
+			int limit = input.limit();
+			input.limit(input.position() + chunk);
+			m_buffer.put(input);
+			input.limit(limit);
+		}
+	}
+
+	/**
+	 * Writes the delta time of an event at 'tick', making room for 'bytes' more bytes.
+	 */
+	private void writeDelta(long tick, int bytes) throws IOException {
+		if(m_trackStart < 0 || m_ended) {
+			throw new IllegalStateException(m_trackStart < 0 ? "No track started" : "Event after the end of track");
+		}
+		long delta = tick - m_tick;
+		if(delta < 0 || delta > 0x0FFFFFFF) {
+			throw new IllegalArgumentException("Invalid tick " + tick + " after " + m_tick);
+		}
+		if(m_buffer.remaining() < 4 + bytes) {
+			flush();
+		}
+		writeVarInt((int) delta);
+		m_tick = tick;
+	}
+
+	private void writeVarInt(int value) {
+		if(value >= 1 << 21) {
+			m_buffer.put((byte) (0x80 | (value >> 21) & 0x7F));
+		}
+		if(value >= 1 << 14) {
+			m_buffer.put((byte) (0x80 | (value >> 14) & 0x7F));
+		}
+		if(value >= 1 << 7) {
+			m_buffer.put((byte) (0x80 | (value >> 7) & 0x7F));
+		}
+		m_buffer.put((byte) (value & 0x7F));
+	}
+
+	private void writeInt(long position, int value) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(4).putInt(0, value);
+		while(bytes.hasRemaining()) {
+			m_channel.write(bytes, position + bytes.position());
+		}
+	}
+
+	private void flush() throws IOException {
+		m_buffer.flip();
+		while(m_buffer.hasRemaining()) {
+			m_channel.write(m_buffer);
+		}
+		m_buffer.clear();
+	}
+}
@@ -0,0 +1,278 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import mcs.melody.Timeline;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Receiver;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link TimingWheel} sends MIDI messages at a later instant, from one background thread, so that the caller does not wait.
+ * It is used to send the NOTE_OFF of timed notes (see {@link mcs.MSequencer#sendNote(Receiver, int, int, int, long)}).
+ * <p>
+ * Scheduled messages are hashed by their tick (of {@link #TICK_ns}) into a fixed number of slots. Each slot holds a linked list
+ * of entries stored in preallocated arrays, so that scheduling or sending a message does not allocate, whatever the number of
+ * messages waiting. Messages are sent with a precision of one tick.
+ */
+public class TimingWheel {
+
+	public static final long TICK_ns = 1_000_000L;
+	public static final int SLOTS = 512; // Power of 2
+	public static final long NO_HANDLE = -1L;
+
+	private static final TimingWheel DEFAULT = new TimingWheel(TICK_ns, SLOTS);
+
+	private final long m_tick_ns;
+	private final int m_mask;
+	private final int[] m_slots; // First entry of each slot, -1 if empty
+	private final long m_origin_ns = System.nanoTime();
+	private long m_currentTick = 0; // Next tick to process
+
+	// Entries, a free entry having no receiver
+	private long[] m_deadlines_ns = new long[256];
+	private int[] m_messages = new int[256];
+	private Receiver[] m_receivers = new Receiver[256];
+	private int[] m_next = new int[256]; // Next entry in the same slot, or in the free list
+	private int[] m_generations = new int[256]; // Incremented each time the entry is freed, so that old handles are ignored
+	private int m_free = -1; // First free entry
+	private int m_used = 0; // Number of entries ever used
+	private int m_pending = 0; // Messages waiting to be sent
+
+	// Messages being sent, outside of the lock of the wheel so that scheduling is never blocked by a slow receiver. Guarded by
+	// 'm_sendLock', taken before the lock of the wheel.
+	private final Object m_sendLock = new Object();
+	private int[] m_dueMessages = new int[256];
+	private Receiver[] m_dueReceivers = new Receiver[256];
+
+	private Thread m_thread; // Started on the first message
+
+	public TimingWheel(long tick_ns, int slots) {
+		if(Integer.bitCount(slots) != 1) {
+			throw new IllegalArgumentException("Slots must be a power of 2: " + slots);
+		}
+		m_tick_ns = tick_ns;
+		m_mask = slots - 1;
+		m_slots = new int[slots];
+		Arrays.fill(m_slots, -1);
+	}
+
+	/**
+	 * Returns the wheel shared by the helpers sending timed notes.
+	 *
+	 * @return
+	 */
+	public static TimingWheel getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Schedules a message to be sent at 'deadline_ns' (from {@link System#nanoTime()}), or as soon as possible if passed.
+	 *
+	 * @param receiver
+	 * @param message  Packed by {@link Timeline#pack(int, int, int, int)}.
+	 * @param deadline_ns
+	 * @return a handle to cancel the message with {@link #cancel(long)}.
+	 */
+	public synchronized long schedule(Receiver receiver, int message, long deadline_ns) {
+		if(m_pending == 0) {
+			// The wheel was idle, it restarts from the current tick
+			m_currentTick = Math.max(m_currentTick, (System.nanoTime() - m_origin_ns) / m_tick_ns);
+		}
+
+		int entry = allocate();
+		m_deadlines_ns[entry] = deadline_ns;
+		m_messages[entry] = message;
+		m_receivers[entry] = receiver;
+
+		long tick = Math.max(m_currentTick, ceilDiv(deadline_ns - m_origin_ns, m_tick_ns));
+		int slot = (int) tick & m_mask;
+		m_next[entry] = m_slots[slot];
+		m_slots[slot] = entry;
+		m_pending++;
+
+		if(m_thread == null) {
+			m_thread = new Thread(buildLoop(), "TimingWheel");
+			m_thread.setDaemon(true);
+			m_thread.start();
+		} else if(m_pending == 1) {
+			notifyAll(); // The thread waits while no message is pending
+		}
+
+		return (long) m_generations[entry] << 32 | entry;
+	}
+
+	/**
+	 * Cancels a message not sent yet.
+	 *
+	 * @param handle returned by {@link #schedule(Receiver, int, long)}.
+	 * @return false if the message has already been sent or cancelled.
+	 */
+	public synchronized boolean cancel(long handle) {
+		int entry = (int) handle;
+		if(handle == NO_HANDLE || entry >= m_used || m_generations[entry] != (int) (handle >>> 32) || m_receivers[entry] == null) {
+			return false;
+		}
+		m_receivers[entry] = null; // The entry is freed when its slot is processed
+		m_pending--;
+		return true;
+	}
+
+	public synchronized int getPending() {
+		return m_pending;
+	}
+
+	/**
+	 * Sends now all the messages waiting.
+	 *
+	 * @return the number of messages sent.
+	 */
+	public int flush() {
+		synchronized(m_sendLock) {
+			int due = 0;
+			synchronized(this) {
+				for(int slot = 0; slot < m_slots.length; slot++) {
+					due = collect(slot, Long.MAX_VALUE, due);
+				}
+			}
+			send(due);
+			return due;
+		}
+	}
+
+	//
+	// Internal
+	//
+
+	private Runnable buildLoop() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				while(true) {
+					long tickTime_ns;
+					synchronized(TimingWheel.this) {
+						while(m_pending == 0) {
+							try {
+								TimingWheel.this.wait();
+							} catch(InterruptedException e) {
+								e.printStackTrace();
+								return;
+							}
+						}
+						tickTime_ns = m_origin_ns + m_currentTick * m_tick_ns;
+					}
+
+					long remaining_ns;
+					while((remaining_ns = tickTime_ns - System.nanoTime()) > 0) {
+						LockSupport.parkNanos(remaining_ns);
+					}
+
+					synchronized(m_sendLock) {
+						int due;
+						synchronized(TimingWheel.this) {
+							due = collect((int) m_currentTick & m_mask, tickTime_ns, 0);
+							m_currentTick++;
+						}
+						send(due);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Moves the messages of 'slot' which deadline is at or before 'time_ns' into the due arrays, from index 'due', and frees
+	 * their entries. Cancelled entries are freed too. Called with 'm_sendLock' and the lock of the wheel.
+	 *
+	 * @return the number of due messages.
+	 */
+	private int collect(int slot, long time_ns, int due) {
+		int previous = -1;
+		int entry = m_slots[slot];
+		while(entry >= 0) {
+			int next = m_next[entry];
+			Receiver receiver = m_receivers[entry];
+			if(receiver == null || m_deadlines_ns[entry] - time_ns <= 0) {
+				if(receiver != null) {
+					if(due == m_dueMessages.length) {
+						m_dueMessages = Arrays.copyOf(m_dueMessages, 2 * due);
+						m_dueReceivers = Arrays.copyOf(m_dueReceivers, 2 * due);
+					}
+					m_dueMessages[due] = m_messages[entry];
+					m_dueReceivers[due] = receiver;
+					due++;
+					m_pending--;
+				}
+
+				// Removing the entry from the slot
+				if(previous < 0) {
+					m_slots[slot] = next;
+				} else {
+					m_next[previous] = next;
+				}
+				free(entry);
+			} else {
+				previous = entry;
+			}
+			entry = next;
+		}
+		return due;
+	}
+
+	/**
+	 * Sends the due messages. Called with 'm_sendLock'.
+	 */
+	private void send(int due) {
+		for(int i = 0; i < due; i++) {
+			try {
+				m_dueReceivers[i].send(MessageCache.get(m_dueMessages[i]), -1L);
+			} catch(InvalidMidiDataException | IllegalStateException e) { // IllegalStateException if the receiver is closed
+				e.printStackTrace();
+			}
+			m_dueReceivers[i] = null;
+		}
+	}
+
+	private int allocate() {
+		if(m_free >= 0) {
+			int result = m_free;
+			m_free = m_next[result];
+			return result;
+		}
+		if(m_used == m_receivers.length) {
+			int size = 2 * m_used;
+			m_deadlines_ns = Arrays.copyOf(m_deadlines_ns, size);
+			m_messages = Arrays.copyOf(m_messages, size);
+			m_receivers = Arrays.copyOf(m_receivers, size);
+			m_next = Arrays.copyOf(m_next, size);
+			m_generations = Arrays.copyOf(m_generations, size);
+		}
+		return m_used++;
+	}
+
+	private void free(int entry) {
+		m_receivers[entry] = null;
+		m_generations[entry]++;
+		m_next[entry] = m_free;
+		m_free = entry;
+	}
+
+	private static long ceilDiv(long a, long b) {
+		return a <= 0 ? 0 : (a + b - 1) / b;
+	}
+}
@@ -49,9 +49,9 @@ public class Tone {
 
 	public static ShortMessage[] buildChangeInstrumentMessages(int channel, int msb, int lsb, int pc) throws InvalidMidiDataException {
 		ShortMessage[] messages = new ShortMessage[3];
-		messages[0] = new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, 0, msb);
-		messages[1] = new ShortMessage(ShortMessage.CONTROL_CHANGE, channel, 32, lsb);
-		messages[2] = new ShortMessage(ShortMessage.PROGRAM_CHANGE, channel, pc, 0);
+		messages[0] = MessageCache.get(ShortMessage.CONTROL_CHANGE, channel, 0, msb);
+		messages[1] = MessageCache.get(ShortMessage.CONTROL_CHANGE, channel, 32, lsb);
+		messages[2] = MessageCache.get(ShortMessage.PROGRAM_CHANGE, channel, pc, 0);
 		return messages;
 	}
 }
\ No newline at end of file
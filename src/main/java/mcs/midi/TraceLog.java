@@ -0,0 +1,215 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import mcs.melody.Timeline;
+
+import javax.sound.midi.InvalidMidiDataException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link TraceLog} records what happens in the playback threads without slowing them down. Each record is an instant (from
+ * {@link System#nanoTime()}), a kind and a MIDI message packed by {@link Timeline#pack(int, int, int, int)}, written into
+ * preallocated arrays: recording neither allocates, locks nor does I/O.
+ * <p>
+ * Records are formatted and printed by a background thread, only while the log is enabled (see {@link
+ * #setEnabled(boolean)}, or the system property {@link #PROPERTY_ENABLED}). When disabled, recording only reads a volatile
+ * flag. Any number of threads can record at the same time; if the consumer cannot keep up, new records are dropped and
+ * counted.
+ */
+public class TraceLog {
+
+	public static final String PROPERTY_ENABLED = "mcs.trace";
+	public static final int DEFAULT_CAPACITY = 8192;
+	public static final long FLUSH_PERIOD_ns = 50_000_000L; // How often the background thread prints the records
+
+	// Kinds of record
+	public static final int RENDER = 0; // Message rendered by the scheduling thread
+	public static final int SEND = 1; // Message sent to the receiver by the output thread
+	public static final int DIRECT = 2; // Message sent to the receiver outside of the sequencer loop (pressed key...)
+	public static final int UNDERRUN = 3; // Output thread found nothing to send while the scheduling thread was late
+	private static final String[] KIND_NAMES = { "RENDER", "SEND", "DIRECT", "UNDERRUN" };
+
+	private static final TraceLog DEFAULT = new TraceLog(DEFAULT_CAPACITY, System.out);
+
+	static {
+		DEFAULT.setEnabled(Boolean.getBoolean(PROPERTY_ENABLED));
+	}
+
+	private final long[] m_times_ns;
+	private final int[] m_records; // kind << 24 | message
+	private final AtomicLongArray m_published; // Index + 1 of the record last published in each slot
+	private final int m_mask;
+	private final long m_origin_ns = System.nanoTime(); // Printed instants are relative to the creation of the log
+
+	private final AtomicLong m_head = new AtomicLong(0); // Index of the next record to print, written by the consumer
+	private final AtomicLong m_tail = new AtomicLong(0); // Index of the next record to write, claimed by the writers
+	private final AtomicLong m_dropped = new AtomicLong(0);
+
+	private final PrintStream m_out;
+	private volatile boolean m_enabled = false;
+	private Thread m_consumer; // Background thread printing the records, null when stopped
+
+	/**
+	 * Creates a log which records are drained by the caller, with {@link #drain(PrintStream)}.
+	 *
+	 * @param capacity Rounded up to the next power of 2.
+	 */
+	public TraceLog(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * @param capacity Rounded up to the next power of 2.
+	 * @param out      Where the records are printed by the background thread.
+	 */
+	public TraceLog(int capacity, PrintStream out) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		m_times_ns = new long[size];
+		m_records = new int[size];
+		m_published = new AtomicLongArray(size);
+		m_mask = size - 1;
+		m_out = out;
+	}
+
+	/**
+	 * Returns the log shared by the sequencer and the helpers sending MIDI messages.
+	 *
+	 * @return
+	 */
+	public static TraceLog getDefault() {
+		return DEFAULT;
+	}
+
+	public boolean isEnabled() {
+		return m_enabled;
+	}
+
+	/**
+	 * Enables or disables the log. While enabled, a background thread prints the records, unless the log has no output. Once
+	 * disabled, the records already written are still printed.
+	 *
+	 * @param enabled
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		m_enabled = enabled;
+		if(enabled && m_consumer == null && m_out != null) {
+			m_consumer = new Thread(buildConsumer(), "TraceLog");
+			m_consumer.setDaemon(true);
+			m_consumer.start();
+		}
+	}
+
+	/**
+	 * Records a message, if the log is enabled.
+	 *
+	 * @param kind    {@link #RENDER}, {@link #SEND}...
+	 * @param message Packed by {@link Timeline#pack(int, int, int, int)}.
+	 */
+	public void record(int kind, int message) {
+		if(!m_enabled) {
+			return;
+		}
+
+		long index;
+		do {
+			index = m_tail.get();
+			if(index - m_head.get() >= m_records.length) {
+				m_dropped.incrementAndGet();
+				return;
+			}
+		} while(!m_tail.compareAndSet(index, index + 1));
+
+		int slot = (int) index & m_mask;
+		m_times_ns[slot] = System.nanoTime();
+		m_records[slot] = kind << 24 | (message & 0xFFFFFF);
+		m_published.lazySet(slot, index + 1); // Publishes the record to the consumer
+	}
+
+	/**
+	 * Returns the number of records dropped because the consumer could not keep up.
+	 *
+	 * @return
+	 */
+	public long getDropped() {
+		return m_dropped.get();
+	}
+
+	/**
+	 * Prints the records published so far. Only one thread may drain the log at a time: the background thread, or the caller
+	 * when the log has no output.
+	 *
+	 * @param out
+	 * @return the number of records printed.
+	 */
+	public int drain(PrintStream out) {
+		int result = 0;
+		long index = m_head.get();
+		int slot = (int) index & m_mask;
+		while(m_published.get(slot) == index + 1) {
+			long time_ns = m_times_ns[slot];
+			int record = m_records[slot];
+			m_head.lazySet(++index); // The slot can be written again
+			out.println(format(time_ns, record));
+			result++;
+			slot = (int) index & m_mask;
+		}
+		return result;
+	}
+
+	//
+	// Internal
+	//
+
+	private String format(long time_ns, int record) {
+		int kind = record >>> 24;
+		int message = record & 0xFFFFFF;
+
+		String description = "";
+		if(kind != UNDERRUN) {
+			try {
+				description = Message.toString(Timeline.toShortMessage(message));
+			} catch(InvalidMidiDataException e) {
+				description = String.format("invalid message 0x%06X", message);
+			}
+		}
+
+		return String.format("%12.3f ms %-8s %s", (time_ns - m_origin_ns) / 1_000_000.0, KIND_NAMES[kind], description);
+	}
+
+	private Runnable buildConsumer() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				while(true) {
+					int printed = drain(m_out);
+					synchronized(TraceLog.this) {
+						if(!m_enabled && printed == 0) {
+							m_consumer = null;
+							return;
+						}
+					}
+					if(printed == 0) {
+						LockSupport.parkNanos(FLUSH_PERIOD_ns);
+					}
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,98 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.midi;
+
+import mcs.melody.Timeline;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+
+/**
+ * A {@link TrackingReceiver} forwards messages to another {@link Receiver} and keeps track of the notes they leave sounding
+ * (see {@link ActiveNotes}). Stopping all notes then only needs the NOTE_OFFs of these notes, on any channel including the
+ * drums one.
+ * <p>
+ * It does not lock: it must be used by one thread at a time, like the output thread of a sequencer. {@link #releaseAll()} must
+ * be called by that thread, or once it has stopped.
+ */
+public class TrackingReceiver implements Receiver {
+
+	private final Receiver m_receiver;
+	private final ActiveNotes m_notes = new ActiveNotes();
+
+	public TrackingReceiver(Receiver receiver) {
+		m_receiver = receiver;
+	}
+
+	/**
+	 * Returns the receiver to which messages are forwarded.
+	 *
+	 * @return
+	 */
+	public Receiver getReceiver() {
+		return m_receiver;
+	}
+
+	@Override
+	public void send(MidiMessage message, long timeStamp) {
+		if(message instanceof ShortMessage) {
+			ShortMessage shortMessage = (ShortMessage) message;
+			m_notes.update(Timeline.pack(shortMessage.getCommand(), shortMessage.getChannel(), shortMessage.getData1(),
+					shortMessage.getData2()));
+		}
+		m_receiver.send(message, timeStamp);
+	}
+
+	/**
+	 * Returns true if the key has been pressed and not yet released.
+	 *
+	 * @param channel
+	 * @param key
+	 * @return
+	 */
+	public boolean isOn(int channel, int key) {
+		return m_notes.isOn(channel, key);
+	}
+
+	public boolean isSilent() {
+		return m_notes.isEmpty();
+	}
+
+	/**
+	 * Sends a NOTE_OFF for each note still sounding.
+	 *
+	 * @return the number of NOTE_OFFs sent.
+	 * @throws InvalidMidiDataException
+	 */
+	public int releaseAll() throws InvalidMidiDataException {
+		int result = 0;
+		for(int channel = 0; channel < ActiveNotes.CHANNELS; channel++) {
+			for(int key = m_notes.nextKey(channel, 0); key >= 0; key = m_notes.nextKey(channel, key + 1)) {
+				m_receiver.send(MessageCache.get(ShortMessage.NOTE_OFF, channel, key, 0), -1L);
+				result++;
+			}
+		}
+		m_notes.clear();
+		return result;
+	}
+
+	@Override
+	public void close() {
+		m_receiver.close();
+	}
+}
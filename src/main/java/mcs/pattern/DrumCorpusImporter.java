@@ -0,0 +1,513 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.pattern;
+
+import mcs.melody.Time;
+import mcs.melody.Timeline;
+import mcs.midi.Drum;
+import mcs.midi.SmfReader;
+import mcs.utils.FileUtils;
+import mcs.utils.StringUtils;
+
+import javax.sound.midi.ShortMessage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports a folder of drum MIDI files into a {@link PatternLibrary}, each file being split into one {@link DrumPattern} by
+ * non-empty bar.
+ * <p>
+ * Files are parsed on a fixed number of worker threads. Patterns are normalized to
+ * {@link Pattern#DEFAULT_PATTERN_TICKS_PER_BEAT} and named after the relative path of their file and their bar index. The
+ * library comes with a manifest (same name, {@link #MANIFEST_EXTENSION} appended) giving the source of each pattern: on the
+ * next run, the files whose size and modification time did not change are not parsed again, their patterns are copied from
+ * the previous library. Files that cannot be parsed or hold no drum note are recorded with bar -1 and no pattern.
+ */
+public class DrumCorpusImporter {
+
+	public static final File DEFAULT_CORPUS_DIR = new File("./midi/Instant Drum Patterns/");
+	public static final String MANIFEST_EXTENSION = ".manifest";
+	public static final String MANIFEST_HEADER = "# pattern;source;bar;source size;source last modified";
+
+	static final int QUEUE_SIZE = 64; // Files waiting for a worker, the caller parses the next ones when it is full
+
+	private final File m_corpusDir;
+	private final File m_libraryFile;
+	private final int m_threads;
+
+	/**
+	 * Statistics of a run.
+	 */
+	public static class Report {
+
+		private int m_files = 0;
+		private int m_parsedFiles = 0;
+		private int m_failedFiles = 0;
+		private int m_patterns = 0;
+		private long m_duration_ms = 0;
+		private boolean m_written = false;
+
+		public int getFiles() {
+			return m_files;
+		}
+
+		public int getParsedFiles() {
+			return m_parsedFiles;
+		}
+
+		/**
+		 * Returns the number of files parsed in this run that could not be read, they are not in the library.
+		 *
+		 * @return
+		 */
+		public int getFailedFiles() {
+			return m_failedFiles;
+		}
+
+		public int getPatterns() {
+			return m_patterns;
+		}
+
+		public long getDuration_ms() {
+			return m_duration_ms;
+		}
+
+		/**
+		 * Tells if the library has been written, false when it was up to date.
+		 *
+		 * @return
+		 */
+		public boolean isWritten() {
+			return m_written;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d files (%d parsed, %d failed), %d patterns in %d ms, %.0f files/s", m_files, m_parsedFiles,
+					m_failedFiles, m_patterns, m_duration_ms, m_files * 1000.0 / Math.max(1, m_duration_ms));
+		}
+	}
+
+	/**
+	 * Source of a pattern, as written in the manifest.
+	 */
+	static class Provenance {
+
+		final String pattern;
+		final String source; // Path relative to the corpus, separated with '/'
+		final int bar;
+		final long sourceSize;
+		final long sourceLastModified_ms;
+
+		Provenance(String pattern, String source, int bar, long sourceSize, long sourceLastModified_ms) {
+			this.pattern = pattern;
+			this.source = source;
+			this.bar = bar;
+			this.sourceSize = sourceSize;
+			this.sourceLastModified_ms = sourceLastModified_ms;
+		}
+
+		String toManifestLine() {
+			return pattern + ";" + source + ";" + bar + ";" + sourceSize + ";" + sourceLastModified_ms;
+		}
+
+		static Provenance fromManifestLine(String line) {
+			String[] fields = line.split(";");
+			if(fields.length != 5) {
+				return null;
+			}
+			try {
+				return new Provenance(fields[0], fields[1], Integer.parseInt(fields[2]), Long.parseLong(fields[3]),
+						Long.parseLong(fields[4]));
+			} catch(NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * @param corpusDir   Read recursively, files ending with '.mid' (any case) are imported.
+	 * @param libraryFile
+	 * @param threads     Number of worker threads.
+	 */
+	public DrumCorpusImporter(File corpusDir, File libraryFile, int threads) {
+		m_corpusDir = corpusDir;
+		m_libraryFile = libraryFile;
+		m_threads = threads;
+	}
+
+	public File getManifestFile() {
+		return new File(m_libraryFile.getPath() + MANIFEST_EXTENSION);
+	}
+
+	/**
+	 * Imports the corpus. The library and its manifest are replaced only if a file has been added, removed or modified.
+	 *
+	 * @return
+	 * @throws IOException If the library cannot be written.
+	 */
+	public Report run() throws IOException {
+		long start_ms = System.currentTimeMillis();
+		Report result = new Report();
+
+		List<String> sources = new ArrayList<>();
+		listMidiFiles(m_corpusDir, "", sources);
+		result.m_files = sources.size();
+
+		// Previous run, grouped by source
+		Map<String, List<Provenance>> previous = readManifest();
+		PatternLibrary previousLibrary = m_libraryFile.exists() && !previous.isEmpty() ? PatternLibrary.open(m_libraryFile) : null;
+
+		// Parsing new and modified files on the workers, in order of submission
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(m_threads, m_threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadPoolExecutor.CallerRunsPolicy());
+		List<Future<DrumPattern[]>> parsed = new ArrayList<>();
+		boolean changed = previousLibrary == null || !sources.containsAll(previous.keySet());
+		try {
+			for(final String source : sources) {
+				final File file = new File(m_corpusDir, source);
+				List<Provenance> provenances = previous.get(source);
+				if(previousLibrary != null && provenances != null && provenances.get(0).sourceSize == file.length()
+						&& provenances.get(0).sourceLastModified_ms == file.lastModified()) {
+					parsed.add(null); // Unchanged
+					continue;
+				}
+				changed = true;
+				parsed.add(executor.submit(new Callable<DrumPattern[]>() {
+					@Override
+					public DrumPattern[] call() throws IOException {
+						return split(file);
+					}
+				}));
+			}
+
+			if(!changed) {
+				for(List<Provenance> provenances : previous.values()) {
+					for(Provenance provenance : provenances) {
+						result.m_patterns += provenance.bar < 0 ? 0 : 1;
+					}
+				}
+				result.m_duration_ms = System.currentTimeMillis() - start_ms;
+				return result;
+			}
+
+			// The writer replaces the previous library once complete
+			StringBuilder manifest = new StringBuilder(MANIFEST_HEADER + "\n");
+			try(PatternLibrary.Writer writer = new PatternLibrary.Writer(m_libraryFile)) {
+				try {
+					for(int index = 0; index < sources.size(); index++) {
+						String source = sources.get(index);
+						File file = new File(m_corpusDir, source);
+						if(parsed.get(index) == null) {
+							for(Provenance provenance : previous.get(source)) {
+								if(provenance.bar >= 0) {
+									writer.add(provenance.pattern, previousLibrary.getDrumPattern(provenance.pattern));
+									result.m_patterns++;
+								}
+								manifest.append(provenance.toManifestLine()).append('\n');
+							}
+							continue;
+						}
+
+						DrumPattern[] bars;
+						try {
+							bars = parsed.get(index).get();
+							result.m_parsedFiles++;
+						} catch(ExecutionException e) {
+							FileUtils.log("Cannot import '%s': %s", source, e.getCause().getMessage());
+							bars = new DrumPattern[0];
+							result.m_failedFiles++;
+						}
+						if(isEmpty(bars)) { // Recorded so that the file is not parsed again while unchanged
+							Provenance provenance = new Provenance("", source, -1, file.length(), file.lastModified());
+							manifest.append(provenance.toManifestLine()).append('\n');
+							continue;
+						}
+						String name = toPatternName(source);
+						for(int bar = 0; bar < bars.length; bar++) {
+							if(bars[bar] != null) {
+								Provenance provenance = new Provenance(String.format("%s_%03d", name, bar + 1), source, bar,
+										file.length(), file.lastModified());
+								writer.add(provenance.pattern, bars[bar]);
+								manifest.append(provenance.toManifestLine()).append('\n');
+								result.m_patterns++;
+							}
+						}
+					}
+				} catch(IOException | InterruptedException | RuntimeException e) {
+					writer.abort(); // The previous library is kept
+					throw e;
+				}
+			}
+			FileUtils.writeToFile(manifest.toString(), getManifestFile(), StringUtils.DEFAULT_ENCODING, false);
+			result.m_written = true;
+		} catch(InterruptedException e) {
+			throw new IOException("Import interrupted", e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		result.m_duration_ms = System.currentTimeMillis() - start_ms;
+		return result;
+	}
+
+	private static boolean isEmpty(DrumPattern[] bars) {
+		for(DrumPattern bar : bars) {
+			if(bar != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Map<String, List<Provenance>> readManifest() {
+		Map<String, List<Provenance>> result = new HashMap<>();
+		File manifestFile = getManifestFile();
+		if(!manifestFile.exists()) {
+			return result;
+		}
+		try {
+			for(String line : FileUtils.readLines(manifestFile)) {
+				if(line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				Provenance provenance = Provenance.fromManifestLine(line);
+				if(provenance == null) {
+					FileUtils.log("Ignoring pattern manifest '%s': invalid line '%s'", manifestFile.getName(), line);
+					return new HashMap<>();
+				}
+				List<Provenance> provenances = result.get(provenance.source);
+				if(provenances == null) {
+					provenances = new ArrayList<>();
+					result.put(provenance.source, provenances);
+				}
+				provenances.add(provenance);
+			}
+		} catch(IOException e) {
+			FileUtils.log("Cannot read pattern manifest '%s': %s", manifestFile.getName(), e.getMessage());
+			return new HashMap<>();
+		}
+		return result;
+	}
+
+	/**
+	 * Lists the MIDI files under 'dir', sorted, as paths relative to the corpus.
+	 */
+	private static void listMidiFiles(File dir, String prefix, List<String> result) {
+		File[] files = dir.listFiles();
+		if(files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for(File file : files) {
+			if(file.isDirectory()) {
+				listMidiFiles(file, prefix + file.getName() + "/", result);
+			} else if(file.getName().toLowerCase().endsWith(".mid")) {
+				result.add(prefix + file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Builds a pattern name from the path of its source: lower case, extension removed, other characters than letters and
+	 * digits replaced with '_'.
+	 *
+	 * @param source
+	 * @return
+	 */
+	static String toPatternName(String source) {
+		String name = source.toLowerCase();
+		int extension = name.lastIndexOf('.');
+		if(extension > name.lastIndexOf('/')) {
+			name = name.substring(0, extension);
+		}
+		return name.replaceAll("[^a-z0-9]+", "_");
+	}
+
+	//
+	// MIDI parsing
+	//
+
+	/**
+	 * Splits the drum notes (channel {@link Drum#CHANNEL}) of a Standard MIDI File into one pattern by bar, normalized to
+	 * {@link Pattern#DEFAULT_PATTERN_TICKS_PER_BEAT} by beat of the time signature. Notes are cut at the end of their bar.
+	 *
+	 * @param midiFile
+	 * @return The pattern of each bar, null for empty bars.
+	 * @throws IOException If the file is not a valid MIDI file.
+	 */
+	static DrumPattern[] split(File midiFile) throws IOException {
+		SmfReader reader = SmfReader.open(midiFile);
+		int resolution = reader.getDivision();
+		Notes notes = new Notes();
+		for(int track = 0; track < reader.getTrackCount(); track++) {
+			reader.accept(track, notes);
+			notes.releaseAll();
+		}
+
+		Time.TimeSignature timeSignature = notes.timeSignature == null ? DrumPattern.DEFAULT_TIME_SIGNATURE : notes.timeSignature;
+		long barLength = getBarLength_ticks(timeSignature, resolution);
+		long patternBarLength = timeSignature.getTicksInBar(Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT);
+
+		int bars = 0;
+		for(int index = 0; index < notes.size; index++) {
+			bars = (int) Math.max(bars, notes.starts[index] / barLength + 1);
+		}
+		DrumPattern[] result = new DrumPattern[bars];
+		for(int index = 0; index < notes.size; index++) {
+			int bar = (int) (notes.starts[index] / barLength);
+			long barStart = bar * barLength;
+			long start = normalize(notes.starts[index] - barStart, timeSignature, resolution);
+			long stop = Math.min(patternBarLength, normalize(notes.stops[index] - barStart, timeSignature, resolution));
+			if(start >= patternBarLength) { // Rounded to the next bar
+				continue;
+			}
+			if(result[bar] == null) {
+				result[bar] = new DrumPattern(timeSignature, Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT);
+			}
+			result[bar].add(notes.keys[index], notes.velocities[index], start, Math.max(start + 1, stop));
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the drum notes of a MIDI file, with absolute ticks, one track after the other.
+	 */
+	private static class Notes extends SmfReader.Visitor {
+
+		int size = 0;
+		long[] starts = new long[256];
+		long[] stops = new long[256];
+		int[] keys = new int[256];
+		int[] velocities = new int[256];
+		Time.TimeSignature timeSignature = null; // First one of the file
+
+		// Notes playing in the current track, by key
+		final long[] pendingStarts = new long[128];
+		final int[] pendingVelocities = new int[128];
+
+		Notes() {
+			Arrays.fill(pendingStarts, -1);
+		}
+
+		@Override
+		public void visitMessage(int track, long tick, int message) {
+			if(Timeline.getChannel(message) != Drum.CHANNEL) {
+				return;
+			}
+			int command = Timeline.getCommand(message);
+			int key = Timeline.getData1(message);
+			int velocity = Timeline.getData2(message);
+			if(command == ShortMessage.NOTE_ON && velocity > 0) {
+				if(pendingStarts[key] >= 0) { // Retriggered
+					add(pendingStarts[key], tick, key, pendingVelocities[key]);
+				}
+				pendingStarts[key] = tick;
+				pendingVelocities[key] = velocity;
+			} else if((command == ShortMessage.NOTE_OFF || command == ShortMessage.NOTE_ON) && pendingStarts[key] >= 0) {
+				add(pendingStarts[key], tick, key, pendingVelocities[key]);
+				pendingStarts[key] = -1;
+			}
+		}
+
+		@Override
+		public void visitMetaEvent(int track, long tick, int type, ByteBuffer data) {
+			if(type == SmfReader.META_TIME_SIGNATURE && data.remaining() >= 2 && timeSignature == null) {
+				timeSignature = new Time.TimeSignature(data.get(data.position()), 1 << data.get(data.position() + 1));
+			}
+		}
+
+		/**
+		 * Ends the notes never released at the end of a track.
+		 */
+		void releaseAll() {
+			for(int key = 0; key < pendingStarts.length; key++) {
+				if(pendingStarts[key] >= 0) {
+					add(pendingStarts[key], pendingStarts[key], key, pendingVelocities[key]);
+					pendingStarts[key] = -1;
+				}
+			}
+		}
+
+		void add(long start, long stop, int key, int velocity) {
+			if(size == starts.length) {
+				starts = Arrays.copyOf(starts, size * 2);
+				stops = Arrays.copyOf(stops, size * 2);
+				keys = Arrays.copyOf(keys, size * 2);
+				velocities = Arrays.copyOf(velocities, size * 2);
+			}
+			starts[size] = start;
+			stops[size] = stop;
+			keys[size] = key;
+			velocities[size] = velocity;
+			size++;
+		}
+	}
+
+	/**
+	 * Returns the length of a bar in the ticks of a MIDI file, which divide quarter notes: a bar of 6/8 lasts 3 quarter
+	 * notes.
+	 *
+	 * @param timeSignature
+	 * @param resolution Ticks per quarter note.
+	 * @return
+	 */
+	private static long getBarLength_ticks(Time.TimeSignature timeSignature, int resolution) {
+		return (long) timeSignature.getBeatsInBar() * resolution * 4 / timeSignature.getBeatDivision();
+	}
+
+	/**
+	 * Converts ticks of a MIDI file to pattern ticks, {@link Pattern#DEFAULT_PATTERN_TICKS_PER_BEAT} by beat of the time
+	 * signature: a beat lasts 'resolution * 4 / beatDivision' ticks of the file.
+	 *
+	 * @param ticks
+	 * @param timeSignature
+	 * @param resolution Ticks per quarter note.
+	 * @return
+	 */
+	private static long normalize(long ticks, Time.TimeSignature timeSignature, int resolution) {
+		long scaled = ticks * Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT * timeSignature.getBeatDivision();
+		long wholeNote = 4L * resolution;
+		return (scaled + wholeNote / 2) / wholeNote;
+	}
+
+	/**
+	 * Arguments (all optional): library file, corpus folder, number of threads.
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		File libraryFile = new File(args.length > 0 ? args[0] : "drums" + PatternLibrary.FILE_EXTENSION);
+		File corpusDir = args.length > 1 ? new File(args[1]) : DEFAULT_CORPUS_DIR;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		Report report = new DrumCorpusImporter(corpusDir, libraryFile, threads).run();
+		FileUtils.log("%s: %s%s", libraryFile.getName(), report, report.isWritten() ? "" : ", up to date");
+	}
+}
@@ -16,80 +16,99 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package mcs.pattern;
 
 import mcs.melody.Note;
-import mcs.midi.Drum;
-import mcs.utils.FileUtils;
+import mcs.melody.Time;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiEvent;
-import javax.sound.midi.ShortMessage;
 import javax.sound.midi.Track;
 import java.io.File;
 import java.io.IOException;
 
-public class DrumPattern {
+public class DrumPattern extends Pattern {
 
-	public static long importPattern(File patternFile, Track track, long tickStart) throws IOException, InvalidMidiDataException {
-
-		long result = tickStart;
-		int channel = Drum.CHANNEL;
-
-		int tickPerBeatsFactor = 1;
+	public static final Time.TimeSignature DEFAULT_TIME_SIGNATURE = new Time.TimeSignature(4, 4);
 
-		// Reading options
-		for(String line : FileUtils.readLines(patternFile)) {
-			// Reading options
-			if(line.contains("=")) {
-				String[] words = line.split("=");
-				String name = words[0];
-				String valueStr = words[1];
+	public DrumPattern(Time.TimeSignature timeSignature, int ticksPerBeat) {
+		super(timeSignature, ticksPerBeat);
+	}
 
-				if(Pattern.OPTION_TICKS_PER_BEAT.equalsIgnoreCase(name)) {
-					int ticksPerBeat = Integer.valueOf(valueStr);
-					tickPerBeatsFactor = Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT / ticksPerBeat;
-				}
+	/**
+	 * Writes the pattern in the .dpt format, one key by line.
+	 *
+	 * @return
+	 */
+	public String getContent() {
+		StringBuilder result = new StringBuilder();
+		result.append(Pattern.OPTION_TICKS_PER_BEAT + "=" + m_ticksPerBeat + "\n");
+
+		for(int i = 0; i < m_events.size(); i++) {
+			for(int rank = 0; rank < m_events.getLevelCount(i); rank++) {
+				result.append(m_events.getLevel(i, rank)).append(';');
+				result.append(m_events.getStart(i)).append(';').append(m_events.getDuration_ticks(i)).append(';');
+				result.append(m_events.getVelocity(i)).append('\n');
 			}
 		}
 
-		for(String line : FileUtils.readLines(patternFile)) {
-
-			if(line.length() > 0 && !line.startsWith("#") && !line.contains("=")) {
-
-				// Pattern
-
-				String[] words = line.split(";");
-				String keys = words[0];
-				int tick = Integer.valueOf(words[1]);
-				int duration = Integer.valueOf(words[2]);
-				int velocity = Pattern.parseVelocity(words[3]);
-
-				if(keys.contains(",")) {
-					for(String keyStr : keys.split(",")) {
-						int key = Integer.valueOf(keyStr);
+		return result.toString();
+	}
 
-						if(key != Note.NULL) {
-							track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, key, velocity),
-									tickStart + tickPerBeatsFactor * tick));
-							track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, key, velocity),
-									tickStart + tickPerBeatsFactor * (tick + duration)));
-						}
+	public static DrumPattern load(File patternFile) throws IOException {
+		try(PatternReader reader = PatternReader.open(patternFile)) {
+			return load(reader);
+		}
+	}
 
-						result = Math.max(result, tickStart + tickPerBeatsFactor * (tick + duration));
-					}
-				} else {
-					int key = Integer.valueOf(words[0]);
-					if(key != Note.NULL) {
-						track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, key, velocity),
-								tickStart + tickPerBeatsFactor * tick));
-						track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, key, velocity),
-								tickStart + tickPerBeatsFactor * (tick + duration)));
+	/**
+	 * Reads a pattern in a single pass. Options must come before the events.
+	 *
+	 * @param reader
+	 * @return
+	 * @throws IOException If the content is malformed, with the line number.
+	 */
+	public static DrumPattern load(PatternReader reader) throws IOException {
+		int ticksPerBeat = 4;
+		DrumPattern result = null;
+
+		while(reader.next()) {
+			if(reader.isOption()) {
+				if(reader.isOption(Pattern.OPTION_TICKS_PER_BEAT)) {
+					if(result != null) {
+						throw reader.error("option '" + Pattern.OPTION_TICKS_PER_BEAT + "' after events");
 					}
+					ticksPerBeat = reader.getOptionValue();
+				}
+				continue;
+			}
 
-					result = Math.max(result, tickStart + tickPerBeatsFactor * (tick + duration));
+			if(result == null) {
+				result = new DrumPattern(DEFAULT_TIME_SIGNATURE, ticksPerBeat);
+			}
+
+			// keys;tick;duration;velocity
+			reader.requireFields(4);
+			int tick = reader.getValue(1);
+			int duration = reader.getValue(2);
+			int velocity = reader.getValue(3);
+			for(int index = 0; index < reader.getValueCount(0); index++) {
+				int key = reader.getValue(0, index);
+				if(key != Note.NULL) {
+					result.add(key, velocity, tick, tick + duration);
 				}
 			}
 		}
 
-		return result;
+		return result == null ? new DrumPattern(DEFAULT_TIME_SIGNATURE, ticksPerBeat) : result;
+	}
+
+	/**
+	 * Reads the file at each call, see {@link PatternCache} to import it repeatedly.
+	 *
+	 * @param patternFile
+	 * @param track
+	 * @param tickStart
+	 * @return The tick index at the end
+	 */
+	public static long importPattern(File patternFile, Track track, long tickStart) throws IOException, InvalidMidiDataException {
+		return PatternCache.CachedPattern.parse(patternFile, true).importPattern(track, tickStart);
 	}
 
 }
\ No newline at end of file
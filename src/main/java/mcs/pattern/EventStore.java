@@ -0,0 +1,203 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.pattern;
+
+import mcs.melody.Block;
+
+import java.util.Arrays;
+
+/**
+ * An {@link EventStore} holds the events of a {@link Pattern} or a {@link Block} in parallel primitive arrays (one column per
+ * field) sorted by start tick, events starting at the same tick being kept in insertion order. The events of a range of
+ * ticks are found by binary search, then read by index without creating any object.
+ * <p>
+ * The levels of all events are stored in a single pool. Each event refers to its levels by a span packed in an int: offset in
+ * the pool &lt;&lt; 8 | number of levels.
+ */
+public class EventStore {
+
+	private static final int MAX_LEVELS = 0xFF; // Levels in one event
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] m_starts = new long[INITIAL_CAPACITY];
+	private int[] m_durations = new int[INITIAL_CAPACITY];
+	private byte[] m_velocities = new byte[INITIAL_CAPACITY];
+	private int[] m_levelSpans = new int[INITIAL_CAPACITY];
+	private int m_size = 0;
+
+	private int[] m_levels = new int[INITIAL_CAPACITY];
+	private int m_levelCount = 0;
+
+	/**
+	 * Returns the number of events.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return m_size;
+	}
+
+	public boolean isEmpty() {
+		return m_size == 0;
+	}
+
+	/**
+	 * Adds an event. It is placed after the events starting at the same tick.
+	 *
+	 * @param levels
+	 * @param velocity  0 to 127.
+	 * @param tickStart
+	 * @param tickStop
+	 */
+	public void add(int[] levels, int velocity, long tickStart, long tickStop) {
+		long duration = tickStop - tickStart;
+		if(tickStart < 0 || duration < 0 || duration > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid event from tick " + tickStart + " to " + tickStop);
+		}
+		if(velocity < 0 || velocity > 127) {
+			throw new IllegalArgumentException("Invalid velocity: " + velocity);
+		}
+		if(levels.length > MAX_LEVELS || m_levelCount + levels.length > Integer.MAX_VALUE >> 8) {
+			throw new IllegalArgumentException("Too many levels");
+		}
+
+		// Levels are appended to the pool, whatever the position of the event
+		if(m_levelCount + levels.length > m_levels.length) {
+			m_levels = Arrays.copyOf(m_levels, Math.max(2 * m_levels.length, m_levelCount + levels.length));
+		}
+		System.arraycopy(levels, 0, m_levels, m_levelCount, levels.length);
+		int span = m_levelCount << 8 | levels.length;
+		m_levelCount += levels.length;
+
+		if(m_size == m_starts.length) {
+			int capacity = 2 * m_size;
+			m_starts = Arrays.copyOf(m_starts, capacity);
+			m_durations = Arrays.copyOf(m_durations, capacity);
+			m_velocities = Arrays.copyOf(m_velocities, capacity);
+			m_levelSpans = Arrays.copyOf(m_levelSpans, capacity);
+		}
+
+		// Events are usually added in order, then nothing has to be moved
+		int index = indexOf(tickStart + 1);
+		int moved = m_size - index;
+		if(moved > 0) {
+			System.arraycopy(m_starts, index, m_starts, index + 1, moved);
+			System.arraycopy(m_durations, index, m_durations, index + 1, moved);
+			System.arraycopy(m_velocities, index, m_velocities, index + 1, moved);
+			System.arraycopy(m_levelSpans, index, m_levelSpans, index + 1, moved);
+		}
+		m_starts[index] = tickStart;
+		m_durations[index] = (int) duration;
+		m_velocities[index] = (byte) velocity;
+		m_levelSpans[index] = span;
+		m_size++;
+	}
+
+	/**
+	 * Returns the index of the first event starting at or after 'tick'. Returns {@link #size()} if there is no such event. The
+	 * events starting in [from, to) are those from indexOf(from) included to indexOf(to) excluded.
+	 *
+	 * @param tick
+	 * @return
+	 */
+	public int indexOf(long tick) {
+		int low = 0;
+		int high = m_size;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(m_starts[middle] < tick) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	public long getStart(int index) {
+		checkIndex(index);
+		return m_starts[index];
+	}
+
+	public int getDuration_ticks(int index) {
+		checkIndex(index);
+		return m_durations[index];
+	}
+
+	public int getVelocity(int index) {
+		checkIndex(index);
+		return m_velocities[index];
+	}
+
+	public int getLevelCount(int index) {
+		checkIndex(index);
+		return m_levelSpans[index] & MAX_LEVELS;
+	}
+
+	/**
+	 * Returns the level #'rank' of the event.
+	 *
+	 * @param index
+	 * @param rank  0 to {@link #getLevelCount(int)} excluded.
+	 * @return
+	 */
+	public int getLevel(int index, int rank) {
+		checkIndex(index);
+		int span = m_levelSpans[index];
+		if(rank < 0 || rank >= (span & MAX_LEVELS)) {
+			throw new IndexOutOfBoundsException("Level #" + rank + " of event #" + index);
+		}
+		return m_levels[(span >>> 8) + rank];
+	}
+
+	/**
+	 * Returns a copy of the levels of the event.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int[] getLevels(int index) {
+		checkIndex(index);
+		int span = m_levelSpans[index];
+		int offset = span >>> 8;
+		return Arrays.copyOfRange(m_levels, offset, offset + (span & MAX_LEVELS));
+	}
+
+	/**
+	 * Returns the event as an {@link Event}.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public Event getEvent(int index) {
+		return new Event(getLevels(index), getVelocity(index), getDuration_ticks(index));
+	}
+
+	/**
+	 * Returns the total number of levels, all events included.
+	 *
+	 * @return
+	 */
+	public int getTotalLevelCount() {
+		return m_levelCount;
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= m_size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + m_size);
+		}
+	}
+}
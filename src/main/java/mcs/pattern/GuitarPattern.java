@@ -6,17 +6,19 @@
 
 package mcs.pattern;
 
-import mcs.gui.components.GuitarNeck;
+import mcs.melody.Chord;
 import mcs.utils.FileUtils;
 import mcs.utils.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 public class GuitarPattern {
 
-	public static final String STANDARD_GUITAR_TUNING = "E2 A2 D3 G3 B3 E4";
-	public static final String HEADER = String.format("[tuning=%s]", STANDARD_GUITAR_TUNING);
+	public static final String STANDARD_GUITAR_TUNING = Tuning.STANDARD.toString();
+	public static final String HEADER_FORMAT = "[tuning=%s]";
+	public static final String HEADER = String.format(HEADER_FORMAT, STANDARD_GUITAR_TUNING);
 
 	public static final int FINGER_INDEX = 1;
 	public static final int FINGER_MIDDLE = 2;
@@ -24,36 +26,45 @@ public class GuitarPattern {
 	public static final int FINGER_LITTLE = 4;
 	public static final int FINGER_THUMB = 5;
 
-	private static final StringFingering NOT_PLAYED = new StringFingering(0, 0, 0);
+	private static final StringFingering NOT_PLAYED = new StringFingering(Chord.NULL_INTERVAL, 0, 0);
 
-	private final int[] m_tunning;
+	private final Tuning m_tuning;
 	private final StringFingering[] m_fingerings;
 
 	public GuitarPattern() {
-		m_tunning = GuitarNeck.TUNING_STANDARD;
-		m_fingerings = new StringFingering[6];
+		this(Tuning.STANDARD);
+	}
+
+	public GuitarPattern(Tuning tuning) {
+		m_tuning = tuning;
+		m_fingerings = new StringFingering[tuning.size()];
+		for(int string = 1; string <= m_fingerings.length; string++) {
+			clear(string);
+		}
 	}
 
 	public GuitarPattern(GuitarPattern other) {
-		m_tunning = other.m_tunning;
-		m_fingerings = new StringFingering[6];
-		for(int string = 1; string <= 6; string++) {
+		m_tuning = other.m_tuning;
+		m_fingerings = new StringFingering[other.m_fingerings.length];
+		for(int string = 1; string <= m_fingerings.length; string++) {
 			m_fingerings[string - 1] = new StringFingering(other.getFingering(string));
 		}
 	}
 
 	public GuitarPattern(File input) throws IOException {
-		this();
+		this(input, FileUtils.readLines(input));
+	}
+
+	private GuitarPattern(File input, List<String> lines) throws IOException {
+		this(readTuning(input, lines.isEmpty() ? "" : lines.get(0)));
 
 		int l = 0;
-		for(String line : FileUtils.readLines(input)) {
-			if(l == 0) {
-				// Checking header
-				if(!HEADER.equals(line)) {
-					throw new IOException("Unexpected header in file: " + input.getAbsolutePath());
-				}
-			} else {
+		for(String line : lines) {
+			if(l > 0) {
 				int string = Integer.valueOf(line.split("=")[0]);
+				if(string < 1 || string > m_fingerings.length) {
+					throw new IOException("Unexpected string " + string + " in file: " + input.getAbsolutePath());
+				}
 
 				String paramStr = line.split("=")[1];
 
@@ -72,13 +83,33 @@ public class GuitarPattern {
 		}
 	}
 
+	/**
+	 * Reads the tuning in the header of 'input'.
+	 *
+	 * @param input
+	 * @param header
+	 * @return
+	 * @throws IOException If the header is not a valid tuning.
+	 */
+	static Tuning readTuning(File input, String header) throws IOException {
+		String prefix = HEADER_FORMAT.substring(0, HEADER_FORMAT.indexOf('%'));
+		Tuning result = null;
+		if(header.startsWith(prefix) && header.endsWith("]")) {
+			result = Tuning.parse(header.substring(prefix.length(), header.length() - 1));
+		}
+		if(result == null) {
+			throw new IOException("Unexpected header in file: " + input.getAbsolutePath());
+		}
+		return result;
+	}
+
 	public void add(int string, int interval, int abscissa, int finger) {
 		StringFingering fingering = new StringFingering(interval, abscissa, finger);
 		m_fingerings[string - 1] = fingering;
 	}
 
 	public void clear(int string) {
-		m_fingerings[string - 1] = NOT_PLAYED;
+		m_fingerings[string - 1] = new StringFingering(NOT_PLAYED);
 	}
 
 	public StringFingering getFingering(int string) {
@@ -86,7 +117,20 @@ public class GuitarPattern {
 	}
 
 	public int[] getTunning() {
-		return m_tunning;
+		return m_tuning.getNotes();
+	}
+
+	public Tuning getTuning() {
+		return m_tuning;
+	}
+
+	/**
+	 * Returns the number of strings, given by the tuning.
+	 *
+	 * @return
+	 */
+	public int getStrings() {
+		return m_fingerings.length;
 	}
 
 	/**
@@ -98,7 +142,7 @@ public class GuitarPattern {
 		int leftFret = Integer.MAX_VALUE;
 		int rightFret = Integer.MIN_VALUE;
 		for(StringFingering fingering : m_fingerings) {
-			if(!fingering.isPlayed()) {
+			if(fingering.isPlayed()) {
 				leftFret = Math.min(leftFret, fingering.getAbscissa());
 				rightFret = Math.max(rightFret, fingering.getAbscissa());
 			}
@@ -114,15 +158,15 @@ public class GuitarPattern {
 	 */
 	public void setLeftFret(int fret) {
 		int lowestAbscissa = Integer.MAX_VALUE;
-		for(int string = 1; string <= 6; string++) {
-			if(!m_fingerings[string - 1].isPlayed()) {
+		for(int string = 1; string <= m_fingerings.length; string++) {
+			if(m_fingerings[string - 1].isPlayed()) {
 				lowestAbscissa = Math.min(lowestAbscissa, m_fingerings[string - 1].getAbscissa());
 			}
 		}
 		int abscissaOffset = fret - lowestAbscissa;
-		for(int string = 1; string <= 6; string++) {
+		for(int string = 1; string <= m_fingerings.length; string++) {
 			StringFingering fingering = m_fingerings[string - 1];
-			if(!fingering.isPlayed()) {
+			if(fingering.isPlayed()) {
 				fingering.setAbscissa(fingering.getAbscissa() + abscissaOffset);
 			}
 		}
@@ -163,7 +207,7 @@ public class GuitarPattern {
 		}
 
 		public boolean isPlayed() {
-			return m_interval != NOT_PLAYED.m_interval || m_abscissa != NOT_PLAYED.m_abscissa || m_finger != NOT_PLAYED.m_finger;
+			return m_interval != Chord.NULL_INTERVAL;
 		}
 	}
 
@@ -174,8 +218,8 @@ public class GuitarPattern {
 
 	public String getContent() {
 		StringBuilder content = new StringBuilder();
-		content.append(HEADER + "\n");
-		for(int string = 6; string >= 1; string--) {
+		content.append(String.format(HEADER_FORMAT, m_tuning)).append("\n");
+		for(int string = m_fingerings.length; string >= 1; string--) {
 			StringFingering fingering = getFingering(string);
 			if(!fingering.isPlayed()) {
 				content.append(String.format("%d=X\n", string));
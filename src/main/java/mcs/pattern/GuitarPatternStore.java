@@ -6,22 +6,220 @@
 
 package mcs.pattern;
 
+import mcs.melody.PitchClassSet;
 import mcs.utils.FileUtils;
 import mcs.utils.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
+/**
+ * Stores the {@link GuitarPattern}s of a directory, one '.gpt' file per pattern.
+ * <p>
+ * The patterns are described in a sidecar index file ({@link #INDEX_FILE_NAME}) giving for each one its chord quality, the set
+ * of intervals it plays, the string playing its root and its fret span. Opening a store only reads that index: the files are
+ * parsed when a pattern is first requested. Files that are not in the index, or whose size or modification time changed, are
+ * parsed at opening and the index is rewritten. The index is local to a checkout, which does not keep modification times:
+ * it is not versioned, and built at first opening.
+ * <p>
+ * Patterns are looked up by name or with {@link #find(String, PitchClassSet, int, int)}. The returned collections are
+ * unmodifiable views of the store at the time of the call.
+ */
 public class GuitarPatternStore {
 
 	public static final File DEFAULT_PATTERN_DIR = new File("./pattern/guitar/");
-	public static final String GUITAR_PATTERN_FILE_REGEX = "([^\\.]+)\\.gpt";
+	public static final String GUITAR_PATTERN_FILE_EXTENSION = ".gpt";
+	public static final String INDEX_FILE_NAME = "gpt.index";
+	public static final String INDEX_HEADER = "# name;file size;last modified;quality;intervals mask;root string;span;tuning";
+
+	public static final int ANY = -1;
+
+	private final File m_dir;
+
+	private volatile Snapshot m_snapshot; // Replaced on each save
+
+	/**
+	 * Description of a stored pattern. The pattern itself is loaded on first access.
+	 */
+	public static class Entry {
+
+		private final String m_name;
+		private final File m_file;
+		private final long m_fileSize;
+		private final long m_lastModified_ms;
+		private final String m_quality;
+		private final PitchClassSet m_intervals;
+		private final int m_rootString;
+		private final int m_span;
+		private final Tuning m_tuning;
+
+		private GuitarPattern m_pattern; // Null until loaded
+
+		Entry(String name, File file, long fileSize, long lastModified_ms, String quality, PitchClassSet intervals,
+				int rootString, int span, Tuning tuning) {
+			m_name = name;
+			m_file = file;
+			m_fileSize = fileSize;
+			m_lastModified_ms = lastModified_ms;
+			m_quality = quality;
+			m_intervals = intervals;
+			m_rootString = rootString;
+			m_span = span;
+			m_tuning = tuning;
+		}
+
+		Entry(String name, File file, GuitarPattern pattern) {
+			this(name, file, file.length(), file.lastModified(), computeQuality(name), computeIntervals(pattern), computeRootString(pattern),
+					pattern.getWidth(), pattern.getTuning());
+			m_pattern = pattern;
+		}
+
+		public String getName() {
+			return m_name;
+		}
+
+		/**
+		 * Returns the chord quality, given by the pattern's name: 'm7' for 'm7_s2'.
+		 *
+		 * @return
+		 */
+		public String getQuality() {
+			return m_quality;
+		}
+
+		/**
+		 * Returns the intervals from the root played by the pattern.
+		 *
+		 * @return
+		 */
+		public PitchClassSet getIntervals() {
+			return m_intervals;
+		}
+
+		/**
+		 * Returns the lowest string playing the root.
+		 *
+		 * @return 1 for the lowest string, {@link #ANY} if the root is not played.
+		 */
+		public int getRootString() {
+			return m_rootString;
+		}
+
+		/**
+		 * Returns the number of frets covered by the pattern, see {@link GuitarPattern#getWidth()}.
+		 *
+		 * @return
+		 */
+		public int getSpan() {
+			return m_span;
+		}
+
+		public Tuning getTuning() {
+			return m_tuning;
+		}
+
+		public synchronized boolean isLoaded() {
+			return m_pattern != null;
+		}
+
+		/**
+		 * Returns the pattern, reading its file at first call.
+		 *
+		 * @return null if the file cannot be read.
+		 */
+		public synchronized GuitarPattern getPattern() {
+			if(m_pattern == null) {
+				try {
+					m_pattern = new GuitarPattern(m_file);
+				} catch(IOException e) {
+					FileUtils.log("Cannot load pattern '%s': %s", m_file.getName(), e.getMessage());
+				}
+			}
+			return m_pattern;
+		}
+
+		String toIndexLine() {
+			return m_name + ";" + m_fileSize + ";" + m_lastModified_ms + ";" + m_quality + ";" + m_intervals.getMask() + ";" + m_rootString + ";" + m_span
+					+ ";" + m_tuning;
+		}
+
+		/**
+		 * Returns true if 'file' was modified since this entry was indexed.
+		 *
+		 * @param file
+		 * @return
+		 */
+		boolean isStale(File file) {
+			return m_fileSize != file.length() || m_lastModified_ms != file.lastModified();
+		}
+
+		/**
+		 * Parses a line written by {@link #toIndexLine()}. Lines written before modification times were indexed are
+		 * rejected, so that their files are parsed again.
+		 *
+		 * @param dir
+		 * @param line
+		 * @return null if the line is malformed.
+		 */
+		static Entry fromIndexLine(File dir, String line) {
+			String[] fields = line.split(";");
+			if(fields.length != 8) {
+				return null;
+			}
+			Tuning tuning = Tuning.parse(fields[7]);
+			if(tuning == null) {
+				return null;
+			}
+			try {
+				return new Entry(fields[0], new File(dir, fields[0] + GUITAR_PATTERN_FILE_EXTENSION), Long.parseLong(fields[1]),
+						Long.parseLong(fields[2]), fields[3], PitchClassSet.of(Integer.parseInt(fields[4])),
+						Integer.parseInt(fields[5]), Integer.parseInt(fields[6]), tuning);
+			} catch(NumberFormatException e) {
+				return null;
+			}
+		}
+	}
 
-	private File m_dir;
+	/**
+	 * Immutable state of the store: entries by name and the indexes.
+	 */
+	static class Snapshot {
+		final Map<String, Entry> entries; // Sorted by name
+		final Map<String, List<Entry>> byQuality = new HashMap<>();
+		final Map<PitchClassSet, List<Entry>> byIntervals = new HashMap<>();
+		final Map<Integer, List<Entry>> byRootString = new HashMap<>();
+		final Map<Tuning, List<Entry>> byTuning = new HashMap<>();
 
-	Map<String, GuitarPattern> m_patterns;
+		Snapshot(Map<String, Entry> entries) {
+			this.entries = Collections.unmodifiableMap(entries);
+			for(Entry entry : entries.values()) {
+				add(byQuality, entry.m_quality, entry);
+				add(byIntervals, entry.m_intervals, entry);
+				add(byRootString, entry.m_rootString, entry);
+				add(byTuning, entry.m_tuning, entry);
+			}
+		}
+
+		static <K> void add(Map<K, List<Entry>> index, K key, Entry entry) {
+			List<Entry> entries = index.get(key);
+			if(entries == null) {
+				entries = new ArrayList<>();
+				index.put(key, entries);
+			}
+			entries.add(entry);
+		}
+	}
 
 	public GuitarPatternStore() {
 		this(DEFAULT_PATTERN_DIR);
@@ -29,49 +227,292 @@ public class GuitarPatternStore {
 
 	public GuitarPatternStore(File patternDir) {
 		m_dir = patternDir;
-		m_patterns = new TreeMap<>();
 		load();
 	}
 
+	/**
+	 * Returns the pattern named 'name', reading its file if not loaded yet.
+	 *
+	 * @param name
+	 * @return null if there is no such pattern.
+	 */
 	public GuitarPattern get(String name) {
-		return m_patterns.get(name);
+		Entry entry = m_snapshot.entries.get(name);
+		return entry == null ? null : entry.getPattern();
 	}
 
+	public Entry getEntry(String name) {
+		return m_snapshot.entries.get(name);
+	}
+
+	/**
+	 * Returns the names of the patterns, sorted.
+	 *
+	 * @return An unmodifiable view of the current patterns.
+	 */
+	public Set<String> getNames() {
+		return m_snapshot.entries.keySet();
+	}
+
+	/**
+	 * Returns the patterns by name, sorted. Patterns are read from their file when their value is requested.
+	 *
+	 * @return An unmodifiable view of the current patterns.
+	 */
 	public Map<String, GuitarPattern> getAll() {
-		return new TreeMap<>(m_patterns);
+		final Map<String, GuitarPatternStore.Entry> entries = m_snapshot.entries;
+		return new AbstractMap<String, GuitarPattern>() {
+			@Override
+			public Set<Map.Entry<String, GuitarPattern>> entrySet() {
+				return new AbstractSet<Map.Entry<String, GuitarPattern>>() {
+					@Override
+					public Iterator<Map.Entry<String, GuitarPattern>> iterator() {
+						final Iterator<GuitarPatternStore.Entry> iterator = entries.values().iterator();
+						return new Iterator<Map.Entry<String, GuitarPattern>>() {
+							@Override
+							public boolean hasNext() {
+								return iterator.hasNext();
+							}
+
+							@Override
+							public Map.Entry<String, GuitarPattern> next() {
+								final GuitarPatternStore.Entry entry = iterator.next();
+								return new SimpleImmutableEntry<String, GuitarPattern>(entry.m_name, null) {
+									@Override
+									public GuitarPattern getValue() {
+										return entry.getPattern();
+									}
+								};
+							}
+
+							@Override
+							public void remove() {
+								throw new UnsupportedOperationException();
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return entries.size();
+					}
+				};
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return entries.containsKey(key);
+			}
+
+			@Override
+			public GuitarPattern get(Object key) {
+				GuitarPatternStore.Entry entry = entries.get(key);
+				return entry == null ? null : entry.getPattern();
+			}
+
+			@Override
+			public Set<String> keySet() {
+				return entries.keySet();
+			}
+		};
+	}
+
+	/**
+	 * Returns the entries matching all the given criteria, whatever their tuning, sorted by name.
+	 *
+	 * @param quality    Null for any.
+	 * @param intervals  Null for any.
+	 * @param rootString {@link #ANY} for any.
+	 * @param maxSpan    {@link #ANY} for any.
+	 * @return
+	 */
+	public List<Entry> find(String quality, PitchClassSet intervals, int rootString, int maxSpan) {
+		return find(null, quality, intervals, rootString, maxSpan);
+	}
+
+	/**
+	 * Returns the entries matching all the given criteria, sorted by name.
+	 *
+	 * @param tuning     Null for any.
+	 * @param quality    Null for any.
+	 * @param intervals  Null for any.
+	 * @param rootString {@link #ANY} for any.
+	 * @param maxSpan    {@link #ANY} for any.
+	 * @return
+	 */
+	public List<Entry> find(Tuning tuning, String quality, PitchClassSet intervals, int rootString, int maxSpan) {
+		Snapshot snapshot = m_snapshot;
+
+		// Starting with the smallest candidates list
+		Collection<Entry> candidates = snapshot.entries.values();
+		if(tuning != null) {
+			candidates = smallest(candidates, snapshot.byTuning.get(tuning));
+		}
+		if(quality != null) {
+			candidates = smallest(candidates, snapshot.byQuality.get(quality));
+		}
+		if(intervals != null) {
+			candidates = smallest(candidates, snapshot.byIntervals.get(intervals));
+		}
+		if(rootString != ANY) {
+			candidates = smallest(candidates, snapshot.byRootString.get(rootString));
+		}
+
+		List<Entry> result = new ArrayList<>();
+		for(Entry entry : candidates) {
+			if((tuning == null || tuning.equals(entry.m_tuning))
+					&& (quality == null || quality.equals(entry.m_quality))
+					&& (intervals == null || intervals.equals(entry.m_intervals))
+					&& (rootString == ANY || rootString == entry.m_rootString)
+					&& (maxSpan == ANY || entry.m_span <= maxSpan)) {
+				result.add(entry);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	private static Collection<Entry> smallest(Collection<Entry> candidates, List<Entry> indexed) {
+		if(indexed == null) {
+			return Collections.emptyList();
+		}
+		return indexed.size() < candidates.size() ? indexed : candidates;
 	}
 
 	//
 	// Persistence
 	//
 
+	public File getIndexFile() {
+		return new File(m_dir, INDEX_FILE_NAME);
+	}
+
 	private void load() {
-		for(File file : m_dir.listFiles()) {
-			String fileName = file.getName();
-			if(!fileName.matches(GUITAR_PATTERN_FILE_REGEX)) {
+		// Reading index
+		Map<String, Entry> indexed = new HashMap<>();
+		File indexFile = getIndexFile();
+		if(indexFile.exists()) {
+			try {
+				for(String line : FileUtils.readLines(indexFile)) {
+					if(line.isEmpty() || line.startsWith("#")) {
+						continue;
+					}
+					Entry entry = Entry.fromIndexLine(m_dir, line);
+					if(entry != null) {
+						indexed.put(entry.m_name, entry);
+					}
+				}
+			} catch(IOException e) {
+				FileUtils.log("Cannot read pattern index '%s': %s", indexFile.getName(), e.getMessage());
+			}
+		}
+
+		// Checking the index against the files, only new and modified files are parsed
+		Map<String, Entry> entries = new TreeMap<>();
+		File[] files = m_dir.listFiles();
+		for(File file : files == null ? new File[0] : files) {
+			String name = toPatternName(file.getName());
+			if(name == null) {
 				continue;
 			}
-			String name = StringUtils.getGroup(fileName, GUITAR_PATTERN_FILE_REGEX, 1);
 
-			GuitarPattern pattern = null;
-			try {
-				pattern = new GuitarPattern(file);
-			} catch(IOException e) {
-				FileUtils.log("Cannot load pattern '%s': %s", fileName, e.getMessage());
+			Entry entry = indexed.get(name);
+			if(entry == null || entry.isStale(file)) {
+				try {
+					entry = new Entry(name, file, new GuitarPattern(file));
+				} catch(IOException e) {
+					FileUtils.log("Cannot load pattern '%s': %s", file.getName(), e.getMessage());
+					continue;
+				}
+			}
+			entries.put(name, entry);
+		}
+
+		m_snapshot = new Snapshot(entries);
+
+		if(!entries.keySet().equals(indexed.keySet()) || !isIndexUpToDate(indexed, entries)) {
+			saveIndex();
+		}
+	}
+
+	private static boolean isIndexUpToDate(Map<String, Entry> indexed, Map<String, Entry> entries) {
+		for(Entry entry : entries.values()) {
+			if(indexed.get(entry.m_name) != entry) {
+				return false;
 			}
+		}
+		return true;
+	}
 
-			m_patterns.put(name, pattern);
+	private void saveIndex() {
+		StringBuilder content = new StringBuilder(INDEX_HEADER + "\n");
+		for(Entry entry : m_snapshot.entries.values()) {
+			content.append(entry.toIndexLine()).append("\n");
+		}
+		try {
+			FileUtils.writeToFile(content.toString(), getIndexFile(), StringUtils.DEFAULT_ENCODING, false);
+		} catch(IOException e) {
+			FileUtils.log("Cannot write pattern index '%s': %s", INDEX_FILE_NAME, e.getMessage());
 		}
 	}
 
-	public void save(String name, GuitarPattern pattern) {
-		File output = new File(m_dir, name.replaceAll(" ", "") + ".gpt");
+	/**
+	 * Saves 'pattern' in the file named after 'name', spaces removed. The pattern is stored under that name.
+	 *
+	 * @param name
+	 * @param pattern
+	 */
+	public synchronized void save(String name, GuitarPattern pattern) {
+		String fileName = name.replaceAll(" ", "");
+		File output = new File(m_dir, fileName + GUITAR_PATTERN_FILE_EXTENSION);
 		try {
 			pattern.save(output);
 		} catch(IOException e) {
 			e.printStackTrace();
 		}
-		m_patterns.put(name, pattern);
+
+		Map<String, Entry> entries = new TreeMap<>(m_snapshot.entries);
+		entries.put(fileName, new Entry(fileName, output, pattern));
+		m_snapshot = new Snapshot(entries);
+		saveIndex();
+	}
+
+	/**
+	 * Returns the name of the pattern stored in the file 'fileName'.
+	 *
+	 * @param fileName
+	 * @return null if it is not a pattern file.
+	 */
+	static String toPatternName(String fileName) {
+		if(!fileName.endsWith(GUITAR_PATTERN_FILE_EXTENSION)) {
+			return null;
+		}
+		String name = fileName.substring(0, fileName.length() - GUITAR_PATTERN_FILE_EXTENSION.length());
+		return name.isEmpty() || name.indexOf('.') >= 0 ? null : name;
 	}
 
-}
\ No newline at end of file
+	static String computeQuality(String name) {
+		int separator = name.lastIndexOf('_');
+		return separator > 0 ? name.substring(0, separator) : name;
+	}
+
+	static PitchClassSet computeIntervals(GuitarPattern pattern) {
+		PitchClassSet result = PitchClassSet.EMPTY;
+		for(int string = 1; string <= pattern.getStrings(); string++) {
+			GuitarPattern.StringFingering fingering = pattern.getFingering(string);
+			if(fingering.isPlayed()) {
+				result = result.union(PitchClassSet.ofNotes(fingering.getInterval()));
+			}
+		}
+		return result;
+	}
+
+	static int computeRootString(GuitarPattern pattern) {
+		for(int string = 1; string <= pattern.getStrings(); string++) {
+			GuitarPattern.StringFingering fingering = pattern.getFingering(string);
+			if(fingering.isPlayed() && PitchClassSet.pitchClass(fingering.getInterval()) == 0) {
+				return string;
+			}
+		}
+		return ANY;
+	}
+}
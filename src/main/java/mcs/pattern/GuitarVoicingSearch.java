@@ -0,0 +1,436 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.pattern;
+
+import mcs.melody.Chord;
+import mcs.melody.ChordSymbol;
+import mcs.melody.PitchClassSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Enumerates the playable voicings of a chord on the whole neck of a guitar.
+ * <p>
+ * The neck is cut in windows of {@link #getMaxSpan()} frets, one per position of the index finger. In each window, every
+ * combination of a muted string, an open string or a fret of the window playing a note of the chord is tried, string by
+ * string. A voicing is kept when:
+ * <ul>
+ * <li>it plays every note of the chord, except the perfect fifth of chords with 4 notes or more,</li>
+ * <li>its lowest note is the root of the chord (or its bass for a slash chord),</li>
+ * <li>it plays at least {@link #getMinStrings()} strings, with at most {@link #getMaxInnerMutes()} muted strings between
+ * played ones,</li>
+ * <li>it can be fingered with 4 fingers, the index barring the lowest fret if needed.</li>
+ * </ul>
+ * Windows are searched in parallel on a fork/join pool. Voicings are sorted by {@link Voicing#getScore()}, the easiest to
+ * play first.
+ */
+public class GuitarVoicingSearch {
+
+	public static final int MUTED = -1;
+	public static final int DEFAULT_MAX_SPAN = 4; // Frets
+	public static final int DEFAULT_MIN_STRINGS = 3;
+	public static final int DEFAULT_MAX_INNER_MUTES = 1;
+
+	static final int FINGERS = 4;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	private final int[] m_tuning; // Note of each open string, from the lowest string
+	private final int m_frets; // Number of frets, head excluded
+
+	private int m_maxSpan = DEFAULT_MAX_SPAN;
+	private int m_minStrings = DEFAULT_MIN_STRINGS;
+	private int m_maxInnerMutes = DEFAULT_MAX_INNER_MUTES;
+
+	/**
+	 * A voicing found by the search.
+	 */
+	public static class Voicing {
+
+		private final int[] m_frets; // By string from the lowest, MUTED if not played
+		private final int[] m_fingers; // By string, 0 for open and muted strings
+		private final int m_score;
+
+		Voicing(int[] frets, int[] fingers, int score) {
+			m_frets = frets;
+			m_fingers = fingers;
+			m_score = score;
+		}
+
+		/**
+		 * Returns the fret played on 'string'.
+		 *
+		 * @param string 1 for the lowest string.
+		 * @return 0 for the open string, {@link #MUTED} if not played.
+		 */
+		public int getFret(int string) {
+			return m_frets[string - 1];
+		}
+
+		/**
+		 * Returns the finger on 'string': {@link GuitarPattern#FINGER_INDEX} to {@link GuitarPattern#FINGER_LITTLE}, 0 for
+		 * open and muted strings.
+		 *
+		 * @param string 1 for the lowest string.
+		 * @return
+		 */
+		public int getFinger(int string) {
+			return m_fingers[string - 1];
+		}
+
+		/**
+		 * Returns the playability: the higher, the easier.
+		 *
+		 * @return
+		 */
+		public int getScore() {
+			return m_score;
+		}
+
+		/**
+		 * Builds the {@link GuitarPattern} of this voicing. Abscissas are the frets on the neck.
+		 *
+		 * @param tuning
+		 * @param root   Pitch class of the root of the chord.
+		 * @return
+		 */
+		public GuitarPattern toGuitarPattern(int[] tuning, int root) {
+			GuitarPattern result = new GuitarPattern(Tuning.of(tuning));
+			for(int string = 1; string <= m_frets.length; string++) {
+				int fret = m_frets[string - 1];
+				if(fret != MUTED) {
+					result.add(string, PitchClassSet.pitchClass(tuning[string - 1] + fret - root), fret, m_fingers[string - 1]);
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder();
+			for(int fret : m_frets) {
+				result.append(fret == MUTED ? "x" : Integer.toString(fret)).append(' ');
+			}
+			return result.append("(").append(m_score).append(")").toString();
+		}
+	}
+
+	public GuitarVoicingSearch(Tuning tuning, int frets) {
+		this(tuning.getNotes(), frets);
+	}
+
+	public GuitarVoicingSearch(int[] tuning, int frets) {
+		m_tuning = tuning.clone();
+		m_frets = frets;
+	}
+
+	public int getMaxSpan() {
+		return m_maxSpan;
+	}
+
+	/**
+	 * Sets the maximum number of frets between the lowest and the highest fretted notes, both included.
+	 *
+	 * @param maxSpan
+	 */
+	public void setMaxSpan(int maxSpan) {
+		m_maxSpan = maxSpan;
+	}
+
+	public int getMinStrings() {
+		return m_minStrings;
+	}
+
+	public void setMinStrings(int minStrings) {
+		m_minStrings = minStrings;
+	}
+
+	public int getMaxInnerMutes() {
+		return m_maxInnerMutes;
+	}
+
+	public void setMaxInnerMutes(int maxInnerMutes) {
+		m_maxInnerMutes = maxInnerMutes;
+	}
+
+	/**
+	 * Returns all the voicings of 'chord', the easiest to play first.
+	 *
+	 * @param chord
+	 * @return
+	 */
+	public List<Voicing> find(ChordSymbol chord) {
+		PitchClassSet notes = chord.getPitchClasses();
+		PitchClassSet required = notes;
+		PitchClassSet fifth = PitchClassSet.ofNotes(chord.getRoot() + Chord.PERFECT_FIFTH);
+		if(notes.size() >= 4 && chord.getInterval(5) == Chord.PERFECT_FIFTH) {
+			required = notes.minus(fifth);
+		}
+		int bass = chord.getBass() == ChordSymbol.NO_BASS ? chord.getRoot() : chord.getBass();
+
+		Query query = new Query(notes, required, bass);
+		List<Voicing> result = POOL.invoke(new WindowTask(query, 1, Math.max(1, m_frets - 1)));
+
+		Collections.sort(result, new Comparator<Voicing>() {
+			@Override
+			public int compare(Voicing v1, Voicing v2) {
+				return Integer.compare(v2.m_score, v1.m_score);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns all the voicings of 'symbol'.
+	 *
+	 * @param symbol See {@link ChordSymbol}.
+	 * @return Empty if 'symbol' is not a chord symbol.
+	 */
+	public List<Voicing> find(String symbol) {
+		ChordSymbol chord = ChordSymbol.parse(symbol);
+		return chord == null ? new ArrayList<Voicing>() : find(chord);
+	}
+
+	//
+	// Search
+	//
+
+	static class Query {
+		final PitchClassSet notes;
+		final PitchClassSet required;
+		final int bass;
+
+		Query(PitchClassSet notes, PitchClassSet required, int bass) {
+			this.notes = notes;
+			this.required = required;
+			this.bass = bass;
+		}
+	}
+
+	/**
+	 * Searches the windows whose lowest fret is in [from, to].
+	 */
+	class WindowTask extends RecursiveTask<List<Voicing>> {
+
+		private static final long serialVersionUID = 1L;
+
+		final Query m_query;
+		final int m_from;
+		final int m_to;
+
+		WindowTask(Query query, int from, int to) {
+			m_query = query;
+			m_from = from;
+			m_to = to;
+		}
+
+		@Override
+		protected List<Voicing> compute() {
+			if(m_from == m_to) {
+				List<Voicing> result = new ArrayList<>();
+				new WindowSearch(m_query, m_from, result).search(0, 0);
+				return result;
+			}
+			int middle = (m_from + m_to) >>> 1;
+			WindowTask low = new WindowTask(m_query, m_from, middle);
+			WindowTask high = new WindowTask(m_query, middle + 1, m_to);
+			low.fork();
+			List<Voicing> result = high.compute();
+			result.addAll(low.join());
+			return result;
+		}
+	}
+
+	/**
+	 * Depth-first search of one window: the lowest fretted note is on 'base', or all strings are open if 'base' is 1.
+	 */
+	class WindowSearch {
+
+		final Query m_query;
+		final int m_base;
+		final List<Voicing> m_result;
+		final int[] m_voicing = new int[m_tuning.length]; // Fret by string
+
+		WindowSearch(Query query, int base, List<Voicing> result) {
+			m_query = query;
+			m_base = base;
+			m_result = result;
+		}
+
+		void search(int string, int covered) {
+			if(string == m_tuning.length) {
+				accept(covered);
+				return;
+			}
+
+			// Pruning: the missing notes cannot be played on the remaining strings
+			if(Integer.bitCount(m_query.required.getMask() & ~covered) > m_tuning.length - string) {
+				return;
+			}
+
+			m_voicing[string] = MUTED;
+			search(string + 1, covered);
+
+			int open = m_tuning[string];
+			if(m_query.notes.contains(open)) {
+				m_voicing[string] = 0;
+				search(string + 1, covered | 1 << PitchClassSet.pitchClass(open));
+			}
+			for(int fret = m_base; fret < m_base + m_maxSpan && fret < m_frets; fret++) {
+				if(m_query.notes.contains(open + fret)) {
+					m_voicing[string] = fret;
+					search(string + 1, covered | 1 << PitchClassSet.pitchClass(open + fret));
+				}
+			}
+		}
+
+		void accept(int covered) {
+			if((m_query.required.getMask() & ~covered) != 0) {
+				return;
+			}
+
+			int played = 0;
+			int open = 0;
+			int first = -1;
+			int last = -1;
+			int lowestFret = Integer.MAX_VALUE;
+			int highestFret = 0;
+			for(int s = 0; s < m_voicing.length; s++) {
+				int fret = m_voicing[s];
+				if(fret != MUTED) {
+					played++;
+					if(first < 0) {
+						first = s;
+					}
+					last = s;
+					if(fret == 0) {
+						open++;
+					} else {
+						lowestFret = Math.min(lowestFret, fret);
+						highestFret = Math.max(highestFret, fret);
+					}
+				}
+			}
+			if(played < m_minStrings) {
+				return;
+			}
+			int innerMutes = last - first + 1 - played;
+			if(innerMutes > m_maxInnerMutes) {
+				return;
+			}
+			if(PitchClassSet.pitchClass(m_tuning[first] + m_voicing[first]) != m_query.bass) {
+				return;
+			}
+			boolean allOpen = lowestFret == Integer.MAX_VALUE;
+			if(allOpen ? m_base != 1 : lowestFret != m_base) {
+				return; // Each voicing is only kept in the window of its lowest fret
+			}
+
+			int[] fingers = computeFingers(m_voicing);
+			if(fingers == null) {
+				return;
+			}
+
+			int fingersUsed = 0;
+			for(int finger : fingers) {
+				fingersUsed = Math.max(fingersUsed, finger);
+			}
+			int span = allOpen ? 0 : highestFret - lowestFret + 1;
+			int mutes = m_voicing.length - played;
+			// Open strings are easy near the head only, higher on the neck they make the hand stretch
+			int openBonus = allOpen || lowestFret <= m_maxSpan ? 2 : -4;
+			int score = 100 - 5 * span - 3 * fingersUsed - 10 * innerMutes - 2 * mutes + openBonus * open
+					- (allOpen ? 0 : lowestFret / 2) + (covered == m_query.notes.getMask() ? 5 : 0);
+
+			m_result.add(new Voicing(m_voicing.clone(), fingers, score));
+		}
+	}
+
+	/**
+	 * Assigns fingers to fretted notes, by fret then by string. The index bars the lowest fret when several strings are fretted
+	 * there and no open string is played between them.
+	 *
+	 * @param frets By string, {@link #MUTED} if not played.
+	 * @return The fingers by string (0 for open and muted strings), or null if more than 4 fingers are needed.
+	 */
+	static int[] computeFingers(int[] frets) {
+		int[] result = new int[frets.length];
+
+		int lowestFret = Integer.MAX_VALUE;
+		for(int fret : frets) {
+			if(fret > 0) {
+				lowestFret = Math.min(lowestFret, fret);
+			}
+		}
+		if(lowestFret == Integer.MAX_VALUE) {
+			return result; // Only open strings
+		}
+
+		// Barre on the lowest fret
+		int barreFirst = -1;
+		int barreLast = -1;
+		for(int s = 0; s < frets.length; s++) {
+			if(frets[s] == lowestFret) {
+				if(barreFirst < 0) {
+					barreFirst = s;
+				}
+				barreLast = s;
+			}
+		}
+		boolean barre = barreFirst != barreLast;
+		for(int s = barreFirst; barre && s <= barreLast; s++) {
+			barre = frets[s] != 0;
+		}
+
+		int highestFret = 0;
+		for(int fret : frets) {
+			highestFret = Math.max(highestFret, fret);
+		}
+
+		int finger = 0;
+		for(int fret = lowestFret; fret <= highestFret; fret++) {
+			for(int s = 0; s < frets.length; s++) {
+				if(frets[s] == fret) {
+					if(fret == lowestFret && barre) {
+						result[s] = GuitarPattern.FINGER_INDEX;
+						finger = GuitarPattern.FINGER_INDEX;
+					} else {
+						result[s] = ++finger;
+					}
+				}
+			}
+		}
+		return finger > FINGERS ? null : result;
+	}
+
+	/**
+	 * Returns the tuning, from the lowest string.
+	 *
+	 * @return
+	 */
+	public int[] getTuning() {
+		return m_tuning.clone();
+	}
+
+	public int getFrets() {
+		return m_frets;
+	}
+}
@@ -18,17 +18,12 @@ package mcs.pattern;
 import mcs.melody.Block;
 import mcs.melody.Note;
 import mcs.melody.Time;
-import mcs.utils.FileUtils;
 import mcs.utils.StringUtils;
 
 import javax.sound.midi.InvalidMidiDataException;
-import javax.sound.midi.MidiEvent;
-import javax.sound.midi.ShortMessage;
 import javax.sound.midi.Track;
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
 
 public class MelodicPattern extends Pattern {
 
@@ -38,24 +33,24 @@ public class MelodicPattern extends Pattern {
 		super(timeSignature, ticksPerBeat);
 	}
 
-	public Block toBlock(int channel, int[] chord) {
-		Block result = new Block(m_timeSignature, m_ticksPerBeat, channel);
+	public Block toBlock(int channel, final int[] chord) {
+		final Block result = new Block(m_timeSignature, m_ticksPerBeat, channel);
 
 		// Translating 'pattern' events
-		for(Map.Entry<Long, List<Event>> entry : m_tickEvents.entrySet()) {
-			long tick = entry.getKey();
-			for(Event _event : entry.getValue()) {
+		visitEvents(0, Long.MAX_VALUE, new EventVisitor() {
+			@Override
+			public void visit(EventStore events, int index) {
+				long tick = events.getStart(index);
 				// Computing notes
-				int[] intervals = _event.getLevels();
-				for(int interval : intervals) {
-					int note = chord[interval - 1];
+				for(int rank = 0; rank < events.getLevelCount(index); rank++) {
+					int note = chord[events.getLevel(index, rank) - 1];
 
 					if(note != Note.NULL) {
-						result.add(note, _event.getVelocity(), tick, tick + _event.getDuration_ticks());
+						result.add(note, events.getVelocity(index), tick, tick + events.getDuration_ticks(index));
 					}
 				}
 			}
-		}
+		});
 
 		return result;
 	}
@@ -64,71 +59,67 @@ public class MelodicPattern extends Pattern {
 		StringBuilder result = new StringBuilder();
 		result.append(Pattern.OPTION_TICKS_PER_BEAT + "=" + m_ticksPerBeat + "\n");
 
-		for(Map.Entry<Long, List<Event>> entry : m_tickEvents.entrySet()) {
-			long tick = entry.getKey();
-			for(Event event : entry.getValue()) {
-				result.append("" + event.getOctavePitch() + ";");
-				result.append(StringUtils.toString(event.getLevels(), ",") + ";");
-				result.append("" + tick + ";" + event.getDuration_ticks() + ";");
-				result.append("" + event.getVelocity() + "\n");
-			}
+		for(int i = 0; i < m_events.size(); i++) {
+			result.append("" + Event.DEFAULT_OCTAVE_PITCH + ";");
+			result.append(StringUtils.toString(m_events.getLevels(i), ",") + ";");
+			result.append("" + m_events.getStart(i) + ";" + m_events.getDuration_ticks(i) + ";");
+			result.append("" + m_events.getVelocity(i) + "\n");
 		}
 
 		return result.toString();
 	}
 
 	public static MelodicPattern load(File patternFile) throws IOException {
+		try(PatternReader reader = PatternReader.open(patternFile)) {
+			return load(reader);
+		}
+	}
 
-		Time.TimeSignature timeSignature = DEFAULT_TIME_SIGNATURE;
+	/**
+	 * Reads a pattern in a single pass. Options must come before the events.
+	 *
+	 * @param reader
+	 * @return
+	 * @throws IOException If the content is malformed, with the line number.
+	 */
+	public static MelodicPattern load(PatternReader reader) throws IOException {
 		int ticksPerBeat = 4;
+		MelodicPattern result = null;
 
-		// Reading options
-		for(String line : FileUtils.readLines(patternFile)) {
-			// Reading options
-			if(line.contains("=")) {
-				String[] words = line.split("=");
-				String name = words[0];
-				String valueStr = words[1];
-
-				if(Pattern.OPTION_TICKS_PER_BEAT.equalsIgnoreCase(name)) {
-					ticksPerBeat = Integer.valueOf(valueStr);
+		while(reader.next()) {
+			if(reader.isOption()) {
+				if(reader.isOption(Pattern.OPTION_TICKS_PER_BEAT)) {
+					if(result != null) {
+						throw reader.error("option '" + Pattern.OPTION_TICKS_PER_BEAT + "' after events");
+					}
+					ticksPerBeat = reader.getOptionValue();
 				}
+				continue;
 			}
-		}
-
-		MelodicPattern result = new MelodicPattern(timeSignature, ticksPerBeat);
 
-		for(String line : FileUtils.readLines(patternFile)) {
-
-			if(line.length() > 0 && !line.startsWith("#") && !line.contains("=")) {
-
-				// Pattern
-				String[] words = line.split(";");
-				int octaveOffset = Integer.valueOf(words[0]); // Ignored
-				int tick = Integer.valueOf(words[2]);
-				int duration = Integer.valueOf(words[3]);
-				int velocity = Pattern.parseVelocity(words[4]);
+			if(result == null) {
+				result = new MelodicPattern(DEFAULT_TIME_SIGNATURE, ticksPerBeat);
+			}
 
-				if(words[1].contains(",")) {
-					for(String intervalStr : words[1].split(",")) {
-						int interval = Integer.valueOf(intervalStr);
-						if(interval != Note.NULL) {
-							result.add(interval, velocity, tick, tick + duration);
-						}
-					}
-				} else {
-					int interval = Integer.valueOf(words[1]);
-					if(interval != Note.NULL) {
-						result.add(interval, velocity, tick, tick + duration);
-					}
+			// octave;intervals;tick;duration;velocity, octave being ignored
+			reader.requireFields(5);
+			int tick = reader.getValue(2);
+			int duration = reader.getValue(3);
+			int velocity = reader.getValue(4);
+			for(int index = 0; index < reader.getValueCount(1); index++) {
+				int interval = reader.getValue(1, index);
+				if(interval != Note.NULL) {
+					result.add(interval, velocity, tick, tick + duration);
 				}
 			}
 		}
 
-		return result;
+		return result == null ? new MelodicPattern(DEFAULT_TIME_SIGNATURE, ticksPerBeat) : result;
 	}
 
 	/**
+	 * Reads the file at each call, see {@link PatternCache} to import it repeatedly.
+	 *
 	 * @param patternFile
 	 * @param track
 	 * @param channel
@@ -137,67 +128,7 @@ public class MelodicPattern extends Pattern {
 	 */
 	public static long importPattern(File patternFile, Track track, int channel, int[] chord, long tickStart)
 			throws IOException, InvalidMidiDataException {
-		long result = tickStart;
-
-		int tickPerBeatsFactor = 1;
-
-		// Reading options
-		for(String line : FileUtils.readLines(patternFile)) {
-			// Reading options
-			if(line.contains("=")) {
-				String[] words = line.split("=");
-				String name = words[0];
-				String valueStr = words[1];
-
-				if(Pattern.OPTION_TICKS_PER_BEAT.equalsIgnoreCase(name)) {
-					int ticksPerBeat = Integer.valueOf(valueStr);
-					tickPerBeatsFactor = Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT / ticksPerBeat;
-				}
-			}
-		}
-
-		for(String line : FileUtils.readLines(patternFile)) {
-
-			if(line.length() > 0 && !line.startsWith("#") && !line.contains("=")) {
-
-				// Pattern
-
-				String[] words = line.split(";");
-				int octaveOffset = Integer.valueOf(words[0]);
-				int tick = Integer.valueOf(words[2]);
-				int duration = Integer.valueOf(words[3]);
-				int velocity = Pattern.parseVelocity(words[4]);
-
-				if(words[1].contains(",")) {
-					for(String intervalStr : words[1].split(",")) {
-						int interval = Integer.valueOf(intervalStr);
-						int key = getKey(chord, interval);
-
-						if(key != Note.NULL) {
-							track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, key + 12 * octaveOffset, velocity),
-									tickStart + tickPerBeatsFactor * tick));
-							track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, key + 12 * octaveOffset, velocity),
-									tickStart + tickPerBeatsFactor * (tick + duration)));
-						}
-
-						result = Math.max(result, tickStart + tickPerBeatsFactor * (tick + duration));
-					}
-				} else {
-					int interval = Integer.valueOf(words[1]);
-					int key = getKey(chord, interval);
-					if(key != Note.NULL) {
-						track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, key + 12 * octaveOffset, velocity),
-								tickStart + tickPerBeatsFactor * tick));
-						track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, key + 12 * octaveOffset, velocity),
-								tickStart + tickPerBeatsFactor * (tick + duration)));
-					}
-
-					result = Math.max(result, tickStart + tickPerBeatsFactor * (tick + duration));
-				}
-			}
-		}
-
-		return result;
+		return PatternCache.CachedPattern.parse(patternFile, false).importPattern(track, channel, chord, tickStart);
 	}
 
 	static int getKey(int[] chord, int interval) {
@@ -20,11 +20,17 @@ import mcs.melody.Time;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 public abstract class Pattern {
 
+	/**
+	 * Receives the events of a {@link Pattern}, see {@link #visitEvents(long, long, EventVisitor)}. The event is read from 'events'
+	 * at 'index', without creating any object.
+	 */
+	public interface EventVisitor {
+		void visit(EventStore events, int index);
+	}
+
 	public static final int DEFAULT_PATTERN_TICKS_PER_BEAT = 96;
 
 	public static final String OPTION_TICKS_PER_BEAT = "ticks_per_beat";
@@ -32,7 +38,7 @@ public abstract class Pattern {
 	protected final Time.TimeSignature m_timeSignature;
 	protected final int m_ticksPerBeat;
 	protected int m_bars;
-	protected final Map<Long, List<Event>> m_tickEvents = new TreeMap<>();
+	protected final EventStore m_events = new EventStore();
 
 	protected Pattern(Time.TimeSignature timeSignature, int ticksPerBeat) {
 		m_timeSignature = timeSignature;
@@ -55,8 +61,19 @@ public abstract class Pattern {
 	 * @param tickStop
 	 */
 	public void add(int level, int velocity, long tickStart, long tickStop) {
-		List<Event> tickEvents = getOrCreateEventList(tickStart);
-		tickEvents.add(new Event(new int[] { level }, velocity, tickStop - tickStart));
+		add(new int[] { level }, velocity, tickStart, tickStop);
+	}
+
+	/**
+	 * Adds an event playing several levels at once.
+	 *
+	 * @param levels    Copied.
+	 * @param velocity
+	 * @param tickStart
+	 * @param tickStop
+	 */
+	public void add(int[] levels, int velocity, long tickStart, long tickStop) {
+		m_events.add(levels, velocity, tickStart, tickStop);
 
 		// Updating bars count if new event makes the Pattern longer
 		// Note tha bar index starts with 0, that's why we adds 1 to get the number of bars
@@ -78,15 +95,32 @@ public abstract class Pattern {
 		return m_timeSignature.getTicksInBar(m_ticksPerBeat) * m_bars;
 	}
 
-	public List<Event> getEvents(long tick) {
-		return getOrCreateEventList(tick);
+	/**
+	 * Calls 'visitor' for each event starting in [fromTick, toTick), in order. Only populated ticks are visited, the
+	 * {@link Pattern} is not modified.
+	 *
+	 * @param fromTick Included.
+	 * @param toTick   Excluded.
+	 * @param visitor
+	 */
+	public void visitEvents(long fromTick, long toTick, EventVisitor visitor) {
+		int end = m_events.indexOf(toTick);
+		for(int i = m_events.indexOf(fromTick); i < end; i++) {
+			visitor.visit(m_events, i);
+		}
 	}
 
-	private List<Event> getOrCreateEventList(long tick) {
-		List<Event> result = m_tickEvents.get(tick);
-		if(result == null) {
-			result = new ArrayList<>();
-			m_tickEvents.put(tick, result);
+	/**
+	 * Returns the events starting at 'tick'. A new list is built at each call, use {@link #visitEvents(long, long, EventVisitor)}
+	 * to go through the events of a range.
+	 *
+	 * @param tick
+	 * @return
+	 */
+	public List<Event> getEvents(long tick) {
+		List<Event> result = new ArrayList<>();
+		for(int i = m_events.indexOf(tick); i < m_events.size() && m_events.getStart(i) == tick; i++) {
+			result.add(m_events.getEvent(i));
 		}
 		return result;
 	}
@@ -103,13 +137,11 @@ public abstract class Pattern {
 	 * @return
 	 */
 	public static int parseVelocity(String word) {
-		int velocity;
-		if(word.matches("[0-9]+")) {
-			velocity = Integer.valueOf(word);
-		} else {
-			velocity = Note.Dynamic.fromLabel(word).velocity;
+		boolean digits = !word.isEmpty();
+		for(int i = 0; i < word.length() && digits; i++) {
+			digits = word.charAt(i) >= '0' && word.charAt(i) <= '9';
 		}
-		return velocity;
+		return digits ? Integer.parseInt(word) : Note.Dynamic.fromLabel(word).velocity;
 	}
 
 }
\ No newline at end of file
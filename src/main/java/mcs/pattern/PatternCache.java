@@ -0,0 +1,371 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.pattern;
+
+import mcs.melody.Note;
+import mcs.midi.Drum;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the pattern files (.mpt, .dpt) imported into tracks.
+ * <p>
+ * Each file is parsed once into a {@link CachedPattern}: its events, with ticks already scaled to
+ * {@link Pattern#DEFAULT_PATTERN_TICKS_PER_BEAT}. Importing it again only stamps these events at a new tick offset. Entries
+ * are keyed by canonical path and checked against the size and modification time of the file, so that an edited file is
+ * parsed again. The least recently used entries are evicted when the weight of the cache exceeds its limit.
+ */
+public class PatternCache {
+
+	public static final long DEFAULT_MAX_WEIGHT_BYTES = 16 * 1024 * 1024;
+
+	static final int ENTRY_WEIGHT_BYTES = 128; // Key, entry and arrays headers
+	static final int EVENT_WEIGHT_BYTES = 2 * 8 + 3 * 4; // Start and stop ticks, value, octave and velocity
+
+	private static final PatternCache INSTANCE = new PatternCache(DEFAULT_MAX_WEIGHT_BYTES);
+
+	private final long m_maxWeight_bytes;
+	private final LinkedHashMap<String, CachedPattern> m_entries = new LinkedHashMap<>(16, 0.75f, true); // In access order
+	private long m_weight_bytes = 0;
+
+	private long m_hits = 0;
+	private long m_misses = 0;
+	private long m_evictions = 0;
+
+	/**
+	 * @param maxWeight_bytes Estimated memory above which the least recently used patterns are evicted.
+	 */
+	public PatternCache(long maxWeight_bytes) {
+		m_maxWeight_bytes = maxWeight_bytes;
+	}
+
+	public static PatternCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the parsed melodic pattern file (.mpt).
+	 *
+	 * @param patternFile
+	 * @return
+	 * @throws IOException If the file cannot be read or is malformed.
+	 */
+	public CachedPattern getMelodicPattern(File patternFile) throws IOException {
+		return get(patternFile, false);
+	}
+
+	/**
+	 * Returns the parsed drum pattern file (.dpt).
+	 *
+	 * @param patternFile
+	 * @return
+	 * @throws IOException If the file cannot be read or is malformed.
+	 */
+	public CachedPattern getDrumPattern(File patternFile) throws IOException {
+		return get(patternFile, true);
+	}
+
+	/**
+	 * Cached version of {@link MelodicPattern#importPattern(File, Track, int, int[], long)}.
+	 *
+	 * @return The tick index at the end
+	 */
+	public long importMelodicPattern(File patternFile, Track track, int channel, int[] chord, long tickStart)
+			throws IOException, InvalidMidiDataException {
+		return getMelodicPattern(patternFile).importPattern(track, channel, chord, tickStart);
+	}
+
+	/**
+	 * Cached version of {@link DrumPattern#importPattern(File, Track, long)}.
+	 *
+	 * @return The tick index at the end
+	 */
+	public long importDrumPattern(File patternFile, Track track, long tickStart) throws IOException, InvalidMidiDataException {
+		return getDrumPattern(patternFile).importPattern(track, tickStart);
+	}
+
+	public synchronized long getHitCount() {
+		return m_hits;
+	}
+
+	public synchronized long getMissCount() {
+		return m_misses;
+	}
+
+	public synchronized long getEvictionCount() {
+		return m_evictions;
+	}
+
+	public synchronized int size() {
+		return m_entries.size();
+	}
+
+	public synchronized long getWeight_bytes() {
+		return m_weight_bytes;
+	}
+
+	public synchronized void clear() {
+		m_entries.clear();
+		m_weight_bytes = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d patterns, %d KB, %d hits, %d misses, %d evictions", m_entries.size(), m_weight_bytes / 1024,
+				m_hits, m_misses, m_evictions);
+	}
+
+	private CachedPattern get(File patternFile, boolean drum) throws IOException {
+		File file = patternFile.getCanonicalFile();
+		String key = (drum ? "drum:" : "melodic:") + file.getPath();
+		long size_bytes = file.length();
+		long lastModified_ms = file.lastModified();
+
+		synchronized(this) {
+			CachedPattern cached = m_entries.get(key);
+			if(cached != null && cached.m_size_bytes == size_bytes && cached.m_lastModified_ms == lastModified_ms) {
+				m_hits++;
+				return cached;
+			}
+			m_misses++;
+		}
+
+		// Parsing outside the lock, a concurrent miss on the same file only parses it twice
+		CachedPattern result = CachedPattern.parse(file, drum, size_bytes, lastModified_ms);
+
+		synchronized(this) {
+			CachedPattern previous = m_entries.put(key, result);
+			if(previous != null) {
+				m_weight_bytes -= previous.getWeight_bytes();
+			}
+			m_weight_bytes += result.getWeight_bytes();
+
+			Iterator<Map.Entry<String, CachedPattern>> eldest = m_entries.entrySet().iterator();
+			while(m_weight_bytes > m_maxWeight_bytes && m_entries.size() > 1) {
+				CachedPattern evicted = eldest.next().getValue();
+				eldest.remove();
+				m_weight_bytes -= evicted.getWeight_bytes();
+				m_evictions++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Immutable events of a pattern file, ticks being scaled to {@link Pattern#DEFAULT_PATTERN_TICKS_PER_BEAT}. The values are
+	 * the intervals of a melodic pattern, the keys of a drum pattern.
+	 */
+	public static final class CachedPattern {
+
+		private final boolean m_drum;
+		private final long m_size_bytes;
+		private final long m_lastModified_ms;
+
+		private final int m_size;
+		private final long[] m_starts;
+		private final long[] m_stops;
+		private final int[] m_values;
+		private final int[] m_octaves;
+		private final int[] m_velocities;
+		private final long m_end; // Highest stop tick, including events with null values
+
+		private CachedPattern(boolean drum, long size_bytes, long lastModified_ms, int size, long[] starts, long[] stops,
+				int[] values, int[] octaves, int[] velocities, long end) {
+			m_drum = drum;
+			m_size_bytes = size_bytes;
+			m_lastModified_ms = lastModified_ms;
+			m_size = size;
+			m_starts = starts;
+			m_stops = stops;
+			m_values = values;
+			m_octaves = octaves;
+			m_velocities = velocities;
+			m_end = end;
+		}
+
+		public boolean isDrum() {
+			return m_drum;
+		}
+
+		/**
+		 * Returns the number of events, one by value of each line of the file.
+		 *
+		 * @return
+		 */
+		public int size() {
+			return m_size;
+		}
+
+		public long getStart(int index) {
+			return m_starts[index];
+		}
+
+		public long getStop(int index) {
+			return m_stops[index];
+		}
+
+		public int getValue(int index) {
+			return m_values[index];
+		}
+
+		public int getOctave(int index) {
+			return m_octaves[index];
+		}
+
+		public int getVelocity(int index) {
+			return m_velocities[index];
+		}
+
+		/**
+		 * Returns the tick at the end of the pattern, relative to its start.
+		 *
+		 * @return
+		 */
+		public long getEnd() {
+			return m_end;
+		}
+
+		public long getWeight_bytes() {
+			return ENTRY_WEIGHT_BYTES + (long) m_size * EVENT_WEIGHT_BYTES;
+		}
+
+		/**
+		 * Adds the notes of a melodic pattern to 'track', the intervals being read in 'chord'.
+		 *
+		 * @param track
+		 * @param channel
+		 * @param chord
+		 * @param tickStart
+		 * @return The tick index at the end
+		 * @throws InvalidMidiDataException
+		 */
+		public long importPattern(Track track, int channel, int[] chord, long tickStart) throws InvalidMidiDataException {
+			for(int index = 0; index < m_size; index++) {
+				int key = MelodicPattern.getKey(chord, m_values[index]);
+				if(key != Note.NULL) {
+					key += 12 * m_octaves[index];
+					track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, channel, key, m_velocities[index]),
+							tickStart + m_starts[index]));
+					track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, channel, key, m_velocities[index]),
+							tickStart + m_stops[index]));
+				}
+			}
+			return tickStart + m_end;
+		}
+
+		/**
+		 * Adds the notes of a drum pattern to 'track', on {@link Drum#CHANNEL}.
+		 *
+		 * @param track
+		 * @param tickStart
+		 * @return The tick index at the end
+		 * @throws InvalidMidiDataException
+		 */
+		public long importPattern(Track track, long tickStart) throws InvalidMidiDataException {
+			for(int index = 0; index < m_size; index++) {
+				int key = m_values[index];
+				if(key != Note.NULL) {
+					track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON, Drum.CHANNEL, key, m_velocities[index]),
+							tickStart + m_starts[index]));
+					track.add(new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF, Drum.CHANNEL, key, m_velocities[index]),
+							tickStart + m_stops[index]));
+				}
+			}
+			return tickStart + m_end;
+		}
+
+		/**
+		 * Reads a pattern file in a single pass, without caching it.
+		 *
+		 * @param patternFile
+		 * @param drum true for a drum pattern (keys;tick;duration;velocity), false for a melodic pattern
+		 *            (octave;intervals;tick;duration;velocity).
+		 * @return
+		 * @throws IOException
+		 */
+		static CachedPattern parse(File patternFile, boolean drum) throws IOException {
+			return parse(patternFile, drum, patternFile.length(), patternFile.lastModified());
+		}
+
+		private static CachedPattern parse(File patternFile, boolean drum, long size_bytes, long lastModified_ms)
+				throws IOException {
+			int valuesField = drum ? 0 : 1;
+			int tickField = valuesField + 1;
+
+			int size = 0;
+			long[] starts = new long[64];
+			long[] stops = new long[64];
+			int[] values = new int[64];
+			int[] octaves = new int[64];
+			int[] velocities = new int[64];
+			long end = 0;
+
+			int tickPerBeatsFactor = 1;
+			boolean started = false;
+
+			try(PatternReader reader = PatternReader.open(patternFile)) {
+				while(reader.next()) {
+					if(reader.isOption()) {
+						if(reader.isOption(Pattern.OPTION_TICKS_PER_BEAT)) {
+							if(started) {
+								throw reader.error("option '" + Pattern.OPTION_TICKS_PER_BEAT + "' after events");
+							}
+							tickPerBeatsFactor = Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT / reader.getOptionValue();
+						}
+						continue;
+					}
+					started = true;
+
+					reader.requireFields(drum ? 4 : 5);
+					int octave = drum ? 0 : reader.getValue(0);
+					long start = (long) tickPerBeatsFactor * reader.getValue(tickField);
+					long stop = start + (long) tickPerBeatsFactor * reader.getValue(tickField + 1);
+					int velocity = reader.getValue(tickField + 2);
+
+					for(int index = 0; index < reader.getValueCount(valuesField); index++) {
+						if(size == starts.length) {
+							starts = Arrays.copyOf(starts, size * 2);
+							stops = Arrays.copyOf(stops, size * 2);
+							values = Arrays.copyOf(values, size * 2);
+							octaves = Arrays.copyOf(octaves, size * 2);
+							velocities = Arrays.copyOf(velocities, size * 2);
+						}
+						starts[size] = start;
+						stops[size] = stop;
+						values[size] = reader.getValue(valuesField, index);
+						octaves[size] = octave;
+						velocities[size] = velocity;
+						size++;
+						end = Math.max(end, stop);
+					}
+				}
+			}
+
+			return new CachedPattern(drum, size_bytes, lastModified_ms, size, Arrays.copyOf(starts, size),
+					Arrays.copyOf(stops, size), Arrays.copyOf(values, size), Arrays.copyOf(octaves, size),
+					Arrays.copyOf(velocities, size), end);
+		}
+	}
+}
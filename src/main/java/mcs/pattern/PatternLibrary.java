@@ -0,0 +1,547 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.pattern;
+
+import mcs.melody.Time;
+import mcs.utils.FileUtils;
+import mcs.utils.StringUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A library of patterns stored in one binary file, read from a memory-mapped {@link FileChannel}.
+ * <p>
+ * Opening a library only reads its directory: the name, kind and offset of each pattern. A pattern is decoded from the
+ * mapped file when it is requested, without copying the file content. The format is:
+ * <ul>
+ * <li>header: magic number, {@link #VERSION}, number of patterns, offset of the directory,</li>
+ * <li>patterns, one after the other: {@link MelodicPattern} and {@link DrumPattern} as their time signature and events, start
+ * ticks delta-encoded as varints, velocities as bytes and levels as varints; {@link GuitarPattern} as its tuning and the
+ * fingering of each string,</li>
+ * <li>directory: for each pattern its name, kind and offset, sorted by name.</li>
+ * </ul>
+ * Text pattern files (.mpt, .dpt, .gpt) can be imported with {@link #importText(File, File)} and exported back with
+ * {@link #exportText(File)}.
+ */
+public class PatternLibrary {
+
+	public static final String FILE_EXTENSION = ".mpl";
+	public static final int MAGIC = 0x4D43534C; // "MCSL"
+	public static final short VERSION = 1;
+
+	public static final byte KIND_MELODIC = 1;
+	public static final byte KIND_DRUM = 2;
+	public static final byte KIND_GUITAR = 3;
+
+	static final String MELODIC_FILE_EXTENSION = ".mpt";
+	static final String DRUM_FILE_EXTENSION = ".dpt";
+
+	static final int HEADER_SIZE = 4 + 2 + 4 + 8; // Magic, version, count, directory offset
+	static final int MAX_LEVELS = 0xFF;
+
+	private final File m_file;
+	private final ByteBuffer m_buffer; // Whole mapped file, never moved: decoding works on duplicates
+	private final Map<String, Entry> m_entries; // Sorted by name
+
+	static class Entry {
+		final byte kind;
+		final int offset;
+
+		Entry(byte kind, int offset) {
+			this.kind = kind;
+			this.offset = offset;
+		}
+	}
+
+	private PatternLibrary(File file, ByteBuffer buffer, Map<String, Entry> entries) {
+		m_file = file;
+		m_buffer = buffer;
+		m_entries = Collections.unmodifiableMap(entries);
+	}
+
+	/**
+	 * Maps 'file' and reads its directory.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException If the file is not a library of this version.
+	 */
+	public static PatternLibrary open(File file) throws IOException {
+		ByteBuffer buffer;
+		try(RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Pattern library too large: " + file.getAbsolutePath());
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			if(buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+				throw new IOException("Not a pattern library: " + file.getAbsolutePath());
+			}
+			short version = buffer.getShort(4);
+			if(version != VERSION) {
+				throw new IOException("Unsupported pattern library version " + version + ": " + file.getAbsolutePath());
+			}
+			int count = buffer.getInt(6);
+			ByteBuffer directory = buffer.duplicate();
+			directory.position((int) buffer.getLong(10));
+
+			Map<String, Entry> entries = new TreeMap<>();
+			byte[] name = new byte[64];
+			for(int i = 0; i < count; i++) {
+				int length = readVarInt(directory);
+				if(length > name.length) {
+					name = new byte[Math.max(length, 2 * name.length)];
+				}
+				directory.get(name, 0, length);
+				byte kind = directory.get();
+				entries.put(new String(name, 0, length, StandardCharsets.UTF_8), new Entry(kind, readVarInt(directory)));
+			}
+			return new PatternLibrary(file, buffer, entries);
+		} catch(RuntimeException e) { // Buffer underflow, bad offset...
+			throw new IOException("Corrupted pattern library: " + file.getAbsolutePath(), e);
+		}
+	}
+
+	public File getFile() {
+		return m_file;
+	}
+
+	public int size() {
+		return m_entries.size();
+	}
+
+	/**
+	 * Returns the names of the patterns, sorted.
+	 *
+	 * @return
+	 */
+	public Set<String> getNames() {
+		return m_entries.keySet();
+	}
+
+	/**
+	 * @param name
+	 * @return {@link #KIND_MELODIC}, {@link #KIND_DRUM}, {@link #KIND_GUITAR} or 0 if there is no such pattern.
+	 */
+	public byte getKind(String name) {
+		Entry entry = m_entries.get(name);
+		return entry == null ? 0 : entry.kind;
+	}
+
+	/**
+	 * Decodes the melodic pattern 'name'.
+	 *
+	 * @param name
+	 * @return null if there is no melodic pattern with that name.
+	 */
+	public MelodicPattern getMelodicPattern(String name) {
+		ByteBuffer input = seek(name, KIND_MELODIC);
+		if(input == null) {
+			return null;
+		}
+		MelodicPattern result = new MelodicPattern(readTimeSignature(input), readVarInt(input));
+		readEvents(input, result);
+		return result;
+	}
+
+	/**
+	 * Decodes the drum pattern 'name'.
+	 *
+	 * @param name
+	 * @return null if there is no drum pattern with that name.
+	 */
+	public DrumPattern getDrumPattern(String name) {
+		ByteBuffer input = seek(name, KIND_DRUM);
+		if(input == null) {
+			return null;
+		}
+		DrumPattern result = new DrumPattern(readTimeSignature(input), readVarInt(input));
+		readEvents(input, result);
+		return result;
+	}
+
+	/**
+	 * Decodes the guitar pattern 'name'.
+	 *
+	 * @param name
+	 * @return null if there is no guitar pattern with that name.
+	 */
+	public GuitarPattern getGuitarPattern(String name) {
+		ByteBuffer input = seek(name, KIND_GUITAR);
+		if(input == null) {
+			return null;
+		}
+		int[] notes = new int[input.get()];
+		for(int s = 0; s < notes.length; s++) {
+			notes[s] = input.get();
+		}
+		GuitarPattern result = new GuitarPattern(Tuning.of(notes));
+		for(int string = 1; string <= notes.length; string++) {
+			if(input.get() != 0) {
+				int abscissa = readSignedVarInt(input);
+				int finger = readSignedVarInt(input);
+				int interval = readSignedVarInt(input);
+				result.add(string, interval, abscissa, finger);
+			}
+		}
+		return result;
+	}
+
+	private ByteBuffer seek(String name, byte kind) {
+		Entry entry = m_entries.get(name);
+		if(entry == null || entry.kind != kind) {
+			return null;
+		}
+		ByteBuffer result = m_buffer.duplicate();
+		result.position(entry.offset);
+		return result;
+	}
+
+	//
+	// Text files
+	//
+
+	/**
+	 * Writes a library with all the text patterns found in 'dir' and its sub-directories. Patterns are named after their file,
+	 * extension excluded.
+	 *
+	 * @param dir
+	 * @param output
+	 * @return The number of patterns written.
+	 * @throws IOException If a text file cannot be parsed. The library already in 'output', if any, is kept then.
+	 */
+	public static int importText(File dir, File output) throws IOException {
+		try(Writer writer = new Writer(output)) {
+			try {
+				importText(dir, writer);
+			} catch(IOException | RuntimeException e) {
+				writer.abort();
+				throw e;
+			}
+			return writer.m_count;
+		}
+	}
+
+	private static void importText(File dir, Writer writer) throws IOException {
+		File[] files = dir.listFiles();
+		if(files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for(File file : files) {
+			String fileName = file.getName();
+			if(file.isDirectory()) {
+				importText(file, writer);
+			} else if(fileName.endsWith(MELODIC_FILE_EXTENSION)) {
+				writer.add(stripExtension(fileName), MelodicPattern.load(file));
+			} else if(fileName.endsWith(DRUM_FILE_EXTENSION)) {
+				writer.add(stripExtension(fileName), DrumPattern.load(file));
+			} else if(fileName.endsWith(GuitarPatternStore.GUITAR_PATTERN_FILE_EXTENSION)) {
+				writer.add(stripExtension(fileName), new GuitarPattern(file));
+			}
+		}
+	}
+
+	/**
+	 * Writes each pattern of the library as a text file in 'dir'.
+	 *
+	 * @param dir
+	 * @throws IOException
+	 */
+	public void exportText(File dir) throws IOException {
+		for(Map.Entry<String, Entry> entry : m_entries.entrySet()) {
+			String name = entry.getKey();
+			switch(entry.getValue().kind) {
+			case KIND_MELODIC:
+				FileUtils.writeToFile(getMelodicPattern(name).getContent(), new File(dir, name + MELODIC_FILE_EXTENSION),
+						StringUtils.DEFAULT_ENCODING, false);
+				break;
+			case KIND_DRUM:
+				FileUtils.writeToFile(getDrumPattern(name).getContent(), new File(dir, name + DRUM_FILE_EXTENSION),
+						StringUtils.DEFAULT_ENCODING, false);
+				break;
+			case KIND_GUITAR:
+				getGuitarPattern(name).save(new File(dir, name + GuitarPatternStore.GUITAR_PATTERN_FILE_EXTENSION));
+				break;
+			}
+		}
+	}
+
+	private static String stripExtension(String fileName) {
+		return fileName.substring(0, fileName.lastIndexOf('.'));
+	}
+
+	//
+	// Writing
+	//
+
+	/**
+	 * Writes a library, pattern after pattern. The library is written in a temporary file next to the target one, which it
+	 * replaces on {@link #close()}, once its directory is written. A pattern that cannot be written is left out. If the file
+	 * itself cannot be written, or after {@link #abort()}, {@link #close()} deletes the temporary file and leaves the target
+	 * one untouched.
+	 */
+	public static class Writer implements Closeable {
+
+		private final File m_file;
+		private final File m_tempFile;
+		private final RandomAccessFile m_output;
+		private final FileChannel m_channel;
+		private final Map<String, Entry> m_entries = new TreeMap<>();
+		private ByteBuffer m_buffer = ByteBuffer.allocate(4096);
+		private int m_count = 0;
+		private String m_name; // Of the pattern being written
+		private Entry m_entry;
+		private boolean m_failed = false;
+
+		public Writer(File file) throws IOException {
+			m_file = file;
+			m_tempFile = new File(file.getPath() + ".tmp");
+			m_output = new RandomAccessFile(m_tempFile, "rw");
+			m_output.setLength(0);
+			m_channel = m_output.getChannel();
+			m_channel.position(HEADER_SIZE);
+		}
+
+		public void add(String name, MelodicPattern pattern) throws IOException {
+			startPattern(name, KIND_MELODIC);
+			writePattern(pattern);
+			endPattern();
+		}
+
+		public void add(String name, DrumPattern pattern) throws IOException {
+			startPattern(name, KIND_DRUM);
+			writePattern(pattern);
+			endPattern();
+		}
+
+		public void add(String name, GuitarPattern pattern) throws IOException {
+			startPattern(name, KIND_GUITAR);
+			Tuning tuning = pattern.getTuning();
+			m_buffer.put((byte) tuning.size());
+			for(int string = 1; string <= tuning.size(); string++) {
+				m_buffer.put((byte) tuning.getNote(string));
+			}
+			for(int string = 1; string <= pattern.getStrings(); string++) {
+				GuitarPattern.StringFingering fingering = pattern.getFingering(string);
+				m_buffer.put((byte) (fingering.isPlayed() ? 1 : 0));
+				if(fingering.isPlayed()) {
+					writeSignedVarInt(fingering.getAbscissa());
+					writeSignedVarInt(fingering.getFinger());
+					writeSignedVarInt(fingering.getInterval());
+				}
+			}
+			endPattern();
+		}
+
+		/**
+		 * Makes {@link #close()} discard the library, for instance when the patterns to write cannot be read.
+		 */
+		public void abort() {
+			m_failed = true;
+		}
+
+		private void startPattern(String name, byte kind) throws IOException {
+			if(m_entries.containsKey(name)) {
+				throw new IOException("Duplicated pattern name: " + name);
+			}
+			long offset = m_channel.position();
+			if(offset > Integer.MAX_VALUE) {
+				throw new IOException("Pattern library too large");
+			}
+			m_name = name;
+			m_entry = new Entry(kind, (int) offset);
+			m_buffer.clear();
+		}
+
+		private void writePattern(Pattern pattern) throws IOException {
+			Time.TimeSignature timeSignature = pattern.getTimeSignature();
+			writeVarInt(timeSignature.getBeatsInBar());
+			writeVarInt(timeSignature.getBeatDivision());
+			writeVarInt(pattern.getTicksPerBeat());
+
+			EventStore events = pattern.m_events;
+			writeVarInt(events.size());
+			long previousStart = 0;
+			for(int i = 0; i < events.size(); i++) {
+				ensureCapacity(2 * 10 + 2 + MAX_LEVELS * 5);
+				long start = events.getStart(i);
+				writeVarLong(start - previousStart);
+				previousStart = start;
+				writeVarInt(events.getDuration_ticks(i));
+				m_buffer.put((byte) events.getVelocity(i));
+				int levels = events.getLevelCount(i);
+				if(levels > MAX_LEVELS) {
+					throw new IOException("Too many levels in pattern '" + m_name + "': " + levels);
+				}
+				m_buffer.put((byte) levels);
+				for(int rank = 0; rank < levels; rank++) {
+					writeSignedVarInt(events.getLevel(i, rank));
+				}
+			}
+		}
+
+		private void endPattern() throws IOException {
+			m_buffer.flip();
+			try {
+				while(m_buffer.hasRemaining()) {
+					m_channel.write(m_buffer);
+				}
+			} catch(IOException e) {
+				m_failed = true;
+				throw e;
+			}
+			m_entries.put(m_name, m_entry);
+			m_count++;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if(!m_failed) {
+					writeDirectory();
+				}
+			} catch(IOException | RuntimeException e) {
+				m_failed = true;
+				throw e;
+			} finally {
+				m_output.close();
+				if(m_failed && !m_tempFile.delete()) {
+					FileUtils.log("Cannot delete pattern library '%s'", m_tempFile.getName());
+				}
+			}
+			if(!m_failed) {
+				Files.move(m_tempFile.toPath(), m_file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+
+		private void writeDirectory() throws IOException {
+			long directoryOffset = m_channel.position();
+			for(Map.Entry<String, Entry> entry : m_entries.entrySet()) {
+				byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				m_buffer.clear();
+				ensureCapacity(name.length + 2 * 5 + 1);
+				writeVarInt(name.length);
+				m_buffer.put(name);
+				m_buffer.put(entry.getValue().kind);
+				writeVarInt(entry.getValue().offset);
+				m_buffer.flip();
+				while(m_buffer.hasRemaining()) {
+					m_channel.write(m_buffer);
+				}
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putShort(VERSION).putInt(m_entries.size()).putLong(directoryOffset);
+			header.flip();
+			while(header.hasRemaining()) {
+				m_channel.write(header, header.position());
+			}
+		}
+
+		private void ensureCapacity(int bytes) {
+			if(m_buffer.remaining() < bytes) {
+				ByteBuffer buffer = ByteBuffer.allocate(Math.max(2 * m_buffer.capacity(), m_buffer.position() + bytes));
+				m_buffer.flip();
+				buffer.put(m_buffer);
+				m_buffer = buffer;
+			}
+		}
+
+		private void writeVarInt(int value) {
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		private void writeSignedVarInt(int value) {
+			writeVarInt((value << 1) ^ (value >> 31)); // Zigzag: small negative values stay small
+		}
+
+		private void writeVarLong(long value) {
+			ensureCapacity(10);
+			while((value & ~0x7FL) != 0) {
+				m_buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			m_buffer.put((byte) value);
+		}
+	}
+
+	//
+	// Decoding
+	//
+
+	private static Time.TimeSignature readTimeSignature(ByteBuffer input) {
+		int beatsInBar = readVarInt(input);
+		return new Time.TimeSignature(beatsInBar, readVarInt(input));
+	}
+
+	private static void readEvents(ByteBuffer input, Pattern pattern) {
+		int[][] levelArrays = new int[MAX_LEVELS + 1][]; // Reused by number of levels, the pattern copies them
+		int count = readVarInt(input);
+		long start = 0;
+		for(int i = 0; i < count; i++) {
+			start += readVarLong(input);
+			int duration = readVarInt(input);
+			int velocity = input.get() & 0xFF;
+			int levelCount = input.get() & 0xFF;
+			int[] levels = levelArrays[levelCount];
+			if(levels == null) {
+				levels = new int[levelCount];
+				levelArrays[levelCount] = levels;
+			}
+			for(int rank = 0; rank < levelCount; rank++) {
+				levels[rank] = readSignedVarInt(input);
+			}
+			pattern.add(levels, velocity, start, start + duration);
+		}
+	}
+
+	static int readVarInt(ByteBuffer input) {
+		return (int) readVarLong(input);
+	}
+
+	static int readSignedVarInt(ByteBuffer input) {
+		int value = readVarInt(input);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static long readVarLong(ByteBuffer input) {
+		long result = 0;
+		for(int shift = 0; shift < 64; shift += 7) {
+			byte b = input.get();
+			result |= (long) (b & 0x7F) << shift;
+			if(b >= 0) {
+				return result;
+			}
+		}
+		throw new IllegalStateException("Malformed varint at " + input.position());
+	}
+}
@@ -0,0 +1,365 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.pattern;
+
+import mcs.melody.Note;
+import mcs.utils.StringUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming tokenizer of the pattern text files (.mpt, .dpt), read in a single pass.
+ * <p>
+ * Each call to {@link #next()} reads one line, skipping empty lines and comments (starting with '#'). A line is either:
+ * <ul>
+ * <li>an option: 'name=value', the value being an integer,</li>
+ * <li>an event: fields separated by ';', each field being a list of values separated by ','. A value is an integer or a
+ * {@link Note.Dynamic} label, read as its velocity.</li>
+ * </ul>
+ * Values are parsed in place: no regular expression, no {@link String} by field. Errors are reported as {@link IOException}
+ * with the source and line number.
+ */
+public class PatternReader implements Closeable {
+
+	static final int BUFFER_SIZE = 8192; // Chars
+	static final int MAX_NAME_LENGTH = 64; // Chars of option names and labels
+
+	private static final Note.Dynamic[] DYNAMICS = Note.Dynamic.values();
+
+	private final Reader m_reader; // Null when reading 'm_bytes'
+	private final ByteBuffer m_bytes;
+	private final String m_source;
+
+	private final char[] m_buffer;
+	private int m_position = 0;
+	private int m_limit = 0;
+	private int m_lineNumber = 0;
+
+	// Current line
+	private boolean m_option;
+	private final char[] m_name = new char[MAX_NAME_LENGTH]; // Option name or label being read
+	private int m_nameLength;
+	private int m_optionValue;
+	private int[] m_values = new int[16]; // Values of all fields
+	private int m_valueCount;
+	private int[] m_fieldEnds = new int[8]; // Index in m_values after the last value of each field
+	private int m_fieldCount;
+
+	/**
+	 * @param reader
+	 * @param source Name of the source, used in error messages.
+	 */
+	public PatternReader(Reader reader, String source) {
+		m_reader = reader;
+		m_bytes = null;
+		m_source = source;
+		m_buffer = new char[BUFFER_SIZE];
+	}
+
+	/**
+	 * Reads 'bytes' from its position to its limit, as ASCII. The buffer is not copied.
+	 *
+	 * @param bytes
+	 * @param source Name of the source, used in error messages.
+	 */
+	public PatternReader(ByteBuffer bytes, String source) {
+		m_reader = null;
+		m_bytes = bytes;
+		m_source = source;
+		m_buffer = null;
+	}
+
+	public static PatternReader open(File file) throws IOException {
+		return new PatternReader(new InputStreamReader(new FileInputStream(file), StringUtils.DEFAULT_ENCODING), file.getName());
+	}
+
+	/**
+	 * Reads the next option or event line.
+	 *
+	 * @return false at the end of the input.
+	 * @throws IOException If the line is malformed.
+	 */
+	public boolean next() throws IOException {
+		while(true) {
+			int c = read();
+			if(c < 0) {
+				return false;
+			}
+			m_lineNumber++;
+			while(c == ' ' || c == '\t' || c == '\r') {
+				c = read();
+			}
+			if(c == '\n' || c < 0) { // Empty line
+				continue;
+			}
+			if(c == '#') {
+				skipLine();
+				continue;
+			}
+			if(isLetter(c)) {
+				readOption(c);
+			} else {
+				readEvent(c);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Returns the number of the line read by the last call to {@link #next()}, starting with 1.
+	 *
+	 * @return
+	 */
+	public int getLineNumber() {
+		return m_lineNumber;
+	}
+
+	public boolean isOption() {
+		return m_option;
+	}
+
+	/**
+	 * Tells if the current line is the option 'name', ignoring case.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public boolean isOption(String name) {
+		return m_option && equalsIgnoreCase(name, m_name, m_nameLength);
+	}
+
+	public int getOptionValue() {
+		return m_optionValue;
+	}
+
+	/**
+	 * Returns the number of fields of the current event line.
+	 *
+	 * @return
+	 */
+	public int getFieldCount() {
+		return m_fieldCount;
+	}
+
+	public int getValueCount(int field) {
+		return m_fieldEnds[field] - (field == 0 ? 0 : m_fieldEnds[field - 1]);
+	}
+
+	public int getValue(int field, int index) {
+		return m_values[(field == 0 ? 0 : m_fieldEnds[field - 1]) + index];
+	}
+
+	/**
+	 * Returns the value of a field that must hold exactly one value.
+	 *
+	 * @param field
+	 * @return
+	 * @throws IOException If the field holds a list.
+	 */
+	public int getValue(int field) throws IOException {
+		if(getValueCount(field) != 1) {
+			throw error("one value expected in field " + (field + 1));
+		}
+		return getValue(field, 0);
+	}
+
+	/**
+	 * Checks that the current event line has 'count' fields.
+	 *
+	 * @param count
+	 * @throws IOException
+	 */
+	public void requireFields(int count) throws IOException {
+		if(m_fieldCount != count) {
+			throw error(count + " fields expected, found " + m_fieldCount);
+		}
+	}
+
+	/**
+	 * Builds an exception locating 'message' at the current line.
+	 *
+	 * @param message
+	 * @return
+	 */
+	public IOException error(String message) {
+		return new IOException(String.format("%s:%d: %s", m_source, m_lineNumber, message));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(m_reader != null) {
+			m_reader.close();
+		}
+	}
+
+	//
+	// Parsing
+	//
+
+	private void readOption(int c) throws IOException {
+		m_option = true;
+		m_nameLength = 0;
+		while(c != '=') {
+			if(c < 0 || c == '\n' || c == '\r') {
+				throw error("'=' expected after option name");
+			}
+			if(c != ' ' && c != '\t') {
+				appendName(c);
+			}
+			c = read();
+		}
+
+		int value = 0;
+		int digits = 0;
+		boolean negative = false;
+		for(c = read(); c >= 0 && c != '\n'; c = read()) {
+			if(c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				digits++;
+			} else if(c == '-' && digits == 0 && !negative) {
+				negative = true;
+			} else if(c != ' ' && c != '\t' && c != '\r') {
+				throw error("integer expected as value of option '" + new String(m_name, 0, m_nameLength) + "'");
+			}
+		}
+		if(digits == 0) {
+			throw error("missing value of option '" + new String(m_name, 0, m_nameLength) + "'");
+		}
+		m_optionValue = negative ? -value : value;
+	}
+
+	private void readEvent(int c) throws IOException {
+		m_option = false;
+		m_valueCount = 0;
+		m_fieldCount = 0;
+
+		int value = 0;
+		int digits = 0;
+		boolean negative = false;
+		m_nameLength = 0;
+		while(true) {
+			if(c >= '0' && c <= '9' && m_nameLength == 0) {
+				value = value * 10 + (c - '0');
+				digits++;
+			} else if(c == '-' && digits == 0 && !negative && m_nameLength == 0) {
+				negative = true;
+			} else if(isLetter(c) && digits == 0 && !negative) {
+				appendName(c);
+			} else if(c == ',' || c == ';' || c == '\n' || c < 0) {
+				// End of value
+				if(m_nameLength > 0) {
+					value = parseDynamic();
+				} else if(digits == 0) {
+					throw error("missing value in field " + (m_fieldCount + 1));
+				} else if(negative) {
+					value = -value;
+				}
+				addValue(value);
+				if(c != ',') {
+					addField();
+				}
+				if(c == '\n' || c < 0) {
+					return;
+				}
+				value = 0;
+				digits = 0;
+				negative = false;
+				m_nameLength = 0;
+			} else if(c != ' ' && c != '\t' && c != '\r') {
+				throw error("unexpected character '" + (char) c + "' in field " + (m_fieldCount + 1));
+			}
+			c = read();
+		}
+	}
+
+	private int parseDynamic() throws IOException {
+		for(Note.Dynamic dynamic : DYNAMICS) {
+			if(equalsIgnoreCase(dynamic.label, m_name, m_nameLength)) {
+				return dynamic.velocity;
+			}
+		}
+		throw error("unknown dynamic '" + new String(m_name, 0, m_nameLength) + "'");
+	}
+
+	private void appendName(int c) throws IOException {
+		if(m_nameLength == MAX_NAME_LENGTH) {
+			throw error("name too long");
+		}
+		m_name[m_nameLength++] = (char) c;
+	}
+
+	private void addValue(int value) {
+		if(m_valueCount == m_values.length) {
+			m_values = Arrays.copyOf(m_values, m_valueCount * 2);
+		}
+		m_values[m_valueCount++] = value;
+	}
+
+	private void addField() {
+		if(m_fieldCount == m_fieldEnds.length) {
+			m_fieldEnds = Arrays.copyOf(m_fieldEnds, m_fieldCount * 2);
+		}
+		m_fieldEnds[m_fieldCount++] = m_valueCount;
+	}
+
+	private void skipLine() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while(c >= 0 && c != '\n');
+	}
+
+	/**
+	 * Returns the next char, -1 at the end of the input.
+	 */
+	private int read() throws IOException {
+		if(m_reader == null) {
+			return m_bytes.hasRemaining() ? m_bytes.get() & 0xFF : -1;
+		}
+		if(m_position == m_limit) {
+			m_limit = m_reader.read(m_buffer, 0, m_buffer.length);
+			m_position = 0;
+			if(m_limit <= 0) {
+				m_limit = 0;
+				return -1;
+			}
+		}
+		return m_buffer[m_position++];
+	}
+
+	private static boolean isLetter(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+
+	private static boolean equalsIgnoreCase(String name, char[] chars, int length) {
+		if(name.length() != length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(Character.toLowerCase(name.charAt(i)) != Character.toLowerCase(chars[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,475 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.pattern;
+
+import mcs.melody.Block;
+import mcs.melody.Note;
+import mcs.melody.Timeline;
+import mcs.midi.SmfReader;
+
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Converts a sequence of notes into a guitar tablature: each note gets a string and a fret.
+ * <p>
+ * Notes starting at the same tick are played together. For each of these onsets, the candidates are all the ways to put
+ * its notes on distinct strings, the higher notes on the higher strings, within {@link #getMaxSpan()} frets. The chosen
+ * path is the one that minimizes the hand movements along the song, found with a Viterbi pass: for each onset and each
+ * candidate, the cheapest path reaching it is kept. Transition costs are read in tables computed once per converter, so
+ * converting is linear in the number of onsets.
+ * <p>
+ * Notes out of the range of the neck are moved by octaves into it. Drum notes (channel 10) are ignored.
+ */
+public class TabConverter {
+
+	public static final int DEFAULT_MAX_SPAN = 4; // Frets
+	public static final int MAX_CANDIDATES = 32; // By onset
+
+	static final int DRUM_CHANNEL = 9;
+
+	// Costs
+	static final int MOVE_COST = 10; // By fret of hand shift
+	static final int STRING_COST = 2; // By string crossed by the lowest note
+	static final int FRET_COST = 1; // By fret of the hand position, lower positions being easier
+	static final int SPAN_COST = 3; // By fret of stretch inside an onset
+
+	private final int[] m_tuning; // Note of each open string, from the lowest string
+	private final int m_frets; // Number of frets, head excluded
+	private final int m_maxSpan;
+
+	private final int[][] m_moveCosts; // [from position][to position], position 0 being unknown
+	private final int[][] m_stringCosts; // [from string - 1][to string - 1]
+
+	/**
+	 * The result of a conversion.
+	 */
+	public static class Tablature {
+
+		private final int[] m_tuning;
+		private final long[] m_ticks; // By onset
+		private final int[][] m_notes; // By onset, then from the lowest note
+		private final int[][] m_strings; // Same indexes as m_notes, 1 for the lowest string
+		private final int[][] m_frets; // Same indexes as m_notes
+		private final int m_cost;
+
+		Tablature(int[] tuning, long[] ticks, int[][] notes, int[][] strings, int[][] frets, int cost) {
+			m_tuning = tuning;
+			m_ticks = ticks;
+			m_notes = notes;
+			m_strings = strings;
+			m_frets = frets;
+			m_cost = cost;
+		}
+
+		/**
+		 * Returns the number of onsets, an onset being the notes played at the same tick.
+		 *
+		 * @return
+		 */
+		public int size() {
+			return m_ticks.length;
+		}
+
+		public long getTick(int onset) {
+			return m_ticks[onset];
+		}
+
+		public int getNoteCount(int onset) {
+			return m_notes[onset].length;
+		}
+
+		/**
+		 * Returns the note played, after it has been moved into the range of the neck.
+		 *
+		 * @param onset
+		 * @param index From the lowest note of the onset.
+		 * @return
+		 */
+		public int getNote(int onset, int index) {
+			return m_notes[onset][index];
+		}
+
+		/**
+		 * @param onset
+		 * @param index From the lowest note of the onset.
+		 * @return 1 for the lowest string.
+		 */
+		public int getString(int onset, int index) {
+			return m_strings[onset][index];
+		}
+
+		/**
+		 * @param onset
+		 * @param index From the lowest note of the onset.
+		 * @return 0 for the open string.
+		 */
+		public int getFret(int onset, int index) {
+			return m_frets[onset][index];
+		}
+
+		/**
+		 * Returns the total cost of the path, the lower the less the hand moves.
+		 *
+		 * @return
+		 */
+		public int getCost() {
+			return m_cost;
+		}
+
+		/**
+		 * Writes the tablature as ASCII, highest string on top, one column by onset (see doc/example.tab).
+		 *
+		 * @param onsetsByLine Onsets before wrapping to a new staff.
+		 * @return
+		 */
+		public String toText(int onsetsByLine) {
+			StringBuilder result = new StringBuilder();
+			for(int first = 0; first < size() || first == 0; first += onsetsByLine) {
+				int last = Math.min(size(), first + onsetsByLine);
+				if(first > 0) {
+					result.append('\n');
+				}
+				for(int string = m_tuning.length; string >= 1; string--) {
+					result.append(Note.getName(m_tuning[string - 1])).append('|');
+					for(int onset = first; onset < last; onset++) {
+						String fret = "";
+						for(int index = 0; index < m_strings[onset].length; index++) {
+							if(m_strings[onset][index] == string) {
+								fret = Integer.toString(m_frets[onset][index]);
+							}
+						}
+						result.append('-').append(fret);
+						for(int column = fret.length(); column < getColumnWidth(onset) - 1; column++) {
+							result.append('-');
+						}
+					}
+					result.append("-|\n");
+				}
+			}
+			return result.toString();
+		}
+
+		private int getColumnWidth(int onset) {
+			int result = 5;
+			for(int fret : m_frets[onset]) {
+				result = Math.max(result, Integer.toString(fret).length() + 4);
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return toText(16);
+		}
+	}
+
+	public TabConverter(Tuning tuning, int frets) {
+		this(tuning.getNotes(), frets, DEFAULT_MAX_SPAN);
+	}
+
+	public TabConverter(int[] tuning, int frets) {
+		this(tuning, frets, DEFAULT_MAX_SPAN);
+	}
+
+	public TabConverter(int[] tuning, int frets, int maxSpan) {
+		m_tuning = tuning.clone();
+		m_frets = frets;
+		m_maxSpan = maxSpan;
+
+		m_moveCosts = new int[frets + 1][frets + 1];
+		for(int from = 1; from <= frets; from++) {
+			for(int to = 1; to <= frets; to++) {
+				m_moveCosts[from][to] = Math.abs(to - from) * MOVE_COST;
+			}
+		}
+		m_stringCosts = new int[tuning.length][tuning.length];
+		for(int from = 0; from < tuning.length; from++) {
+			for(int to = 0; to < tuning.length; to++) {
+				m_stringCosts[from][to] = Math.abs(to - from) * STRING_COST;
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum number of frets between the lowest and the highest fretted notes of an onset, both included.
+	 *
+	 * @return
+	 */
+	public int getMaxSpan() {
+		return m_maxSpan;
+	}
+
+	public Tablature convert(Block block) {
+		Timeline timeline = block.compile();
+		NoteList notes = new NoteList();
+		for(int index = 0; index < timeline.getMessageCount(); index++) {
+			int message = timeline.getMessage(index);
+			if(Timeline.getCommand(message) == ShortMessage.NOTE_ON && Timeline.getData2(message) > 0
+					&& Timeline.getChannel(message) != DRUM_CHANNEL) {
+				notes.add(timeline.getTick(index), Timeline.getData1(message));
+			}
+		}
+		return convert(notes);
+	}
+
+	public Tablature convert(Track track) {
+		NoteList notes = new NoteList();
+		notes.addAll(track);
+		return convert(notes);
+	}
+
+	/**
+	 * Converts the notes of all the tracks of 'sequence', merged.
+	 *
+	 * @param sequence
+	 * @return
+	 */
+	public Tablature convert(Sequence sequence) {
+		NoteList notes = new NoteList();
+		for(Track track : sequence.getTracks()) {
+			notes.addAll(track);
+		}
+		return convert(notes);
+	}
+
+	/**
+	 * Converts the notes of all the tracks of a MIDI file, read in place by {@link SmfReader}.
+	 *
+	 * @param midiFile
+	 * @return
+	 * @throws IOException
+	 */
+	public Tablature convert(File midiFile) throws IOException {
+		final NoteList notes = new NoteList();
+		SmfReader.open(midiFile).accept(new SmfReader.Visitor() {
+			@Override
+			public void visitMessage(int track, long tick, int message) {
+				if(Timeline.getCommand(message) == ShortMessage.NOTE_ON && Timeline.getData2(message) > 0
+						&& Timeline.getChannel(message) != DRUM_CHANNEL) {
+					notes.add(tick, Timeline.getData1(message));
+				}
+			}
+		});
+		return convert(notes);
+	}
+
+	//
+	// Conversion
+	//
+
+	/**
+	 * Notes packed as (tick, note) in longs, so that sorting them groups the onsets.
+	 */
+	static class NoteList {
+		long[] m_items = new long[64];
+		int m_size = 0;
+
+		void add(long tick, int note) {
+			if(m_size == m_items.length) {
+				m_items = Arrays.copyOf(m_items, m_size * 2);
+			}
+			m_items[m_size++] = (tick << 7) | (note & 0x7F);
+		}
+
+		void addAll(Track track) {
+			for(int index = 0; index < track.size(); index++) {
+				MidiEvent event = track.get(index);
+				MidiMessage message = event.getMessage();
+				if(message instanceof ShortMessage) {
+					ShortMessage shortMessage = (ShortMessage) message;
+					if(shortMessage.getCommand() == ShortMessage.NOTE_ON && shortMessage.getData2() > 0
+							&& shortMessage.getChannel() != DRUM_CHANNEL) {
+						add(event.getTick(), shortMessage.getData1());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A way to play an onset.
+	 */
+	static class Candidate {
+		final int[] strings; // From the lowest note
+		final int[] frets;
+		final int position; // Lowest fretted fret, 0 if only open strings are played
+		final int cost;
+
+		Candidate(int[] strings, int[] frets, int position, int cost) {
+			this.strings = strings;
+			this.frets = frets;
+			this.position = position;
+			this.cost = cost;
+		}
+	}
+
+	Tablature convert(NoteList list) {
+		long[] items = Arrays.copyOf(list.m_items, list.m_size);
+		Arrays.sort(items);
+
+		// Grouping notes by onset
+		int lowest = m_tuning[0];
+		int highest = m_tuning[m_tuning.length - 1] + m_frets;
+		List<Long> ticks = new ArrayList<>();
+		List<int[]> onsets = new ArrayList<>();
+		int index = 0;
+		while(index < items.length) {
+			long tick = items[index] >>> 7;
+			int[] notes = new int[m_tuning.length];
+			int count = 0;
+			for(; index < items.length && (items[index] >>> 7) == tick; index++) {
+				int note = Note.getNoteInRange((int) (items[index] & 0x7F), lowest, highest);
+				if(Arrays.binarySearch(notes, 0, count, note) < 0) {
+					if(count == notes.length) { // More notes than strings: the highest ones are dropped
+						continue;
+					}
+					int position = -Arrays.binarySearch(notes, 0, count, note) - 1;
+					System.arraycopy(notes, position, notes, position + 1, count - position);
+					notes[position] = note;
+					count++;
+				}
+			}
+			ticks.add(tick);
+			onsets.add(Arrays.copyOf(notes, count));
+		}
+
+		// Viterbi pass
+		int size = onsets.size();
+		Candidate[][] candidates = new Candidate[size][];
+		int[][] pathCosts = new int[size][];
+		int[][] positions = new int[size][]; // Hand position reached, open strings keeping the previous one
+		int[][] previous = new int[size][];
+		for(int onset = 0; onset < size; onset++) {
+			int[] notes = onsets.get(onset);
+			List<Candidate> found = findCandidates(notes);
+			while(found.isEmpty()) { // Notes that cannot be played together: the highest ones are dropped
+				notes = Arrays.copyOf(notes, notes.length - 1);
+				found = findCandidates(notes);
+			}
+			onsets.set(onset, notes);
+			candidates[onset] = found.toArray(new Candidate[found.size()]);
+
+			int count = candidates[onset].length;
+			pathCosts[onset] = new int[count];
+			positions[onset] = new int[count];
+			previous[onset] = new int[count];
+			for(int c = 0; c < count; c++) {
+				Candidate candidate = candidates[onset][c];
+				int best = -1;
+				int bestCost = 0;
+				if(onset > 0) {
+					Candidate[] from = candidates[onset - 1];
+					for(int p = 0; p < from.length; p++) {
+						int cost = pathCosts[onset - 1][p] + m_moveCosts[positions[onset - 1][p]][candidate.position]
+								+ m_stringCosts[from[p].strings[0] - 1][candidate.strings[0] - 1];
+						if(best < 0 || cost < bestCost) {
+							best = p;
+							bestCost = cost;
+						}
+					}
+				}
+				pathCosts[onset][c] = bestCost + candidate.cost;
+				previous[onset][c] = best;
+				positions[onset][c] = candidate.position > 0 || best < 0 ? candidate.position : positions[onset - 1][best];
+			}
+		}
+
+		// Backtracking from the cheapest end
+		long[] resultTicks = new long[size];
+		int[][] resultNotes = new int[size][];
+		int[][] resultStrings = new int[size][];
+		int[][] resultFrets = new int[size][];
+		int cost = 0;
+		int c = -1;
+		if(size > 0) {
+			c = 0;
+			for(int last = 1; last < pathCosts[size - 1].length; last++) {
+				if(pathCosts[size - 1][last] < pathCosts[size - 1][c]) {
+					c = last;
+				}
+			}
+			cost = pathCosts[size - 1][c];
+		}
+		for(int onset = size - 1; onset >= 0; onset--) {
+			Candidate candidate = candidates[onset][c];
+			resultTicks[onset] = ticks.get(onset);
+			resultNotes[onset] = onsets.get(onset);
+			resultStrings[onset] = candidate.strings;
+			resultFrets[onset] = candidate.frets;
+			c = previous[onset][c];
+		}
+		return new Tablature(m_tuning, resultTicks, resultNotes, resultStrings, resultFrets, cost);
+	}
+
+	/**
+	 * Returns the cheapest ways to play 'notes', at most {@link #MAX_CANDIDATES}.
+	 *
+	 * @param notes Distinct, from the lowest.
+	 * @return
+	 */
+	List<Candidate> findCandidates(int[] notes) {
+		List<Candidate> result = new ArrayList<>();
+		search(notes, 0, 1, new int[notes.length], new int[notes.length], result);
+		if(result.size() > MAX_CANDIDATES) {
+			Collections.sort(result, new Comparator<Candidate>() {
+				@Override
+				public int compare(Candidate c1, Candidate c2) {
+					return Integer.compare(c1.cost, c2.cost);
+				}
+			});
+			result = new ArrayList<>(result.subList(0, MAX_CANDIDATES));
+		}
+		return result;
+	}
+
+	private void search(int[] notes, int index, int firstString, int[] strings, int[] frets, List<Candidate> result) {
+		if(index == notes.length) {
+			int low = 0;
+			int high = 0;
+			for(int fret : frets) {
+				if(fret > 0) {
+					low = low == 0 ? fret : Math.min(low, fret);
+					high = Math.max(high, fret);
+				}
+			}
+			if(low > 0 && high - low + 1 > m_maxSpan) {
+				return;
+			}
+			int span = low == 0 ? 0 : high - low;
+			result.add(new Candidate(strings.clone(), frets.clone(), low, low * FRET_COST + span * SPAN_COST));
+			return;
+		}
+		for(int string = firstString; string <= m_tuning.length - (notes.length - index - 1); string++) {
+			int fret = notes[index] - m_tuning[string - 1];
+			if(fret >= 0 && fret <= m_frets) {
+				strings[index] = string;
+				frets[index] = fret;
+				search(notes, index + 1, string + 1, strings, frets, result);
+			}
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package mcs.pattern;
+
+import mcs.melody.Note;
+import mcs.melody.PitchClassSet;
+
+import java.util.Arrays;
+
+/**
+ * The notes of the open strings of a fretted instrument, from the lowest string.
+ * <p>
+ * Strings are numbered from 1 (the lowest) to {@link #size()}. The frets where each pitch class is played on each string are
+ * computed once, up to {@link #MAX_FRETS}, so that looking for a note on the neck is a table lookup.
+ */
+public final class Tuning {
+
+	public static final int MAX_FRETS = 24;
+
+	public static final Tuning STANDARD = new Tuning("Standard", Note.E2, Note.A2, Note.D3, Note.G3, Note.B3, Note.E4);
+	public static final Tuning DROP_D = new Tuning("Drop D", Note.D2, Note.A2, Note.D3, Note.G3, Note.B3, Note.E4);
+	public static final Tuning DADGAD = new Tuning("DADGAD", Note.D2, Note.A2, Note.D3, Note.G3, Note.A3, Note.D4);
+	public static final Tuning OPEN_G = new Tuning("Open G", Note.D2, Note.G2, Note.D3, Note.G3, Note.B3, Note.D4);
+	public static final Tuning SEVEN_STRING = new Tuning("7-string", Note.B1, Note.E2, Note.A2, Note.D3, Note.G3, Note.B3,
+			Note.E4);
+	public static final Tuning BASS = new Tuning("Bass", Note.E1, Note.A1, Note.D2, Note.G2);
+	public static final Tuning BASS_5 = new Tuning("5-string bass", Note.B0, Note.E1, Note.A1, Note.D2, Note.G2);
+
+	private static final Tuning[] PROFILES = { STANDARD, DROP_D, DADGAD, OPEN_G, SEVEN_STRING, BASS, BASS_5 };
+
+	private final String m_label;
+	private final int[] m_notes; // Note of each open string, from the lowest string
+	private final int[][][] m_frets; // [string - 1][pitch class] -> frets in [0, MAX_FRETS], ascending
+
+	private Tuning(String label, int... notes) {
+		m_label = label;
+		m_notes = notes;
+		m_frets = new int[notes.length][12][];
+		for(int s = 0; s < notes.length; s++) {
+			for(int pitchClass = 0; pitchClass < 12; pitchClass++) {
+				int first = PitchClassSet.pitchClass(pitchClass - notes[s]);
+				int[] frets = new int[(MAX_FRETS - first) / 12 + 1];
+				for(int index = 0; index < frets.length; index++) {
+					frets[index] = first + index * 12;
+				}
+				m_frets[s][pitchClass] = frets;
+			}
+		}
+	}
+
+	/**
+	 * Returns the predefined tunings.
+	 *
+	 * @return
+	 */
+	public static Tuning[] values() {
+		return PROFILES.clone();
+	}
+
+	/**
+	 * Returns the tuning of the given open strings: a predefined one if it matches, a new custom tuning otherwise.
+	 *
+	 * @param notes From the lowest string.
+	 * @return
+	 */
+	public static Tuning of(int... notes) {
+		for(Tuning profile : PROFILES) {
+			if(Arrays.equals(profile.m_notes, notes)) {
+				return profile;
+			}
+		}
+		return new Tuning(toString(notes), notes.clone());
+	}
+
+	/**
+	 * Parses notes separated by spaces, like "E2 A2 D3 G3 B3 E4", see {@link #toString()}.
+	 *
+	 * @param notes
+	 * @return null if 'notes' cannot be parsed.
+	 */
+	public static Tuning parse(String notes) {
+		String[] names = notes.trim().split(" +");
+		int[] result = new int[names.length];
+		for(int index = 0; index < names.length; index++) {
+			result[index] = parseNote(names[index]);
+			if(result[index] == Note.NULL) {
+				return null;
+			}
+		}
+		return of(result);
+	}
+
+	/**
+	 * Returns the predefined tuning labelled 'label', ignoring case.
+	 *
+	 * @param label
+	 * @return null if there is no such tuning.
+	 */
+	public static Tuning byLabel(String label) {
+		for(Tuning profile : PROFILES) {
+			if(profile.m_label.equalsIgnoreCase(label)) {
+				return profile;
+			}
+		}
+		return null;
+	}
+
+	public String getLabel() {
+		return m_label;
+	}
+
+	/**
+	 * Returns the number of strings.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return m_notes.length;
+	}
+
+	/**
+	 * @param string 1 (lowest) to {@link #size()}.
+	 * @return
+	 */
+	public int getNote(int string) {
+		return m_notes[string - 1];
+	}
+
+	/**
+	 * Returns the notes of the open strings, from the lowest.
+	 *
+	 * @return
+	 */
+	public int[] getNotes() {
+		return m_notes.clone();
+	}
+
+	public int computeNote(int string, int fret) {
+		return m_notes[string - 1] + fret;
+	}
+
+	/**
+	 * Returns the fret of 'note' on 'string', negative if the string is too high to play it.
+	 *
+	 * @param string
+	 * @param note
+	 * @return
+	 */
+	public int computeFret(int string, int note) {
+		return note - m_notes[string - 1];
+	}
+
+	/**
+	 * Returns the frets in [0, {@link #MAX_FRETS}] where the pitch class of 'note' is played on 'string'. The returned array is
+	 * shared and must not be modified.
+	 *
+	 * @param string 1 (lowest) to {@link #size()}.
+	 * @param note
+	 * @return Frets in ascending order.
+	 */
+	public int[] getFrets(int string, int note) {
+		return m_frets[string - 1][PitchClassSet.pitchClass(note)];
+	}
+
+	/**
+	 * Returns the open strings as parsed by {@link #parse(String)}.
+	 *
+	 * @return
+	 */
+	@Override
+	public String toString() {
+		return toString(m_notes);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof Tuning && Arrays.equals(m_notes, ((Tuning) other).m_notes);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(m_notes);
+	}
+
+	//
+	// Note names
+	//
+
+	static String toString(int[] notes) {
+		StringBuilder result = new StringBuilder();
+		for(int note : notes) {
+			if(result.length() > 0) {
+				result.append(' ');
+			}
+			result.append(Note.getName(note)).append((note - Note.C0) / 12);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Parses a note name followed by its octave: "E2", "C#3", "Bb1".
+	 *
+	 * @param name
+	 * @return {@link Note#NULL} if 'name' cannot be parsed.
+	 */
+	static int parseNote(String name) {
+		if(name.length() < 2) {
+			return Note.NULL;
+		}
+		int pitchClass = "C D EF G A B".indexOf(name.charAt(0));
+		if(pitchClass < 0 || name.charAt(0) == ' ') {
+			return Note.NULL;
+		}
+		int index = 1;
+		if(name.charAt(index) == '#') {
+			pitchClass++;
+			index++;
+		} else if(name.charAt(index) == 'b') {
+			pitchClass--;
+			index++;
+		}
+		int octave = 0;
+		if(index == name.length()) {
+			return Note.NULL;
+		}
+		for(; index < name.length(); index++) {
+			char c = name.charAt(index);
+			if(c < '0' || c > '9') {
+				return Note.NULL;
+			}
+			octave = octave * 10 + (c - '0');
+		}
+		return Note.C0 + octave * 12 + pitchClass;
+	}
+}
@@ -0,0 +1,118 @@
+package benchmark;
+
+import mcs.melody.Chord;
+import mcs.melody.Note;
+import mcs.utils.StringUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares {@link Chord#byName(String, int)} with its previous implementation (kept below): two regular expressions, a map of
+ * note names built at each call and a chain of string comparisons.
+ * <p>
+ * Arguments (all optional): number of calls per round, number of rounds.
+ */
+public class ChordBenchmark {
+
+	static final String[] SYMBOLS = { "C", "Am", "Dm7", "G7", "CM7", "F#m7b5", "B7b9", "Em9", "Ab13", "Eb6 9", "Bbdim7", "E7#9" };
+
+	public static void main(String[] args) {
+		int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		// The previous implementation compared flavors ignoring case, then read "m7" as "M7"
+		for(String symbol : SYMBOLS) {
+			if(!Arrays.equals(Chord.byName(symbol, 3), legacyByName(symbol, 3))) {
+				System.out.println("Different chords for " + symbol + ": " + Arrays.toString(Chord.byName(symbol, 3)) + " / "
+						+ Arrays.toString(legacyByName(symbol, 3)));
+			}
+		}
+
+		System.out.println(String.format("%-8s %12s %12s", "round", "legacy ns", "byName ns"));
+		long checksum = 0;
+		for(int round = 0; round < rounds; round++) {
+			long start_ns = System.nanoTime();
+			for(int i = 0; i < calls; i++) {
+				checksum += legacyByName(SYMBOLS[i % SYMBOLS.length], 3)[0];
+			}
+			long legacy_ns = System.nanoTime() - start_ns;
+
+			start_ns = System.nanoTime();
+			for(int i = 0; i < calls; i++) {
+				checksum += Chord.byName(SYMBOLS[i % SYMBOLS.length], 3)[0];
+			}
+			long byName_ns = System.nanoTime() - start_ns;
+
+			System.out.println(String.format("%-8d %12.1f %12.1f", round, (double) legacy_ns / calls, (double) byName_ns / calls));
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	static int[] legacyByName(String name, int octave) {
+		String regex = "([ABCDEFG][b#]?)(.*)";
+		String keyName = StringUtils.getGroup(name, regex, 1);
+		String flavorName = StringUtils.getGroup(name, regex, 2);
+
+		Map<String, Integer> noteOffsets = new HashMap<>();
+		noteOffsets.put("C", 0);
+		noteOffsets.put("C#", 1);
+		noteOffsets.put("Db", 1);
+		noteOffsets.put("D", 2);
+		noteOffsets.put("D#", 3);
+		noteOffsets.put("Eb", 3);
+		noteOffsets.put("E", 4);
+		noteOffsets.put("F", 5);
+		noteOffsets.put("F#", 6);
+		noteOffsets.put("Gb", 6);
+		noteOffsets.put("G", 7);
+		noteOffsets.put("G#", 8);
+		noteOffsets.put("Ab", 8);
+		noteOffsets.put("A", 9);
+		noteOffsets.put("A#", 10);
+		noteOffsets.put("Bb", 10);
+		noteOffsets.put("B", 11);
+
+		int key = Note.C0 + noteOffsets.get(keyName) + octave * 12;
+		if(StringUtils.equalsOne(flavorName, "")) {
+			return Chord.K(key);
+		} else if(StringUtils.equalsOne(flavorName, "m")) {
+			return Chord.Km(key);
+		} else if(StringUtils.equalsOne(flavorName, "M7", "Maj7")) {
+			return Chord.KM7(key);
+		} else if(StringUtils.equalsOne(flavorName, "7")) {
+			return Chord.K7(key);
+		} else if(StringUtils.equalsOne(flavorName, "m7")) {
+			return Chord.Km7(key);
+		} else if(StringUtils.equalsOne(flavorName, "m7b5")) {
+			return Chord.Km7b5(key);
+		} else if(StringUtils.equalsOne(flavorName, "°7", "dim7")) {
+			return Chord.Kdim7(key);
+		} else if(StringUtils.equalsOne(flavorName, "6")) {
+			return Chord.K6(key);
+		} else if(StringUtils.equalsOne(flavorName, "m6")) {
+			return Chord.Km6(key);
+		} else if(StringUtils.equalsOne(flavorName, "7sus4")) {
+			return Chord.K7sus4(key);
+		} else if(StringUtils.equalsOne(flavorName, "9")) {
+			return Chord.K9(key);
+		} else if(StringUtils.equalsOne(flavorName, "m9")) {
+			return Chord.Km9(key);
+		} else if(StringUtils.equalsOne(flavorName, "7#11")) {
+			return Chord.K7s11(key);
+		} else if(StringUtils.equalsOne(flavorName, "7#5")) {
+			return Chord.K7s5(key);
+		} else if(StringUtils.equalsOne(flavorName, "6 9", "69")) {
+			return Chord.K69(key);
+		} else if(StringUtils.equalsOne(flavorName, "13")) {
+			return Chord.K13(key);
+		} else if(StringUtils.equalsOne(flavorName, "7b9")) {
+			return Chord.K7b9(key);
+		} else if(StringUtils.equalsOne(flavorName, "7#9")) {
+			return Chord.K7s9(key);
+		} else {
+			return null;
+		}
+	}
+}
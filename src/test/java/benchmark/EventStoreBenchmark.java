@@ -0,0 +1,121 @@
+package benchmark;
+
+import mcs.pattern.Event;
+import mcs.pattern.EventStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares the memory used and the time to scan a 10k notes pattern, stored in an {@link EventStore} and in the previous layout
+ * of {@link mcs.pattern.Pattern}: a TreeMap of lists of {@link Event}s by tick.
+ * <p>
+ * Arguments (all optional): number of notes, number of scans.
+ */
+public class EventStoreBenchmark {
+
+	static final int COPIES = 50; // Patterns kept in memory to measure their size
+
+	public static void main(String[] args) {
+		int notes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int scans = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+		// Memory
+		Object[] legacy = new Object[COPIES];
+		long before = usedMemory();
+		for(int c = 0; c < COPIES; c++) {
+			legacy[c] = buildLegacy(notes);
+		}
+		long legacyBytes = (usedMemory() - before) / COPIES;
+
+		Object[] stores = new Object[COPIES];
+		before = usedMemory();
+		for(int c = 0; c < COPIES; c++) {
+			stores[c] = buildStore(notes);
+		}
+		long storeBytes = (usedMemory() - before) / COPIES;
+
+		System.out.println(String.format("%d notes", notes));
+		System.out.println(String.format("%-12s %10s %10s %12s", "layout", "bytes", "per note", "scan us"));
+
+		// Scan speed: summing every field of every event
+		@SuppressWarnings("unchecked")
+		Map<Long, List<Event>> map = (Map<Long, List<Event>>) legacy[0];
+		EventStore store = (EventStore) stores[0];
+		long checksum = 0;
+		for(int warmup = 0; warmup < 2; warmup++) {
+			long start_ns = System.nanoTime();
+			for(int s = 0; s < scans; s++) {
+				checksum += scanLegacy(map);
+			}
+			long legacyScan_ns = (System.nanoTime() - start_ns) / scans;
+
+			start_ns = System.nanoTime();
+			for(int s = 0; s < scans; s++) {
+				checksum += scanStore(store);
+			}
+			long storeScan_ns = (System.nanoTime() - start_ns) / scans;
+
+			if(warmup == 1) {
+				print("TreeMap", legacyBytes, notes, legacyScan_ns);
+				print("EventStore", storeBytes, notes, storeScan_ns);
+			}
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	static Map<Long, List<Event>> buildLegacy(int notes) {
+		Map<Long, List<Event>> result = new TreeMap<>();
+		for(int n = 0; n < notes; n++) {
+			long tick = 2L * n;
+			List<Event> events = result.get(tick);
+			if(events == null) {
+				events = new ArrayList<>();
+				result.put(tick, events);
+			}
+			events.add(new Event(new int[] { 1 + n % 7 }, 100, 2));
+		}
+		return result;
+	}
+
+	static EventStore buildStore(int notes) {
+		EventStore result = new EventStore();
+		for(int n = 0; n < notes; n++) {
+			long tick = 2L * n;
+			result.add(new int[] { 1 + n % 7 }, 100, tick, tick + 2);
+		}
+		return result;
+	}
+
+	static long scanLegacy(Map<Long, List<Event>> map) {
+		long result = 0;
+		for(Map.Entry<Long, List<Event>> entry : map.entrySet()) {
+			for(Event event : entry.getValue()) {
+				result += entry.getKey() + event.getDuration_ticks() + event.getVelocity() + event.getLevels()[0];
+			}
+		}
+		return result;
+	}
+
+	static long scanStore(EventStore store) {
+		long result = 0;
+		for(int i = 0; i < store.size(); i++) {
+			result += store.getStart(i) + store.getDuration_ticks(i) + store.getVelocity(i) + store.getLevel(i, 0);
+		}
+		return result;
+	}
+
+	static void print(String layout, long bytes, int notes, long scan_ns) {
+		System.out.println(String.format("%-12s %10d %10.1f %12.1f", layout, bytes, (double) bytes / notes, scan_ns / 1000.0));
+	}
+
+	static long usedMemory() {
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
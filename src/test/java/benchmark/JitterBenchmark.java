@@ -0,0 +1,88 @@
+package benchmark;
+
+import mcs.WaitStrategy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Measures how late each {@link WaitStrategy} wakes up after its deadline, for deadlines spaced like the messages of a
+ * sequencer, and how much CPU the waiting thread uses.
+ * <p>
+ * Arguments (all optional): number of deadlines, period in microseconds, number of busy threads loading the CPU.
+ */
+public class JitterBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		int deadlines = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		long period_ns = (args.length > 1 ? Long.parseLong(args[1]) : 2000) * 1000L;
+		int loadThreads = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+		Thread[] load = startLoad(loadThreads);
+
+		System.out.println(String.format("%d deadlines every %d us, %d busy threads", deadlines, period_ns / 1000, loadThreads));
+		System.out.println(String.format("%-10s %8s %8s %8s %8s %8s %6s", "strategy", "p50 us", "p90 us", "p99 us", "p99.9 us",
+				"max us", "cpu %"));
+
+		for(WaitStrategy strategy : WaitStrategy.values()) {
+			measure(strategy, deadlines / 10, period_ns, false); // Warming up
+			measure(strategy, deadlines, period_ns, true);
+		}
+
+		for(Thread thread : load) {
+			thread.interrupt();
+		}
+	}
+
+	private static void measure(WaitStrategy strategy, int deadlines, long period_ns, boolean print)
+			throws InterruptedException {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long[] lateness_ns = new long[deadlines];
+
+		long cpuStart_ns = threads.getCurrentThreadCpuTime();
+		long start_ns = System.nanoTime() + period_ns;
+		for(int i = 0; i < deadlines; i++) {
+			long deadline_ns = start_ns + i * period_ns; // Absolute deadlines, as the sequencer does
+			strategy.waitUntil(deadline_ns);
+			lateness_ns[i] = System.nanoTime() - deadline_ns;
+		}
+		long elapsed_ns = System.nanoTime() - start_ns + period_ns;
+		long cpu_ns = threads.getCurrentThreadCpuTime() - cpuStart_ns;
+
+		if(!print) {
+			return;
+		}
+
+		Arrays.sort(lateness_ns);
+		System.out.println(String.format("%-10s %8.1f %8.1f %8.1f %8.1f %8.1f %6.1f", strategy, percentile(lateness_ns, 50),
+				percentile(lateness_ns, 90), percentile(lateness_ns, 99), percentile(lateness_ns, 99.9),
+				lateness_ns[deadlines - 1] / 1000.0, 100.0 * cpu_ns / elapsed_ns));
+	}
+
+	/**
+	 * Returns the percentile of sorted values, in microseconds.
+	 */
+	private static double percentile(long[] sorted_ns, double percent) {
+		int index = (int) Math.ceil(percent / 100.0 * sorted_ns.length) - 1;
+		return sorted_ns[Math.max(0, Math.min(sorted_ns.length - 1, index))] / 1000.0;
+	}
+
+	private static Thread[] startLoad(int count) {
+		Thread[] result = new Thread[count];
+		for(int i = 0; i < count; i++) {
+			result[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					long x = 0;
+					while(!Thread.currentThread().isInterrupted()) {
+						x += System.nanoTime() % 7;
+					}
+				}
+			}, "Load " + i);
+			result[i].setDaemon(true);
+			result[i].start();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,54 @@
+package benchmark;
+
+import mcs.melody.Chord;
+import mcs.melody.Note;
+import mcs.pattern.MelodicPattern;
+import mcs.pattern.Pattern;
+import mcs.pattern.PatternCache;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares importing a melodic pattern file into a track, bar after bar, with {@link MelodicPattern#importPattern} (the file
+ * is read at each bar) and with {@link PatternCache}.
+ * <p>
+ * Arguments (all optional): pattern file, number of bars, number of rounds.
+ */
+public class PatternCacheBenchmark {
+
+	public static void main(String[] args) throws IOException, InvalidMidiDataException {
+		File file = new File(args.length > 0 ? args[0] : "pattern/melodic/arpeggio_1.mpt");
+		int bars = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		System.out.println(String.format("%-8s %12s %12s", "round", "file ms", "cache ms"));
+		long checksum = 0;
+		for(int round = 0; round < rounds; round++) {
+			Track track = new Sequence(Sequence.PPQ, Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT).createTrack();
+			long start_ns = System.nanoTime();
+			long tick = 0;
+			for(int bar = 0; bar < bars; bar++) {
+				tick = MelodicPattern.importPattern(file, track, 0, Chord.K(Note.E3), tick);
+			}
+			long file_ns = System.nanoTime() - start_ns;
+			checksum += tick + track.size();
+
+			track = new Sequence(Sequence.PPQ, Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT).createTrack();
+			start_ns = System.nanoTime();
+			tick = 0;
+			for(int bar = 0; bar < bars; bar++) {
+				tick = PatternCache.getInstance().importMelodicPattern(file, track, 0, Chord.K(Note.E3), tick);
+			}
+			long cache_ns = System.nanoTime() - start_ns;
+			checksum += tick + track.size();
+
+			System.out.println(String.format("%-8d %12.1f %12.1f", round, file_ns / 1e6, cache_ns / 1e6));
+		}
+		System.out.println(PatternCache.getInstance());
+		System.out.println("(checksum " + checksum + ")");
+	}
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import mcs.melody.Time;
+import mcs.pattern.MelodicPattern;
+import mcs.pattern.PatternLibrary;
+import mcs.utils.FileUtils;
+import mcs.utils.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Compares loading a set of melodic patterns from their text files with opening the same patterns as a
+ * {@link PatternLibrary}.
+ * <p>
+ * 50k patterns of 16 events are generated in a temporary directory, then imported into a library. Arguments (all optional):
+ * number of patterns, number of rounds.
+ */
+public class PatternLibraryBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int patterns = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		File dir = Files.createTempDirectory("benchmark").toFile();
+		File[] files = new File[patterns];
+		for(int index = 0; index < patterns; index++) {
+			MelodicPattern pattern = new MelodicPattern(new Time.TimeSignature(4, 4), 4);
+			for(int event = 0; event < 16; event++) {
+				pattern.add(new int[] { 1 + (index + event) % 7, 3 + event % 5 }, 64 + event, event * 4, event * 4 + 2);
+			}
+			files[index] = new File(dir, String.format("pattern%05d.mpt", index));
+			FileUtils.writeToFile(pattern.getContent(), files[index], StringUtils.DEFAULT_ENCODING, false);
+		}
+		File libraryFile = new File(dir, "patterns" + PatternLibrary.FILE_EXTENSION);
+		PatternLibrary.importText(dir, libraryFile);
+		System.out.println(String.format("%d patterns, text %.1f MB, library %.1f MB", patterns, sizeOf(files) / 1e6,
+				libraryFile.length() / 1e6));
+
+		System.out.println(String.format("%-8s %12s %12s %12s", "round", "text ms", "open ms", "decode ms"));
+		long checksum = 0;
+		for(int round = 0; round < rounds; round++) {
+			long start_ns = System.nanoTime();
+			for(File file : files) {
+				checksum += MelodicPattern.load(file).getBars();
+			}
+			long text_ns = System.nanoTime() - start_ns;
+
+			start_ns = System.nanoTime();
+			PatternLibrary library = PatternLibrary.open(libraryFile);
+			long open_ns = System.nanoTime() - start_ns;
+
+			start_ns = System.nanoTime();
+			for(String name : library.getNames()) {
+				checksum += library.getMelodicPattern(name).getBars();
+			}
+			long decode_ns = System.nanoTime() - start_ns;
+
+			System.out.println(String.format("%-8d %12.1f %12.1f %12.1f", round, text_ns / 1e6, open_ns / 1e6, decode_ns / 1e6));
+		}
+		System.out.println("(checksum " + checksum + ")");
+
+		for(File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	static long sizeOf(File[] files) {
+		long result = 0;
+		for(File file : files) {
+			result += file.length();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,82 @@
+package benchmark;
+
+import mcs.melody.Note;
+import mcs.melody.Time;
+import mcs.pattern.MelodicPattern;
+import mcs.pattern.Pattern;
+import mcs.utils.FileUtils;
+import mcs.utils.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares {@link MelodicPattern#load(File)} with its previous implementation (kept below): the file read twice through
+ * {@link FileUtils#readLines(File)}, every line split with regular expressions and numbers boxed.
+ * <p>
+ * A pattern of one million lines is generated in a temporary file. Arguments (all optional): number of lines, number of
+ * rounds.
+ */
+public class PatternReaderBenchmark {
+
+	static final String[] DYNAMICS = { "mp", "mf", "f", "100" };
+
+	public static void main(String[] args) throws IOException {
+		int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		File file = File.createTempFile("benchmark", ".mpt");
+		file.deleteOnExit();
+		StringBuilder content = new StringBuilder(Pattern.OPTION_TICKS_PER_BEAT + "=16\n");
+		for(int line = 0; line < lines; line++) {
+			content.append("0;").append(line % 3 == 0 ? "1,3,5" : Integer.toString(1 + line % 5)).append(';');
+			content.append(line * 4L).append(";4;").append(DYNAMICS[line % DYNAMICS.length]).append('\n');
+		}
+		FileUtils.writeToFile(content.toString(), file, StringUtils.DEFAULT_ENCODING, false);
+		System.out.println(String.format("%d lines, %.1f MB", lines, file.length() / 1e6));
+
+		System.out.println(String.format("%-8s %12s %12s", "round", "legacy ms", "load ms"));
+		long checksum = 0;
+		for(int round = 0; round < rounds; round++) {
+			long start_ns = System.nanoTime();
+			checksum += legacyLoad(file).getBars();
+			long legacy_ns = System.nanoTime() - start_ns;
+
+			start_ns = System.nanoTime();
+			checksum += MelodicPattern.load(file).getBars();
+			long load_ns = System.nanoTime() - start_ns;
+
+			System.out.println(String.format("%-8d %12.1f %12.1f", round, legacy_ns / 1e6, load_ns / 1e6));
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	static MelodicPattern legacyLoad(File patternFile) throws IOException {
+		int ticksPerBeat = 4;
+		for(String line : FileUtils.readLines(patternFile)) {
+			if(line.contains("=")) {
+				String[] words = line.split("=");
+				if(Pattern.OPTION_TICKS_PER_BEAT.equalsIgnoreCase(words[0])) {
+					ticksPerBeat = Integer.valueOf(words[1]);
+				}
+			}
+		}
+
+		MelodicPattern result = new MelodicPattern(new Time.TimeSignature(4, 4), ticksPerBeat);
+		for(String line : FileUtils.readLines(patternFile)) {
+			if(line.length() > 0 && !line.startsWith("#") && !line.contains("=")) {
+				String[] words = line.split(";");
+				int tick = Integer.valueOf(words[2]);
+				int duration = Integer.valueOf(words[3]);
+				int velocity = words[4].matches("[0-9]+") ? Integer.valueOf(words[4]) : Note.Dynamic.fromLabel(words[4]).velocity;
+				for(String intervalStr : words[1].split(",")) {
+					int interval = Integer.valueOf(intervalStr);
+					if(interval != Note.NULL) {
+						result.add(interval, velocity, tick, tick + duration);
+					}
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,97 @@
+package benchmark;
+
+import mcs.melody.Timeline;
+import mcs.midi.SmfReader;
+import mcs.midi.SmfWriter;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares reading a large MIDI file with {@link MidiSystem#getSequence(File)} (one MidiEvent and one MidiMessage by event),
+ * with {@link SmfReader#readEvents()} (packed arrays) and with a {@link SmfReader.Visitor} (nothing kept). The heap used
+ * after each read is measured while the result is still referenced.
+ * <p>
+ * A file of 4 tracks and 2 million notes is generated with {@link SmfWriter}. Arguments (all optional): number of notes,
+ * number of rounds.
+ */
+public class SmfReaderBenchmark {
+
+	public static void main(String[] args) throws IOException, InvalidMidiDataException {
+		int notes = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		File file = File.createTempFile("benchmark", ".mid");
+		file.deleteOnExit();
+		int tracks = 4;
+		try(SmfWriter writer = new SmfWriter(file, 1, 96)) {
+			for(int track = 0; track < tracks; track++) {
+				writer.startTrack();
+				for(int note = 0; note < notes / tracks; note++) {
+					int key = 36 + (note * 7 + track) % 48;
+					writer.writeMessage(note * 24L, Timeline.pack(ShortMessage.NOTE_ON, track, key, 100));
+					writer.writeMessage(note * 24L + 12, Timeline.pack(ShortMessage.NOTE_ON, track, key, 0));
+				}
+			}
+		}
+		System.out.println(String.format("%d notes, %.1f MB", notes, file.length() / 1e6));
+
+		System.out.println(String.format("%-8s %14s %14s %14s %14s %14s", "round", "javax ms", "javax MB", "events ms",
+				"events MB", "visitor ms"));
+		long checksum = 0;
+		for(int round = 0; round < rounds; round++) {
+			long[] javax = readSequence(file); // Duration, memory, checksum
+			long[] events = readEvents(file);
+
+			final long[] count = new long[1];
+			long start_ns = System.nanoTime();
+			SmfReader.open(file).accept(new SmfReader.Visitor() {
+				@Override
+				public void visitMessage(int track, long tick, int message) {
+					count[0] += message;
+				}
+			});
+			long visitor_ns = System.nanoTime() - start_ns;
+			checksum += javax[2] + events[2] + count[0];
+
+			System.out.println(String.format("%-8d %14.1f %14.1f %14.1f %14.1f %14.1f", round, javax[0] / 1e6, javax[1] / 1e6,
+					events[0] / 1e6, events[1] / 1e6, visitor_ns / 1e6));
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	static long[] readSequence(File file) throws IOException, InvalidMidiDataException {
+		long before_bytes = usedMemory();
+		long start_ns = System.nanoTime();
+		Sequence sequence = MidiSystem.getSequence(file);
+		long duration_ns = System.nanoTime() - start_ns;
+		long used_bytes = usedMemory() - before_bytes;
+		long checksum = 0;
+		for(Track track : sequence.getTracks()) {
+			checksum += track.size();
+		}
+		return new long[] { duration_ns, used_bytes, checksum };
+	}
+
+	static long[] readEvents(File file) throws IOException {
+		long before_bytes = usedMemory();
+		long start_ns = System.nanoTime();
+		SmfReader.Events events = SmfReader.open(file).readEvents();
+		long duration_ns = System.nanoTime() - start_ns;
+		long used_bytes = usedMemory() - before_bytes;
+		return new long[] { duration_ns, used_bytes, events.size() };
+	}
+
+	static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,58 @@
+package benchmark;
+
+import mcs.gui.components.GuitarNeck;
+import mcs.melody.Block;
+import mcs.melody.Note;
+import mcs.melody.Time;
+import mcs.pattern.TabConverter;
+
+import java.util.Random;
+
+/**
+ * Measures {@link TabConverter} on random melodies with some chords, doubling the number of notes at each size: the time by
+ * note must stay flat.
+ * <p>
+ * Arguments (all optional): smallest number of notes, number of sizes.
+ */
+public class TabConverterBenchmark {
+
+	public static void main(String[] args) {
+		int notes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+		int sizes = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+		TabConverter converter = new TabConverter(GuitarNeck.TUNING_STANDARD, GuitarNeck.DEFAULT_FRETS_NUMBER);
+		converter.convert(buildSong(10_000, 0)); // Warming up
+
+		System.out.println(String.format("%-10s %10s %10s", "notes", "total ms", "ns/note"));
+		long checksum = 0;
+		for(int size = 0; size < sizes; size++, notes *= 2) {
+			Block song = buildSong(notes, size);
+			long start_ns = System.nanoTime();
+			TabConverter.Tablature tab = converter.convert(song);
+			long elapsed_ns = System.nanoTime() - start_ns;
+			checksum += tab.getCost();
+			System.out.println(String.format("%-10d %10.1f %10.1f", notes, elapsed_ns / 1e6, (double) elapsed_ns / notes));
+		}
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * A random walk in the range of the guitar, with a power chord every 8 notes.
+	 */
+	static Block buildSong(int notes, long seed) {
+		Random random = new Random(seed);
+		Block result = new Block(new Time.TimeSignature(4, 4), 4, 0);
+		int note = Note.E3;
+		long tick = 0;
+		for(int index = 0; index < notes; index++, tick++) {
+			note = Math.max(Note.E2, Math.min(Note.C6, note + random.nextInt(9) - 4));
+			result.add(note, 100, tick, tick + 1);
+			if(index % 8 == 0) {
+				result.add(note + 7, 100, tick, tick + 1);
+				result.add(note + 12, 100, tick, tick + 1);
+				index += 2;
+			}
+		}
+		return result;
+	}
+}
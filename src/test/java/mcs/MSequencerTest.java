@@ -0,0 +1,308 @@
+package mcs;
+
+import mcs.melody.Block;
+import mcs.melody.Time;
+import mcs.melody.Timeline;
+import mcs.midi.MessageList;
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MSequencerTest {
+
+	@Test
+	public void noAllocationWhilePlaying() throws InterruptedException {
+		final long[] sent = new long[1];
+		Receiver receiver = new Receiver() {
+			@Override
+			public void send(MidiMessage message, long timeStamp) {
+				sent[0]++;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		// 16 ticks per beat at 240 bpm: a message every 15 ms or so
+		Block block = new Block(new Time.TimeSignature(4, 4), 16, 0);
+		for(int tick = 0; tick < 64; tick += 2) {
+			block.add(60 + tick % 12, 100, tick, tick + 1);
+		}
+
+		MSequencer sequencer = new MSequencer(receiver, 240);
+		sequencer.set(block);
+		sequencer.enableLooping(true);
+		sequencer.start();
+		try {
+			Thread.sleep(1500); // All the messages are played once, and the code is compiled
+
+			long[] threads = { findThread("MSequencer scheduling").getId(), findThread("MSequencer output").getId() };
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			long[] before = bean.getThreadAllocatedBytes(threads);
+			long sentBefore = sent[0];
+
+			Thread.sleep(1000);
+
+			long[] after = bean.getThreadAllocatedBytes(threads);
+			assertTrue(sent[0] > sentBefore);
+			assertEquals("Bytes allocated by the scheduling thread", 0, after[0] - before[0]);
+			assertEquals("Bytes allocated by the output thread", 0, after[1] - before[1]);
+		} finally {
+			sequencer.stop();
+		}
+	}
+
+	@Test
+	public void render() {
+		Block block = new Block(new Time.TimeSignature(2, 4), 2, 0);
+		block.add(60, 100, 0, 1);
+		block.add(64, 90, 2, 4);
+
+		MSequencer sequencer = new MSequencer(null, 120); // A tick lasts 250 ms
+		sequencer.set(block);
+		sequencer.enableLooping(true);
+
+		MessageList messages = sequencer.render(1_900_000_000L);
+
+		long[] times_ns = { 0, 250_000_000L, 500_000_000L, 1_000_000_000L, 1_000_000_000L, 1_250_000_000L, 1_500_000_000L,
+				1_900_000_000L };
+		int[] expected = { Timeline.pack(ShortMessage.NOTE_ON, 0, 60, 100), Timeline.pack(ShortMessage.NOTE_OFF, 0, 60, 0),
+				Timeline.pack(ShortMessage.NOTE_ON, 0, 64, 90), Timeline.pack(ShortMessage.NOTE_OFF, 0, 64, 0),
+				Timeline.pack(ShortMessage.NOTE_ON, 0, 60, 100), Timeline.pack(ShortMessage.NOTE_OFF, 0, 60, 0),
+				Timeline.pack(ShortMessage.NOTE_ON, 0, 64, 90), Timeline.pack(ShortMessage.NOTE_OFF, 0, 64, 0) };
+		assertEquals(expected.length, messages.size());
+		for(int i = 0; i < expected.length; i++) {
+			assertEquals(times_ns[i], messages.getTime_ns(i));
+			assertEquals(expected[i], messages.getMessage(i));
+		}
+
+		// Rendering again gives the same result
+		assertEquals(messages, sequencer.render(1_900_000_000L));
+	}
+
+	@Test
+	public void renderSequence() throws InvalidMidiDataException {
+		MSequencer sequencer = new MSequencer(null, 100);
+
+		Block waltz = new Block(new Time.TimeSignature(3, 4), 3, 1);
+		waltz.add(60, 100, 0, 1);
+		sequencer.set(waltz);
+
+		Block drums = new Block(new Time.TimeSignature(4, 4), 4, 9);
+		drums.add(36, 100, 2, 3);
+		sequencer.addTrack().set(drums);
+
+		Sequence sequence = sequencer.renderSequence(1_000_000_000L);
+		assertEquals(12, sequence.getResolution());
+
+		Track track = sequence.getTracks()[0];
+		List<String> events = new ArrayList<>();
+		for(int i = 0; i < track.size(); i++) {
+			MidiEvent event = track.get(i);
+			if(event.getMessage() instanceof ShortMessage) {
+				ShortMessage message = (ShortMessage) event.getMessage();
+				events.add(event.getTick() + ":" + message.getCommand() + ":" + message.getData1());
+			}
+		}
+		// Ticks of the waltz are 4 ticks of the sequence, those of the drums are 3
+		assertEquals("[0:144:60, 4:128:60, 6:144:36, 9:128:36]", events.toString());
+	}
+
+	@Test
+	public void renderMatchesPlayback() throws InterruptedException {
+		final List<Integer> played = Collections.synchronizedList(new ArrayList<Integer>());
+		final boolean[] stopping = new boolean[1];
+		Receiver receiver = new Receiver() {
+			@Override
+			public void send(MidiMessage message, long timeStamp) {
+				if(!stopping[0]) {
+					ShortMessage m = (ShortMessage) message;
+					played.add(Timeline.pack(m.getCommand(), m.getChannel(), m.getData1(), m.getData2()));
+				}
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		MSequencer sequencer = new MSequencer(receiver, 300);
+		sequencer.enableLooping(true);
+
+		Block waltz = new Block(new Time.TimeSignature(3, 4), 3, 0);
+		waltz.add(60, 100, 0, 2);
+		waltz.add(64, 100, 2, 7);
+		sequencer.set(waltz);
+
+		Block drums = new Block(new Time.TimeSignature(4, 4), 2, 9);
+		drums.add(36, 100, 0, 1);
+		drums.add(38, 100, 3, 4);
+		MTrack track = sequencer.addTrack();
+		track.set(drums);
+		track.setLoopLength_ticks(5);
+
+		sequencer.start();
+		Thread.sleep(1000);
+		stopping[0] = true;
+		sequencer.stop();
+
+		MessageList rendered = sequencer.render(5_000_000_000L);
+		assertTrue(played.size() > 10);
+		for(int i = 0; i < played.size(); i++) {
+			assertEquals("Message #" + i, rendered.getMessage(i), (int) played.get(i));
+		}
+	}
+
+	@Test
+	public void renderMute() {
+		MSequencer sequencer = new MSequencer(null, 120); // A tick lasts 250 ms
+		sequencer.set(buildBlock(0, 60));
+		MTrack muted = sequencer.addTrack();
+		muted.set(buildBlock(1, 62));
+
+		muted.setMute(true);
+		assertEquals("[0:144:0:60, 250:128:0:60]", describe(sequencer.render(900_000_000L)));
+
+		muted.setMute(false);
+		assertEquals("[0:144:0:60, 0:144:1:62, 250:128:0:60, 250:128:1:62]", describe(sequencer.render(900_000_000L)));
+	}
+
+	@Test
+	public void renderSolo() {
+		MSequencer sequencer = new MSequencer(null, 120);
+		sequencer.set(buildBlock(0, 60));
+		MTrack first = sequencer.addTrack();
+		first.set(buildBlock(1, 62));
+		MTrack second = sequencer.addTrack();
+		second.set(buildBlock(2, 64));
+
+		// Only the solo tracks play, whatever the number of tracks
+		first.setSolo(true);
+		second.setSolo(true);
+		assertEquals("[0:144:1:62, 0:144:2:64, 250:128:1:62, 250:128:2:64]", describe(sequencer.render(900_000_000L)));
+
+		// A track both solo and muted stays silent
+		second.setMute(true);
+		assertEquals("[0:144:1:62, 250:128:1:62]", describe(sequencer.render(900_000_000L)));
+
+		first.setSolo(false);
+		second.setSolo(false);
+		second.setMute(false);
+		assertEquals("[0:144:0:60, 0:144:1:62, 0:144:2:64, 250:128:0:60, 250:128:1:62, 250:128:2:64]",
+				describe(sequencer.render(900_000_000L)));
+	}
+
+	@Test
+	public void renderChannel() {
+		MSequencer sequencer = new MSequencer(null, 120);
+		sequencer.set(buildBlock(0, 60));
+		MTrack track = sequencer.getTrack(0);
+
+		track.setChannel(9);
+		assertEquals("[0:144:9:60, 250:128:9:60]", describe(sequencer.render(900_000_000L)));
+
+		track.setChannel(MTrack.BLOCK_CHANNEL);
+		assertEquals("[0:144:0:60, 250:128:0:60]", describe(sequencer.render(900_000_000L)));
+	}
+
+	@Test
+	public void renderLoopLength() {
+		Block block = new Block(new Time.TimeSignature(2, 4), 2, 0); // 4 ticks
+		block.add(60, 100, 0, 1);
+		block.add(64, 100, 2, 4);
+
+		MSequencer sequencer = new MSequencer(null, 120);
+		sequencer.set(block);
+		sequencer.enableLooping(true);
+		MTrack track = sequencer.getTrack(0);
+
+		// A shorter loop cuts the note sounding at its end
+		track.setLoopLength_ticks(3);
+		assertEquals("[0:144:0:60, 250:128:0:60, 500:144:0:64, 750:128:0:64, 750:144:0:60, 1000:128:0:60, 1250:144:0:64, "
+				+ "1400:128:0:64]", describe(sequencer.render(1_400_000_000L)));
+
+		// A longer one adds silence
+		track.setLoopLength_ticks(6);
+		assertEquals("[0:144:0:60, 250:128:0:60, 500:144:0:64, 1000:128:0:64, 1500:144:0:60, 1600:128:0:60]",
+				describe(sequencer.render(1_600_000_000L)));
+	}
+
+	@Test
+	public void renderSetWhilePlaying() {
+		Block first = new Block(new Time.TimeSignature(2, 4), 2, 0); // 4 ticks
+		first.add(60, 100, 0, 1);
+		first.add(64, 100, 1, 4); // Still sounding at the end of the loop
+		Block second = buildBlock(0, 67);
+
+		MSequencer sequencer = new MSequencer(null, 120); // A tick lasts 250 ms
+		sequencer.set(first);
+		MTrack track = sequencer.getTrack(0);
+
+		// Steps the track like MSequencer.render(), the second block being set once the first tick is played
+		final MessageList messages = new MessageList();
+		MSequencer.Output output = new MSequencer.Output() {
+			@Override
+			public void render(long deadline_ns, int message) {
+				messages.add(deadline_ns, message);
+			}
+		};
+		track.begin(0);
+		track.step(true, false, output);
+		track.setNext(second);
+		while(track.getDeadline_ns() < 1_900_000_000L) {
+			track.step(true, false, output);
+		}
+		track.renderNoteOffs(1_900_000_000L, output);
+		track.end();
+
+		// The first block plays until the end of its loop, where its sounding note is released, then the second one starts
+		assertEquals("[0:144:0:60, 250:128:0:60, 250:144:0:64, 1000:128:0:64, 1000:144:0:67, 1250:128:0:67]",
+				describe(messages));
+		assertEquals(second, track.getBlock());
+	}
+
+	/**
+	 * A block of 4 ticks which plays 'key' during its first tick.
+	 */
+	private static Block buildBlock(int channel, int key) {
+		Block block = new Block(new Time.TimeSignature(2, 4), 2, channel);
+		block.add(key, 100, 0, 1);
+		return block;
+	}
+
+	/**
+	 * Describes each message as 'milliseconds:command:channel:key'.
+	 */
+	private static String describe(MessageList messages) {
+		List<String> result = new ArrayList<>();
+		for(int i = 0; i < messages.size(); i++) {
+			int message = messages.getMessage(i);
+			result.add(messages.getTime_ns(i) / 1_000_000L + ":" + Timeline.getCommand(message) + ":" + Timeline.getChannel(message)
+					+ ":" + Timeline.getData1(message));
+		}
+		return result.toString();
+	}
+
+	private static Thread findThread(String name) {
+		for(Thread thread : Thread.getAllStackTraces().keySet()) {
+			if(thread.getName().equals(name)) {
+				return thread;
+			}
+		}
+		throw new IllegalStateException("Thread not found: " + name);
+	}
+}
@@ -0,0 +1,30 @@
+package mcs;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class WaitStrategyTest {
+
+	@Test
+	public void waitUntil() throws InterruptedException {
+		for(WaitStrategy strategy : WaitStrategy.values()) {
+			for(int i = 0; i < 10; i++) {
+				long deadline_ns = System.nanoTime() + 1_000_000L;
+				strategy.waitUntil(deadline_ns);
+				assertTrue(strategy + " returned before deadline", System.nanoTime() >= deadline_ns);
+			}
+
+			// Passed deadline
+			long before_ns = System.nanoTime();
+			strategy.waitUntil(before_ns - 1_000_000_000L);
+			assertTrue(strategy + " waited for a passed deadline", System.nanoTime() - before_ns < 100_000_000L);
+		}
+	}
+
+	@Test(expected = InterruptedException.class)
+	public void interrupted() throws InterruptedException {
+		Thread.currentThread().interrupt();
+		WaitStrategy.HYBRID.waitUntil(System.nanoTime() + 1_000_000_000L);
+	}
+}
@@ -3,6 +3,7 @@ package mcs.gui.components;
 import mcs.melody.Chord;
 import mcs.melody.Note;
 import mcs.pattern.GuitarPattern;
+import mcs.pattern.Tuning;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
@@ -51,6 +52,24 @@ public class GuitarNeckTest {
 		assertTrue(neck.getFrets(1, Note.E1).contains(12));
 	}
 
+	@Test
+	public void bass() {
+		GuitarNeck neck = new GuitarNeck(Tuning.BASS, 20);
+
+		assertEquals(4, neck.getStrings());
+		assertEquals(Note.E1, neck.computeNote(1, 0));
+		assertEquals(Note.C4, neck.computeNote(4, 17));
+		assertEquals(4, neck.pixel2string(GuitarNeck.GRID_PADDING_px));
+		assertEquals(2, neck.getFrets(4, Note.A1).size());
+
+		neck.add(1, 5);
+		neck.add(2, 7);
+		neck.setRootNote(Note.A1);
+		GuitarPattern pattern = neck.computeGuitarPattern();
+		assertEquals(Tuning.BASS, pattern.getTuning());
+		assertEquals(4, pattern.getStrings());
+	}
+
 	@Test
 	public void pixel2string() {
 		GuitarNeck neck = new GuitarNeck();
@@ -93,4 +112,22 @@ public class GuitarNeckTest {
 		assertTrue(pattern.getFingering(2).isPlayed());
 		assertEquals(Chord.ROOT, pattern.getFingering(2).getInterval());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void computePatternWithoutRoot() {
+		GuitarNeck neck = new GuitarNeck();
+		neck.add(2, 3);
+		neck.add(3, 5);
+		neck.add(4, 4);
+		neck.add(5, 5);
+		neck.add(6, 3);
+
+		assertEquals("CM7", neck.identifyChord().getName());
+
+		GuitarPattern pattern = neck.computeGuitarPattern();
+
+		// Root is found from the chord
+		assertEquals(Note.C3, (int) neck.getRootNote());
+		assertEquals(Chord.ROOT, pattern.getFingering(2).getInterval());
+	}
+}
@@ -7,7 +7,7 @@
 package mcs.gui.components;
 
 import mcs.melody.Time;
-import mcs.pattern.Event;
+import mcs.pattern.EventStore;
 import org.junit.Test;
 
 import java.util.LinkedHashMap;
@@ -30,7 +30,9 @@ public class MGridTest {
 
 		MGrid grid = new MGrid(timeSignature, bars, ticksPerBeat, levelMapping);
 
-		grid.write(0, new Event(new int[] { 1, 2 }, 42, 3));
+		EventStore events = new EventStore();
+		events.add(new int[] { 1, 2 }, 42, 0, 3);
+		grid.write(events, 0);
 
 		assertGreater(0, grid.m_velocityMatrix[0][0]);
 		assertGreater(0, grid.m_velocityMatrix[0][1]);
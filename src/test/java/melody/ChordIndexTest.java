@@ -0,0 +1,89 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package melody;
+
+import mcs.melody.ChordIndex;
+import mcs.melody.ChordSymbol;
+import mcs.melody.Note;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChordIndexTest {
+
+	@Test
+	public void lookup() {
+		List<ChordIndex.Match> matches = ChordIndex.lookup(ChordIndex.toMask(Note.C3, Note.E3, Note.G3));
+
+		assertEquals(1, matches.size());
+		assertEquals("C", matches.get(0).getName());
+
+		// Same notes, different chords
+		matches = ChordIndex.lookup(ChordIndex.toMask(Note.A2, Note.C3, Note.E3, Note.G3));
+		assertEquals("Am7", matches.get(0).getName());
+		assertEquals("C6", matches.get(1).getName());
+
+		assertTrue(ChordIndex.lookup(ChordIndex.toMask(Note.C3, Note.C3 + 1, Note.C3 + 2)).isEmpty());
+	}
+
+	@Test
+	public void identify() {
+		// Bass decides between same pitch classes
+		assertEquals("C6", ChordIndex.identify(Note.C3, Note.E3, Note.G3, Note.A3).getName());
+		assertEquals("Am7", ChordIndex.identify(Note.A2, Note.C3, Note.E3, Note.G3).getName());
+
+		// Inversions
+		ChordIndex.Match match = ChordIndex.identify(Note.E2, Note.G2, Note.C3);
+		assertEquals("C", match.getName());
+		assertEquals("C/E", match.getName(Note.E2 % 12));
+		assertEquals(1, match.getInversion(Note.E2 % 12));
+		assertEquals(2, match.getInversion(Note.G2 % 12));
+
+		match = ChordIndex.identify(Note.F3, Note.G3, Note.B3, Note.D3 + 12);
+		assertEquals("G7", match.getName());
+		assertEquals(3, match.getInversion(Note.F3 % 12));
+
+		// Without fifth
+		match = ChordIndex.identify(Note.C3, Note.E3, Note.C3 + 10);
+		assertEquals("C7", match.getName());
+		assertTrue(match.isWithoutFifth());
+
+		assertNull(ChordIndex.identify(Note.NULL, Note.NULL));
+		assertNull(ChordIndex.identify(Note.C3, Note.C3 + 1));
+	}
+
+	@Test
+	public void everyChordIsIndexed() {
+		for(String root : ChordIndex.ROOT_NAMES) {
+			for(String flavor : new String[] { "", "m", "7", "m7", "M7", "6", "m6", "m7b5", "dim7", "7sus4", "9", "m9", "69", "13",
+					"7b9", "7#9", "7#5", "7#11" }) {
+				int[] notes = ChordSymbol.parse(root + flavor).getNotes(3);
+
+				boolean found = false;
+				for(ChordIndex.Match match : ChordIndex.lookup(ChordIndex.toMask(notes))) {
+					found |= match.getName().equals(root + flavor) && !match.isWithoutFifth();
+				}
+				assertTrue(root + flavor, found);
+			}
+		}
+		assertFalse(ChordIndex.lookup(0).iterator().hasNext());
+	}
+}
@@ -16,10 +16,18 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package melody;
 
 import mcs.melody.Chord;
+import mcs.melody.ChordSymbol;
 import mcs.melody.Note;
+import mcs.melody.PitchClassSet;
+import mcs.melody.Scale;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class ChordTest {
 
@@ -41,4 +49,94 @@ public class ChordTest {
 		assertEquals(Note.E3, A7[4]); // fifth
 		assertEquals(Note.G3, A7[6]); // minor seventh
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void byNameMatchesChordMethods() {
+		String[] roots = { "C", "C#", "Db", "D", "D#", "Eb", "E", "F", "F#", "Gb", "G", "G#", "Ab", "A", "A#", "Bb", "B" };
+		int[] offsets = { 0, 1, 1, 2, 3, 3, 4, 5, 6, 6, 7, 8, 8, 9, 10, 10, 11 };
+
+		for(int octave = 0; octave <= 8; octave++) {
+			for(int r = 0; r < roots.length; r++) {
+				String root = roots[r];
+				int key = Note.C0 + offsets[r] + octave * 12;
+
+				assertArrayEquals(Chord.K(key), Chord.byName(root, octave));
+				assertArrayEquals(Chord.Km(key), Chord.byName(root + "m", octave));
+				assertArrayEquals(Chord.KM7(key), Chord.byName(root + "M7", octave));
+				assertArrayEquals(Chord.KM7(key), Chord.byName(root + "Maj7", octave));
+				assertArrayEquals(Chord.K7(key), Chord.byName(root + "7", octave));
+				assertArrayEquals(Chord.Km7(key), Chord.byName(root + "m7", octave));
+				assertArrayEquals(Chord.Km7b5(key), Chord.byName(root + "m7b5", octave));
+				assertArrayEquals(Chord.Kdim7(key), Chord.byName(root + "\u00B07", octave));
+				assertArrayEquals(Chord.Kdim7(key), Chord.byName(root + "dim7", octave));
+				assertArrayEquals(Chord.K6(key), Chord.byName(root + "6", octave));
+				assertArrayEquals(Chord.Km6(key), Chord.byName(root + "m6", octave));
+				assertArrayEquals(Chord.K7sus4(key), Chord.byName(root + "7sus4", octave));
+				assertArrayEquals(Chord.K9(key), Chord.byName(root + "9", octave));
+				assertArrayEquals(Chord.Km9(key), Chord.byName(root + "m9", octave));
+				assertArrayEquals(Chord.K7s11(key), Chord.byName(root + "7#11", octave));
+				assertArrayEquals(Chord.K7s5(key), Chord.byName(root + "7#5", octave));
+				assertArrayEquals(Chord.K69(key), Chord.byName(root + "6 9", octave));
+				assertArrayEquals(Chord.K69(key), Chord.byName(root + "69", octave));
+				assertArrayEquals(Chord.K13(key), Chord.byName(root + "13", octave));
+				assertArrayEquals(Chord.K7b9(key), Chord.byName(root + "7b9", octave));
+				assertArrayEquals(Chord.K7s9(key), Chord.byName(root + "7#9", octave));
+			}
+		}
+	}
+
+	@Test
+	public void byNameExtended() {
+		int C3 = Note.C3;
+		int N = Note.NULL;
+
+		assertArrayEquals(new int[] { C3, N, C3 + 3, N, C3 + 7, N, C3 + 11 }, Chord.byName("CmMaj7", 3));
+		assertArrayEquals(new int[] { C3, C3 + 2, C3 + 4, N, C3 + 7, N, C3 + 11 }, Chord.byName("Cmaj9", 3));
+		assertArrayEquals(new int[] { C3, C3 + 2, C3 + 4, C3 + 6, C3 + 7, N, C3 + 11 }, Chord.byName("Cmaj9(#11)", 3));
+		assertArrayEquals(new int[] { C3, C3 + 2, C3 + 3, C3 + 5, C3 + 7, N, C3 + 10 }, Chord.byName("Cm11", 3));
+		assertArrayEquals(new int[] { C3, N, C3 + 2, N, C3 + 7, N, N }, Chord.byName("Csus2", 3));
+		assertArrayEquals(new int[] { C3, C3 + 2, C3 + 4, N, C3 + 7, N, N }, Chord.byName("Cadd9", 3));
+		assertArrayEquals(new int[] { C3, N, C3 + 4, N, C3 + 8, N, N }, Chord.byName("Caug", 3));
+		assertArrayEquals(new int[] { C3, N, C3 + 3, N, C3 + 6, N, N }, Chord.byName("Cdim", 3));
+		assertArrayEquals(new int[] { C3, N, C3 + 3, N, C3 + 6, N, C3 + 10 }, Chord.byName("C\u00F8", 3));
+		assertArrayEquals(new int[] { C3, C3 + 1, C3 + 4, N, C3 + 8, C3 + 8, C3 + 10 }, Chord.byName("C7(b9,#5,b13)", 3));
+
+		// Slash chords: the bass is played below the whole chord, after its levels
+		assertArrayEquals(new int[] { Note.G3, N, Note.G3 + 4, N, Note.G3 + 7, N, Note.G3 + 10, Note.B2 }, Chord.byName("G7/B", 3));
+		assertArrayEquals(new int[] { C3, N, C3 + 4, N, C3 + 7, N, N, Note.E3 - 12 }, Chord.byName("C/E", 3));
+		assertEquals(Note.C3 - 2, Chord.byName("Cm7/Bb", 3)[ChordSymbol.BASS_LEVEL - 1]);
+		assertEquals(Note.C2, Chord.byName("C/C", 3)[ChordSymbol.BASS_LEVEL - 1]);
+
+		assertNull(Chord.byName("H7", 3));
+		assertNull(Chord.byName("C7x", 3));
+		assertNull(Chord.byName("C/", 3));
+		assertNull(Chord.byName("", 3));
+	}
+
+	@Test
+	public void containsInterval() {
+		PitchClassSet major = Scale.MAJOR.getPitchClasses();
+		assertTrue(Chord.containsInterval(major, Chord.ROOT));
+		assertTrue(Chord.containsInterval(major, Chord.MAJOR_SEVENTH));
+		assertFalse(Chord.containsInterval(major, Chord.MINOR_THIRD));
+		assertFalse(Chord.containsInterval(major, Chord.NULL_INTERVAL));
+
+		PitchClassSet withoutThird = PitchClassSet.ofNotes(Chord.ROOT, Chord.PERFECT_FIFTH);
+		assertFalse(Chord.containsInterval(withoutThird, Chord.MAJOR_THIRD));
+		assertTrue(Chord.containsInterval(withoutThird, Chord.PERFECT_FIFTH));
+	}
+
+	@Test
+	public void parseIsCached() {
+		ChordSymbol symbol = ChordSymbol.parse("Ebm9");
+
+		assertSame(symbol, ChordSymbol.parse("Ebm9"));
+		assertEquals(Chord.MINOR_THIRD, symbol.getInterval(3));
+		assertEquals(ChordSymbol.NO_BASS, symbol.getBass());
+		assertEquals(Note.C3 + 3, symbol.getNote(1, 3));
+
+		// Returned arrays are copies
+		Chord.byName("Ebm9", 3)[0] = Note.NULL;
+		assertEquals(Note.C3 + 3, Chord.byName("Ebm9", 3)[0]);
+	}
+}
@@ -0,0 +1,88 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package melody;
+
+import mcs.melody.Note;
+import mcs.melody.PitchClassSet;
+import mcs.melody.Scale;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PitchClassSetTest {
+
+	@Test
+	public void contains() {
+		PitchClassSet cMajor = PitchClassSet.ofNotes(Note.C3, Note.E3, Note.G3);
+
+		assertEquals(3, cMajor.size());
+		assertTrue(cMajor.contains(Note.C0));
+		assertTrue(cMajor.contains(Note.E3 + 24));
+		assertFalse(cMajor.contains(Note.C3 + 1));
+		assertTrue(cMajor.contains(-12)); // Negative notes are reduced too
+		assertSame(cMajor, PitchClassSet.of(0x91));
+		assertEquals("{0,4,7}", cMajor.toString());
+	}
+
+	@Test
+	public void operations() {
+		PitchClassSet cMajor = PitchClassSet.ofNotes(0, 4, 7);
+		PitchClassSet aMinor = PitchClassSet.ofNotes(9, 0, 4);
+
+		assertEquals(PitchClassSet.ofNotes(2, 6, 9), cMajor.transpose(2));
+		assertEquals(PitchClassSet.ofNotes(11, 3, 6), cMajor.transpose(-1));
+		assertEquals(PitchClassSet.ofNotes(0, 4), cMajor.intersect(aMinor));
+		assertEquals(PitchClassSet.ofNotes(0, 4, 7, 9), cMajor.union(aMinor));
+		assertEquals(PitchClassSet.ofNotes(7), cMajor.minus(aMinor));
+		assertEquals(9, cMajor.complement().size());
+		assertEquals(PitchClassSet.CHROMATIC, cMajor.union(cMajor.complement()));
+		assertTrue(Scale.MAJOR.getPitchClasses().containsAll(cMajor));
+		assertFalse(cMajor.containsAll(Scale.MAJOR.getPitchClasses()));
+	}
+
+	@Test
+	public void indexes() {
+		PitchClassSet major = Scale.MAJOR.getPitchClasses();
+
+		assertArrayEquals(new int[] { 0, 2, 4, 5, 7, 9, 11 }, major.toArray());
+		for(int i = 0; i < major.size(); i++) {
+			assertEquals(i, major.indexOf(major.get(i)));
+		}
+		assertEquals(-1, major.indexOf(1));
+	}
+
+	@Test
+	public void getIntervalVector() {
+		// Well-known vectors
+		assertArrayEquals(new int[] { 2, 5, 4, 3, 6, 1 }, Scale.MAJOR.getPitchClasses().getIntervalVector());
+		assertArrayEquals(new int[] { 0, 0, 1, 1, 1, 0 }, PitchClassSet.ofNotes(0, 4, 7).getIntervalVector());
+		assertArrayEquals(new int[] { 0, 0, 4, 0, 0, 2 }, Scale.DIMINISHED.getPitchClasses().intersect(
+				PitchClassSet.ofNotes(0, 3, 6, 9)).getIntervalVector());
+	}
+
+	@Test
+	public void scales() {
+		assertEquals(Scale.MAJOR.getPitchClasses().transpose(9), Scale.MAJOR.on(Note.A2));
+		assertEquals(Scale.MAJOR.getPitchClasses(), Scale.NATURAL_MINOR.on(Note.A2));
+		assertEquals(Scale.MAJOR.on(Note.C3), Scale.DORIAN.on(Note.D3)); // Modes share pitch classes
+		assertEquals(5, Scale.MINOR_PENTATONIC.size());
+		assertEquals(Note.G0 - Note.C0, Scale.MIXOLYDIAN.getInterval(4));
+	}
+}
@@ -21,6 +21,7 @@ import org.junit.Test;
 
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MetaMessage;
+import java.math.BigInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -34,6 +35,34 @@ public class TimeTest {
 		assertEquals(500, Time.computeTickDuration_ms(60, 2));
 	}
 
+	@Test
+	public void computeTickTime_ns() {
+		assertEquals(0, Time.computeTickTime_ns(0, 60, 1));
+		assertEquals(1_000_000_000L, Time.computeTickTime_ns(1, 60, 1));
+		assertEquals(6_250_000L, Time.computeTickTime_ns(1, 100, 96)); // Truncated to 6 ms by computeTickDuration_ms
+	}
+
+	@Test
+	public void computeTickTime_ns_noDrift() {
+		// At 100 BPM and 96 ticks per beat, a tick lasts exactly 6.25 ms
+		long previousTime_ns = 0;
+		for(long tick = 1; tick <= 100_000; tick++) {
+			long time_ns = Time.computeTickTime_ns(tick, 100, 96);
+			assertEquals("tick #" + tick, 6_250_000L, time_ns - previousTime_ns);
+			previousTime_ns = time_ns;
+		}
+		assertEquals(625_000_000_000L, previousTime_ns);
+
+		// At 120 BPM and 7 ticks per beat, the tick duration is not a whole number of ns: each tick must still be the exact
+		// value rounded down, never an accumulation of rounded durations
+		BigInteger ticksPerMinute = BigInteger.valueOf(120 * 7);
+		for(long tick = 0; tick <= 100_000; tick++) {
+			long expected_ns = BigInteger.valueOf(tick).multiply(BigInteger.valueOf(Time.NANOSECONDS_PER_MINUTE))
+					.divide(ticksPerMinute).longValue();
+			assertEquals("tick #" + tick, expected_ns, Time.computeTickTime_ns(tick, 120, 7));
+		}
+	}
+
 	@Test
 	public void createTempoMessage() throws InvalidMidiDataException {
 		MetaMessage metaMessage = Time.createTempoMessage(120);
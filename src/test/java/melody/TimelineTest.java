@@ -0,0 +1,69 @@
+package melody;
+
+import mcs.melody.Block;
+import mcs.melody.Note;
+import mcs.melody.Time;
+import mcs.melody.Timeline;
+import org.junit.Test;
+
+import javax.sound.midi.ShortMessage;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimelineTest {
+
+	static final int VELOCITY = Note.Dynamic.MEZZO_FORTE.velocity;
+
+	@Test
+	public void pack() {
+		int message = Timeline.pack(ShortMessage.NOTE_ON, 9, Note.C3, VELOCITY);
+
+		assertEquals(ShortMessage.NOTE_ON, Timeline.getCommand(message));
+		assertEquals(ShortMessage.NOTE_ON | 9, Timeline.getStatus(message));
+		assertEquals(9, Timeline.getChannel(message));
+		assertEquals(Note.C3, Timeline.getData1(message));
+		assertEquals(VELOCITY, Timeline.getData2(message));
+	}
+
+	@Test
+	public void compile() {
+		int channel = 2;
+		Block block = new Block(new Time.TimeSignature(4, 4), 4, channel);
+		block.add(Note.C3, VELOCITY, 4, 8);
+		block.add(Note.E3, VELOCITY, 0, 4);
+		block.add(Note.G3, VELOCITY, 0, 16);
+
+		Timeline timeline = block.compile();
+
+		assertEquals(6, timeline.getMessageCount());
+		assertEquals(16, timeline.size());
+
+		// Tick #0: both NOTE_ONs
+		assertMessage(timeline, 0, 0, ShortMessage.NOTE_ON, channel, Note.E3);
+		assertMessage(timeline, 1, 0, ShortMessage.NOTE_ON, channel, Note.G3);
+		// Tick #4: NOTE_OFF of E3 is placed before NOTE_ON of C3
+		assertMessage(timeline, 2, 4, ShortMessage.NOTE_OFF, channel, Note.E3);
+		assertMessage(timeline, 3, 4, ShortMessage.NOTE_ON, channel, Note.C3);
+		assertMessage(timeline, 4, 8, ShortMessage.NOTE_OFF, channel, Note.C3);
+		assertMessage(timeline, 5, 16, ShortMessage.NOTE_OFF, channel, Note.G3);
+
+		assertEquals(0, timeline.indexOf(0));
+		assertEquals(2, timeline.indexOf(1));
+		assertEquals(2, timeline.indexOf(4));
+		assertEquals(5, timeline.indexOf(9));
+		assertEquals(6, timeline.indexOf(17));
+
+		// Result is kept until the block changes
+		assertEquals(timeline, block.compile());
+		block.add(Note.C4, VELOCITY, 1, 2);
+		assertEquals(8, block.compile().getMessageCount());
+	}
+
+	static void assertMessage(Timeline timeline, int index, long tick, int command, int channel, int key) {
+		int message = timeline.getMessage(index);
+		assertEquals(tick, timeline.getTick(index));
+		assertEquals(command, Timeline.getCommand(message));
+		assertEquals(channel, Timeline.getChannel(message));
+		assertEquals(key, Timeline.getData1(message));
+	}
+}
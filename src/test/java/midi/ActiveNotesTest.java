@@ -0,0 +1,57 @@
+package midi;
+
+import mcs.melody.Timeline;
+import mcs.midi.ActiveNotes;
+import mcs.midi.Drum;
+import org.junit.Test;
+
+import javax.sound.midi.ShortMessage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ActiveNotesTest {
+
+	@Test
+	public void update() {
+		ActiveNotes notes = new ActiveNotes();
+
+		notes.update(Timeline.pack(ShortMessage.NOTE_ON, 0, 60, 100));
+		notes.update(Timeline.pack(ShortMessage.NOTE_ON, 0, 127, 100));
+		notes.update(Timeline.pack(ShortMessage.NOTE_ON, Drum.CHANNEL, Drum.CLOSED_HIT_HAT, 100));
+
+		assertTrue(notes.isOn(0, 60));
+		assertTrue(notes.isOn(0, 127));
+		assertTrue(notes.isOn(Drum.CHANNEL, Drum.CLOSED_HIT_HAT));
+		assertFalse(notes.isOn(1, 60));
+		assertEquals(2, notes.count(0));
+
+		notes.update(Timeline.pack(ShortMessage.NOTE_OFF, 0, 60, 0));
+		notes.update(Timeline.pack(ShortMessage.NOTE_ON, 0, 127, 0)); // NOTE_ON with velocity 0 releases the key
+		notes.update(Timeline.pack(ShortMessage.CONTROL_CHANGE, Drum.CHANNEL, Drum.CLOSED_HIT_HAT, 0)); // Ignored
+
+		assertTrue(notes.isEmpty(0));
+		assertFalse(notes.isEmpty());
+
+		notes.clear();
+		assertTrue(notes.isEmpty());
+	}
+
+	@Test
+	public void nextKey() {
+		ActiveNotes notes = new ActiveNotes();
+		notes.set(3, 0);
+		notes.set(3, 63);
+		notes.set(3, 64);
+		notes.set(3, 100);
+
+		assertEquals(0, notes.nextKey(3, 0));
+		assertEquals(63, notes.nextKey(3, 1));
+		assertEquals(64, notes.nextKey(3, 64));
+		assertEquals(100, notes.nextKey(3, 65));
+		assertEquals(-1, notes.nextKey(3, 101));
+		assertEquals(-1, notes.nextKey(3, ActiveNotes.KEYS));
+		assertEquals(-1, notes.nextKey(2, 0));
+	}
+}
@@ -0,0 +1,48 @@
+package midi;
+
+import mcs.melody.Timeline;
+import mcs.midi.MessageCache;
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MessageCacheTest {
+
+	@Test
+	public void get() throws InvalidMidiDataException {
+		int[][] values = { { ShortMessage.NOTE_ON, 0, 60, 100 }, { ShortMessage.NOTE_OFF, 9, 36, 0 },
+				{ ShortMessage.CONTROL_CHANGE, 15, 123, 0 }, { ShortMessage.PROGRAM_CHANGE, 3, 25, 0 },
+				{ ShortMessage.PITCH_BEND, 1, 127, 127 } };
+
+		for(int[] v : values) {
+			ShortMessage expected = new ShortMessage(v[0], v[1], v[2], v[3]);
+			ShortMessage message = MessageCache.get(v[0], v[1], v[2], v[3]);
+
+			assertEquals(expected.getLength(), message.getLength());
+			assertTrue(Arrays.equals(expected.getMessage(), message.getMessage()));
+			assertSame(message, MessageCache.get(v[0], v[1], v[2], v[3]));
+			assertSame(message, MessageCache.get(Timeline.pack(v[0], v[1], v[2], v[3])));
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void immutable() throws InvalidMidiDataException {
+		MessageCache.get(ShortMessage.NOTE_ON, 0, 60, 100).setMessage(ShortMessage.NOTE_OFF, 0, 60, 0);
+	}
+
+	@Test(expected = InvalidMidiDataException.class)
+	public void outOfRange() throws InvalidMidiDataException {
+		MessageCache.get(ShortMessage.NOTE_ON, 0, 128, 100);
+	}
+
+	@Test(expected = InvalidMidiDataException.class)
+	public void notChannelMessage() throws InvalidMidiDataException {
+		MessageCache.get(ShortMessage.TIMING_CLOCK);
+	}
+}
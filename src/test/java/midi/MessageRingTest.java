@@ -0,0 +1,89 @@
+package midi;
+
+import mcs.midi.MessageRing;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageRingTest {
+
+	@Test
+	public void capacity() {
+		assertEquals(1024, new MessageRing(1024).capacity());
+		assertEquals(1024, new MessageRing(1000).capacity());
+		assertEquals(2, new MessageRing(1).capacity());
+	}
+
+	@Test
+	public void offerAndPoll() {
+		MessageRing ring = new MessageRing(4);
+
+		assertTrue(ring.isEmpty());
+
+		// Writing and reading several times the capacity makes indexes wrap around
+		for(int i = 0; i < 10; i++) {
+			assertTrue(ring.offer(100 + i, i));
+			assertTrue(ring.offer(200 + i, 2 * i));
+			assertEquals(2, ring.size());
+
+			assertEquals(100 + i, ring.peekDeadline());
+			assertEquals(i, ring.poll());
+			assertEquals(200 + i, ring.peekDeadline());
+			assertEquals(2 * i, ring.poll());
+			assertTrue(ring.isEmpty());
+		}
+	}
+
+	@Test
+	public void overflow() {
+		MessageRing ring = new MessageRing(4);
+
+		for(int i = 0; i < 4; i++) {
+			assertTrue(ring.offer(i, i));
+		}
+		// Retrying until there is room counts once
+		assertFalse(ring.offer(4, 4));
+		assertFalse(ring.offer(4, 4));
+		assertEquals(1, ring.getOverflows());
+
+		// Messages already in the ring are kept
+		assertEquals(0, ring.poll());
+		assertTrue(ring.offer(4, 4));
+		assertFalse(ring.offer(5, 5));
+		assertEquals(2, ring.getOverflows());
+		for(int i = 1; i <= 4; i++) {
+			assertEquals(i, ring.poll());
+		}
+	}
+
+	@Test
+	public void producerConsumer() throws InterruptedException {
+		final MessageRing ring = new MessageRing(64);
+		final int count = 1_000_000;
+
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for(int i = 0; i < count; i++) {
+					while(!ring.offer(i, i)) {
+						Thread.yield();
+					}
+				}
+			}
+		});
+		producer.start();
+
+		for(int i = 0; i < count; i++) {
+			while(ring.isEmpty()) {
+				Thread.yield();
+			}
+			assertEquals(i, ring.peekDeadline());
+			assertEquals(i, ring.poll());
+		}
+
+		producer.join();
+		assertTrue(ring.isEmpty());
+	}
+}
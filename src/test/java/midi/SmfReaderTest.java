@@ -0,0 +1,207 @@
+package midi;
+
+import mcs.melody.Timeline;
+import mcs.midi.SmfReader;
+import mcs.midi.SmfWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SmfReaderTest {
+
+	static final File EXAMPLE_FILE = new File("doc/example.mid");
+	static final File RUNNING_STATUS_FILE = new File("midi/Instant Drum Patterns/Drum Patterns Type 0/200 Patterns Type 0/2BALLAD.MID");
+
+	@Rule
+	public TemporaryFolder m_folder = new TemporaryFolder();
+
+	@Test
+	public void read() throws Exception {
+		Sequence sequence = MidiSystem.getSequence(EXAMPLE_FILE);
+		SmfReader reader = SmfReader.open(EXAMPLE_FILE);
+		assertEquals(sequence.getResolution(), reader.getDivision());
+		assertEquals(sequence.getTracks().length, reader.getTrackCount());
+
+		List<Long> events = toEvents(sequence);
+		assertTrue(events.size() > 0);
+		assertEquals(events, toEvents(reader));
+	}
+
+	@Test
+	public void readEvents() throws Exception {
+		SmfReader.Events events = SmfReader.open(EXAMPLE_FILE).readEvents();
+		Sequence sequence = MidiSystem.getSequence(EXAMPLE_FILE);
+
+		int expected = 0;
+		for(Track track : sequence.getTracks()) {
+			for(int index = 0; index < track.size(); index++) {
+				MidiEvent event = track.get(index);
+				if(event.getMessage() instanceof ShortMessage || isTempo(event)) {
+					expected++;
+				}
+			}
+		}
+		assertEquals(expected, events.size());
+		for(int index = 1; index < events.size(); index++) {
+			assertTrue(events.getTick(index - 1) <= events.getTick(index));
+		}
+	}
+
+	@Test
+	public void runningStatusOverMetaEvents() throws Exception {
+		try {
+			MidiSystem.getSequence(RUNNING_STATUS_FILE);
+			fail();
+		} catch(javax.sound.midi.InvalidMidiDataException e) {
+			// Expected: the running status is used after meta events
+		}
+
+		// Written back with the running status cancelled after meta events, the file becomes readable
+		SmfReader reader = SmfReader.open(RUNNING_STATUS_FILE);
+		File output = m_folder.newFile("output.mid");
+		copy(reader, output);
+		List<Long> events = toEvents(reader);
+		assertTrue(events.size() > 100);
+		assertEquals(events, toEvents(MidiSystem.getSequence(output)));
+		assertEquals(events, toEvents(SmfReader.open(output)));
+	}
+
+	@Test
+	public void write() throws Exception {
+		File output = m_folder.newFile("output.mid");
+		copy(SmfReader.open(EXAMPLE_FILE), output);
+
+		Sequence expected = MidiSystem.getSequence(EXAMPLE_FILE);
+		Sequence actual = MidiSystem.getSequence(output);
+		assertEquals(expected.getResolution(), actual.getResolution());
+		assertEquals(expected.getTickLength(), actual.getTickLength());
+		assertEquals(toEvents(expected), toEvents(actual));
+
+		try(SmfWriter writer = new SmfWriter(output, 0, 96)) {
+			writer.startTrack();
+			writer.writeTempo(0, 500_000);
+			writer.writeMessage(0, Timeline.pack(ShortMessage.PROGRAM_CHANGE, 1, 25, 0));
+			writer.writeMessage(96, Timeline.pack(ShortMessage.NOTE_ON, 1, 60, 100));
+			writer.writeMessage(200_000, Timeline.pack(ShortMessage.NOTE_ON, 1, 60, 0));
+		}
+		SmfReader.Events events = SmfReader.open(output).readEvents();
+		assertEquals(4, events.size());
+		assertTrue(SmfReader.Events.isTempo(events.getMessage(0)));
+		assertEquals(500_000, SmfReader.Events.getTempo_us(events.getMessage(0)));
+		assertEquals(Timeline.pack(ShortMessage.PROGRAM_CHANGE, 1, 25, 0), events.getMessage(1));
+		assertEquals(200_000, events.getTick(3));
+		assertEquals(200_000, MidiSystem.getSequence(output).getTickLength());
+	}
+
+	@Test
+	public void errors() throws Exception {
+		File file = m_folder.newFile("truncated.mid");
+		copy(SmfReader.open(EXAMPLE_FILE), file);
+		try(RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			output.setLength(output.length() - 10);
+		}
+		try {
+			SmfReader.open(file).readEvents();
+			fail();
+		} catch(IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith("truncated track"));
+		}
+
+		try {
+			new SmfReader(ByteBuffer.wrap("ticks_per_beat=4\n".getBytes()));
+			fail();
+		} catch(IOException e) {
+			assertEquals("Not a MIDI file", e.getMessage());
+		}
+	}
+
+	/**
+	 * Copies every event of 'reader' with a {@link SmfWriter}.
+	 */
+	static void copy(SmfReader reader, File output) throws IOException {
+		try(final SmfWriter writer = new SmfWriter(output, reader.getFormat(), reader.getDivision())) {
+			final IOException[] error = new IOException[1];
+			for(int track = 0; track < reader.getTrackCount(); track++) {
+				writer.startTrack();
+				reader.accept(track, new SmfReader.Visitor() {
+					@Override
+					public void visitMessage(int track, long tick, int message) {
+						try {
+							writer.writeMessage(tick, message);
+						} catch(IOException e) {
+							error[0] = e;
+						}
+					}
+
+					@Override
+					public void visitMetaEvent(int track, long tick, int type, ByteBuffer data) {
+						try {
+							writer.writeMetaEvent(tick, type, data);
+						} catch(IOException e) {
+							error[0] = e;
+						}
+					}
+				});
+				writer.endTrack();
+			}
+			if(error[0] != null) {
+				throw error[0];
+			}
+		}
+	}
+
+	/**
+	 * Returns the channel messages of each track, in order, as (track, tick, message).
+	 */
+	static List<Long> toEvents(SmfReader reader) throws IOException {
+		final List<Long> result = new ArrayList<>();
+		reader.accept(new SmfReader.Visitor() {
+			@Override
+			public void visitMessage(int track, long tick, int message) {
+				result.add(toEvent(track, tick, message));
+			}
+		});
+		return result;
+	}
+
+	static List<Long> toEvents(Sequence sequence) {
+		List<Long> result = new ArrayList<>();
+		Track[] tracks = sequence.getTracks();
+		for(int track = 0; track < tracks.length; track++) {
+			for(int index = 0; index < tracks[track].size(); index++) {
+				MidiEvent event = tracks[track].get(index);
+				if(event.getMessage() instanceof ShortMessage) {
+					ShortMessage message = (ShortMessage) event.getMessage();
+					result.add(toEvent(track, event.getTick(),
+							Timeline.pack(message.getCommand(), message.getChannel(), message.getData1(), message.getData2())));
+				}
+			}
+		}
+		return result;
+	}
+
+	static long toEvent(int track, long tick, int message) {
+		return (long) track << 56 | tick << 24 | message;
+	}
+
+	static boolean isTempo(MidiEvent event) {
+		return event.getMessage() instanceof MetaMessage && ((MetaMessage) event.getMessage()).getType() == SmfReader.META_TEMPO;
+	}
+}
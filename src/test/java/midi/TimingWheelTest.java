@@ -0,0 +1,114 @@
+package midi;
+
+import mcs.melody.Timeline;
+import mcs.midi.TimingWheel;
+import org.junit.Test;
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+	static class TimedReceiver implements Receiver {
+
+		final List<Long> times_ns = new ArrayList<>();
+		final List<Integer> keys = new ArrayList<>();
+
+		@Override
+		public synchronized void send(MidiMessage message, long timeStamp) {
+			times_ns.add(System.nanoTime());
+			keys.add(((ShortMessage) message).getData1());
+		}
+
+		synchronized int count() {
+			return keys.size();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Test
+	public void schedule() throws InterruptedException {
+		TimingWheel wheel = new TimingWheel(TimingWheel.TICK_ns, 64);
+		TimedReceiver receiver = new TimedReceiver();
+
+		// 2000 overlapping messages, some of them beyond one turn of the wheel
+		long start_ns = System.nanoTime();
+		long[] deadlines_ns = new long[2000];
+		for(int i = 0; i < deadlines_ns.length; i++) {
+			deadlines_ns[i] = start_ns + (i % 200) * 1_000_000L;
+			wheel.schedule(receiver, Timeline.pack(ShortMessage.NOTE_OFF, 0, i % 128, 0), deadlines_ns[i]);
+		}
+
+		waitFor(receiver, deadlines_ns.length);
+		assertEquals(0, wheel.getPending());
+
+		// Messages are never sent before their deadline
+		List<Long> sorted = new ArrayList<>();
+		for(long deadline_ns : deadlines_ns) {
+			sorted.add(deadline_ns);
+		}
+		Collections.sort(sorted);
+		for(int i = 0; i < sorted.size(); i++) {
+			assertTrue("Message #" + i + " sent too early", receiver.times_ns.get(i) >= sorted.get(i));
+		}
+	}
+
+	@Test
+	public void cancel() throws InterruptedException {
+		TimingWheel wheel = new TimingWheel(TimingWheel.TICK_ns, 64);
+		TimedReceiver receiver = new TimedReceiver();
+
+		long deadline_ns = System.nanoTime() + 20_000_000L;
+		long kept = wheel.schedule(receiver, Timeline.pack(ShortMessage.NOTE_OFF, 0, 60, 0), deadline_ns);
+		long cancelled = wheel.schedule(receiver, Timeline.pack(ShortMessage.NOTE_OFF, 0, 61, 0), deadline_ns);
+
+		assertTrue(wheel.cancel(cancelled));
+		assertFalse(wheel.cancel(cancelled));
+		assertEquals(1, wheel.getPending());
+
+		waitFor(receiver, 1);
+		Thread.sleep(20);
+		assertEquals("[60]", receiver.keys.toString());
+
+		// Handles of sent messages are not valid anymore, even when their entry is used again
+		wheel.schedule(receiver, Timeline.pack(ShortMessage.NOTE_OFF, 0, 62, 0), System.nanoTime() + 1_000_000_000L);
+		assertFalse(wheel.cancel(kept));
+		assertFalse(wheel.cancel(TimingWheel.NO_HANDLE));
+		assertEquals(1, wheel.getPending());
+	}
+
+	@Test
+	public void flush() {
+		TimingWheel wheel = new TimingWheel(TimingWheel.TICK_ns, 64);
+		TimedReceiver receiver = new TimedReceiver();
+
+		long deadline_ns = System.nanoTime() + 60_000_000_000L;
+		for(int key = 0; key < 100; key++) {
+			wheel.schedule(receiver, Timeline.pack(ShortMessage.NOTE_OFF, 0, key, 0), deadline_ns + key);
+		}
+
+		assertEquals(100, wheel.flush());
+		assertEquals(100, receiver.count());
+		assertEquals(0, wheel.getPending());
+		assertEquals(0, wheel.flush());
+	}
+
+	private static void waitFor(TimedReceiver receiver, int count) throws InterruptedException {
+		long timeout_ns = System.nanoTime() + 5_000_000_000L;
+		while(receiver.count() < count && System.nanoTime() < timeout_ns) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, receiver.count());
+	}
+}
@@ -0,0 +1,85 @@
+package midi;
+
+import mcs.melody.Timeline;
+import mcs.midi.TraceLog;
+import org.junit.Test;
+
+import javax.sound.midi.ShortMessage;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TraceLogTest {
+
+	private static final PrintStream NULL = new PrintStream(new ByteArrayOutputStream());
+
+	@Test
+	public void disabled() {
+		TraceLog log = new TraceLog(16);
+		log.record(TraceLog.SEND, Timeline.pack(ShortMessage.NOTE_ON, 0, 60, 100));
+
+		assertEquals(0, log.drain(NULL));
+		assertEquals(0, log.getDropped());
+	}
+
+	@Test
+	public void format() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TraceLog log = new TraceLog(16);
+		log.setEnabled(true);
+		log.record(TraceLog.SEND, Timeline.pack(ShortMessage.NOTE_ON, 9, 36, 100));
+		log.record(TraceLog.UNDERRUN, 0);
+		assertEquals(2, log.drain(new PrintStream(bytes)));
+
+		String[] lines = bytes.toString().trim().split("\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0], lines[0].contains("SEND") && lines[0].contains("NOTE_ON : chan #9, key 36, velocity 100"));
+		assertTrue(lines[1], lines[1].contains("UNDERRUN"));
+	}
+
+	@Test
+	public void dropped() {
+		TraceLog log = new TraceLog(16);
+		log.setEnabled(true);
+		for(int i = 0; i < 20; i++) {
+			log.record(TraceLog.RENDER, Timeline.pack(ShortMessage.NOTE_OFF, 0, i, 0));
+		}
+
+		assertEquals(4, log.getDropped());
+		assertEquals(16, log.drain(NULL));
+	}
+
+	@Test
+	public void writers() throws InterruptedException {
+		final TraceLog log = new TraceLog(1024);
+		log.setEnabled(true);
+
+		final int writers = 4;
+		final int records = 100_000;
+		Thread[] threads = new Thread[writers];
+		for(int w = 0; w < writers; w++) {
+			final int channel = w;
+			threads[w] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for(int i = 0; i < records; i++) {
+						log.record(TraceLog.RENDER, Timeline.pack(ShortMessage.NOTE_ON, channel, i % 128, 100));
+					}
+				}
+			});
+			threads[w].start();
+		}
+
+		long drained = 0;
+		for(Thread thread : threads) {
+			while(thread.isAlive()) {
+				drained += log.drain(NULL);
+			}
+		}
+		drained += log.drain(NULL);
+
+		assertEquals(writers * records, drained + log.getDropped());
+	}
+}
@@ -0,0 +1,91 @@
+package midi;
+
+import mcs.midi.Drum;
+import mcs.midi.ReceiverHelper;
+import mcs.midi.TrackingReceiver;
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackingReceiverTest {
+
+	static class RecordingReceiver implements Receiver {
+
+		final List<String> messages = new ArrayList<>();
+
+		@Override
+		public void send(MidiMessage message, long timeStamp) {
+			ShortMessage m = (ShortMessage) message;
+			messages.add(m.getCommand() + ":" + m.getChannel() + ":" + m.getData1());
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Test
+	public void releaseAll() throws InvalidMidiDataException {
+		RecordingReceiver recorder = new RecordingReceiver();
+		TrackingReceiver receiver = new TrackingReceiver(recorder);
+
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), -1);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 64, 100), -1);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_OFF, 0, 60, 0), -1);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, Drum.CHANNEL, Drum.BASS_DRUM_1, 100), -1);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 3, 50, 100), -1);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 3, 50, 0), -1); // Released by velocity 0
+
+		assertEquals(6, recorder.messages.size());
+		assertTrue(receiver.isOn(0, 64));
+		assertFalse(receiver.isOn(0, 60));
+
+		recorder.messages.clear();
+		assertEquals(2, receiver.releaseAll());
+		assertEquals("[128:0:64, 128:9:" + Drum.BASS_DRUM_1 + "]", recorder.messages.toString());
+		assertTrue(receiver.isSilent());
+
+		// Nothing more to release
+		assertEquals(0, receiver.releaseAll());
+	}
+
+	@Test
+	public void allNotesOff() throws InvalidMidiDataException {
+		RecordingReceiver recorder = new RecordingReceiver();
+		TrackingReceiver receiver = new TrackingReceiver(recorder);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 0, 60, 100), -1);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 1, 62, 100), -1);
+
+		// The notes of channel 0 are already off, only channel 1 is released
+		ReceiverHelper.allNotesOff(receiver, 0);
+		assertFalse(receiver.isOn(0, 60));
+		recorder.messages.clear();
+		assertEquals(1, receiver.releaseAll());
+		assertEquals("[128:1:62]", recorder.messages.toString());
+	}
+
+	@Test
+	public void stopAllNotes() throws InvalidMidiDataException {
+		// An untracked receiver gets 'All Notes Off' on each channel
+		RecordingReceiver recorder = new RecordingReceiver();
+		ReceiverHelper.stopAllNotes(recorder);
+		assertEquals(16, recorder.messages.size());
+		assertEquals("176:9:" + ReceiverHelper.CONTROL_ALL_NOTES_OFF, recorder.messages.get(Drum.CHANNEL));
+
+		// A tracking receiver only releases the sounding notes
+		recorder.messages.clear();
+		TrackingReceiver receiver = new TrackingReceiver(recorder);
+		receiver.send(new ShortMessage(ShortMessage.NOTE_ON, 2, 70, 100), -1);
+		ReceiverHelper.stopAllNotes(receiver);
+		assertEquals("[144:2:70, 128:2:70]", recorder.messages.toString());
+	}
+}
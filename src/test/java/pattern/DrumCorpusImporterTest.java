@@ -0,0 +1,146 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package pattern;
+
+import mcs.pattern.DrumCorpusImporter;
+import mcs.pattern.DrumPattern;
+import mcs.pattern.Pattern;
+import mcs.pattern.PatternLibrary;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DrumCorpusImporterTest {
+
+	static final File CORPUS_DIR = new File(DrumCorpusImporter.DEFAULT_CORPUS_DIR, "Drum Patterns Type 0/200 Patterns Type 0");
+
+	@Rule
+	public TemporaryFolder m_folder = new TemporaryFolder();
+
+	@Test
+	public void runningStatusOverMetaEvents() throws IOException {
+		File corpus = m_folder.newFolder("corpus");
+		// One bar at 240 ticks per beat: bass drum, then a snare sent with the running status after a lyric event
+		writeBytes(new File(corpus, "test.mid"), new int[] { //
+				0x4D, 0x54, 0x68, 0x64, 0, 0, 0, 6, 0, 0, 0, 1, 0, 240, //
+				0x4D, 0x54, 0x72, 0x6B, 0, 0, 0, 31, //
+				0x00, 0xFF, 0x58, 0x04, 0x03, 0x02, 0x18, 0x08, // 3/4
+				0x00, 0x99, 36, 100, //
+				0x78, 36, 0, //
+				0x78, 0xFF, 0x05, 0x01, 'S', //
+				0x00, 38, 80, //
+				0x81, 0x70, 38, 0, //
+				0x00, 0xFF, 0x2F, 0x00 });
+
+		File libraryFile = new File(m_folder.getRoot(), "drums" + PatternLibrary.FILE_EXTENSION);
+		DrumCorpusImporter.Report report = new DrumCorpusImporter(corpus, libraryFile, 1).run();
+		assertEquals(1, report.getPatterns());
+
+		DrumPattern pattern = PatternLibrary.open(libraryFile).getDrumPattern("test_001");
+		assertEquals(Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT, pattern.getTicksPerBeat());
+		assertEquals(3, pattern.getTimeSignature().getBeatsInBar());
+		assertEquals("ticks_per_beat=96\n36;0;48;100\n38;96;96;80\n", pattern.getContent());
+	}
+
+	@Test
+	public void compoundTime() throws IOException {
+		File corpus = m_folder.newFolder("corpus");
+		// Two bars of 6/8 at 240 ticks per quarter note, a bar lasting 720 ticks
+		writeBytes(new File(corpus, "test.mid"), new int[] { //
+				0x4D, 0x54, 0x68, 0x64, 0, 0, 0, 6, 0, 0, 0, 1, 0, 240, //
+				0x4D, 0x54, 0x72, 0x6B, 0, 0, 0, 33, //
+				0x00, 0xFF, 0x58, 0x04, 0x06, 0x03, 0x18, 0x08, // 6/8
+				0x00, 0x99, 36, 100, //
+				0x78, 36, 0, //
+				0x81, 0x70, 38, 80, //
+				0x78, 38, 0, //
+				0x81, 0x70, 36, 100, //
+				0x78, 36, 0, //
+				0x00, 0xFF, 0x2F, 0x00 });
+
+		File libraryFile = new File(m_folder.getRoot(), "drums" + PatternLibrary.FILE_EXTENSION);
+		DrumCorpusImporter.Report report = new DrumCorpusImporter(corpus, libraryFile, 1).run();
+		assertEquals(2, report.getPatterns());
+
+		PatternLibrary library = PatternLibrary.open(libraryFile);
+		assertEquals(8, library.getDrumPattern("test_001").getTimeSignature().getBeatDivision());
+		// 96 ticks by eighth note, a bar lasting 576 ticks
+		DrumPattern bar = library.getDrumPattern("test_001");
+		assertEquals(576, bar.getTimeSignature().getTicksInBar(bar.getTicksPerBeat()));
+		assertEquals("ticks_per_beat=96\n36;0;96;100\n38;288;96;80\n", bar.getContent());
+		assertEquals("ticks_per_beat=96\n36;0;96;100\n", library.getDrumPattern("test_002").getContent());
+	}
+
+	@Test
+	public void importCorpus() throws IOException {
+		File corpus = m_folder.newFolder("corpus");
+		for(String name : new String[] { "2AFROCUB.MID", "2BALLAD.MID", "2REGGAE.MID" }) {
+			Files.copy(new File(CORPUS_DIR, name).toPath(), new File(corpus, name).toPath());
+		}
+		File libraryFile = new File(m_folder.getRoot(), "drums" + PatternLibrary.FILE_EXTENSION);
+		DrumCorpusImporter importer = new DrumCorpusImporter(corpus, libraryFile, 2);
+
+		DrumCorpusImporter.Report report = importer.run();
+		assertTrue(report.isWritten());
+		assertEquals(3, report.getFiles());
+		assertEquals(3, report.getParsedFiles());
+		PatternLibrary library = PatternLibrary.open(libraryFile);
+		assertEquals(report.getPatterns(), library.size());
+		for(String name : library.getNames()) {
+			assertEquals(1, library.getDrumPattern(name).getBars());
+		}
+		String content = library.getDrumPattern("2ballad_001").getContent();
+
+		// Nothing changed
+		report = importer.run();
+		assertFalse(report.isWritten());
+		assertEquals(0, report.getParsedFiles());
+		assertEquals(library.size(), report.getPatterns());
+
+		// Only the modified file is parsed again
+		assertTrue(new File(corpus, "2REGGAE.MID").setLastModified(System.currentTimeMillis() - 60_000));
+		report = importer.run();
+		assertTrue(report.isWritten());
+		assertEquals(1, report.getParsedFiles());
+		assertEquals(library.size(), report.getPatterns());
+		assertEquals(content, PatternLibrary.open(libraryFile).getDrumPattern("2ballad_001").getContent());
+
+		// Removed file
+		assertTrue(new File(corpus, "2AFROCUB.MID").delete());
+		report = importer.run();
+		assertTrue(report.isWritten());
+		assertEquals(0, report.getParsedFiles());
+		assertEquals(report.getPatterns(), PatternLibrary.open(libraryFile).size());
+		assertTrue(report.getPatterns() < library.size());
+	}
+
+	static void writeBytes(File file, int[] bytes) throws IOException {
+		try(FileOutputStream output = new FileOutputStream(file)) {
+			for(int b : bytes) {
+				output.write(b);
+			}
+		}
+	}
+}
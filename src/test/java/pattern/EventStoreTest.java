@@ -0,0 +1,64 @@
+package pattern;
+
+import mcs.pattern.EventStore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EventStoreTest {
+
+	@Test
+	public void add() {
+		EventStore store = new EventStore();
+		store.add(new int[] { 3 }, 80, 8, 12);
+		store.add(new int[] { 1, 5 }, 100, 0, 4);
+		store.add(new int[] { 2 }, 90, 8, 9); // After the other event starting at tick #8
+		store.add(new int[] { 4 }, 70, 4, 6);
+
+		assertEquals(4, store.size());
+		assertEquals(5, store.getTotalLevelCount());
+
+		long[] starts = { 0, 4, 8, 8 };
+		int[] durations = { 4, 2, 4, 1 };
+		int[] velocities = { 100, 70, 80, 90 };
+		int[][] levels = { { 1, 5 }, { 4 }, { 3 }, { 2 } };
+		for(int i = 0; i < store.size(); i++) {
+			assertEquals(starts[i], store.getStart(i));
+			assertEquals(durations[i], store.getDuration_ticks(i));
+			assertEquals(velocities[i], store.getVelocity(i));
+			assertArrayEquals(levels[i], store.getLevels(i));
+			assertEquals(levels[i].length, store.getLevelCount(i));
+			assertEquals(levels[i][0], store.getLevel(i, 0));
+		}
+	}
+
+	@Test
+	public void indexOf() {
+		EventStore store = new EventStore();
+		for(int tick = 0; tick < 1000; tick += 10) {
+			store.add(new int[] { 1 }, 100, tick, tick + 5);
+		}
+
+		assertEquals(0, store.indexOf(0));
+		assertEquals(1, store.indexOf(1));
+		assertEquals(1, store.indexOf(10));
+		assertEquals(50, store.indexOf(495));
+		assertEquals(100, store.indexOf(991));
+
+		// Events starting in [100, 200)
+		assertEquals(10, store.indexOf(200) - store.indexOf(100));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidVelocity() {
+		new EventStore().add(new int[] { 1 }, 128, 0, 1);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void invalidLevel() {
+		EventStore store = new EventStore();
+		store.add(new int[] { 1 }, 100, 0, 1);
+		store.getLevel(0, 1);
+	}
+}
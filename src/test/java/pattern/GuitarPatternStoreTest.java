@@ -0,0 +1,179 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package pattern;
+
+import mcs.melody.PitchClassSet;
+import mcs.pattern.GuitarPattern;
+import mcs.pattern.GuitarPatternStore;
+import mcs.pattern.Tuning;
+import mcs.utils.FileUtils;
+import mcs.utils.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class GuitarPatternStoreTest {
+
+	@Rule
+	public TemporaryFolder m_folder = new TemporaryFolder();
+
+	@Test
+	public void index() throws IOException {
+		File dir = copyPatterns("m7_s1", "m7_s2", "7_s1", "major_s1");
+
+		GuitarPatternStore store = new GuitarPatternStore(dir);
+		assertTrue(store.getIndexFile().exists());
+		assertEquals(Arrays.asList("7_s1", "m7_s1", "m7_s2", "major_s1"), Arrays.asList(store.getNames().toArray()));
+
+		// Reopening only reads the index
+		store = new GuitarPatternStore(dir);
+		GuitarPatternStore.Entry entry = store.getEntry("m7_s1");
+		assertFalse(entry.isLoaded());
+		assertEquals("m7", entry.getQuality());
+		assertTrue(PitchClassSet.ofNotes(0, 3, 7, 10).containsAll(entry.getIntervals()));
+
+		// Pattern is loaded on first access
+		GuitarPattern pattern = store.get("m7_s1");
+		assertNotNull(pattern);
+		assertTrue(entry.isLoaded());
+		assertEquals(entry.getSpan(), pattern.getWidth());
+		assertFalse(store.getEntry("m7_s2").isLoaded());
+	}
+
+	@Test
+	public void find() throws IOException {
+		GuitarPatternStore store = new GuitarPatternStore(copyPatterns("m7_s1", "m7_s2", "m7_s3", "7_s1", "major_s1"));
+
+		assertEquals(3, store.find("m7", null, GuitarPatternStore.ANY, GuitarPatternStore.ANY).size());
+		assertEquals(0, store.find("dim", null, GuitarPatternStore.ANY, GuitarPatternStore.ANY).size());
+
+		for(GuitarPatternStore.Entry entry : store.find(null, null, 2, GuitarPatternStore.ANY)) {
+			assertEquals(2, entry.getRootString());
+		}
+		for(GuitarPatternStore.Entry entry : store.find(null, null, GuitarPatternStore.ANY, 3)) {
+			assertTrue(entry.getSpan() <= 3);
+		}
+
+		GuitarPatternStore.Entry m7 = store.getEntry("m7_s1");
+		List<GuitarPatternStore.Entry> found = store.find("m7", m7.getIntervals(), m7.getRootString(), m7.getSpan());
+		assertTrue(found.contains(m7));
+	}
+
+	@Test
+	public void modifiedFile() throws IOException {
+		File dir = copyPatterns("m7_s1", "7_s1");
+		new GuitarPatternStore(dir);
+
+		// File changed and new file since index was written
+		File m7 = new File(dir, "m7_s1.gpt");
+		FileUtils.writeToFile(FileUtils.readLines(new File(dir, "7_s1.gpt")).get(0) + "\n6=X\n5=X\n4=X\n3=0,-1,0\n2=X\n1=X\n", m7,
+				StringUtils.DEFAULT_ENCODING, false);
+		copy(new File(GuitarPatternStore.DEFAULT_PATTERN_DIR, "major_s1.gpt"), new File(dir, "major_s1.gpt"));
+
+		GuitarPatternStore store = new GuitarPatternStore(dir);
+		assertEquals(3, store.getNames().size());
+		assertEquals(PitchClassSet.ofNotes(0), store.getEntry("m7_s1").getIntervals());
+		assertEquals(3, store.getEntry("m7_s1").getRootString());
+	}
+
+	@Test
+	public void modifiedFileSameSize() throws IOException {
+		File dir = copyPatterns("m7_s1", "7_s1");
+		new GuitarPatternStore(dir);
+
+		// Both files have the same size, only the modification time tells that m7_s1 changed
+		File m7 = new File(dir, "m7_s1.gpt");
+		long lastModified_ms = m7.lastModified();
+		copy(new File(dir, "7_s1.gpt"), m7);
+		assertTrue(m7.setLastModified(lastModified_ms + 10_000L));
+
+		GuitarPatternStore store = new GuitarPatternStore(dir);
+		assertEquals(store.getEntry("7_s1").getIntervals(), store.getEntry("m7_s1").getIntervals());
+	}
+
+	@Test
+	public void save() throws IOException {
+		File dir = copyPatterns("m7_s1");
+		GuitarPatternStore store = new GuitarPatternStore(dir);
+
+		GuitarPattern pattern = new GuitarPattern();
+		pattern.add(2, 0, 3, 3);
+		pattern.add(3, 4, 2, 2);
+		pattern.add(4, 7, 0, 0);
+		store.save("C open", pattern);
+
+		assertTrue(store.getNames().contains("Copen"));
+		assertEquals(2, new GuitarPatternStore(dir).getNames().size());
+		assertEquals(PitchClassSet.ofNotes(0, 4, 7), new GuitarPatternStore(dir).getEntry("Copen").getIntervals());
+	}
+
+	@Test
+	public void otherTunings() throws IOException {
+		File dir = copyPatterns("m7_s1");
+		GuitarPatternStore store = new GuitarPatternStore(dir);
+
+		GuitarPattern pattern = new GuitarPattern(Tuning.SEVEN_STRING);
+		pattern.add(1, 0, 0, 0);
+		pattern.add(7, 7, 2, 3);
+		store.save("B5", pattern);
+
+		store = new GuitarPatternStore(dir);
+		assertEquals(Tuning.SEVEN_STRING, store.getEntry("B5").getTuning());
+		assertEquals(Tuning.STANDARD, store.getEntry("m7_s1").getTuning());
+		assertEquals(Arrays.asList(store.getEntry("B5")),
+				store.find(Tuning.SEVEN_STRING, null, null, GuitarPatternStore.ANY, GuitarPatternStore.ANY));
+		assertEquals(2, store.find(null, null, GuitarPatternStore.ANY, GuitarPatternStore.ANY).size());
+
+		GuitarPattern loaded = store.get("B5");
+		assertEquals(7, loaded.getStrings());
+		assertEquals(7, loaded.getFingering(7).getInterval());
+		assertFalse(loaded.getFingering(6).isPlayed());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void unmodifiable() throws IOException {
+		GuitarPatternStore store = new GuitarPatternStore(copyPatterns("m7_s1"));
+
+		assertNotNull(store.getAll().get("m7_s1"));
+		store.getAll().put("other", new GuitarPattern());
+	}
+
+	File copyPatterns(String... names) throws IOException {
+		File dir = m_folder.newFolder();
+		for(String name : names) {
+			copy(new File(GuitarPatternStore.DEFAULT_PATTERN_DIR, name + ".gpt"), new File(dir, name + ".gpt"));
+		}
+		return dir;
+	}
+
+	static void copy(File source, File target) throws IOException {
+		StringBuilder content = new StringBuilder();
+		for(String line : FileUtils.readLines(source)) {
+			content.append(line).append("\n");
+		}
+		FileUtils.writeToFile(content.toString(), target, StringUtils.DEFAULT_ENCODING, false);
+	}
+}
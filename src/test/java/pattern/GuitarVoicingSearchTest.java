@@ -0,0 +1,145 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package pattern;
+
+import mcs.gui.components.GuitarNeck;
+import mcs.melody.ChordSymbol;
+import mcs.melody.PitchClassSet;
+import mcs.pattern.GuitarPattern;
+import mcs.pattern.GuitarVoicingSearch;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GuitarVoicingSearchTest {
+
+	static final int X = GuitarVoicingSearch.MUTED;
+
+	@Test
+	public void find() {
+		GuitarVoicingSearch search = new GuitarVoicingSearch(GuitarNeck.TUNING_STANDARD, GuitarNeck.DEFAULT_FRETS_NUMBER);
+		List<GuitarVoicingSearch.Voicing> voicings = search.find("C");
+
+		assertFalse(voicings.isEmpty());
+		assertTrue(contains(voicings, X, 3, 2, 0, 1, 0)); // Open C
+		assertTrue(contains(voicings, X, 3, 5, 5, 5, 3)); // A shape
+		assertTrue(contains(voicings, 8, 10, 10, 9, 8, 8)); // E shape
+
+		// Easiest first
+		for(int i = 1; i < voicings.size(); i++) {
+			assertTrue(voicings.get(i - 1).getScore() >= voicings.get(i).getScore());
+		}
+	}
+
+	@Test
+	public void rules() {
+		GuitarVoicingSearch search = new GuitarVoicingSearch(GuitarNeck.TUNING_STANDARD, GuitarNeck.DEFAULT_FRETS_NUMBER);
+		ChordSymbol chord = ChordSymbol.parse("G7");
+		PitchClassSet required = PitchClassSet.ofNotes(7, 11, 5); // Fifth can be omitted
+
+		for(GuitarVoicingSearch.Voicing voicing : search.find(chord)) {
+			int lowestFret = Integer.MAX_VALUE;
+			int highestFret = 0;
+			int lowestString = 0;
+			PitchClassSet played = PitchClassSet.EMPTY;
+			for(int string = 6; string >= 1; string--) {
+				int fret = voicing.getFret(string);
+				if(fret != X) {
+					played = played.union(PitchClassSet.ofNotes(GuitarNeck.TUNING_STANDARD[string - 1] + fret));
+					lowestString = string;
+					if(fret > 0) {
+						lowestFret = Math.min(lowestFret, fret);
+						highestFret = Math.max(highestFret, fret);
+					}
+				}
+			}
+
+			assertTrue(voicing.toString(), played.containsAll(required));
+			assertTrue(voicing.toString(), chord.getPitchClasses().containsAll(played));
+			assertTrue(voicing.toString(), highestFret == 0 || highestFret - lowestFret < search.getMaxSpan());
+			assertEquals(voicing.toString(), 7, PitchClassSet.pitchClass(GuitarNeck.TUNING_STANDARD[lowestString - 1]
+					+ voicing.getFret(lowestString)));
+		}
+	}
+
+	@Test
+	public void computeFingers() {
+		// Barre
+		GuitarVoicingSearch.Voicing voicing = first(new GuitarVoicingSearch(GuitarNeck.TUNING_STANDARD, 21).find("F"), 1, 3, 3, 2,
+				1, 1);
+		assertEquals(GuitarPattern.FINGER_INDEX, voicing.getFinger(1));
+		assertEquals(GuitarPattern.FINGER_INDEX, voicing.getFinger(6));
+		assertEquals(GuitarPattern.FINGER_MIDDLE, voicing.getFinger(4));
+		assertEquals(GuitarPattern.FINGER_RING, voicing.getFinger(2));
+		assertEquals(GuitarPattern.FINGER_LITTLE, voicing.getFinger(3));
+
+		// Too many fingers: no barre with an open string in the middle
+		assertNull(first(new GuitarVoicingSearch(GuitarNeck.TUNING_STANDARD, 21).find("E7"), 1, 3, 3, 0, 2, 1));
+	}
+
+	@Test
+	public void toGuitarPattern() {
+		ChordSymbol chord = ChordSymbol.parse("C");
+		GuitarVoicingSearch search = new GuitarVoicingSearch(GuitarNeck.TUNING_STANDARD, 21);
+		GuitarPattern pattern = first(search.find(chord), X, 3, 2, 0, 1, 0).toGuitarPattern(search.getTuning(), chord.getRoot());
+
+		assertFalse(pattern.getFingering(1).isPlayed());
+		assertEquals(0, pattern.getFingering(2).getInterval());
+		assertEquals(3, pattern.getFingering(2).getAbscissa());
+		assertEquals(4, pattern.getFingering(3).getInterval());
+		assertEquals(7, pattern.getFingering(4).getInterval());
+		assertTrue(pattern.getFingering(4).isPlayed()); // Open string
+		assertEquals(4, pattern.getWidth()); // From the head (open strings) to fret #3
+	}
+
+	@Test
+	public void seventhChordsAreFast() {
+		GuitarVoicingSearch search = new GuitarVoicingSearch(GuitarNeck.TUNING_STANDARD, GuitarNeck.DEFAULT_FRETS_NUMBER);
+		search.find("C7"); // Warming up
+
+		for(String flavor : new String[] { "7", "m7", "M7", "m7b5", "dim7" }) {
+			long start_ns = System.nanoTime();
+			List<GuitarVoicingSearch.Voicing> voicings = search.find("Bb" + flavor);
+			long duration_ms = (System.nanoTime() - start_ns) / 1_000_000;
+
+			assertFalse(voicings.isEmpty());
+			assertTrue(flavor + ": " + duration_ms + "ms", duration_ms < 100);
+		}
+	}
+
+	static boolean contains(List<GuitarVoicingSearch.Voicing> voicings, int... frets) {
+		return first(voicings, frets) != null;
+	}
+
+	static GuitarVoicingSearch.Voicing first(List<GuitarVoicingSearch.Voicing> voicings, int... frets) {
+		for(GuitarVoicingSearch.Voicing voicing : voicings) {
+			int[] _frets = new int[6];
+			for(int string = 1; string <= 6; string++) {
+				_frets[string - 1] = voicing.getFret(string);
+			}
+			if(Arrays.equals(frets, _frets)) {
+				return voicing;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,144 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package pattern;
+
+import mcs.melody.Chord;
+import mcs.melody.Note;
+import mcs.pattern.DrumPattern;
+import mcs.pattern.MelodicPattern;
+import mcs.pattern.Pattern;
+import mcs.pattern.PatternCache;
+import mcs.utils.FileUtils;
+import mcs.utils.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PatternCacheTest {
+
+	@Rule
+	public TemporaryFolder m_folder = new TemporaryFolder();
+
+	@Test
+	public void importPattern() throws Exception {
+		PatternCache cache = new PatternCache(PatternCache.DEFAULT_MAX_WEIGHT_BYTES);
+
+		// A NULL key and an interval missing from the chord are not played, but still extend the pattern
+		File drumFile = m_folder.newFile("test.dpt");
+		FileUtils.writeToFile("ticks_per_beat=4\n36,0;0;2;100\n42;2;1;80\n", drumFile, StringUtils.DEFAULT_ENCODING, false);
+		File melodicFile = m_folder.newFile("test.mpt");
+		FileUtils.writeToFile("ticks_per_beat=2\n-1;1,2;0;1;90\n1;3,9;1;2;70\n", melodicFile, StringUtils.DEFAULT_ENCODING,
+				false);
+
+		// Ticks of the drum pattern last 24 ticks of the track, those of the melodic pattern 48
+		String expected = "[0:144:9:36:100, 48:128:9:36:100, 48:144:9:42:80, 72:128:9:42:80, 72:144:9:36:100, "
+				+ "120:128:9:36:100, 120:144:9:42:80, 144:128:9:42:80, 144:144:0:40:90, 192:128:0:40:90, 192:144:0:68:70, "
+				+ "288:128:0:68:70]";
+
+		Track imported = createTrack();
+		long tick = DrumPattern.importPattern(drumFile, imported, 0);
+		assertEquals(72, tick);
+		tick = DrumPattern.importPattern(drumFile, imported, tick);
+		assertEquals(288, MelodicPattern.importPattern(melodicFile, imported, 0, Chord.K(Note.E3), tick));
+		assertEquals(expected, describe(imported));
+
+		Track cached = createTrack();
+		tick = cache.importDrumPattern(drumFile, cached, 0);
+		tick = cache.importDrumPattern(drumFile, cached, tick);
+		assertEquals(288, cache.importMelodicPattern(melodicFile, cached, 0, Chord.K(Note.E3), tick));
+		assertEquals(expected, describe(cached));
+
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void modifiedFile() throws Exception {
+		PatternCache cache = new PatternCache(PatternCache.DEFAULT_MAX_WEIGHT_BYTES);
+		File file = m_folder.newFile("test.dpt");
+		FileUtils.writeToFile("ticks_per_beat=4\n36;0;1;100\n", file, StringUtils.DEFAULT_ENCODING, false);
+
+		PatternCache.CachedPattern pattern = cache.getDrumPattern(file);
+		assertEquals(1, pattern.size());
+		assertEquals(Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT / 4, pattern.getEnd());
+		assertSame(pattern, cache.getDrumPattern(new File(m_folder.getRoot(), "./test.dpt")));
+
+		FileUtils.writeToFile("36,42;0;1;100\n", file, StringUtils.DEFAULT_ENCODING, true);
+		pattern = cache.getDrumPattern(file);
+		assertEquals(3, pattern.size());
+		assertEquals(42, pattern.getValue(2));
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.size());
+		assertEquals(pattern.getWeight_bytes(), cache.getWeight_bytes());
+	}
+
+	@Test
+	public void eviction() throws Exception {
+		File[] files = new File[3];
+		for(int index = 0; index < files.length; index++) {
+			files[index] = m_folder.newFile("test" + index + ".dpt");
+			FileUtils.writeToFile("36;0;1;100\n42;1;1;80\n", files[index], StringUtils.DEFAULT_ENCODING, false);
+		}
+		long weight_bytes = new PatternCache(Long.MAX_VALUE).getDrumPattern(files[0]).getWeight_bytes();
+
+		PatternCache cache = new PatternCache(2 * weight_bytes);
+		cache.getDrumPattern(files[0]);
+		cache.getDrumPattern(files[1]);
+		cache.getDrumPattern(files[0]); // files[1] becomes the least recently used
+		cache.getDrumPattern(files[2]);
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(2 * weight_bytes, cache.getWeight_bytes());
+
+		cache.getDrumPattern(files[0]);
+		assertEquals(2, cache.getHitCount());
+		cache.getDrumPattern(files[1]);
+		assertEquals(4, cache.getMissCount());
+		assertEquals(2, cache.getEvictionCount());
+	}
+
+	/**
+	 * Describes each note of 'track' as 'tick:command:channel:key:velocity'.
+	 */
+	static String describe(Track track) {
+		List<String> result = new ArrayList<>();
+		for(int index = 0; index < track.size(); index++) {
+			MidiEvent event = track.get(index);
+			if(event.getMessage() instanceof ShortMessage) {
+				ShortMessage message = (ShortMessage) event.getMessage();
+				result.add(event.getTick() + ":" + message.getCommand() + ":" + message.getChannel() + ":" + message.getData1() + ":"
+						+ message.getData2());
+			}
+		}
+		return result.toString();
+	}
+
+	static Track createTrack() throws Exception {
+		return new Sequence(Sequence.PPQ, Pattern.DEFAULT_PATTERN_TICKS_PER_BEAT).createTrack();
+	}
+}
@@ -0,0 +1,157 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package pattern;
+
+import mcs.melody.Time;
+import mcs.pattern.DrumPattern;
+import mcs.pattern.GuitarPattern;
+import mcs.pattern.MelodicPattern;
+import mcs.pattern.PatternLibrary;
+import mcs.pattern.Tuning;
+import mcs.utils.FileUtils;
+import mcs.utils.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PatternLibraryTest {
+
+	@Rule
+	public TemporaryFolder m_folder = new TemporaryFolder();
+
+	@Test
+	public void writeAndRead() throws IOException {
+		MelodicPattern melodic = new MelodicPattern(new Time.TimeSignature(3, 4), 16);
+		melodic.add(1, 63, 0, 16);
+		melodic.add(new int[] { 3, 5 }, 79, 16, 48);
+		melodic.add(1, 127, 1_000_000, 1_000_004);
+
+		DrumPattern drum = new DrumPattern(DrumPattern.DEFAULT_TIME_SIGNATURE, 4);
+		drum.add(36, 100, 0, 1);
+		drum.add(42, 80, 0, 1);
+
+		GuitarPattern guitar = new GuitarPattern(Tuning.DROP_D);
+		guitar.add(1, 0, 0, 0);
+		guitar.add(2, 7, 0, 0);
+		guitar.add(3, 0, 0, 0);
+		guitar.add(6, 4, 2, 2);
+
+		File file = m_folder.newFile("test" + PatternLibrary.FILE_EXTENSION);
+		try(PatternLibrary.Writer writer = new PatternLibrary.Writer(file)) {
+			writer.add("melodic", melodic);
+			writer.add("drum", drum);
+			writer.add("guitar", guitar);
+		}
+
+		PatternLibrary library = PatternLibrary.open(file);
+		assertEquals(Arrays.asList("drum", "guitar", "melodic"), Arrays.asList(library.getNames().toArray()));
+		assertEquals(PatternLibrary.KIND_DRUM, library.getKind("drum"));
+
+		MelodicPattern readMelodic = library.getMelodicPattern("melodic");
+		assertEquals(3, readMelodic.getTimeSignature().getBeatsInBar());
+		assertEquals(melodic.getBars(), readMelodic.getBars());
+		assertEquals(melodic.getContent(), readMelodic.getContent());
+		assertEquals(drum.getContent(), library.getDrumPattern("drum").getContent());
+		assertEquals(guitar.getContent(), library.getGuitarPattern("guitar").getContent());
+
+		assertNull(library.getMelodicPattern("drum"));
+		assertNull(library.getGuitarPattern("other"));
+	}
+
+	@Test
+	public void importAndExportText() throws IOException {
+		File dir = new File("pattern");
+		File file = m_folder.newFile("library" + PatternLibrary.FILE_EXTENSION);
+		int count = PatternLibrary.importText(dir, file);
+
+		PatternLibrary library = PatternLibrary.open(file);
+		assertEquals(count, library.size());
+		assertTrue(library.size() > 0);
+
+		File exported = m_folder.newFolder();
+		library.exportText(exported);
+		for(String name : library.getNames()) {
+			switch(library.getKind(name)) {
+			case PatternLibrary.KIND_MELODIC:
+				assertEquals(MelodicPattern.load(new File(dir, "melodic/" + name + ".mpt")).getContent(),
+						MelodicPattern.load(new File(exported, name + ".mpt")).getContent());
+				break;
+			case PatternLibrary.KIND_DRUM:
+				assertEquals(DrumPattern.load(new File(dir, "drum/" + name + ".dpt")).getContent(),
+						DrumPattern.load(new File(exported, name + ".dpt")).getContent());
+				break;
+			default:
+				assertEquals(FileUtils.readLines(new File(dir, "guitar/" + name + ".gpt")),
+						FileUtils.readLines(new File(exported, name + ".gpt")));
+			}
+		}
+	}
+
+	@Test
+	public void failedImport() throws IOException {
+		File dir = m_folder.newFolder();
+		FileUtils.writeToFile("ticks_per_beat=4\n36;0;1;100\n", new File(dir, "a.dpt"), StringUtils.DEFAULT_ENCODING, false);
+		File file = new File(m_folder.getRoot(), "library" + PatternLibrary.FILE_EXTENSION);
+		assertEquals(1, PatternLibrary.importText(dir, file));
+
+		// The previous library is kept, and no temporary file is left
+		FileUtils.writeToFile("36;0\n", new File(dir, "b.dpt"), StringUtils.DEFAULT_ENCODING, false);
+		try {
+			PatternLibrary.importText(dir, file);
+			fail();
+		} catch(IOException e) {
+			assertEquals(Arrays.asList("a"), Arrays.asList(PatternLibrary.open(file).getNames().toArray()));
+			assertFalse(new File(file.getPath() + ".tmp").exists());
+		}
+	}
+
+	@Test
+	public void version() throws IOException {
+		File file = m_folder.newFile("test" + PatternLibrary.FILE_EXTENSION);
+		new PatternLibrary.Writer(file).close();
+		assertEquals(0, PatternLibrary.open(file).size());
+
+		try(RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			output.seek(4);
+			output.writeShort(PatternLibrary.VERSION + 1);
+		}
+		try {
+			PatternLibrary.open(file);
+			fail();
+		} catch(IOException e) {
+			assertTrue(e.getMessage().startsWith("Unsupported pattern library version"));
+		}
+
+		FileUtils.writeToFile("ticks_per_beat=4\n", file, StringUtils.DEFAULT_ENCODING, false);
+		try {
+			PatternLibrary.open(file);
+			fail();
+		} catch(IOException e) {
+			assertTrue(e.getMessage().startsWith("Not a pattern library"));
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package pattern;
+
+import mcs.melody.Note;
+import mcs.pattern.MelodicPattern;
+import mcs.pattern.Pattern;
+import mcs.pattern.PatternReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PatternReaderTest {
+
+	static final String CONTENT = "ticks_per_beat=16\n\n# keys;tick;duration;velocity\n35,46;0;1;mf\r\n38;4;2;100\n";
+
+	@Test
+	public void read() throws IOException {
+		PatternReader reader = new PatternReader(new StringReader(CONTENT), "test");
+
+		assertTrue(reader.next());
+		assertTrue(reader.isOption());
+		assertTrue(reader.isOption(Pattern.OPTION_TICKS_PER_BEAT.toUpperCase()));
+		assertEquals(16, reader.getOptionValue());
+		assertEquals(1, reader.getLineNumber());
+
+		assertTrue(reader.next());
+		assertFalse(reader.isOption());
+		assertEquals(4, reader.getLineNumber());
+		assertEquals(4, reader.getFieldCount());
+		assertEquals(2, reader.getValueCount(0));
+		assertEquals(35, reader.getValue(0, 0));
+		assertEquals(46, reader.getValue(0, 1));
+		assertEquals(0, reader.getValue(1));
+		assertEquals(1, reader.getValue(2));
+		assertEquals(Note.Dynamic.MEZZO_FORTE.velocity, reader.getValue(3));
+
+		assertTrue(reader.next());
+		assertEquals(5, reader.getLineNumber());
+		assertEquals(38, reader.getValue(0));
+		assertEquals(100, reader.getValue(3));
+
+		assertFalse(reader.next());
+	}
+
+	@Test
+	public void readBytes() throws IOException {
+		PatternReader reader = new PatternReader(ByteBuffer.wrap(CONTENT.getBytes(StandardCharsets.US_ASCII)), "test");
+		int events = 0;
+		while(reader.next()) {
+			if(!reader.isOption()) {
+				events++;
+			}
+		}
+		assertEquals(2, events);
+	}
+
+	@Test
+	public void errors() throws IOException {
+		assertError("ticks_per_beat=4\n0;1;0;1;mp\n0;1;2?;1;mp\n", "test:3: unexpected character '?' in field 3");
+		assertError("0;1;0;1;loud\n", "test:1: unknown dynamic 'loud'");
+		assertError("\nticks_per_beat\n", "test:2: '=' expected after option name");
+		assertError("0;1;;1;mp\n", "test:1: missing value in field 3");
+		assertError("0;1;0,2;1;mp\n", "test:1: one value expected in field 3");
+		assertError("0;1;0;1\n", "test:1: 5 fields expected, found 4");
+		assertError("0;1;0;1;mp\nticks_per_beat=4\n", "test:2: option 'ticks_per_beat' after events");
+	}
+
+	@Test
+	public void loadContent() throws IOException {
+		MelodicPattern pattern = new MelodicPattern(MelodicPattern.DEFAULT_TIME_SIGNATURE, 8);
+		pattern.add(1, 63, 0, 4);
+		pattern.add(3, 79, 4, 6);
+		pattern.add(5, 79, 4, 6);
+
+		MelodicPattern loaded = MelodicPattern.load(new PatternReader(new StringReader(pattern.getContent()), "test"));
+
+		assertEquals(8, loaded.getTicksPerBeat());
+		assertEquals(pattern.getContent(), loaded.getContent());
+	}
+
+	static void assertError(String content, String message) throws IOException {
+		try {
+			MelodicPattern.load(new PatternReader(new StringReader(content), "test"));
+			fail("Exception expected for: " + content);
+		} catch(IOException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+}
@@ -8,10 +8,16 @@ package pattern;
 
 import mcs.melody.Note;
 import mcs.melody.Time;
+import mcs.pattern.EventStore;
 import mcs.pattern.Pattern;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class PatternTest {
 
@@ -55,4 +61,37 @@ public class PatternTest {
 
 		assertEquals(2, pattern.getBars());
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void visitEvents() {
+		Pattern pattern = new TestPattern(new Time.TimeSignature(4, 4), 16);
+		pattern.add(1, VELOCITY, 0, 4);
+		pattern.add(2, VELOCITY, 8, 12);
+		pattern.add(3, VELOCITY, 8, 10);
+		pattern.add(4, VELOCITY, 16, 20);
+
+		final List<Long> ticks = new ArrayList<>();
+		final List<Integer> levels = new ArrayList<>();
+		Pattern.EventVisitor visitor = new Pattern.EventVisitor() {
+			@Override
+			public void visit(EventStore events, int index) {
+				ticks.add(events.getStart(index));
+				levels.add(events.getLevel(index, 0));
+			}
+		};
+
+		pattern.visitEvents(4, 16, visitor);
+
+		assertEquals(Arrays.asList(8L, 8L), ticks);
+		assertEquals(Arrays.asList(2, 3), levels);
+
+		// Probing empty ticks does not create anything
+		for(long tick = 0; tick < pattern.size(); tick++) {
+			pattern.getEvents(tick);
+		}
+		ticks.clear();
+		pattern.visitEvents(0, pattern.size(), visitor);
+		assertEquals(Arrays.asList(0L, 8L, 8L, 16L), ticks);
+		assertTrue(pattern.getEvents(1).isEmpty());
+	}
+}
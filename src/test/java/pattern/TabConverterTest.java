@@ -0,0 +1,101 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package pattern;
+
+import mcs.gui.components.GuitarNeck;
+import mcs.melody.Block;
+import mcs.melody.Note;
+import mcs.melody.Time;
+import mcs.pattern.TabConverter;
+import mcs.utils.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TabConverterTest {
+
+	@Test
+	public void convertExample() throws Exception {
+		TabConverter converter = new TabConverter(GuitarNeck.TUNING_STANDARD, GuitarNeck.DEFAULT_FRETS_NUMBER);
+		TabConverter.Tablature tab = converter.convert(new File("doc/example.mid"));
+
+		assertEquals(4, tab.size());
+		assertEquals(3, tab.getNoteCount(0));
+		assertEquals(1, tab.getString(0, 0));
+		assertEquals(0, tab.getFret(0, 0));
+		assertEquals(2, tab.getString(0, 1));
+		assertEquals(2, tab.getFret(0, 1));
+		assertEquals(3, tab.getString(0, 2));
+		assertEquals(2, tab.getFret(0, 2));
+
+		List<String> expected = new ArrayList<>();
+		for(String line : FileUtils.readLines(new File("doc/example.tab"))) {
+			if(line.matches("[A-G]\\|.*")) {
+				expected.add(line);
+			}
+		}
+		assertEquals(expected, Arrays.asList(tab.toText(16).split("\n")));
+	}
+
+	@Test
+	public void scaleStaysInPosition() {
+		// G major scale on 2 octaves
+		int[] scale = new int[] { Note.G2, Note.A2, Note.B2, Note.C3, Note.D3, Note.E3, Note.F3 + 1, Note.G3, Note.A3, Note.B3,
+				Note.C4, Note.D4, Note.E4, Note.F4 + 1, Note.G4 };
+		Block block = new Block(new Time.TimeSignature(4, 4), 1, 0);
+		for(int index = 0; index < scale.length; index++) {
+			block.add(scale[index], 100, index, index + 1);
+		}
+
+		TabConverter converter = new TabConverter(GuitarNeck.TUNING_STANDARD, GuitarNeck.DEFAULT_FRETS_NUMBER);
+		TabConverter.Tablature tab = converter.convert(block);
+
+		assertEquals(scale.length, tab.size());
+		int lowest = Integer.MAX_VALUE;
+		int highest = 0;
+		for(int onset = 0; onset < tab.size(); onset++) {
+			assertEquals(scale[onset], tab.getNote(onset, 0));
+			assertEquals(scale[onset],
+					GuitarNeck.TUNING_STANDARD[tab.getString(onset, 0) - 1] + tab.getFret(onset, 0));
+			if(tab.getFret(onset, 0) > 0) {
+				lowest = Math.min(lowest, tab.getFret(onset, 0));
+				highest = Math.max(highest, tab.getFret(onset, 0));
+			}
+		}
+		// The hand never leaves its position
+		assertTrue(highest - lowest < TabConverter.DEFAULT_MAX_SPAN);
+	}
+
+	@Test
+	public void notesOutOfRange() {
+		Block block = new Block(new Time.TimeSignature(4, 4), 1, 0);
+		block.add(Note.C1, 100, 0, 1);
+		block.add(Note.C8, 100, 1, 2);
+
+		TabConverter converter = new TabConverter(GuitarNeck.TUNING_STANDARD, GuitarNeck.DEFAULT_FRETS_NUMBER);
+		TabConverter.Tablature tab = converter.convert(block);
+
+		assertEquals(2, tab.size());
+		assertEquals(Note.C3, tab.getNote(0, 0));
+		assertEquals(Note.C8 - 24, tab.getNote(1, 0));
+	}
+}
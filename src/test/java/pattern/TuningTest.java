@@ -0,0 +1,68 @@
+/*Copyright (c) 2018-2019, Mathieu Bordas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+1- Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+2- Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+3- Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package pattern;
+
+import mcs.melody.Note;
+import mcs.pattern.Tuning;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TuningTest {
+
+	@Test
+	public void parse() {
+		assertSame(Tuning.STANDARD, Tuning.parse("E2 A2 D3 G3 B3 E4"));
+		assertSame(Tuning.DROP_D, Tuning.parse("D2 A2 D3 G3 B3 E4"));
+		assertSame(Tuning.BASS_5, Tuning.parse("B0 E1 A1 D2 G2"));
+
+		Tuning openD = Tuning.parse("D2 A2 D3 F#3 A3 D4");
+		assertArrayEquals(new int[] { Note.D2, Note.A2, Note.D3, Note.F3 + 1, Note.A3, Note.D4 }, openD.getNotes());
+		assertEquals("D2 A2 D3 F#3 A3 D4", openD.toString());
+		assertEquals(Tuning.parse("Eb2 Ab2 Db3 Gb3 Bb3 Eb4"), Tuning.parse("D#2 G#2 C#3 F#3 A#3 D#4"));
+
+		assertNull(Tuning.parse("E2 A2 H3"));
+		assertNull(Tuning.parse("E A D G B E"));
+	}
+
+	@Test
+	public void roundTrip() {
+		for(Tuning tuning : Tuning.values()) {
+			assertSame(tuning, Tuning.parse(tuning.toString()));
+			assertSame(tuning, Tuning.byLabel(tuning.getLabel()));
+		}
+	}
+
+	@Test
+	public void getFrets() {
+		assertArrayEquals(new int[] { 0, 12, 24 }, Tuning.STANDARD.getFrets(1, Note.E1));
+		assertArrayEquals(new int[] { 3, 15 }, Tuning.STANDARD.getFrets(6, Note.G3));
+		assertArrayEquals(new int[] { 5, 17 }, Tuning.SEVEN_STRING.getFrets(1, Note.E4));
+
+		for(Tuning tuning : Tuning.values()) {
+			for(int string = 1; string <= tuning.size(); string++) {
+				for(int note = Note.C0; note < Note.C0 + 12; note++) {
+					for(int fret : tuning.getFrets(string, note)) {
+						assertEquals(0, Note.getInterval(note, tuning.computeNote(string, fret)));
+					}
+				}
+			}
+		}
+	}
+}